@@ -18,6 +18,42 @@ public abstract class BPlusTree {
     protected int m;
     //the number of values stores at the leaf nodes
     protected int leafM;
+    //the number of bytes available for the entries of a leaf node
+    protected int leafCapacityBytes;
+    //true if the values have a variable length, so leaves need a slot directory
+    protected boolean variableLengthValues;
+    //true if the internal nodes store their keys prefix compressed and their separators truncated
+    protected boolean keyCompression;
+    //the number of parts of a full key
+    protected int keyParts;
+    //the number of bytes available for the keys and pointers of an internal node
+    protected int dirCapacityBytes;
+    //true if the nodes read from disk keep their entries packed until they are modified
+    protected boolean compactNodes;
+
+    public int getLeafCapacityBytes() {
+        return leafCapacityBytes;
+    }
+
+    public boolean hasVariableLengthValues() {
+        return variableLengthValues;
+    }
+
+    public boolean hasKeyCompression() {
+        return keyCompression;
+    }
+
+    public int getKeyParts() {
+        return keyParts;
+    }
+
+    public int getDirCapacityBytes() {
+        return dirCapacityBytes;
+    }
+
+    public boolean hasCompactNodes() {
+        return compactNodes;
+    }
     
     /**
      * Creates a key.
@@ -63,7 +99,8 @@ public abstract class BPlusTree {
     
 
     /**
-     * This method traverses the doubly linked list of the B+ tree leaf nodes and finds
+     * This method descends the B+ tree to the lower bound and traverses the
+     * doubly linked list of the B+ tree leaf nodes from there, finding
      * all values whose associated keys are within the range specified by
      * lowerBound and upperBound.
      *
@@ -116,6 +153,30 @@ public abstract class BPlusTree {
      * 
      */
     public abstract ValueIterator searchAllIterator();
+
+    /**
+     * This method descends the B+ tree to the leaf position of the lower bound
+     * and traverses the leaf nodes from there, stopping at the first key past
+     * the upper bound. Both bounds are inclusive.
+     *
+     * @param lowerBound: the lower bound of the range, or null to start at the
+     * first key
+     * @param upperBound: the upper bound of the range, or null to go up to the
+     * last key
+     * @return an Iterator to access the dictionary pairs within the range
+     */
+    public abstract ValueIterator searchRangeIterator(Key lowerBound, Key upperBound);
+
+    /**
+     * This method descends the B+ tree to the first key that has a partial
+     * match with a given key and traverses the leaf nodes from there, stopping
+     * at the first key that does not match. No list of values is built.
+     *
+     * @param key: the key to be compared with
+     * @return an Iterator to access the dictionary pairs whose keys satisfy the
+     * search condition
+     */
+    public abstract ValueIterator partialSearchIterator(Key key);
     
 
     
@@ -6,20 +6,27 @@
 package ibd.index.btree;
 
 import ibd.persistent.AbstractExternalizablePage;
+import ibd.persistent.ByteBufferPageSerialization;
 import ibd.persistent.Page;
+import ibd.persistent.PageBufferPool;
 import ibd.persistent.PageFile;
-import ibd.persistent.PageSerialization;
+import ibd.persistent.cache.Cache;
+import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * This class implements a B+ tree whose nodes are stored on a disk file.
  *
  * @author Sergio
  */
-public abstract class BPlusTreeFile extends BPlusTree implements PageSerialization {
+public abstract class BPlusTreeFile extends BPlusTree implements ByteBufferPageSerialization {
 
     protected int rootID = -1;
     protected int firstLeafID = -1;
@@ -30,6 +37,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
     private static final int EMPTY_PAGE = 0;
     private static final int INTERNAL_NODE = 1;
     private static final int LEAF_NODE = 2;
+    private static final int FILTER_PAGE = 3;
 
     /**
      * The file storing the entries of this index.
@@ -41,6 +49,23 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
      */
     protected boolean init = false;
 
+    /**
+     * The number of leaves prefetched during sequential traversals of the leaf
+     * chain. Zero disables the read-ahead.
+     */
+    protected int readAheadWindow = LeafReadAhead.DEFAULT_WINDOW;
+
+    /**
+     * Whether new files compress the keys of the internal nodes. Existing
+     * files keep the choice stored in their header.
+     */
+    protected boolean requestedKeyCompression = false;
+
+    /**
+     * The upper levels of the tree, kept in memory for the searches.
+     */
+    protected PinnedLevels pinnedLevels = new PinnedLevels(PinnedLevels.DEFAULT_CAPACITY);
+
     /**
      * Constructor
      *
@@ -80,6 +105,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
 
             //creates a header containing all relevant information for a B+ tree
             TreeIndexHeader header = loadHeader();
+            header.setKeyCompression(requestedKeyCompression);
             //uses the header to initialize the B+ tree file.
             //if the file is not to be overwritten, the existing header retrieved frmo the file is use instead of the header created in the previous step
             file.initialize(header);
@@ -98,19 +124,105 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             //finds out the size of the value
             Value value = createValue();
             int valueSize = value.getSizeInBytes();
+            int minValueSize = value.getMinSizeInBytes();
+            this.variableLengthValues = minValueSize != valueSize;
 
             //use the key size and page size to determine the order of the internal nodes. 
             InternalNode in = new InternalNode(this);
-            this.m = in.findOutOptimalDegree(pageSize, keySize);
+            this.keyCompression = header.isKeyCompression() && key.supportsCompression();
+            this.keyParts = key.getMaxParts();
+            //keys that know their size from their bytes can be kept packed inside the cached nodes
+            this.compactNodes = key.supportsCompression();
+            this.dirCapacityBytes = pageSize - in.getHeaderSizeInBytes();
+            if (keyCompression) {
+                //compressed nodes are filled by bytes. The order only bounds the number of entries
+                this.m = in.findOutCompressedDegree(pageSize);
+                if (InternalNode.PREFIX_LENGTH_SIZE + 3 * (keySize + 1) + 4 * Integer.BYTES > dirCapacityBytes) {
+                    throw new IllegalStateException("An internal page of " + pageSize + " bytes must hold at least three keys of " + keySize + " bytes");
+                }
+            } else {
+                this.m = in.findOutOptimalDegree(pageSize, keySize);
+            }
 
-            //use the key,value sizes and page size to determine the order of the leaf nodes. 
+            //leaves are filled by bytes. The order only bounds the number of entries, so it uses the smallest value size. 
             LeafNode ln = new LeafNode(this);
-            this.leafM = ln.findOutOptimalDegree(pageSize, keySize, valueSize);
+            this.leafCapacityBytes = pageSize - ln.getHeaderSizeInBytes();
+            int slotSize = variableLengthValues ? LeafNode.SLOT_SIZE : 0;
+            this.leafM = ln.findOutOptimalDegree(pageSize, keySize, minValueSize + slotSize);
+            if (2 * (keySize + valueSize + slotSize) > leafCapacityBytes) {
+                throw new IllegalStateException("A leaf page of " + pageSize + " bytes must hold at least two entries of " + (keySize + valueSize) + " bytes");
+            }
+            //the slots store offsets as unsigned shorts
+            if (variableLengthValues && leafCapacityBytes > 0xFFFF) {
+                throw new IllegalStateException("Leaves with variable length values must be smaller than 64KB: " + pageSize);
+            }
 
             init = true;
         }
     }
 
+    /**
+     * Defines whether the keys of the internal nodes are compressed. It must
+     * be called before the tree is opened, and only affects new files whose
+     * keys support compression.
+     *
+     * @param keyCompression: true to compress the keys
+     */
+    public void setKeyCompression(boolean keyCompression) {
+        this.requestedKeyCompression = keyCompression;
+    }
+
+    /**
+     * Returns the key that separates two adjacent nodes. Without compression,
+     * it is the first key of the right node. With compression, it keeps only
+     * the parts of that key needed to tell it apart from the last key of the
+     * left node.
+     *
+     * @param leftKey: the last key of the left node
+     * @param rightKey: the first key of the right node
+     * @return the separator
+     */
+    private Key getSeparator(Key leftKey, Key rightKey) {
+        return keyCompression ? rightKey.getSeparator(leftKey) : rightKey;
+    }
+
+    /**
+     * Returns the separator between a leaf and its right sibling after the
+     * leaf lends its last entry to the sibling.
+     */
+    private Key getSeparatorAfterLendingLast(LeafNode left) {
+        return getSeparator(left.getKey(left.numPairs - 2), left.getKey(left.numPairs - 1));
+    }
+
+    /**
+     * Returns the separator between a leaf and its left sibling after the
+     * leaf lends its first entry to the sibling.
+     */
+    private Key getSeparatorAfterLendingFirst(LeafNode right) {
+        return getSeparator(right.getKey(0), right.getKey(1));
+    }
+
+    /**
+     * Checks if a deficient internal node can receive an entry from a
+     * sibling: the node receives the parent's separator and the parent
+     * receives the sibling's key. Without compression, the keys have the same
+     * size and the nodes always fit.
+     *
+     * @param parent: the parent of both nodes
+     * @param keyIndex: the index of the parent's separator
+     * @param receiver: the deficient node
+     * @param newSeparator: the key that replaces the parent's separator
+     * @return true if both nodes fit after the rotation
+     */
+    private boolean canRotate(InternalNode parent, int keyIndex, InternalNode receiver, Key newSeparator) {
+        if (!keyCompression) {
+            return true;
+        }
+        List<Key> receiverKeys = receiver.getKeyList();
+        receiverKeys.add(parent.getKey(keyIndex));
+        return receiver.fits(receiverKeys, receiver.degree + 1) && parent.fitsReplacingKey(keyIndex, newSeparator);
+    }
+
     /**
      * Returns the capacity of a directory node (= 1 + maximum number of entries
      * in a directory node).
@@ -139,6 +251,8 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
 
     private void setRootID(int id) {
         this.rootID = id;
+        //the levels of the pinned nodes are counted from the root
+        pinnedLevels.clear();
         ((TreeIndexHeader) file.getHeader()).setRootID(id);
     }
 
@@ -151,6 +265,57 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
         ((TreeIndexHeader) file.getHeader()).setFirstLeafID(id);
     }
 
+    /**
+     * Returns the number of levels of the tree, counting the leaves.
+     *
+     * @return the height of the tree, or 0 if it is empty
+     */
+    public int getHeight() {
+        if (isEmpty()) {
+            return 0;
+        }
+        int height = 1;
+        int nodeID = getRootID();
+        while (nodeID != -1) {
+            Node node = getNode(nodeID);
+            if (!(node instanceof InternalNode)) {
+                break;
+            }
+            height++;
+            nodeID = ((InternalNode) node).childPointersIDs[0];
+        }
+        return height;
+    }
+
+    /**
+     * Returns the average number of children of the internal nodes. Every
+     * internal node is read.
+     *
+     * @return the average fan-out, or 0 if the tree has no internal nodes
+     */
+    public double getAverageFanOut() {
+        if (isEmpty() || getRootID() == -1) {
+            return 0;
+        }
+        long nodes = 0;
+        long children = 0;
+        Node first = getNode(getRootID());
+        while (first instanceof InternalNode) {
+            InternalNode in = (InternalNode) first;
+            //traverses the level from left to right
+            while (true) {
+                nodes++;
+                children += in.degree;
+                if (in.rightSiblingID == -1) {
+                    break;
+                }
+                in = (InternalNode) getNode(in.rightSiblingID);
+            }
+            first = getNode(((InternalNode) first).childPointersIDs[0]);
+        }
+        return (double) children / nodes;
+    }
+
     /**
      * This method starts at the root of the B+ tree and traverses down the tree
      * via key comparisons to the corresponding leaf node that holds 'key'
@@ -164,68 +329,45 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
 
         // Initialize keys and index variable
         InternalNode root = (InternalNode) getNode(getRootID());
-        Key[] keys = root.keys;
-//        int i;
-//
-//        // Find next node on path to appropriate leaf node
-//        for (i = 0; i < root.degree - 1; i++) {
-//            if (key.compareTo(keys[i]) < 0) {
-//                break;
-//            }
-//        }
-
-       int i =  root.degree - 1;
-       int left = 0;
-       int right = root.degree-2;
-        while (left<=right){
-            int mid = left + (right-left) / 2;
-            if (keys[mid].compareTo(key)> 0){
-                i = mid;
-                right = mid - 1;
-            }
-            else left = mid + 1;
-        }
-       
+        return findLeafNode(root, key);
+    }
 
-        /* Return node if it is a LeafNode object,
-		   otherwise repeat the search function a level down */
-        Node child = getNode(root.childPointersIDs[i]);
-        //LRUBufferManager.getNode(child);
-        if (child instanceof LeafNode) {
-            return (LeafNode) child;
-        } else {
-            return findLeafNode((InternalNode) child, key);
+    /**
+     * Finds the leaf that may hold a key, for searches that do not modify the
+     * tree. The pinned levels are traversed without reading pages, so only
+     * the nodes below them and the leaf are read from the file.
+     *
+     * @param key: the key
+     * @return the leaf that may hold the key
+     */
+    private LeafNode findLeafForSearch(Key key) {
+        int nodeID = getRootID();
+        // A tree with a single leaf has no root node
+        if (nodeID == -1) {
+            return (LeafNode) getNode(getFirstLeafID());
+        }
+        int level = 0;
+        while (true) {
+            InternalNode node = pinnedLevels.get(nodeID);
+            if (node == null) {
+                long version = pinnedLevels.getVersion();
+                Node n = getNode(nodeID);
+                if (n instanceof LeafNode) {
+                    return (LeafNode) n;
+                }
+                node = (InternalNode) n;
+                pinnedLevels.pin(node, level, version);
+            }
+            nodeID = node.childPointersIDs[node.findChildIndex(key)];
+            level++;
         }
     }
 
     private LeafNode findLeafNode(InternalNode node, Key key) {
 
-        // Initialize keys and index variable
-        Key[] keys = node.keys;
-        //int i;
-
         // Find next node on path to appropriate leaf node
-//        for (i = 0; i < node.degree - 1; i++) {
-//            if (key.compareTo(keys[i]) < 0) {
-//                break;
-//            }
-//        }
-
-        int i =  node.degree - 1;
-       int left = 0;
-       int right = node.degree-2;
-        while (left<=right){
-            int mid = left + (right-left) / 2;
-            if (keys[mid].compareTo(key)> 0){
-                i = mid;
-                right = mid - 1;
-            }
-            else left = mid + 1;
-        }
-       
+        int i = node.findChildIndex(key);
 
-        
-        
         /* Return node if it is a LeafNode object,
 		   otherwise repeat the search function a level down */
         Node childNode = getNode(node.childPointersIDs[i]);
@@ -258,12 +400,12 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
 
         //only here the number of keys is the same as the number of points.
         //reason: a key was addded before this method is called
+        targetNode.unpack();
         int nkeys = targetNode.degree;
         for (int i = nkeys - 1; i >= 0; i--) {
             targetNode.keys[i + sourceNode.degree - 1] = targetNode.keys[i];
         }
         for (int i = targetNode.degree - 1; i >= 0; i--) {
-            targetNode.childPointers[i + sourceNode.degree] = targetNode.childPointers[i];
             targetNode.childPointersIDs[i + sourceNode.degree] = targetNode.childPointersIDs[i];
         }
 
@@ -272,7 +414,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             Node child = getNode(sourceNode.childPointersIDs[i]);
             targetNode.setPointer(i, child);
             writeNode(child);
-            targetNode.setKey(i, sourceNode.keys[i]);
+            targetNode.setKey(i, sourceNode.getKey(i));
         }
         Node child = getNode(sourceNode.childPointersIDs[i]);
         targetNode.setPointer(i, child);
@@ -301,13 +443,19 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             in.rightSibling = (InternalNode) getNode(in.rightSiblingID);
         }
 
-        if (in.leftSibling != null && in.leftSibling.getParentID() == in.getParentID() && in.leftSibling.isLendable()) {
+        int index = parent.findIndexOfPointer(in);
+        //the siblings are checked against the parent's pointers, since a stale parent id is not enough to tell them apart
+        boolean hasLeft = in.leftSibling != null && index > 0 && parent.childPointersIDs[index - 1] == in.leftSiblingID;
+        boolean hasRight = in.rightSibling != null && index < parent.degree - 1 && parent.childPointersIDs[index + 1] == in.rightSiblingID;
+
+        if (hasLeft && in.leftSibling.canLendLast()
+                && canRotate(parent, index - 1, in, in.leftSibling.getLastKey())) {
             sibling = in.leftSibling;
             System.out.println("BORROW FROM LEFT");
 
             // Copy key and pointer into deficient node
             int pointerIndex = parent.findIndexOfPointer(in);
-            in.prependChildKey(parent.keys[pointerIndex - 1]);
+            in.prependChildKey(parent.getKey(pointerIndex - 1));
 
             // Copy pointer from left sibling
             Node borrowedPointer = getNode(sibling.getLastPointerID());
@@ -324,13 +472,14 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             writeNode(parent);
             writeNode(sibling);
 
-        } else if (in.rightSibling != null && in.rightSibling.getParentNode() == in.getParentNode() && in.rightSibling.isLendable()) {
+        } else if (hasRight && in.rightSibling.canLendFirst()
+                && canRotate(parent, index, in, in.rightSibling.getFirstKey())) {
             sibling = in.rightSibling;
             System.out.println("BORROW FROM RIGHT");
 
             // Copy key from parent into deficient node
             int pointerIndex = parent.findIndexOfPointer(in);
-            in.appendKey(parent.keys[pointerIndex]);
+            in.appendKey(parent.getKey(pointerIndex));
 
             // Copy pointer from right sibling into deficient node
             Node pointer = getNode(sibling.getFirstPointerID());
@@ -348,13 +497,13 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             writeNode(sibling);
 
         } // can merge with left sibling
-        else if (in.leftSibling != null && in.leftSibling.getParentNode() == in.getParentNode() && in.leftSibling.isMergeable()) {
+        else if (hasLeft && in.leftSibling.canMergeWith(in, parent.getKey(index - 1))) {
             sibling = in.leftSibling;
             System.out.println("MERGE WITH LEFT");
 
             // Copy key to left sibling in parent to end of the left sibling's keys 
             int pointerIndex = parent.findIndexOfPointer(in);
-            sibling.appendKey(parent.keys[pointerIndex - 1]);
+            sibling.appendKey(parent.getKey(pointerIndex - 1));
 
             // Copy in's entries to the end of the left sibling 
             appendAllEntries(sibling, in);
@@ -374,13 +523,13 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             writeNode(sibling);
 
         } // can merge with right sibling
-        else if (in.rightSibling != null && in.rightSibling.getParentNode() == in.getParentNode() && in.rightSibling.isMergeable()) {
+        else if (hasRight && in.rightSibling.canMergeWith(in, parent.getKey(index))) {
             sibling = in.rightSibling;
             System.out.println("MERGE WITH RIGHT");
 
             // Copy key from the deficient node in parent to beginning of the right sibling's keys 
             int pointerIndex = parent.findIndexOfPointer(in);
-            sibling.prependChildKey(parent.keys[pointerIndex]);
+            sibling.prependChildKey(parent.getKey(pointerIndex));
 
             // Copy all in's entries to the beggining of the right sibling
             prependAllEntries(sibling, in);
@@ -434,7 +583,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
         targetNode.appendChildPointer(child);
         writeNode(child);
         for (int i = 1; i < sourceNode.degree; i++) {
-            targetNode.appendKey(sourceNode.keys[i - 1]);
+            targetNode.appendKey(sourceNode.getKey(i - 1));
             child = getNode(sourceNode.childPointersIDs[i]);
             targetNode.appendChildPointer(child);
             writeNode(child);
@@ -457,8 +606,10 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
      * order to split the overfull node.
      *
      * @param in: an overfull InternalNode that is to be split
+     * @return the parent that received the moved up key, which is not written
+     * if it became overfull too, or null if a new root was created
      */
-    private void splitInternalNode(InternalNode in) {
+    private InternalNode splitInternalNode(InternalNode in) {
 
         // Acquire parent
         InternalNode parent = null;//in.parent;
@@ -467,22 +618,20 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
         }
 
         // Split keys and pointers in half and leave the first half in the original node
-        int midpoint = getMidpoint(getDirCapacity());
+        int midpoint = keyCompression ? in.getSplitIndex() : getMidpoint(getDirCapacity());
+        in.unpack();
         Key newParentKey = in.keys[midpoint];
         Key[] halfKeys = splitKeys(in.keys, midpoint);
-        Integer[] halfPointers = in.splitChildPointersID(midpoint);
+        int siblingDegree = in.degree - midpoint - 1;
+        int[] halfPointers = in.splitChildPointersID(midpoint);
 
-        // Change degree of original InternalNode in
-        //in.degree = Utils.linearNullSearch(in.childPointers);
         // Create new sibling internal node and add half of keys and pointers
-        InternalNode sibling = new InternalNode(getDirCapacity(), halfKeys, halfPointers, this);
+        InternalNode sibling = new InternalNode(getDirCapacity(), halfKeys, halfPointers, siblingDegree, this);
         writeNode(sibling);
-        for (Integer pointer : halfPointers) {
-            if (pointer != null) {
-                Node p = getNode(pointer);
-                p.setParentNode(sibling);
-                writeNode(p);
-            }
+        for (int i = 0; i < siblingDegree; i++) {
+            Node p = getNode(halfPointers[i]);
+            p.setParentNode(sibling);
+            writeNode(p);
         }
 
         // Make internal nodes siblings of one another
@@ -520,10 +669,14 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             // Set up pointer to new sibling
             int pointerIndex = parent.findIndexOfPointer(in) + 1;
             parent.insertChildPointer(sibling, pointerIndex);
-            writeNode(parent);
+            //an overfull node may not fit in a page. It is written once it is split
+            if (!parent.isOverfull()) {
+                writeNode(parent);
+            }
         }
         writeNode(sibling);
         writeNode(in);
+        return parent;
     }
 
     /**
@@ -571,7 +724,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             LeafNode ln = (root == null) ? firstLeaf : findLeafNode(key);
 
             // Get leaf node and attempt to find index of key to delete
-            int dpIndex = Utils.binarySearch(ln.dictionary, ln.numPairs, key, this);
+            int dpIndex = ln.findIndex(key);
 
             if (dpIndex < 0) {
 
@@ -582,7 +735,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             } else {
 
                 //saves value to return later
-                Value valueToDelete = ln.dictionary[dpIndex].value;
+                Value valueToDelete = ln.getValue(dpIndex);
 
                 // Successfully delete the dictionary pair
                 ln.delete(dpIndex);
@@ -603,7 +756,8 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                     // Borrow: First, check the left sibling, then the right sibling
                     if (ln.leftSibling != null
                             && ln.leftSibling.getParentID() == ln.getParentID()
-                            && ln.leftSibling.isLendable()) {
+                            && ln.leftSibling.canLendLast()
+                            && parent.fitsReplacingKey(parent.findIndexOfPointer(ln) - 1, getSeparatorAfterLendingLast(ln.leftSibling))) {
 
                         LeafNode sibling = ln.leftSibling;
 
@@ -618,7 +772,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                         // Update key in parent
                         int pointerIndex = parent.findIndexOfPointer(ln);
                         //parent.keys[pointerIndex - 1] = ln.dictionary[0].key;
-                        parent.keys[pointerIndex - 1] = borrowedDP.key;
+                        parent.setKey(pointerIndex - 1, getSeparator(sibling.getLastDictionaryPair().key, borrowedDP.key));
 
                         writeNode(ln);
                         writeNode(sibling);
@@ -628,7 +782,8 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
 
                     } else if (ln.rightSibling != null
                             && ln.rightSibling.getParentID() == ln.getParentID()
-                            && ln.rightSibling.isLendable()) {
+                            && ln.rightSibling.canLendFirst()
+                            && parent.fitsReplacingKey(parent.findIndexOfPointer(ln), getSeparatorAfterLendingFirst(ln.rightSibling))) {
 
                         LeafNode sibling = ln.rightSibling;
                         //System.out.println("BORROW FROM RIGHT 0");
@@ -644,7 +799,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                         int pointerIndex = parent.findIndexOfPointer(ln);
 
                         //parent.keys[pointerIndex] = sibling.dictionary[0].key;
-                        parent.keys[pointerIndex] = sibling.getFirstDictionaryPair().key;
+                        parent.setKey(pointerIndex, getSeparator(borrowedDP.key, sibling.getFirstDictionaryPair().key));
 
                         writeNode(ln);
                         writeNode(sibling);
@@ -656,7 +811,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                     } // Merge: First, check the left sibling, then the right sibling
                     else if (ln.leftSibling != null
                             && ln.leftSibling.getParentID() == ln.getParentID()
-                            && ln.leftSibling.isMergeable()) {
+                            && ln.leftSibling.canMergeWith(ln)) {
 
                         LeafNode sibling = ln.leftSibling;
 
@@ -690,7 +845,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
 
                     } else if (ln.rightSibling != null
                             && ln.rightSibling.getParentID() == ln.getParentID()
-                            && ln.rightSibling.isMergeable()) {
+                            && ln.rightSibling.canMergeWith(ln)) {
 
                         LeafNode sibling = ln.rightSibling;
 
@@ -769,8 +924,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                     : findLeafNode(key);
 
             // Perform binary search to find index of key within dictionary
-            DictionaryPair[] dps = ln.dictionary;
-            int index = Utils.binarySearch(dps, ln.numPairs, key, this);
+            int index = ln.findIndex(key);
 
             //key is already indexed.
             if (index >= 0) {
@@ -783,9 +937,8 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                 // Sort all the dictionary pairs with the included pair to be inserted
                 ln.sortDictionary(key, value);
 
-                // Split the sorted pairs into two halves
-                int midpoint = getMidpoint(getLeafCapacity());
-                //midpoint = getLeafCapacity() - 2;
+                // Split the sorted pairs into two halves with about the same number of bytes
+                int midpoint = ln.getSplitIndex();
                 DictionaryPair[] halfDict = ln.splitDictionary(midpoint);
                 writeNode(ln);
 
@@ -798,7 +951,7 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                     /* Flow of execution goes here when there is 1 node in tree */
                     // Create internal node to serve as parent, use dictionary midpoint key
                     Key[] parent_keys = new Key[getDirCapacity()];
-                    parent_keys[0] = halfDict[0].key;
+                    parent_keys[0] = getSeparator(ln.getLastDictionaryPair().key, halfDict[0].key);
                     InternalNode parent = new InternalNode(getDirCapacity(), parent_keys, this);
 
                     parent.appendChildPointer(ln);
@@ -810,12 +963,12 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
 
                     /* Flow of execution goes here when parent exists */
                     // Add new key to parent for proper indexing
-                    Key newParentKey = halfDict[0].key;
+                    Key newParentKey = getSeparator(ln.getLastDictionaryPair().key, halfDict[0].key);
                     ln.getParentNode().addKey(newParentKey);
                 }
 
                 // Create new LeafNode that holds the other half
-                LeafNode newLeafNode = new LeafNode(getLeafCapacity(), halfDict, ln.getParentNode());
+                LeafNode newLeafNode = new LeafNode(getLeafCapacity(), halfDict, ln.getParentNode(), this);
                 writeNode(newLeafNode);
 
                 if (ln.getParentNode() == null) {
@@ -825,7 +978,10 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                 // Update child pointers of parent node
                 int pointerIndex = ln.getParentNode().findIndexOfPointer(ln) + 1;
                 ln.getParentNode().insertChildPointer(newLeafNode, pointerIndex);
-                writeNode(ln.getParentNode());
+                //an overfull node may not fit in a page. It is written once it is split
+                if (!ln.getParentNode().isOverfull()) {
+                    writeNode(ln.getParentNode());
+                }
 
                 // Make leaf nodes siblings of one another
                 newLeafNode.rightSiblingID = ln.rightSiblingID;
@@ -853,18 +1009,10 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                     /* If parent is overfull, repeat the process up the tree,
 			   		   until no deficiencies are found */
                     //printTree();
+                    //the unwritten overfull parents are passed along, as they may not be cached
                     InternalNode in = ln.getParentNode();
-                    while (in != null) {
-                        if (in.isOverfull()) {
-                            splitInternalNode(in);
-                        } else {
-                            break;
-                        }
-                        if (in.getParentID() != -1) {
-                            in = (InternalNode) getNode(in.getParentID());
-                        } else {
-                            in = null;
-                        }
+                    while (in != null && in.isOverfull()) {
+                        in = splitInternalNode(in);
                     }
                 }
             } else {
@@ -877,93 +1025,81 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
     @Override
     public Value search(Key key) {
 
-        LeafNode firstLeaf = (LeafNode) getNode(getFirstLeafID());
-
         // If B+ tree is completely empty, return null
         if (isEmpty()) {
             return null;
         }
 
         // Find leaf node that holds the dictionary key
-        LeafNode ln = (getRootID() == -1) ? firstLeaf
-                : findLeafNode(key);
+        LeafNode ln = findLeafForSearch(key);
 
         // Perform binary search to find index of key within dictionary
-        DictionaryPair[] dps = ln.dictionary;
-        int index = Utils.binarySearch(dps, ln.numPairs, key, this);
+        int index = ln.findIndex(key);
 
         // If index negative, the key doesn't exist in B+ tree
         if (index < 0) {
             return null;
         } else {
-            return dps[index].value;
+            return ln.getValue(index);
         }
     }
 
     @Override
     public ArrayList<Value> search(Key lowerBound, Key upperBound) {
 
-        LeafNode firstLeaf = (LeafNode) getNode(getFirstLeafID());
-
-        // Instantiate Double array to hold values
+        // Instantiate array to hold values
         ArrayList<Value> values = new ArrayList<>();
 
-        // Iterate through the doubly linked list of leaves
-        LeafNode currNode = firstLeaf;
-        while (currNode != null) {
-            // Iterate through the dictionary of each node
-            DictionaryPair dps[] = currNode.dictionary;
-            for (DictionaryPair dp : dps) {
+        // Only the leaves that overlap the range are visited
+        ValueIterator it = searchRangeIterator(lowerBound, upperBound);
+        while (it.hasNext()) {
+            values.add(it.next().value);
+        }
 
-                /* Stop searching the dictionary once a null value is encountered
-				   as this indicates the end of non-null values */
-                if (dp == null) {
-                    break;
-                }
+        return values;
+    }
 
-                // Include value if its key fits within the provided range
-                if (lowerBound.compareTo(dp.key) <= 0 && dp.key.compareTo(upperBound) <= 0) {
-                    values.add(dp.value);
-                }
-            }
+    @Override
+    public ValueIterator searchRangeIterator(Key lowerBound, Key upperBound) {
 
-            /* Update the current node to be the right sibling,
-			   leaf traversal is from left to right */
-            currNode = currNode.rightSibling;
+        // If B+ tree is completely empty, return an empty iterator
+        if (isEmpty()) {
+            return new RangeIterator(this, null, 0, upperBound);
+        }
 
+        if (lowerBound == null) {
+            return new RangeIterator(this, (LeafNode) getNode(getFirstLeafID()), 0, upperBound);
         }
 
-        return values;
+        // Find leaf node where the lower bound would be stored
+        LeafNode ln = findLeafForSearch(lowerBound);
+
+        // Perform binary search to find the first key not smaller than the lower bound
+        int index = ln.findIndex(lowerBound);
+        if (index < 0) {
+            index = ~index;
+        } //the bynary search might not retrieve the first matching value
+        //so we need to search back until the first matching position is found
+        else {
+            while (index > 0 && ln.compareKey(index - 1, lowerBound) == 0) {
+                index--;
+            }
+        }
+
+        // if every key of the leaf is smaller, the iterator continues at the right sibling
+        return new RangeIterator(this, ln, index, upperBound);
     }
 
     @Override
     public ArrayList<DictionaryPair> searchAll() {
 
-        LeafNode firstLeaf = (LeafNode) getNode(getFirstLeafID());
-
         // Instantiate array to hold values
         ArrayList<DictionaryPair> values = new ArrayList<>();
 
         // Iterate through the doubly linked list of leaves
-        LeafNode currNode = firstLeaf;
-        while (currNode != null) {
-            // Iterate through the dictionary of each node
-            DictionaryPair dps[] = currNode.dictionary;
-            for (DictionaryPair dp : dps) {
-
-                /* Stop searching the dictionary once a null value is encountered
-				   as this the indicates the end of non-null values */
-                if (dp == null) {
-                    break;
-                }
-
-                values.add(dp);
-            }
-
-            /* Update the current node to be the right sibling,
-			   leaf traversal is from left to right */
-            currNode = (LeafNode) getNode(currNode.rightSiblingID);
-
+        ValueIterator it = searchAllIterator();
+        while (it.hasNext()) {
+            values.add(it.next());
         }
 
         return values;
@@ -974,102 +1110,52 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
         return new ValueIterator(this);
     }
 
+    /**
+     * Returns an iterator over all entries of the leaves not skipped by a
+     * filter.
+     *
+     * @param leafFilter the filter that decides which leaves are not read
+     * @return the iterator
+     */
+    public ValueIterator searchAllIterator(LeafFilter leafFilter) {
+        return new ValueIterator(this, leafFilter);
+    }
+
     @Override
     public ArrayList<Value> partialSearch(Key key) {
 
         // Instantiate array to hold values
         ArrayList<Value> values = new ArrayList();
 
-        LeafNode firstLeaf = (LeafNode) getNode(getFirstLeafID());
-
-        InternalNode root = (InternalNode) getNode(getRootID());
-
-        // If B+ tree is completely empty, return null
-        if (isEmpty()) {
-            return values;
-        }
-
-        // Find leaf node that holds the dictionary key
-        LeafNode ln = (root == null) ? firstLeaf : findLeafNode(key);
-
-        // Perform binary search to find index of key within dictionary
-        DictionaryPair[] dps = ln.dictionary;
-        int index = Utils.binarySearch(dps, ln.numPairs, key, this);
-
-        // in this case, a negative index may simply mean that the key has less levels than the indexed keys.
-        // we need to access the largest value smaller than the key, and advance one position.
-        if (index < 0) {
-            index = ~index;
-        } //the bynary search might not retrieve the first matching value
-        //so we need to search back until the first matching position is found
-        else {
-            while (index > 0 && dps[index - 1].key.compareTo(key) == 0) {
-                index--;
-            }
-        }
-
-        //
-        for (int i = index; i < dps.length; i++) {
-            if (dps[i] != null) {
-                if (key.partialMatch(dps[i].key)) {
-                    values.add(dps[i].value);
-                } else {
-                    return values;
-                }
-            }
-        }
-
-        // Iterate through the doubly linked list of leaves
-        //LeafNode currNode = ln.rightSibling;
-        LeafNode currNode = (LeafNode) getNode(ln.rightSiblingID);
-        while (currNode != null) {
-            // Iterate through the dictionary of each node
-            DictionaryPair dps_[] = currNode.dictionary;
-            for (DictionaryPair dp : dps_) {
-
-                /* Stop searching the dictionary once a null value is encountered
-				   as this the indicates the end of non-null values */
-                if (dp == null) {
-                    break;
-                }
-
-                // Include value if its key fits within the provided range
-                if (key.partialMatch(dp.key)) {
-                    values.add(dp.value);
-                } else {
-                    return values;
-                }
-            }
-
-            /* Update the current node to be the right sibling,
-			   leaf traversal is from left to right */
-            //currNode = currNode.rightSibling;
-            currNode = (LeafNode) getNode(currNode.rightSiblingID);
-
+        ValueIterator it = partialSearchIterator(key);
+        while (it.hasNext()) {
+            values.add(it.next().value);
         }
 
         return values;
     }
+
+    @Override
+    public ValueIterator partialSearchIterator(Key key) {
+        // a key that sets only a prefix of the levels includes, as an upper
+        // bound, every key that starts with it
+        return searchRangeIterator(key, key);
+    }
     
     @Override
     public boolean contains(Key key) {
 
 
-        LeafNode firstLeaf = (LeafNode) getNode(getFirstLeafID());
-
-        InternalNode root = (InternalNode) getNode(getRootID());
-
         // If B+ tree is completely empty, return null
         if (isEmpty()) {
             return false;
         }
 
         // Find leaf node that holds the dictionary key
-        LeafNode ln = (root == null) ? firstLeaf : findLeafNode(key);
+        LeafNode ln = findLeafForSearch(key);
 
         // Perform binary search to find index of key within dictionary
-        DictionaryPair[] dps = ln.dictionary;
-        int index = Utils.binarySearch(dps, ln.numPairs, key, this);
+        int index = ln.findIndex(key);
 
         // in this case, a negative index may simply mean that the key has less levels than the indexed keys.
         // we need to access the largest value smaller than the key, and advance one position.
@@ -1078,40 +1164,22 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
         } //the bynary search might not retrieve the first matching value
         //so we need to search back until the first matching position is found
         else {
-            while (index > 0 && dps[index - 1].key.compareTo(key) == 0) {
+            while (index > 0 && ln.compareKey(index - 1, key) == 0) {
                 index--;
             }
         }
 
         //
-        for (int i = index; i < dps.length; i++) {
-            if (dps[i] != null) {
-                if (key.partialMatch(dps[i].key)) {
-                    return true;
-                }
-                else return false;
-            }
+        if (index < ln.numPairs) {
+            return ln.partialMatch(index, key);
         }
         // Iterate through the doubly linked list of leaves
         //LeafNode currNode = ln.rightSibling;
         LeafNode currNode = (LeafNode) getNode(ln.rightSiblingID);
         while (currNode != null) {
-            // Iterate through the dictionary of each node
-            DictionaryPair dps_[] = currNode.dictionary;
-            for (DictionaryPair dp : dps_) {
-
-                /* Stop searching the dictionary once a null value is encountered
-				   as this the indicates the end of non-null values */
-                if (dp == null) {
-                    break;
-                }
-
-                // Include value if its key fits within the provided range
-                if (key.partialMatch(dp.key)) {
-                    return true;
-                } else {
-                    return false;
-                }
+            // Only the first entry of the next non-empty leaf needs to be checked
+            if (currNode.numPairs > 0) {
+                return currNode.partialMatch(0, key);
             }
 
             /* Update the current node to be the right sibling,
@@ -1126,35 +1194,40 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
     @Override
     public Value update(Key key, Value value) {
 
-        LeafNode firstLeaf = (LeafNode) getNode(getFirstLeafID());
-        InternalNode root = (InternalNode) getNode(getRootID());
-
         // If B+ tree is completely empty, return null
         if (isEmpty()) {
             return null;
         }
 
         // Find leaf node that holds the dictionary key
-        LeafNode ln = (root == null) ? firstLeaf : findLeafNode(key);
+        LeafNode ln = findLeafForSearch(key);
 
         // Perform binary search to find index of key within dictionary
-        DictionaryPair[] dps = ln.dictionary;
-        int index = Utils.binarySearch(dps, ln.numPairs, key, this);
+        int index = ln.findIndex(key);
 
         // If index negative, the key doesn't exist in B+ tree
         if (index < 0) {
             return null;
-        } else {
-            dps[index].value = value;
-            writeNode(ln);
-            return dps[index].value;
         }
+
+        //a longer value may not fit into the leaf anymore
+        DictionaryPair updated = new DictionaryPair(key, value, this);
+        if (!ln.fits(ln.entrySize(updated) - ln.entrySize(index))) {
+            delete(key);
+            insert(key, value);
+            return value;
+        }
+
+        ln.setValue(index, value);
+        writeNode(ln);
+        return value;
     }
 
     /**
      * Closes the backing storage.
      */
     public void close() {
+        pinnedLevels.clear();
         file.close();
     }
 
@@ -1178,16 +1251,492 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
             parent = node.getParentNode().toString();
         }
         System.out.println("IN:" + node.toString() + " => " + parent);
-        for (int x = 0; x < node.childPointers.length; x++) {
-            if (node.childPointers != null) {
-                if (node.childPointers[x] instanceof InternalNode) {
-                    printNode((InternalNode) node.childPointers[x]);
+        for (int x = 0; x < node.degree; x++) {
+            Node child = getNode(node.childPointersIDs[x]);
+            if (child instanceof InternalNode) {
+                printNode((InternalNode) child);
+            } else {
+                printNode((LeafNode) child);
+            }
+        }
+
+    }
+
+    /**
+     * Builds the tree bottom-up from entries sorted by key, instead of
+     * inserting them one by one. Each level is packed from left to right, so
+     * every node is written exactly once. The pages bypass the cache and are
+     * written in batches directly to the underlying file.
+     *
+     * The entries are traversed twice. The first pass checks their order and
+     * decides how many entries each leaf receives, filling the leaves by
+     * bytes up to the fill factor. The internal levels are planned from the
+     * leaves, and the second pass builds the nodes.
+     *
+     * The tree must be empty. The entries must be sorted in ascending key
+     * order and have unique keys.
+     *
+     * @param pairs the entries, sorted by key
+     * @param fillFactor the fraction of each node to be filled, between 0
+     * (exclusive) and 1. Nodes are never filled below their minimum occupancy
+     */
+    public void bulkLoad(Iterable<DictionaryPair> pairs, double fillFactor) {
+        if (fillFactor <= 0 || fillFactor > 1) {
+            throw new IllegalArgumentException("The fill factor must be in (0, 1]: " + fillFactor);
+        }
+        if (!isEmpty()) {
+            throw new IllegalStateException("Bulk loading requires an empty tree");
+        }
+
+        //compressed internal nodes are filled by bytes, so their keys are needed to plan them
+        List<Key> separators = keyCompression ? new ArrayList<>() : null;
+        List<Integer> leafSizes = planLeaves(pairs.iterator(), fillFactor, separators);
+        if (leafSizes.isEmpty()) {
+            return;
+        }
+
+        //the pages are written straight to the file, without polluting the cache
+        PageFile<Node> target = file;
+        if (file instanceof Cache) {
+            target = ((Cache<Node>) file).getPageFile();
+        }
+
+        //plans the number of entries of each node, from the leaves up to the root
+        List<List<Integer>> levelSizes = new ArrayList<>();
+        levelSizes.add(leafSizes);
+        int maxDegree = getDirCapacity();
+        int minDegree = (int) Math.ceil(maxDegree / 2.0);
+        while (levelSizes.get(levelSizes.size() - 1).size() > 1) {
+            int children = levelSizes.get(levelSizes.size() - 1).size();
+            List<Integer> parentSizes = new ArrayList<>();
+            if (keyCompression) {
+                separators = planCompressedLevel(separators, parentSizes, fillFactor);
+            } else {
+                int nodes = nodesForLevel(children, maxDegree, Math.max(minDegree, 2), fillFactor);
+                //the children are spread evenly over the nodes
+                for (int i = 0; i < nodes; i++) {
+                    parentSizes.add(children / nodes + (i < children % nodes ? 1 : 0));
+                }
+            }
+            levelSizes.add(parentSizes);
+        }
+
+        BulkLoadState state = new BulkLoadState(target, levelSizes);
+
+        Iterator<DictionaryPair> it = pairs.iterator();
+        Key previous = null;
+        for (int leafSize : leafSizes) {
+            for (int i = 0; i < leafSize; i++) {
+                if (!it.hasNext()) {
+                    throw new IllegalStateException("The entries changed between the passes of the bulk load");
+                }
+                DictionaryPair dp = it.next();
+                LeafNode leaf = (LeafNode) state.current(0);
+                leaf.appendPair(new DictionaryPair(dp.key, dp.value, this));
+                if (leaf.numPairs == 1) {
+                    state.separators[0] = (previous == null) ? dp.key : getSeparator(previous, dp.key);
+                }
+                previous = dp.key;
+            }
+            state.complete(0);
+        }
+        state.writeBatch();
+
+        setFirstLeafID(state.firstLeafID);
+        //a single leaf has no parent, and the tree has no root node
+        setRootID(levelSizes.size() == 1 ? -1 : state.rootID);
+        file.flush();
+    }
+
+    /**
+     * Decides how many entries each leaf of a bulk load receives. A leaf is
+     * closed when the next entry would take it past the fill factor, as long
+     * as it already holds half of its bytes. The last two leaves are merged
+     * or rebalanced, so the last one is not left almost empty.
+     *
+     * @param pairs the entries, sorted by key
+     * @param fillFactor the fraction of each leaf to be filled
+     * @param separators receives the keys between consecutive leaves, or
+     * null if they are not needed
+     * @return the number of entries of each leaf, from left to right
+     */
+    private List<Integer> planLeaves(Iterator<DictionaryPair> pairs, double fillFactor, List<Key> separators) {
+        int capacity = getLeafCapacityBytes();
+        int maxPairs = getLeafCapacity() - 1;
+        int minBytes = capacity / 2;
+        int targetBytes = Math.max(minBytes, Math.min(capacity, (int) Math.round(capacity * fillFactor)));
+
+        List<Integer> leafSizes = new ArrayList<>();
+        //the entries of the open leaf and of the one before it
+        List<DictionaryPair> previous = new ArrayList<>();
+        List<DictionaryPair> current = new ArrayList<>();
+        int bytes = 0;
+        Key previousKey = null;
+        while (pairs.hasNext()) {
+            DictionaryPair dp = pairs.next();
+            if (previousKey != null && previousKey.compareTo(dp.key) >= 0) {
+                throw new IllegalArgumentException("The entries are not sorted by unique keys: " + dp.key + " after " + previousKey);
+            }
+
+            int size = getBulkEntrySize(dp);
+            if (!current.isEmpty()
+                    && (current.size() == maxPairs
+                    || bytes + size > capacity
+                    || (bytes + size > targetBytes && bytes >= minBytes))) {
+                leafSizes.add(current.size());
+                if (separators != null) {
+                    separators.add(getSeparator(previousKey, dp.key));
+                }
+                previous = current;
+                current = new ArrayList<>();
+                bytes = 0;
+            }
+            current.add(dp);
+            bytes += size;
+            previousKey = dp.key;
+        }
+        if (current.isEmpty()) {
+            return leafSizes;
+        }
+
+        if (bytes >= minBytes || previous.isEmpty()) {
+            leafSizes.add(current.size());
+            return leafSizes;
+        }
+
+        //the last leaf is deficient: it is merged into its left sibling or takes part of its entries
+        leafSizes.remove(leafSizes.size() - 1);
+        List<DictionaryPair> tail = new ArrayList<>(previous);
+        tail.addAll(current);
+        int total = 0;
+        for (DictionaryPair dp : tail) {
+            total += getBulkEntrySize(dp);
+        }
+        if (total <= capacity && tail.size() <= maxPairs) {
+            leafSizes.add(tail.size());
+            if (separators != null) {
+                separators.remove(separators.size() - 1);
+            }
+            return leafSizes;
+        }
+        int split = 1;
+        int smallestMax = Integer.MAX_VALUE;
+        int left = 0;
+        for (int i = 1; i < tail.size(); i++) {
+            left += getBulkEntrySize(tail.get(i - 1));
+            int larger = Math.max(left, total - left);
+            if (larger < smallestMax && i <= maxPairs && tail.size() - i <= maxPairs) {
+                smallestMax = larger;
+                split = i;
+            }
+        }
+        leafSizes.add(split);
+        leafSizes.add(tail.size() - split);
+        if (separators != null) {
+            separators.set(separators.size() - 1, getSeparator(tail.get(split - 1).key, tail.get(split).key));
+        }
+        return leafSizes;
+    }
+
+    /**
+     * Returns the number of bytes an entry takes in a leaf.
+     */
+    private int getBulkEntrySize(DictionaryPair dp) {
+        return dp.getStoredSizeInBytes() + (hasVariableLengthValues() ? LeafNode.SLOT_SIZE : 0);
+    }
+
+    /**
+     * Groups the nodes of a level under compressed parents during a bulk
+     * load. A parent is closed when the next child would take it past the
+     * fill factor, as long as it already holds half of its bytes. The last two
+     * parents are merged or rebalanced.
+     *
+     * @param separators the keys between consecutive nodes of the level
+     * @param parentSizes receives the number of children of each parent
+     * @param fillFactor the fraction of each parent to be filled
+     * @return the keys between consecutive parents
+     */
+    private List<Key> planCompressedLevel(List<Key> separators, List<Integer> parentSizes, double fillFactor) {
+        int capacity = getDirCapacityBytes();
+        int minBytes = capacity / 2;
+        int targetBytes = Math.max(minBytes, Math.min(capacity, (int) Math.round(capacity * fillFactor)));
+        int children = separators.size() + 1;
+
+        //the first child of each parent
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        CompressedSize size = new CompressedSize();
+        for (int child = 1; child < children; child++) {
+            Key key = separators.get(child - 1);
+            int bytes = size.sizeWith(key);
+            if (size.pointers == getDirCapacity()
+                    || bytes > capacity
+                    || (bytes > targetBytes && size.size() >= minBytes)) {
+                starts.add(child);
+                size = new CompressedSize();
+            } else {
+                size.add(key);
+            }
+        }
+
+        //the last parent is deficient: it is merged into its left sibling or takes part of its children
+        int last = starts.size() - 1;
+        if (last > 0 && getCompressedSize(separators, starts.get(last), children) < minBytes) {
+            int from = starts.get(last - 1);
+            if (children - from <= getDirCapacity() && getCompressedSize(separators, from, children) <= capacity) {
+                starts.remove(last);
+            } else {
+                int split = starts.get(last);
+                int smallestMax = Integer.MAX_VALUE;
+                for (int first = from + 1; first < children; first++) {
+                    if (first - from > getDirCapacity() || children - first > getDirCapacity()) {
+                        continue;
+                    }
+                    int larger = Math.max(getCompressedSize(separators, from, first), getCompressedSize(separators, first, children));
+                    if (larger < smallestMax) {
+                        smallestMax = larger;
+                        split = first;
+                    }
+                }
+                starts.set(last, split);
+            }
+        }
+
+        List<Key> parentSeparators = new ArrayList<>();
+        for (int i = 0; i < starts.size(); i++) {
+            int end = (i + 1 < starts.size()) ? starts.get(i + 1) : children;
+            parentSizes.add(end - starts.get(i));
+            if (i > 0) {
+                //the key between two parents moves up a level
+                parentSeparators.add(separators.get(starts.get(i) - 1));
+            }
+        }
+        return parentSeparators;
+    }
+
+    /**
+     * Returns the number of bytes of a compressed parent of the children in
+     * the range [from, to).
+     */
+    private int getCompressedSize(List<Key> separators, int from, int to) {
+        CompressedSize size = new CompressedSize();
+        for (int child = from + 1; child < to; child++) {
+            size.add(separators.get(child - 1));
+        }
+        return size.size();
+    }
+
+    /**
+     * Accumulates the size of a compressed internal node as entries are
+     * added. It starts with a single pointer, and each key comes with the
+     * pointer that follows it.
+     */
+    private class CompressedSize {
+
+        byte[] first = null;
+        int prefix = 0;
+        int keyBytes = 0;
+        int keys = 0;
+        int pointers = 1;
+
+        void add(Key key) {
+            byte[] b = toBytes(key);
+            if (first == null) {
+                first = b;
+                prefix = b.length;
+            } else {
+                prefix = Utils.commonPrefixLength(first, b, prefix);
+            }
+            keyBytes += b.length;
+            keys++;
+            pointers++;
+        }
+
+        int size() {
+            return InternalNode.getCompressedSize(prefix, keyBytes, keys, pointers, keyParts);
+        }
+
+        int sizeWith(Key key) {
+            byte[] b = toBytes(key);
+            int newPrefix = (first == null) ? b.length : Utils.commonPrefixLength(first, b, prefix);
+            return InternalNode.getCompressedSize(newPrefix, keyBytes + b.length, keys + 1, pointers + 1, keyParts);
+        }
+
+        private byte[] toBytes(Key key) {
+            try {
+                return key.toByteArray();
+            } catch (IOException e) {
+                throw new RuntimeException("Error converting key " + key, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nodes of a level, given the number of entries
+     * stored in it. The nodes are filled up to the fill factor, but not below
+     * their minimum occupancy.
+     */
+    private int nodesForLevel(int entries, int capacity, int minimum, double fillFactor) {
+        int target = Math.max(1, Math.min(capacity, (int) Math.round(capacity * fillFactor)));
+        int nodes = (entries + target - 1) / target;
+        return Math.max(1, Math.min(nodes, entries / minimum));
+    }
+
+    /**
+     * Keeps the open node of each level during a bulk load. The number of
+     * entries of each node is planned beforehand. A node's id is allocated
+     * when the node is opened, so the left sibling can point to it before
+     * being written.
+     */
+    private class BulkLoadState {
+
+        //the number of pages written per batch
+        static final int BATCH_SIZE = 256;
+
+        final PageFile<Node> target;
+        final List<List<Integer>> levelSizes;
+        final Node[] open;
+        //the key that separates the open node of each level from its left sibling
+        final Key[] separators;
+        final int[] done;
+        final List<Node> batch = new ArrayList<>(BATCH_SIZE);
+        int firstLeafID = -1;
+        int rootID = -1;
+
+        BulkLoadState(PageFile<Node> target, List<List<Integer>> levelSizes) {
+            this.target = target;
+            this.levelSizes = levelSizes;
+            open = new Node[levelSizes.size()];
+            separators = new Key[levelSizes.size()];
+            done = new int[levelSizes.size()];
+        }
+
+        /**
+         * Returns the number of entries of the open node of a level.
+         */
+        int targetSize(int level) {
+            return levelSizes.get(level).get(done[level]);
+        }
+
+        /**
+         * Returns the open node of a level, opening a new one if needed.
+         */
+        Node current(int level) {
+            if (open[level] == null) {
+                open[level] = newNode(level, -1);
+            }
+            return open[level];
+        }
+
+        Node newNode(int level, int leftSiblingID) {
+            Node node;
+            if (level == 0) {
+                LeafNode leaf = new LeafNode(getLeafCapacity(), new DictionaryPair[getLeafCapacity()], null, BPlusTreeFile.this);
+                leaf.leftSiblingID = leftSiblingID;
+                node = leaf;
+            } else {
+                InternalNode in = new InternalNode(getDirCapacity(), new Key[getDirCapacity()], BPlusTreeFile.this);
+                in.leftSiblingID = leftSiblingID;
+                node = in;
+            }
+            int pageID = target.setPageID(node);
+            if (level == 0 && firstLeafID == -1) {
+                firstLeafID = pageID;
+            }
+            return node;
+        }
+
+        /**
+         * Finishes the open node of a level: links it to its right sibling and
+         * to its parent, and schedules it to be written.
+         */
+        void complete(int level) {
+            Node node = open[level];
+            Key separator = separators[level];
+            done[level]++;
+
+            open[level] = null;
+            if (done[level] < levelSizes.get(level).size()) {
+                //the next node is opened now, so this one knows its right sibling
+                Node next = newNode(level, node.getPageID());
+                open[level] = next;
+                if (level == 0) {
+                    ((LeafNode) node).rightSiblingID = next.getPageID();
                 } else {
-                    printNode((LeafNode) node.childPointers[x]);
+                    ((InternalNode) node).rightSiblingID = next.getPageID();
+                }
+            }
+
+            if (level == levelSizes.size() - 1) {
+                rootID = node.getPageID();
+            } else {
+                InternalNode parent = (InternalNode) current(level + 1);
+                node.setParentID(parent.getPageID());
+                if (parent.degree == 0) {
+                    //the node's separator moves up to separate the parent from its left sibling
+                    separators[level + 1] = separator;
+                } else {
+                    parent.setKey(parent.degree - 1, separator);
+                }
+                parent.childPointersIDs[parent.degree++] = node.getPageID();
+                if (parent.degree == targetSize(level + 1)) {
+                    complete(level + 1);
                 }
             }
+
+            batch.add(node);
+            if (batch.size() >= BATCH_SIZE) {
+                writeBatch();
+            }
+        }
+
+        void writeBatch() {
+            if (!batch.isEmpty()) {
+                target.writePages(batch);
+                batch.clear();
+            }
         }
+    }
+
+    /**
+     * Sets the number of leaves prefetched during sequential traversals of
+     * the leaf chain.
+     *
+     * @param readAheadWindow the number of leaves, or zero to disable the
+     * read-ahead
+     */
+    public void setReadAheadWindow(int readAheadWindow) {
+        this.readAheadWindow = readAheadWindow;
+    }
 
+    /**
+     * Sets the maximum number of internal nodes kept in memory for the
+     * searches. The nodes pinned so far are dropped.
+     *
+     * @param capacity the number of nodes, or zero to read every node from
+     * the file
+     */
+    public void setPinnedCapacity(int capacity) {
+        this.pinnedLevels = new PinnedLevels(capacity);
+    }
+
+    /**
+     * @return the number of internal nodes currently kept in memory for the
+     * searches
+     */
+    public int getPinnedNodes() {
+        return pinnedLevels.size();
+    }
+
+    /**
+     * Creates the read-ahead used by a traversal of the leaf chain. It only
+     * prefetches pages if this tree's file is a cache.
+     *
+     * @return the read-ahead
+     */
+    public LeafReadAhead createReadAhead() {
+        Cache cache = (file instanceof Cache) ? (Cache) file : null;
+        return new LeafReadAhead(cache, readAheadWindow);
     }
 
     /**
@@ -1212,6 +1761,9 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
      */
     protected void writeNode(Node node) {
         file.writePage(node);
+        if (node instanceof InternalNode) {
+            pinnedLevels.unpin(node.getPageID());
+        }
     }
 
     /**
@@ -1221,6 +1773,9 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
      */
     protected void deleteNode(Node node) {
         file.deletePage(node.getPageID());
+        if (node instanceof InternalNode) {
+            pinnedLevels.unpin(node.getPageID());
+        }
     }
 
     /**
@@ -1232,6 +1787,23 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
      */
     @Override
     public void writePage(DataOutputStream oos, Page page) throws IOException {
+        writePage((DataOutput) oos, page);
+    }
+
+    /**
+     * Puts an Internal/leaf Node page into a byte buffer, starting at the
+     * buffer's current position.
+     *
+     * @param buffer the buffer
+     * @param page the page that contains the node
+     * @throws java.io.IOException
+     */
+    @Override
+    public void writePage(ByteBuffer buffer, Page page) throws IOException {
+        writePage(PageBufferPool.get().getOutput(buffer), page);
+    }
+
+    private void writePage(DataOutput oos, Page page) throws IOException {
         if (page == null) {
             oos.writeInt(EMPTY_PAGE);
         } else {
@@ -1239,6 +1811,8 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                 oos.writeInt(LEAF_NODE);
             } else if (page instanceof InternalNode) {
                 oos.writeInt(INTERNAL_NODE);
+            } else if (page instanceof FilterPage) {
+                oos.writeInt(FILTER_PAGE);
             }
 
             ((AbstractExternalizablePage) page).writeExternal(oos);
@@ -1255,6 +1829,23 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
      */
     @Override
     public Page readPage(DataInputStream ois) throws IOException {
+        return readPage((DataInput) ois);
+    }
+
+    /**
+     * Reads from a byte buffer an Internal/Leaf Node page, starting at the
+     * buffer's current position.
+     *
+     * @param buffer the buffer
+     * @return the page read from the buffer
+     * @throws java.io.IOException
+     */
+    @Override
+    public Page readPage(ByteBuffer buffer) throws IOException {
+        return readPage(PageBufferPool.get().getInput(buffer));
+    }
+
+    private Page readPage(DataInput ois) throws IOException {
         final int type = ois.readInt();
         if (type == EMPTY_PAGE) {
             return null;
@@ -1268,6 +1859,8 @@ public abstract class BPlusTreeFile extends BPlusTree implements PageSerializati
                 page = new InternalNode(this);
             } else if (type == LEAF_NODE) {
                 page = new LeafNode(this);
+            } else if (type == FILTER_PAGE) {
+                page = new FilterPage();
             }
             page.readExternal(ois);
             return page;
@@ -81,10 +81,35 @@ public class DictionaryPair implements Comparable<DictionaryPair>, Externalizabl
         
     }
     
+    /**
+     * Reads a pair whose stored length is known, as done for leaves holding
+     * values of variable length.
+     *
+     * @param in the stream to read data from
+     * @param length the number of bytes of the pair
+     * @throws IOException
+     */
+    public void readExternal(DataInput in, int length) throws IOException {
+
+        key = tree.createKey();
+        key.readExternal(in);
+        value = tree.createValue();
+
+        value.readExternal(in, length - key.getSizeInBytes());
+
+    }
+    
     @Override
     public int getSizeInBytes(){
         return key.getSizeInBytes()+value.getSizeInBytes();
     }
+
+    /*
+    * the amount of bytes the pair actually takes when stored
+     */
+    public int getStoredSizeInBytes(){
+        return key.getSizeInBytes()+value.getStoredSizeInBytes();
+    }
     
     @Override
     public String toString(){
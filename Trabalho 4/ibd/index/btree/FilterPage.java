@@ -0,0 +1,56 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.btree;
+
+import ibd.persistent.AbstractExternalizablePage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A page of a b-tree file that holds a slice of the bits of a filter kept
+ * along with the tree, instead of nodes. The pages of a filter form a chain,
+ * starting at a page whose id is kept in the file header.
+ *
+ * @author Sergio
+ */
+public class FilterPage extends AbstractExternalizablePage {
+
+    //the next page of the filter, or -1 if this is the last one
+    public int nextPageID = -1;
+
+    //the bits stored in this page
+    public long words[] = new long[0];
+
+    /**
+     * The fixed size of the page header: the header of every page, the next
+     * page id and the number of words.
+     */
+    @Override
+    public int getHeaderSizeInBytes() {
+        return super.getHeaderSizeInBytes() + 2 * Integer.BYTES;
+    }
+
+    @Override
+    public void writeExternal(DataOutput out) throws IOException {
+        super.writeExternal(out);
+        out.writeInt(nextPageID);
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    @Override
+    public void readExternal(DataInput in) throws IOException {
+        super.readExternal(in);
+        nextPageID = in.readInt();
+        words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+    }
+}
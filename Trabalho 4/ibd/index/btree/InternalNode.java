@@ -8,6 +8,9 @@ package ibd.index.btree;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  *
@@ -17,9 +20,22 @@ import java.io.IOException;
  * This class represents the internal nodes within the B+ tree that traffic all
  * search/insert/delete operations. An internal node only holds keys; it does
  * not hold dictionary pairs.
+ *
+ * If the tree compresses its keys, the bytes that all keys of the node have in
+ * common are stored once, followed by the rest of each key. Since compressed
+ * keys take a variable number of bytes, such nodes are filled by bytes, and
+ * the max degree only bounds the number of entries.
+ *
+ * The children are kept by their page ids only. In a tree with compact nodes,
+ * a node read from disk keeps its keys packed as they are stored, and a key
+ * is only decoded when it is accessed. The keys are decoded into objects when
+ * the node is first modified.
  */
 public class InternalNode extends Node  {
 
+    //the size of the length of the common prefix stored by compressed nodes
+    public static final int PREFIX_LENGTH_SIZE = Short.BYTES;
+
     int maxDegree;
     int minDegree;
     int degree;
@@ -32,9 +48,33 @@ public class InternalNode extends Node  {
     int leftSiblingID = -1;
     int rightSiblingID = -1;
 
+    //the decoded keys, or null while the keys are packed
     Key[] keys;
-    Node[] childPointers;
-    Integer[] childPointersIDs;
+    //the page ids of the children. Only the first degree positions are used
+    int[] childPointersIDs;
+
+    //the packed keys, or null once they are decoded. Readers copy it to a local before using it
+    volatile PackedKeys packed;
+
+    /**
+     * The keys of a node as they are stored: the prefix shared by all keys,
+     * the remaining bytes of all keys, where each key starts and the number
+     * of parts of each key.
+     */
+    static final class PackedKeys {
+
+        final byte[] prefix;
+        final byte[] bytes;
+        final int[] offsets;
+        final byte[] parts;
+
+        PackedKeys(byte[] prefix, byte[] bytes, int[] offsets, byte[] parts) {
+            this.prefix = prefix;
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.parts = parts;
+        }
+    }
 
     public InternalNode(BPlusTree tree) {
         this.tree = tree;
@@ -54,8 +94,7 @@ public class InternalNode extends Node  {
         this.degree = 0;
         this.keys = keys;
         this.tree = tree;
-        this.childPointers = new Node[this.maxDegree + 1];
-        this.childPointersIDs = new Integer[this.maxDegree + 1];
+        this.childPointersIDs = new int[this.maxDegree + 1];
 
     }
 
@@ -64,37 +103,18 @@ public class InternalNode extends Node  {
      *
      * @param m: the max degree of the InternalNode
      * @param keys: the list of keys that InternalNode is initialized with
-     * @param pointers: the list of pointers that InternalNode is initialized
+     * @param pointers: the page ids of the children that InternalNode is
+     * initialized with
+     * @param degree: the number of children
      * @param tree: the tree where this node belongs
-     * with
      */
-    public InternalNode(int m, Key[] keys, Node[] pointers, BPlusTree tree) {
+    public InternalNode(int m, Key[] keys, int[] pointers, int degree, BPlusTree tree) {
         this.maxDegree = m;
         //this.minDegree = (int) Math.ceil(m / 2.0);
         setMinDegree();
-        this.degree = Utils.linearNullSearch(pointers);
+        this.degree = degree;
         this.keys = keys;
         this.tree = tree;
-        this.childPointers = pointers;
-        this.childPointersIDs = new Integer[this.maxDegree + 1];
-        for (int i = 0; i < pointers.length; i++) {
-            Node node = pointers[i];
-            if (node == null) {
-                break;
-            }
-            childPointersIDs[i] = node.getPageID();
-        }
-
-    }
-
-    public InternalNode(int m, Key[] keys, Integer[] pointers, BPlusTree tree) {
-        this.maxDegree = m;
-        //this.minDegree = (int) Math.ceil(m / 2.0);
-        setMinDegree();
-        this.degree = Utils.linearNullSearch(pointers);
-        this.keys = keys;
-        this.tree = tree;
-        this.childPointers = new Node[pointers.length];
         this.childPointersIDs = pointers;
 
 
@@ -114,7 +134,8 @@ public class InternalNode extends Node  {
      * list
      */
     public void appendChildPointer(Node pointer) {
-        this.childPointers[degree] = pointer;
+        //the degree also defines how many keys are packed
+        unpack();
         this.childPointersIDs[degree] = pointer.getPageID();
         pointer.setParentNode(this);
         pointer.setParentID(this.getPageID());
@@ -123,19 +144,6 @@ public class InternalNode extends Node  {
     }
     
     
-    /**
-     * This method appends all entries of an internal node into the end of this internal node
-     * The entries refer to the childPointers and the key values.
-     * @param in: The node from where entries are copied
-     */
-    public void appendAllEntries(InternalNode in){
-    appendChildPointer(in.childPointers[0]);
-            for (int i = 1; i < in.degree; i++) {
-                    appendKey(in.keys[i-1]);
-                    appendChildPointer(in.childPointers[i]);
-            }
-    }
-
     /**
      * Given a Node pointer, this method will return the index of where the
      * pointer lies within the childPointers instance variable. If the pointer
@@ -147,7 +155,7 @@ public class InternalNode extends Node  {
      * can't be found
      */
     public int findIndexOfPointer(Node pointer) {
-        for (int i = 0; i < childPointersIDs.length; i++) {
+        for (int i = 0; i < degree; i++) {
             if (childPointersIDs[i] == pointer.getPageID()) {
                 return i;
             }
@@ -165,11 +173,10 @@ public class InternalNode extends Node  {
      * @param index: the index at which the insert is to take place
      */
     public void insertChildPointer(Node pointer, int index) {
+        unpack();
         for (int i = degree - 1; i >= index; i--) {
-            childPointers[i + 1] = childPointers[i];
             childPointersIDs[i + 1] = childPointersIDs[i];
         }
-        this.childPointers[index] = pointer;
         this.childPointersIDs[index] = pointer.getPageID();
         pointer.setParentNode(this);
         this.degree++;
@@ -183,6 +190,9 @@ public class InternalNode extends Node  {
      * @return a boolean indicating whether the InternalNode is deficient or not
      */
     public boolean isDeficient() {
+        if (tree.hasKeyCompression()) {
+            return getUsedBytes() < tree.getDirCapacityBytes() / 2;
+        }
         return this.degree < this.minDegree;
     }
 
@@ -219,73 +229,356 @@ public class InternalNode extends Node  {
      * @return a boolean indicating if the InternalNode is overfull
      */
     public boolean isOverfull() {
+        if (tree.hasKeyCompression() && getUsedBytes() > tree.getDirCapacityBytes()) {
+            return true;
+        }
         return this.degree == maxDegree + 1;
     }
 
-    
-    
     /**
-     * Given a pointer to a Node object, this method inserts the pointer to the
-     * beginning of the childPointers instance variable.
+     * Determines if the InternalNode can lend its first pointer and key to a
+     * deficient sibling without becoming deficient.
      *
-     * @param pointer: the Node object to be prepended within childPointers
+     * @return a boolean indicating whether the first entry can be lent
      */
-    public void prependChildPointer(Node pointer) {
-        for (int i = degree - 1; i >= 0; i--) {
-            childPointers[i + 1] = childPointers[i];
-            childPointersIDs[i + 1] = childPointersIDs[i];
+    public boolean canLendFirst() {
+        if (!tree.hasKeyCompression()) {
+            return isLendable();
         }
-        this.childPointers[0] = pointer;
-        this.childPointersIDs[0] = pointer.getPageID();
-        this.degree++;
-        pointer.setParentNode(this);
-        pointer.setParentID(this.getPageID());
+        if (degree <= 2) {
+            return false;
+        }
+        List<Key> keyList = getKeyList();
+        keyList.remove(0);
+        return getCompressedSize(keyList, degree - 1) >= tree.getDirCapacityBytes() / 2;
     }
-    
-    
+
     /**
-     * This method inserts all entries of an internal node to the
-     * beginning of this node.
+     * Determines if the InternalNode can lend its last pointer and key to a
+     * deficient sibling without becoming deficient.
      *
-     * @param in: the node from where the entries are copied
+     * @return a boolean indicating whether the last entry can be lent
      */
-    public void prependAllEntries(InternalNode in) {
-    
-        //only here the number of keys is the same as the number of points.
-        //reason: a key was addded before this method is called
-        int nkeys = degree;
-        for (int i = nkeys-1; i >= 0; i--) {
-            this.keys[i+in.degree-1] = this.keys[i];
+    public boolean canLendLast() {
+        if (!tree.hasKeyCompression()) {
+            return isLendable();
         }
-        for (int i = degree-1; i >= 0; i--) {
-            this.childPointers[i+in.degree] = this.childPointers[i];
-            this.childPointersIDs[i+in.degree] = this.childPointersIDs[i];
+        if (degree <= 2) {
+            return false;
         }
-        
-        int i = 0;
-        for (i = 0; i <in.degree - 1; i++) {
-            this.setPointer(i, in.childPointers[i]);
-            this.setKey(i, in.keys[i]);
+        List<Key> keyList = getKeyList();
+        keyList.remove(keyList.size() - 1);
+        return getCompressedSize(keyList, degree - 1) >= tree.getDirCapacityBytes() / 2;
+    }
+
+    /**
+     * Determines if a sibling can be merged into the InternalNode, which also
+     * receives the separator between them.
+     *
+     * @param sibling: the deficient sibling
+     * @param separator: the parent's key between the two nodes
+     * @return a boolean indicating whether the nodes can be merged
+     */
+    public boolean canMergeWith(InternalNode sibling, Key separator) {
+        if (!tree.hasKeyCompression()) {
+            return isMergeable();
         }
-        this.setPointer(i, in.childPointers[i]);
-        this.degree+=in.degree;
-        
+        List<Key> keyList = getKeyList();
+        keyList.add(separator);
+        keyList.addAll(sibling.getKeyList());
+        return fits(keyList, degree + sibling.degree);
     }
-    
+
+    /**
+     * Returns the keys of this node.
+     *
+     * @return a new list with the keys, in order
+     */
+    public List<Key> getKeyList() {
+        List<Key> keyList = new ArrayList<>(Math.max(degree, 1));
+        for (int i = 0; i < degree - 1; i++) {
+            keyList.add(getKey(i));
+        }
+        return keyList;
+    }
+
+    /**
+     * Returns a key of this node. A packed key is decoded, but the node stays
+     * packed.
+     *
+     * @param index: the index of the key
+     * @return the key
+     */
+    public Key getKey(int index) {
+        PackedKeys p = packed;
+        if (p == null) {
+            return keys[index];
+        }
+        return getKey(p, index);
+    }
+
+    private Key getKey(PackedKeys p, int index) {
+        int parts = (p.parts == null) ? tree.getKeyParts() : p.parts[index];
+        int suffix = p.offsets[index + 1] - p.offsets[index];
+        byte[] b = new byte[p.prefix.length + suffix];
+        System.arraycopy(p.prefix, 0, b, 0, p.prefix.length);
+        System.arraycopy(p.bytes, p.offsets[index], b, p.prefix.length, suffix);
+        Key key = tree.createKey();
+        try {
+            key.fromByteArray(b, parts);
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding key " + index + " of node " + getPageID(), e);
+        }
+        return key;
+    }
+
+    /**
+     * Finds the child whose subtree may hold a key. The keys of a packed node
+     * are compared in their serialized form, so no object is created.
+     *
+     * @param key: the key
+     * @return the index of the child pointer
+     */
+    public int findChildIndex(Key key) {
+        PackedKeys p = packed;
+        Key[] decoded = keys;
+        int i = degree - 1;
+        int left = 0;
+        int right = degree - 2;
+        while (left <= right) {
+            int mid = left + (right - left) / 2;
+            int cmp;
+            if (p == null) {
+                cmp = decoded[mid].compareTo(key);
+            } else {
+                cmp = -key.compareTo(p.prefix, p.bytes, p.offsets[mid], p.offsets[mid + 1] - p.offsets[mid]);
+            }
+            if (cmp > 0) {
+                i = mid;
+                right = mid - 1;
+            } else {
+                left = mid + 1;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return true if the keys of this node are still packed
+     */
+    public boolean isPacked() {
+        return packed != null;
+    }
+
+    /**
+     * Decodes the packed keys, so the node can be modified. The decoded keys
+     * are set before the packed ones are dropped, so a reader that finds no
+     * packed keys finds the decoded ones.
+     */
+    public void unpack() {
+        PackedKeys p = packed;
+        if (p == null) {
+            return;
+        }
+        Key[] decoded = new Key[maxDegree];
+        for (int i = 0; i < degree - 1; i++) {
+            decoded[i] = getKey(p, i);
+        }
+        keys = decoded;
+        packed = null;
+    }
+
+    /**
+     * Creates a copy of this node that is only used to find children. The
+     * copy does not change when this node is modified, since the modifying
+     * methods replace the packed arrays instead of writing into them.
+     *
+     * @return the copy
+     */
+    public InternalNode copyForSearch() {
+        InternalNode copy = new InternalNode(tree);
+        copy.setPageID(getPageID());
+        copy.maxDegree = maxDegree;
+        copy.minDegree = minDegree;
+        copy.degree = degree;
+        copy.childPointersIDs = Arrays.copyOf(childPointersIDs, degree);
+        PackedKeys p = packed;
+        if (p == null) {
+            copy.keys = Arrays.copyOf(keys, Math.max(degree - 1, 0));
+        } else {
+            copy.packed = p;
+        }
+        return copy;
+    }
+
+    /**
+     * Checks if a node holding the keys and pointers fits into a page.
+     *
+     * @param keyList: the keys of the node
+     * @param pointers: the number of pointers of the node
+     * @return true if the node fits
+     */
+    public boolean fits(List<Key> keyList, int pointers) {
+        if (pointers > maxDegree) {
+            return false;
+        }
+        return !tree.hasKeyCompression() || getCompressedSize(keyList, pointers) <= tree.getDirCapacityBytes();
+    }
+
+    /**
+     * Checks if this node still fits into its page after one of its keys is
+     * replaced. Compressed keys have different sizes.
+     *
+     * @param index: the index of the key
+     * @param key: the new key
+     * @return true if the node fits
+     */
+    public boolean fitsReplacingKey(int index, Key key) {
+        if (!tree.hasKeyCompression()) {
+            return true;
+        }
+        List<Key> keyList = getKeyList();
+        keyList.set(index, key);
+        return fits(keyList, degree);
+    }
+
+    /**
+     * @return the number of bytes taken by the keys and pointers of this
+     * compressed node
+     */
+    public int getUsedBytes() {
+        PackedKeys p = packed;
+        if (p != null) {
+            //the packed keys are stored as they are on disk
+            return PREFIX_LENGTH_SIZE + degree * Integer.BYTES + p.prefix.length + p.bytes.length + (degree - 1) * getPartsSize();
+        }
+        return getCompressedSize(getKeyList(), degree);
+    }
+
+    /**
+     * Returns the number of bytes taken by the keys and pointers of a
+     * compressed node: the common prefix of the keys is stored once, and each
+     * key keeps its number of parts, when keys have more than one part, and
+     * the bytes after the prefix.
+     *
+     * @param keyList: the keys of the node
+     * @param pointers: the number of pointers of the node
+     * @return the number of bytes
+     */
+    public int getCompressedSize(List<Key> keyList, int pointers) {
+        if (keyList.isEmpty()) {
+            return getCompressedSize(0, 0, 0, pointers, tree.getKeyParts());
+        }
+        byte[] first = getBytes(keyList.get(0));
+        int prefix = first.length;
+        int total = 0;
+        for (Key key : keyList) {
+            byte[] b = getBytes(key);
+            prefix = Utils.commonPrefixLength(first, b, prefix);
+            total += b.length;
+        }
+        return getCompressedSize(prefix, total, keyList.size(), pointers, tree.getKeyParts());
+    }
+
     /**
-     * This method inserts all entries of an internal node to the
-     * beginning of this node. Does the same as prependAllEntries, but in a last efficient way.
+     * Returns the number of bytes taken by the keys and pointers of a
+     * compressed node from the sizes of its keys.
      *
-     * @param in: the node from where the entries are copied
+     * @param prefix: the length of the common prefix of the keys
+     * @param keyBytes: the sum of the full sizes of the keys
+     * @param keys: the number of keys
+     * @param pointers: the number of pointers
+     * @param keyParts: the number of parts of a full key
+     * @return the number of bytes
      */
-    public void prependAllEntries1(InternalNode in) {
-        prependChildPointer(in.childPointers[in.degree-1]);
-        for (int i = in.degree - 2; i >= 0; i--) {
-            prependChildKey(in.keys[i]);
-            prependChildPointer(in.childPointers[i]);
+    public static int getCompressedSize(int prefix, int keyBytes, int keys, int pointers, int keyParts) {
+        int size = PREFIX_LENGTH_SIZE + pointers * Integer.BYTES;
+        if (keys == 0) {
+            return size;
         }
+        int partsSize = keyParts > 1 ? 1 : 0;
+        return size + prefix + keyBytes - keys * prefix + keys * partsSize;
     }
 
+    /**
+     * @return the number of bytes used to store the number of parts of each
+     * compressed key. Keys with a single part are never truncated
+     */
+    private int getPartsSize() {
+        return tree.getKeyParts() > 1 ? 1 : 0;
+    }
+
+    private static byte[] getBytes(Key key) {
+        try {
+            return key.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Error converting key " + key, e);
+        }
+    }
+
+    /**
+     * Returns the index of the key moved up when this overfull compressed node
+     * is split. The key is chosen so that both halves take about the same
+     * number of bytes.
+     *
+     * @return the index of the key
+     */
+    public int getSplitIndex() {
+        int n = degree - 1;
+        byte[] first = getBytes(getKey(0));
+        int prefix = first.length;
+        int sizes[] = new int[n];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            byte[] b = getBytes(getKey(i));
+            prefix = Utils.commonPrefixLength(first, b, prefix);
+            sizes[i] = b.length;
+        }
+        for (int i = 0; i < n; i++) {
+            //each key is counted with the pointer that follows it
+            sizes[i] += getPartsSize() - prefix + Integer.BYTES;
+            total += sizes[i];
+        }
+
+        //both halves keep at least one key when possible
+        int from = n > 2 ? 1 : 0;
+        int to = n > 2 ? n - 2 : n - 1;
+        int split = from;
+        int smallestMax = Integer.MAX_VALUE;
+        int left = 0;
+        for (int i = 0; i < from; i++) {
+            left += sizes[i];
+        }
+        for (int i = from; i <= to; i++) {
+            int larger = Math.max(left, total - left - sizes[i]);
+            if (larger < smallestMax) {
+                smallestMax = larger;
+                split = i;
+            }
+            left += sizes[i];
+        }
+        return split;
+    }
+
+    
+    
+    /**
+     * Given a pointer to a Node object, this method inserts the pointer to the
+     * beginning of the childPointers instance variable.
+     *
+     * @param pointer: the Node object to be prepended within childPointers
+     */
+    public void prependChildPointer(Node pointer) {
+        unpack();
+        for (int i = degree - 1; i >= 0; i--) {
+            childPointersIDs[i + 1] = childPointersIDs[i];
+        }
+        this.childPointersIDs[0] = pointer.getPageID();
+        this.degree++;
+        pointer.setParentNode(this);
+        pointer.setParentID(this.getPageID());
+    }
+    
     
     /**
      * This method inserts a key into the beginning of this node. 
@@ -293,6 +586,7 @@ public class InternalNode extends Node  {
      * @param key: the key to be inserted
      */
     public void prependChildKey(Key key) {
+        unpack();
         for (int i = keys.length - 2; i >= 0; i--) {
             keys[i + 1] = keys[i];
         }
@@ -306,6 +600,7 @@ public class InternalNode extends Node  {
      * @param index: the location within keys to be set to null
      */
     public void removeKey(int index) {
+        unpack();
         this.keys[index] = null;
     }
     
@@ -320,7 +615,6 @@ public class InternalNode extends Node  {
         removeKey(index - 1);
         removePointer(index);
         shiftNullKeysToEnd(index-1);
-        shiftNullNodesToEnd(index);
         //checkKeys();
     }
     
@@ -334,7 +628,6 @@ public class InternalNode extends Node  {
         removePointer(index);
         removeKey(index);
         shiftNullKeysToEnd(index);
-        shiftNullNodesToEnd(index);
         //checkKeys();
     }
 
@@ -350,37 +643,17 @@ public class InternalNode extends Node  {
 
     
     /**
-     * This method sets childPointers[index] to null and additionally decrements
-     * the current degree of the InternalNode.
+     * This method removes the pointer at childPointersIDs[index], shifting the
+     * following pointers to the left, and decrements the current degree of
+     * the InternalNode.
      *
-     * @param index: the location within childPointers to be set to null
+     * @param index: the location within childPointersIDs to be removed
      */
     public void removePointer(int index) {
-        if (this.childPointers==null)
-            System.out.println("aqui");
-        this.childPointers[index] = null;
-        this.childPointersIDs[index] = null;
-        this.degree--;
-    }
-
-    
-    
-
-    /**
-     * This method removes 'pointer' from the childPointers instance variable
-     * and decrements the current degree of the InternalNode. The index where
-     * the pointer node was assigned is set to null.
-     *
-     * @param pointer: the Node pointer to be removed from childPointers
-     */
-    public void removePointer(Integer pointerID) {
-        for (int i = 0; i < degree; i++) {
-            if (childPointersIDs[i].equals(pointerID)) {
-                this.childPointers[i] = null;
-                this.childPointersIDs[i] = null;
-            }
-        }
+        unpack();
+        System.arraycopy(childPointersIDs, index + 1, childPointersIDs, index, degree - index - 1);
         this.degree--;
+        this.childPointersIDs[degree] = 0;
     }
 
     /**
@@ -391,6 +664,7 @@ public class InternalNode extends Node  {
      * @param key: the key to be set
      */
     public void setKey(int index, Key key) {
+        unpack();
         keys[index] = key;
     }
 
@@ -406,6 +680,7 @@ public class InternalNode extends Node  {
     }
     
     private void insertAndShift(Key key) {
+        unpack();
         int index = 0;
         // Find the correct position to insert the new element
         while (index < degree-1 && keys[index].compareTo(key) < 0) {
@@ -433,7 +708,6 @@ public class InternalNode extends Node  {
      * @param key: the node pointer to be set
      */
     public void setPointer(int index, Node node) {
-        childPointers[index] = node;
         childPointersIDs[index] = node.getPageID();
         node.setParentNode(this);
     }
@@ -452,91 +726,55 @@ public class InternalNode extends Node  {
      * Returns the last filled position of the key array.
      */
     public Key getLastKey() {
-        return keys[degree - 2];
+        return getKey(degree - 2);
     }
     
     /**
      * Returns the first position of the key array.
      */
     public Key getFirstKey() {
-        return keys[0];
+        return getKey(0);
     }
 
     /**
      * This method modifies the InternalNode 'in' by removing all pointers
-     * within the childPointers after the specified split. The method returns
-     * the removed pointers in a list of their own to be used when constructing
-     * a new InternalNode sibling.
+     * within the childPointersIDs after the specified split. The method
+     * returns the removed pointers in a list of their own to be used when
+     * constructing a new InternalNode sibling.
      *
-     * @param in: an InternalNode whose childPointers will be split
-     * @param split: the index at which the split in the childPointers begins
-     * @return a Node[] of the removed pointers
+     * @param split: the index at which the split in the childPointersIDs begins
+     * @return an int[] of the removed pointers
      */
-    public Integer[] splitChildPointersID(int split) {
+    public int[] splitChildPointersID(int split) {
 
-        //Node[] pointers = childPointers;
-        Integer[] pointersID = childPointersIDs;
-        Integer[] halfPointers = new Integer[maxDegree + 1];
+        unpack();
 
-        // Copy half of the values into halfPointers while updating original keys
-        for (int i = split + 1; i < pointersID.length; i++) {
-            //halfPointers[i - split - 1] = getNode(pointersID[i]);
-            halfPointers[i - split - 1] = pointersID[i];
-            removePointer(i);
-        }
+        int[] halfPointers = new int[maxDegree + 1];
+
+        // Copy half of the values into halfPointers
+        System.arraycopy(childPointersIDs, split + 1, halfPointers, 0, degree - split - 1);
+        Arrays.fill(childPointersIDs, split + 1, degree, 0);
 
         // Change degree of original InternalNode in
-        degree = Utils.linearNullSearch(childPointersIDs);
+        degree = split + 1;
 
         return halfPointers;
     }
 
-    /**
-     * Returns the first node of the nodes array.
-     */
-    public Node getFirstPointer() {
-        return childPointers[0];
-    }
-    
     /**
      * Returns the page id of first node of the nodes array.
      */
-    public Integer getFirstPointerID() {
+    public int getFirstPointerID() {
         return childPointersIDs[0];
     }
 
-    /**
-     * Returns the last filled position of the nodes array.
-     */
-    public Node getLastPointer() {
-        return childPointers[degree - 1];
-    }
-    
     /**
      * Returns the page id of the node in the last filled position of the nodes array.
      */
-    public Integer getLastPointerID() {
+    public int getLastPointerID() {
         return childPointersIDs[degree - 1];
     }
 
-    public Node[] splitChildPointers(int split) {
-
-        Node[] pointers = childPointers;
-        Node[] halfPointers = new Node[maxDegree + 1];
-
-        // Copy half of the values into halfPointers while updating original keys
-        for (int i = split + 1; i < pointers.length; i++) {
-            //halfPointers[i - split - 1] = getNode(pointersID[i]);
-            halfPointers[i - split - 1] = pointers[i];
-            removePointer(i);
-        }
-
-        // Change degree of original InternalNode in
-        degree = Utils.linearNullSearch(childPointers);
-
-        return halfPointers;
-    }
-
     @Override
     public int getHeaderSizeInBytes(){
         return super.getHeaderSizeInBytes() + 5 * Integer.BYTES;
@@ -553,9 +791,16 @@ public class InternalNode extends Node  {
         out.writeInt(rightSiblingID);
         
         //keys
-        for (int i = 0; i < degree - 1; i++) {
-            keys[i].writeExternal(out);
-            //out.writeObject(keys[i]);
+        PackedKeys p = packed;
+        if (p != null) {
+            writePackedKeys(p, out);
+        } else if (tree.hasKeyCompression()) {
+            writeCompressedKeys(out);
+        } else {
+            for (int i = 0; i < degree - 1; i++) {
+                keys[i].writeExternal(out);
+                //out.writeObject(keys[i]);
+            }
         }
         
         //values
@@ -576,19 +821,24 @@ public class InternalNode extends Node  {
         this.setMinDegree();
 
         //keys
-        keys = new Key[maxDegree];
-        for (int i = 0; i < degree - 1; i++) {
-            Key key = tree.createKey();
-            key.readExternal(in);
-            keys[i] = key;
-            //keys[i] = (Key)in.readObject();
+        keys = null;
+        if (tree.hasCompactNodes()) {
+            readPackedKeys(in);
+        } else if (tree.hasKeyCompression()) {
+            keys = new Key[maxDegree];
+            readCompressedKeys(in);
+        } else {
+            keys = new Key[maxDegree];
+            for (int i = 0; i < degree - 1; i++) {
+                Key key = tree.createKey();
+                key.readExternal(in);
+                keys[i] = key;
+                //keys[i] = (Key)in.readObject();
+            }
         }
 
         //values
-        childPointers = new Node[maxDegree + 1];
-        if (childPointers==null)
-            System.out.println("erro");
-        childPointersIDs = new Integer[maxDegree + 1];
+        childPointersIDs = new int[maxDegree + 1];
         for (int i = 0; i < degree; i++) {
             childPointersIDs[i] = in.readInt();
         }
@@ -597,6 +847,96 @@ public class InternalNode extends Node  {
 
     
     
+    /*
+    * writes the common prefix of the keys, followed by the number of parts and the remaining bytes of each key
+    */
+    private void writeCompressedKeys(DataOutput out) throws IOException {
+        int n = degree - 1;
+        byte[][] bytes = new byte[n][];
+        int prefix = 0;
+        for (int i = 0; i < n; i++) {
+            bytes[i] = keys[i].toByteArray();
+            prefix = (i == 0) ? bytes[0].length : Utils.commonPrefixLength(bytes[0], bytes[i], prefix);
+        }
+        out.writeShort(prefix);
+        if (n > 0) {
+            out.write(bytes[0], 0, prefix);
+        }
+        boolean storeParts = getPartsSize() > 0;
+        for (int i = 0; i < n; i++) {
+            if (storeParts) {
+                out.writeByte(keys[i].getParts());
+            }
+            out.write(bytes[i], prefix, bytes[i].length - prefix);
+        }
+    }
+
+    /*
+    * writes the packed keys in the same format they were read
+    */
+    private void writePackedKeys(PackedKeys p, DataOutput out) throws IOException {
+        if (tree.hasKeyCompression()) {
+            out.writeShort(p.prefix.length);
+            out.write(p.prefix);
+        }
+        for (int i = 0; i < degree - 1; i++) {
+            if (p.parts != null) {
+                out.writeByte(p.parts[i]);
+            }
+            out.write(p.bytes, p.offsets[i], p.offsets[i + 1] - p.offsets[i]);
+        }
+    }
+
+    /*
+    * reads the keys without decoding them. Uncompressed keys are packed with an empty prefix
+    */
+    private void readPackedKeys(DataInput in) throws IOException {
+        int n = Math.max(degree - 1, 0);
+        byte[] prefix = new byte[tree.hasKeyCompression() ? in.readUnsignedShort() : 0];
+        in.readFully(prefix);
+        //only compressed keys may be truncated, so only they store their number of parts
+        byte[] parts = (tree.hasKeyCompression() && getPartsSize() > 0) ? new byte[n] : null;
+        int[] offsets = new int[n + 1];
+        Key key = tree.createKey();
+        int fullSize = key.getSizeInBytes(tree.getKeyParts()) - prefix.length;
+        byte[] buffer = new byte[n * fullSize];
+        int end = 0;
+        for (int i = 0; i < n; i++) {
+            int suffix = fullSize;
+            if (parts != null) {
+                parts[i] = in.readByte();
+                suffix = key.getSizeInBytes(parts[i]) - prefix.length;
+            }
+            in.readFully(buffer, end, suffix);
+            end += suffix;
+            offsets[i + 1] = end;
+        }
+        packed = new PackedKeys(prefix, (end == buffer.length) ? buffer : Arrays.copyOf(buffer, end), offsets, parts);
+    }
+
+    private void readCompressedKeys(DataInput in) throws IOException {
+        byte[] prefix = new byte[in.readUnsignedShort()];
+        in.readFully(prefix);
+        boolean storeParts = getPartsSize() > 0;
+        for (int i = 0; i < degree - 1; i++) {
+            Key key = tree.createKey();
+            int parts = storeParts ? in.readUnsignedByte() : tree.getKeyParts();
+            byte[] b = new byte[key.getSizeInBytes(parts)];
+            System.arraycopy(prefix, 0, b, 0, prefix.length);
+            in.readFully(b, prefix.length, b.length - prefix.length);
+            key.fromByteArray(b, parts);
+            keys[i] = key;
+        }
+    }
+
+    /*
+    * Returns the maximum degree of a compressed internal node. Compressed keys take a variable number of bytes,
+    * so the degree assumes the smallest entry: a pointer, the number of parts of the key and a single byte.
+    */
+    public int findOutCompressedDegree(long pageSize) {
+        return (int) ((pageSize - getHeaderSizeInBytes() - PREFIX_LENGTH_SIZE - Integer.BYTES) / (Integer.BYTES + getPartsSize() + 1));
+    }
+
     /*
     * Returns the maximum degree (number of entries) of an internal node considering the pageSize, the fixed header size and the key size.
     * An entry is composed by a pointer (an integer ID) and a key.
@@ -611,43 +951,20 @@ public class InternalNode extends Node  {
     @Override
     public String toString() {
         String aux = "";
-        for (Key key : keys) {
-            if (key != null) {
-                aux += key.toString() + "--";
-            }
+        for (int i = 0; i < degree - 1; i++) {
+            aux += getKey(i).toString() + "--";
         }
         return aux;
     }
 
     
-    /*
-    * shift a null node to the end of the array
-    * useful when a node is deleted, to group all nodes at the first positions of the array
-    */
-    public void shiftNullNodesToEnd(int index) {
-        int nonNullIndex = index;
-        for (int currentIndex = index; currentIndex < childPointersIDs.length; currentIndex++) {
-            if (childPointersIDs[currentIndex] != null) {
-                // Swap non-null element to the front of the array
-                Node temp = childPointers[currentIndex];
-                childPointers[currentIndex] = childPointers[nonNullIndex];
-                childPointers[nonNullIndex] = temp;
-                
-                Integer temp_ = childPointersIDs[currentIndex];
-                childPointersIDs[currentIndex] = childPointersIDs[nonNullIndex];
-                childPointersIDs[nonNullIndex] = temp_;
-                
-                nonNullIndex++;
-            }
-        }
-    }
-
     /*
     * shift a null key to the end of the array
     * useful when a key is deleted, to group all nodes at the first positions of the array
     *
     */
     public void shiftNullKeysToEnd(int index) {
+        unpack();
         int nonNullIndex = index;
         for (int currentIndex = index; currentIndex < keys.length; currentIndex++) {
             if (keys[currentIndex] != null) {
@@ -6,6 +6,11 @@
 package ibd.index.btree;
 
 import ibd.persistent.ExternalizablePage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 
 /**
@@ -119,6 +124,79 @@ public abstract class Key implements Comparable<Key>, ExternalizablePage {
         return getPartialKey(keys.length);
     }
 
+    /*
+    * returns true if this key can be compressed inside the internal nodes.
+    * Compressed keys share the common prefix of their bytes and separators may be truncated to their leading parts.
+     */
+    public boolean supportsCompression() {
+        return false;
+    }
+
+    /*
+    * returns the number of parts of this key. A truncated separator has fewer parts than a full key.
+     */
+    public int getParts() {
+        return keys.length;
+    }
+
+    /*
+    * returns the number of parts of a full key.
+     */
+    public int getMaxParts() {
+        return keys.length;
+    }
+
+    /*
+    * returns the size in bytes of a key composed by its first parts.
+     */
+    public int getSizeInBytes(int parts) {
+        return getSizeInBytes();
+    }
+
+    /*
+    * returns the serialized form of this key.
+     */
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeExternal(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    /*
+    * reads this key from its serialized form, composed by the first parts of the key.
+     */
+    public void fromByteArray(byte[] bytes, int parts) throws IOException {
+        readExternal(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /*
+    * compares this key with a serialized key, without decoding it. The serialized key is the concatenation of a prefix, which may be null,
+    * and a range of an array. Used by trees whose nodes keep their keys packed, so only keys that support compression need to implement it.
+     */
+    public int compareTo(byte[] prefix, byte[] bytes, int offset, int length) {
+        throw new UnsupportedOperationException("Keys of this type cannot be compared in their serialized form");
+    }
+
+    /*
+    * returns true if the first levels of this key are equal to the first levels of a serialized key, as in partialMatch(Key).
+     */
+    public boolean partialMatch(byte[] prefix, byte[] bytes, int offset, int length) {
+        throw new UnsupportedOperationException("Keys of this type cannot be compared in their serialized form");
+    }
+
+    /**
+     * Returns the shortest key that is higher than the lower key and not
+     * higher than this key. It can be used as the separator between the node
+     * that holds the lower key and the node that starts with this key. Keys
+     * that cannot be truncated return themselves.
+     *
+     * @param lower a key lower than this key
+     * @return the separator
+     */
+    public Key getSeparator(Key lower) {
+        return this;
+    }
+
     /*
     * the size refers to the amount of bytes taken by each object of the key.
      */
@@ -0,0 +1,32 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.btree;
+
+/**
+ * Decides which leaves a traversal of the leaf chain may skip, without
+ * reading them. A skipped leaf must be known to hold no wanted entry, and
+ * the filter must know which leaf follows it.
+ *
+ * @author Sergio
+ */
+public interface LeafFilter {
+
+    /**
+     * Finds the first leaf of the chain that may hold wanted entries,
+     * starting at a given leaf.
+     *
+     * @param leafID the id of the leaf the traversal is about to read, or -1
+     * @return the id of the leaf to be read instead, or -1 if no leaf is left
+     */
+    public int nextLeaf(int leafID);
+
+    /**
+     * Called with each leaf read by the traversal.
+     *
+     * @param leaf the leaf
+     */
+    public void leafRead(LeafNode leaf);
+}
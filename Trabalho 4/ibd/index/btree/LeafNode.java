@@ -5,7 +5,9 @@
  */
 package ibd.index.btree;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Arrays;
@@ -17,13 +19,25 @@ import java.util.Comparator;
  */
 /**
  * This class represents the leaf nodes within the B+ tree that hold dictionary
- * pairs. The leaf node has no children. The leaf node has a minimum and maximum
- * number of dictionary pairs it can hold, as specified by m, the max degree of
- * the B+ tree. The leaf nodes form a doubly linked list that, i.e. each leaf
- * node has a left and right sibling
+ * pairs. The leaf node has no children. The leaf nodes form a doubly linked
+ * list that, i.e. each leaf node has a left and right sibling.
+ *
+ * A leaf is filled by bytes: an entry fits if the bytes taken by the stored
+ * pairs leave room for it. When the values have a variable length, the pairs
+ * are stored with their real length, preceded by a slot directory holding
+ * where each pair ends. The max degree m only bounds the number of pairs.
+ *
+ * In a tree with compact nodes, a leaf read from disk keeps its pairs packed
+ * as they are stored. Searches compare the keys in their serialized form and
+ * decode only the value they return. The pairs are decoded into objects when the leaf is
+ * first modified. The packed pairs are never changed, so a search that took
+ * them keeps reading them while a writer decodes the leaf.
  */
 public class LeafNode extends Node {
 
+    //the size of each entry of the slot directory
+    public static final int SLOT_SIZE = Short.BYTES;
+
     int maxNumPairs;
     int minNumPairs;
     int numPairs;
@@ -36,8 +50,26 @@ public class LeafNode extends Node {
     int rightSiblingID = -1;
     //int parentID;
 
+    //the decoded pairs, or null while the pairs are packed
     DictionaryPair[] dictionary;
 
+    //the packed pairs, or null once they are decoded. Readers copy it to a local before using it
+    volatile PackedPairs packed;
+
+    /**
+     * The pairs of a leaf as they are stored, and where each one starts.
+     */
+    static final class PackedPairs {
+
+        final byte[] bytes;
+        final int[] offsets;
+
+        PackedPairs(byte[] bytes, int[] offsets) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+        }
+    }
+
     public LeafNode(BPlusTree tree) {
         this.tree = tree;
     }
@@ -67,13 +99,15 @@ public class LeafNode extends Node {
      * @param m: order of B+ tree that is used to calculate maxNumPairs and
      * minNumPairs
      * @param parent: parent of newly created child LeafNode
+     * @param tree: the tree where this node belongs
      */
-    public LeafNode(int m, DictionaryPair[] dps, InternalNode parent) {
+    public LeafNode(int m, DictionaryPair[] dps, InternalNode parent, BPlusTree tree) {
         this.maxNumPairs = m - 1;
         //this.minNumPairs = (int) (Math.ceil(m / 2) - 1);
         setMinNumPairs();
         this.dictionary = dps;
         this.numPairs = Utils.linearNullSearch(dps);
+        this.tree = tree;
         this.setParentNode(parent);
         //this.parentID = parent.getPageID();
     }
@@ -93,17 +127,193 @@ public class LeafNode extends Node {
         );
         buf.append(" entries:");
         for (int i = 0; i < numPairs; i++) {
-            buf.append(dictionary[i].key + ",");
+            buf.append(getKey(i) + ",");
         }
         System.out.println(buf.toString());
     }
 
     public DictionaryPair getFirstDictionaryPair() {
-        return dictionary[0];
+        return getPair(0);
     }
 
     public DictionaryPair getLastDictionaryPair() {
-        return dictionary[numPairs - 1];
+        return getPair(numPairs - 1);
+    }
+
+    /**
+     * @return the number of pairs stored in this leaf
+     */
+    public int getNumPairs() {
+        return numPairs;
+    }
+
+    /**
+     * @return the id of the next leaf of the chain, or -1 if this is the last
+     * one
+     */
+    public int getRightSiblingID() {
+        return rightSiblingID;
+    }
+
+    /**
+     * Returns a pair of this leaf. A packed pair is decoded, but the leaf
+     * stays packed, so changes to the returned pair are not kept.
+     *
+     * @param index: the position of the pair
+     * @return the pair
+     */
+    public DictionaryPair getPair(int index) {
+        PackedPairs p = packed;
+        if (p == null) {
+            return dictionary[index];
+        }
+        return new DictionaryPair(getKey(p, index), getValue(p, index), tree);
+    }
+
+    /**
+     * Returns the key of a pair of this leaf, decoding only the key if the
+     * leaf is packed.
+     *
+     * @param index: the position of the pair
+     * @return the key
+     */
+    public Key getKey(int index) {
+        PackedPairs p = packed;
+        if (p == null) {
+            return dictionary[index].key;
+        }
+        return getKey(p, index);
+    }
+
+    private Key getKey(PackedPairs p, int index) {
+        Key key = tree.createKey();
+        int start = p.offsets[index];
+        try {
+            key.fromByteArray(Arrays.copyOfRange(p.bytes, start, start + key.getSizeInBytes()), key.getMaxParts());
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding key " + index + " of leaf " + getPageID(), e);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the value of a pair of this leaf, decoding only the value if
+     * the leaf is packed.
+     *
+     * @param index: the position of the pair
+     * @return the value
+     */
+    public Value getValue(int index) {
+        PackedPairs p = packed;
+        if (p == null) {
+            return dictionary[index].value;
+        }
+        return getValue(p, index);
+    }
+
+    private Value getValue(PackedPairs p, int index) {
+        Value value = tree.createValue();
+        int start = p.offsets[index] + tree.createKey().getSizeInBytes();
+        int length = p.offsets[index + 1] - start;
+        try {
+            value.readExternal(new DataInputStream(new ByteArrayInputStream(p.bytes, start, length)), length);
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding value " + index + " of leaf " + getPageID(), e);
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the value of a pair of this leaf.
+     *
+     * @param index: the position of the pair
+     * @param value: the new value
+     */
+    public void setValue(int index, Value value) {
+        unpack();
+        dictionary[index].value = value;
+    }
+
+    /**
+     * Searches a key among the pairs of this leaf. The keys of a packed leaf
+     * are compared in their serialized form, so no object is created.
+     *
+     * @param key: the key to be searched
+     * @return the position of the key, if found. Otherwise, (-(insertion
+     * point) - 1), as done by Arrays.binarySearch
+     */
+    public int findIndex(Key key) {
+        int low = 0;
+        int high = numPairs - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compares the key of a pair of this leaf with another key, without
+     * decoding the key if the leaf is packed.
+     *
+     * @param index: the position of the pair
+     * @param key: the key to be compared with
+     * @return the same as getKey(index).compareTo(key)
+     */
+    public int compareKey(int index, Key key) {
+        PackedPairs p = packed;
+        if (p == null) {
+            return dictionary[index].key.compareTo(key);
+        }
+        return -key.compareTo(null, p.bytes, p.offsets[index], key.getSizeInBytes());
+    }
+
+    /**
+     * Checks if the first levels of a key match the key of a pair of this
+     * leaf, without decoding the key if the leaf is packed.
+     *
+     * @param index: the position of the pair
+     * @param key: the key, possibly with fewer levels
+     * @return the same as key.partialMatch(getKey(index))
+     */
+    public boolean partialMatch(int index, Key key) {
+        PackedPairs p = packed;
+        if (p == null) {
+            return key.partialMatch(dictionary[index].key);
+        }
+        return key.partialMatch(null, p.bytes, p.offsets[index], key.getSizeInBytes());
+    }
+
+    /**
+     * @return true if the pairs of this leaf are still packed
+     */
+    public boolean isPacked() {
+        return packed != null;
+    }
+
+    /**
+     * Decodes the packed pairs, so the leaf can be modified. The decoded pairs
+     * are set before the packed ones are dropped, so a reader that finds no
+     * packed pairs finds the decoded ones.
+     */
+    public void unpack() {
+        PackedPairs p = packed;
+        if (p == null) {
+            return;
+        }
+        DictionaryPair[] decoded = new DictionaryPair[maxNumPairs + 1];
+        for (int i = 0; i < numPairs; i++) {
+            decoded[i] = new DictionaryPair(getKey(p, i), getValue(p, i), tree);
+        }
+        dictionary = decoded;
+        packed = null;
     }
 
     public void deleteFirstDictionaryPair() {
@@ -122,6 +332,8 @@ public class LeafNode extends Node {
      */
     public void delete(int index) {
 
+        unpack();
+
         // Delete dictionary pair from leaf
         this.dictionary[index] = null;
 
@@ -141,9 +353,9 @@ public class LeafNode extends Node {
      * @return a boolean indicating whether or not the insert was successful
      */
     public boolean insert(DictionaryPair dp) {
-        if (this.isFull()) {
+        if (this.isFull() || !fits(entrySize(dp))) {
 
-            /* Flow of execution goes here when numPairs == maxNumPairs */
+            /* Flow of execution goes here when numPairs == maxNumPairs or the bytes are exhausted */
             return false;
         } else {
 
@@ -155,12 +367,14 @@ public class LeafNode extends Node {
     }
 
     private void insertAndSort(DictionaryPair dp){
+        unpack();
         this.dictionary[numPairs] = dp;
         numPairs++;
         Arrays.sort(this.dictionary, 0, numPairs);
     }
     
     private void insertAndShift(DictionaryPair dp) {
+        unpack();
         int index = 0;
         // Find the correct position to insert the new element
         while (index < numPairs && dictionary[index].compareTo(dp) < 0) {
@@ -185,6 +399,7 @@ public class LeafNode extends Node {
      * @param dp: the pair to be inserted
      */
     public void prependPair(DictionaryPair dp) {
+        unpack();
         for (int i = numPairs - 1; i >= 0; i--) {
             this.dictionary[i + 1] = this.dictionary[i];
         }
@@ -201,12 +416,13 @@ public class LeafNode extends Node {
      */
     public void prependPairs(LeafNode ln) {
 
+        unpack();
         for (int i = numPairs - 1; i >= 0; i--) {
             this.dictionary[i + ln.numPairs] = this.dictionary[i];
         }
 
         for (int i = 0; i < ln.numPairs; i++) {
-            this.dictionary[i] = ln.dictionary[i];
+            this.dictionary[i] = ln.getPair(i);
         }
 
         this.numPairs += ln.numPairs;
@@ -221,8 +437,9 @@ public class LeafNode extends Node {
      */
     public void appendPairs(LeafNode ln) {
 
+        unpack();
         for (int i = 0; i < ln.numPairs; i++) {
-            this.dictionary[numPairs + i] = ln.dictionary[i];
+            this.dictionary[numPairs + i] = ln.getPair(i);
         }
 
         this.numPairs += ln.numPairs;
@@ -235,19 +452,86 @@ public class LeafNode extends Node {
      * @param dp: The pair to be copied
      */
     public void appendPair(DictionaryPair dp) {
+        unpack();
         this.dictionary[numPairs] = dp;
         this.numPairs++;
 
     }
 
     /**
-     * This simple method determines if the LeafNode is deficient, i.e. the
-     * numPairs within the LeafNode object is below minNumPairs.
+     * Returns the number of bytes an entry takes in this leaf, including its
+     * slot when the values have a variable length.
+     *
+     * @param dp: the entry
+     * @return the number of bytes
+     */
+    public int entrySize(DictionaryPair dp) {
+        int size = dp.getStoredSizeInBytes();
+        if (tree.hasVariableLengthValues()) {
+            size += SLOT_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes an entry of this leaf takes, without
+     * decoding it.
+     *
+     * @param index: the position of the entry
+     * @return the number of bytes
+     */
+    public int entrySize(int index) {
+        PackedPairs p = packed;
+        if (p == null) {
+            return entrySize(dictionary[index]);
+        }
+        int size = p.offsets[index + 1] - p.offsets[index];
+        if (tree.hasVariableLengthValues()) {
+            size += SLOT_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes taken by the entries of this leaf
+     */
+    public int getUsedBytes() {
+        PackedPairs p = packed;
+        if (p != null) {
+            return p.offsets[numPairs] + (tree.hasVariableLengthValues() ? numPairs * SLOT_SIZE : 0);
+        }
+        int used = 0;
+        for (int i = 0; i < numPairs; i++) {
+            used += entrySize(dictionary[i]);
+        }
+        return used;
+    }
+
+    /**
+     * @return the number of bytes below which the leaf is deficient
+     */
+    private int getMinBytes() {
+        return tree.getLeafCapacityBytes() / 2;
+    }
+
+    /**
+     * Checks if more bytes can be added to this leaf.
+     *
+     * @param bytes: the number of bytes to be added
+     * @return true if the bytes fit into the leaf
+     */
+    public boolean fits(int bytes) {
+        return getUsedBytes() + bytes <= tree.getLeafCapacityBytes();
+    }
+
+    /**
+     * This simple method determines if the LeafNode is deficient, i.e. its
+     * entries take less than half of the leaf's bytes.
      *
      * @return a boolean indicating whether or not the LeafNode is deficient
      */
     public boolean isDeficient() {
-        return numPairs < minNumPairs;
+        return getUsedBytes() < getMinBytes();
     }
 
     /**
@@ -262,27 +546,62 @@ public class LeafNode extends Node {
 
     /**
      * This simple method determines if the LeafNode object is capable of
-     * lending a dictionary pair to a deficient leaf node. The LeafNode object
-     * can lend a dictionary pair if its numPairs is greater than the minimum
-     * number of pairs it can hold.
+     * lending its first dictionary pair to a deficient leaf node, which
+     * happens if the LeafNode object does not become deficient without it.
+     *
+     * @return a boolean indicating whether or not the LeafNode object can give
+     * its first dictionary pair to a deficient leaf node
+     */
+    public boolean canLendFirst() {
+        return numPairs > 1 && getUsedBytes() - entrySize(0) >= getMinBytes();
+    }
+
+    /**
+     * This simple method determines if the LeafNode object is capable of
+     * lending its last dictionary pair to a deficient leaf node, which happens
+     * if the LeafNode object does not become deficient without it.
      *
      * @return a boolean indicating whether or not the LeafNode object can give
-     * a dictionary pair to a deficient leaf node
+     * its last dictionary pair to a deficient leaf node
      */
-    public boolean isLendable() {
-        return numPairs > minNumPairs;
+    public boolean canLendLast() {
+        return numPairs > 1 && getUsedBytes() - entrySize(numPairs - 1) >= getMinBytes();
     }
 
     /**
      * This simple method determines if the LeafNode object is capable of being
-     * merged with, which occurs when the number of pairs within the LeafNode
-     * object is lower or equal to the minimum number of pairs it can hold.
+     * merged with another leaf, which occurs when the pairs of both leaves fit
+     * into a single leaf.
      *
+     * @param ln: the leaf to be merged with
      * @return a boolean indicating whether or not the LeafNode object can be
-     * merged with
+     * merged with the other leaf
      */
-    public boolean isMergeable() {
-        return numPairs <= minNumPairs;
+    public boolean canMergeWith(LeafNode ln) {
+        return numPairs + ln.numPairs <= maxNumPairs
+                && getUsedBytes() + ln.getUsedBytes() <= tree.getLeafCapacityBytes();
+    }
+
+    /**
+     * Returns the position that splits the pairs of an overfull leaf into two
+     * parts with about the same number of bytes.
+     *
+     * @return the index of the first pair of the second part
+     */
+    public int getSplitIndex() {
+        int total = getUsedBytes();
+        int split = 1;
+        int smallestMax = Integer.MAX_VALUE;
+        int left = 0;
+        for (int i = 1; i < numPairs; i++) {
+            left += entrySize(i - 1);
+            int larger = Math.max(left, total - left);
+            if (larger < smallestMax) {
+                smallestMax = larger;
+                split = i;
+            }
+        }
+        return split;
     }
 
     /**
@@ -300,12 +619,15 @@ public class LeafNode extends Node {
      */
     public DictionaryPair[] splitDictionary(int split) {
 
+        unpack();
+
         /* Initialize two dictionaries that each hold half of the original
 		   dictionary values */
         DictionaryPair[] halfDict = new DictionaryPair[maxNumPairs + 1];
 
         // Copy half of the values into halfDict
-        for (int i = split; i < dictionary.length; i++) {
+        int n = numPairs;
+        for (int i = split; i < n; i++) {
             halfDict[i - split] = dictionary[i];
             this.dictionary[i] = null;
             numPairs--;
@@ -322,6 +644,7 @@ public class LeafNode extends Node {
     * to do: receive the position where the pair was deleted, so we dont have to traverse the whole array
      */
     public void shiftNullsToEnd() {
+        unpack();
         int nonNullIndex = 0;
         for (int currentIndex = 0; currentIndex < dictionary.length; currentIndex++) {
             if (dictionary[currentIndex] != null) {
@@ -341,6 +664,7 @@ public class LeafNode extends Node {
      * @param dictionary: a list of DictionaryPair objects
      */
     private void sortDictionary() {
+        unpack();
         Arrays.sort(dictionary, new Comparator<DictionaryPair>() {
             @Override
             public int compare(DictionaryPair o1, DictionaryPair o2) {
@@ -385,6 +709,25 @@ public class LeafNode extends Node {
         out.writeInt(getParentID());
         out.writeInt(leftSiblingID);
         out.writeInt(rightSiblingID);
+        PackedPairs p = packed;
+        if (p != null) {
+            //the packed pairs are written as they were read
+            if (tree.hasVariableLengthValues()) {
+                for (int i = 0; i < numPairs; i++) {
+                    out.writeShort(p.offsets[i + 1]);
+                }
+            }
+            out.write(p.bytes, 0, p.offsets[numPairs]);
+            return;
+        }
+        if (tree.hasVariableLengthValues()) {
+            //slot directory: where each pair ends, counting from the first pair
+            int end = 0;
+            for (int i = 0; i < numPairs; i++) {
+                end += dictionary[i].getStoredSizeInBytes();
+                out.writeShort(end);
+            }
+        }
         for (int i = 0; i < numPairs; i++) {
             dictionary[i].writeExternal(out);
             //out.writeObject(dictionary[i]);
@@ -403,7 +746,26 @@ public class LeafNode extends Node {
 
         setMinNumPairs();
 
+        if (tree.hasCompactNodes()) {
+            readPackedPairs(in);
+            return;
+        }
+
         dictionary = new DictionaryPair[maxNumPairs + 1];
+        if (tree.hasVariableLengthValues()) {
+            int ends[] = new int[numPairs];
+            for (int i = 0; i < numPairs; i++) {
+                ends[i] = in.readUnsignedShort();
+            }
+            int start = 0;
+            for (int i = 0; i < numPairs; i++) {
+                DictionaryPair dp = new DictionaryPair(tree);
+                dp.readExternal(in, ends[i] - start);
+                dictionary[i] = dp;
+                start = ends[i];
+            }
+            return;
+        }
         for (int i = 0; i < numPairs; i++) {
             DictionaryPair dp = new DictionaryPair(tree);
             dp.readExternal(in);
@@ -413,6 +775,27 @@ public class LeafNode extends Node {
 
     }
 
+    /*
+    * reads the pairs without decoding them. Pairs of a fixed length have no slot directory
+     */
+    private void readPackedPairs(DataInput in) throws IOException {
+        dictionary = null;
+        int[] offsets = new int[numPairs + 1];
+        if (tree.hasVariableLengthValues()) {
+            for (int i = 0; i < numPairs; i++) {
+                offsets[i + 1] = in.readUnsignedShort();
+            }
+        } else {
+            int pairSize = tree.createKey().getSizeInBytes() + tree.createValue().getSizeInBytes();
+            for (int i = 0; i < numPairs; i++) {
+                offsets[i + 1] = offsets[i] + pairSize;
+            }
+        }
+        byte[] bytes = new byte[offsets[numPairs]];
+        in.readFully(bytes);
+        packed = new PackedPairs(bytes, offsets);
+    }
+
     /*
     * Returns the maximum number of entries of a leaf node considering the pageSize, the fixed header size and the number of bytes for each entry
     * An antry is formed by a key and a value
@@ -425,7 +808,7 @@ public class LeafNode extends Node {
     public String toString() {
         String aux = "";
         for (int i = 0; i < numPairs; i++) {
-            aux += dictionary[i].key + "--";
+            aux += getKey(i) + "--";
         }
 
         return aux;
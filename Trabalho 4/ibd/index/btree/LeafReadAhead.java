@@ -0,0 +1,119 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.btree;
+
+import ibd.persistent.cache.Cache;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prefetches leaf pages during a left to right traversal of the leaf chain.
+ * A traversal reports each leaf it moves to. Once two consecutive moves are
+ * seen, the traversal is considered sequential and a background task starts
+ * loading the next leaves of the chain into the cache, so the traversal finds
+ * them in memory instead of waiting for one read per leaf.
+ *
+ * The read-ahead only acts if the tree's pages are managed by a cache. One
+ * instance serves a single traversal.
+ *
+ * @author Sergio
+ */
+public class LeafReadAhead {
+
+    /**
+     * The default number of leaves loaded ahead of the traversal.
+     */
+    public static final int DEFAULT_WINDOW = 8;
+
+    /**
+     * The number of consecutive moves to the right sibling that characterize
+     * a sequential traversal.
+     */
+    private static final int SEQUENTIAL_MOVES = 2;
+
+    /**
+     * The threads that load the pages. Idle threads are discarded after a
+     * while.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "leaf-read-ahead");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Cache cache;
+
+    private final int window;
+
+    //the number of consecutive moves to the right sibling seen so far
+    private int moves = 0;
+
+    //the task currently loading pages, if any
+    private Future<?> pending = null;
+
+    /**
+     * Creates the read-ahead of a traversal.
+     *
+     * @param cache the cache that receives the pages, or null to disable the
+     * read-ahead
+     * @param window the number of leaves loaded ahead of the traversal. It is
+     * limited to a quarter of the cache, so pages are not evicted before they
+     * are used.
+     */
+    public LeafReadAhead(Cache cache, int window) {
+        this.cache = cache;
+        if (cache != null) {
+            window = Math.min(window, cache.getCacheSize() / 4);
+        }
+        this.window = window;
+    }
+
+    /**
+     * Called by the traversal when it moves to a leaf through the right
+     * sibling link of the previous one.
+     *
+     * @param leaf the leaf that the traversal moved to
+     */
+    public void leafVisited(LeafNode leaf) {
+        if (cache == null || window <= 0 || leaf == null) {
+            return;
+        }
+        moves++;
+        if (moves < SEQUENTIAL_MOVES) {
+            return;
+        }
+        if (pending != null && !pending.isDone()) {
+            return;
+        }
+        int nextID = leaf.rightSiblingID;
+        if (nextID < 0) {
+            return;
+        }
+        pending = EXECUTOR.submit(() -> load(nextID));
+    }
+
+    /**
+     * Follows the leaf chain from the given leaf, loading up to window leaves.
+     * Leaves already cached are only traversed.
+     *
+     * @param leafID the id of the first leaf to be loaded
+     */
+    private void load(int leafID) {
+        try {
+            for (int i = 0; i < window && leafID >= 0; i++) {
+                Object page = cache.prefetchPage(leafID);
+                if (!(page instanceof LeafNode)) {
+                    return;
+                }
+                leafID = ((LeafNode) page).rightSiblingID;
+            }
+        } catch (RuntimeException e) {
+            //the traversal reads the page itself if the prefetch fails
+        }
+    }
+
+}
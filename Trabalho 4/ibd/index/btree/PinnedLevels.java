@@ -0,0 +1,133 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.btree;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the upper levels of a tree in memory, so searches descend through
+ * them without going through the page file or its cache. The nodes are
+ * pinned as searches reach them, starting at the root. If the capacity is
+ * reached, the deepest level is unpinned and no longer pinned, so only the
+ * levels that fit entirely stay in memory.
+ *
+ * The pinned nodes are copies of the nodes of the page file, so they never
+ * change. A node is unpinned whenever its page is written or deleted, and
+ * all nodes are unpinned when the root changes, since the levels are counted
+ * from the root.
+ *
+ * @author Sergio
+ */
+public class PinnedLevels {
+
+    /**
+     * The default maximum number of pinned nodes.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * A pinned node and its distance from the root.
+     */
+    private static class PinnedNode {
+
+        final InternalNode node;
+        final int level;
+
+        PinnedNode(InternalNode node, int level) {
+            this.node = node;
+            this.level = level;
+        }
+    }
+
+    private final int capacity;
+
+    private final ConcurrentHashMap<Integer, PinnedNode> nodes = new ConcurrentHashMap<>();
+
+    //the first level that is not pinned
+    private volatile int maxLevel = Integer.MAX_VALUE;
+
+    //changes whenever a node is unpinned, so a node read before the change is not pinned afterwards
+    private volatile long version = 0;
+
+    /**
+     * Creates an empty set of pinned levels.
+     *
+     * @param capacity the maximum number of pinned nodes, or zero to pin no
+     * node
+     */
+    public PinnedLevels(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a pinned node.
+     *
+     * @param pageID the page id of the node
+     * @return the node, or null if it is not pinned
+     */
+    public InternalNode get(int pageID) {
+        PinnedNode pn = nodes.get(pageID);
+        return (pn == null) ? null : pn.node;
+    }
+
+    /**
+     * Returns the current version. It must be read before the node to be
+     * pinned is read from the page file.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Pins a copy of a node read from the page file. Nothing is done if a
+     * node was unpinned since the version was read, as the node might have
+     * been modified in the meantime.
+     *
+     * @param node the node
+     * @param level the distance of the node from the root
+     * @param readVersion the version read before the node
+     */
+    public synchronized void pin(InternalNode node, int level, long readVersion) {
+        if (capacity <= 0 || level >= maxLevel || readVersion != version) {
+            return;
+        }
+        if (nodes.size() >= capacity) {
+            //the level does not fit, so it is dropped along with the levels below it
+            maxLevel = level;
+            nodes.values().removeIf(pn -> pn.level >= level);
+            return;
+        }
+        nodes.put(node.getPageID(), new PinnedNode(node.copyForSearch(), level));
+    }
+
+    /**
+     * Unpins a node whose page was written or deleted.
+     *
+     * @param pageID the page id of the node
+     */
+    public synchronized void unpin(int pageID) {
+        version++;
+        nodes.remove(pageID);
+    }
+
+    /**
+     * Unpins all nodes.
+     */
+    public synchronized void clear() {
+        version++;
+        nodes.clear();
+        maxLevel = Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the number of pinned nodes
+     */
+    public int size() {
+        return nodes.size();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package ibd.index.btree;
+
+/**
+ * An iterator over the entries whose keys lie within a range. The iteration
+ * starts at the leaf position of the lower bound, found by descending the
+ * tree, and follows the leaf chain until the first key past the upper bound.
+ *
+ * Both bounds are inclusive. An upper bound that sets only a prefix of the
+ * key's levels includes every key that starts with that prefix.
+ *
+ * @author Sergio
+ */
+public class RangeIterator extends ValueIterator {
+
+    //the largest key to be returned, or null if the range has no upper bound
+    Key upperBound;
+
+    public RangeIterator(BPlusTreeFile btree, LeafNode startNode, int startIndex, Key upperBound) {
+        super(btree, startNode, startIndex);
+        this.upperBound = upperBound;
+    }
+
+    /**
+     * Locates the next value, ending the iteration once the keys go past the
+     * upper bound.
+     *
+     * @return the next value, or null if there isnt any.
+     */
+    @Override
+    protected DictionaryPair findNextTuple() {
+        DictionaryPair dp = super.findNextTuple();
+        if (dp == null || upperBound == null) {
+            return dp;
+        }
+        if (dp.key.compareTo(upperBound) > 0 && !upperBound.partialMatch(dp.key)) {
+            //the keys are sorted, so no other leaf needs to be read
+            curNode = null;
+            nextValue = null;
+            return null;
+        }
+        return dp;
+    }
+}
@@ -34,10 +34,10 @@ import ibd.persistent.PageHeader;
 public abstract class TreeIndexHeader extends PageHeader {
 
     /**
-     * The size of this header in Bytes, which is 6 Integer attibutes: 
-     * rootID, firstLeafID
+     * The size of this header in Bytes, which is 3 Integer attibutes: 
+     * rootID, firstLeafID, keyCompression
      */
-    private static int SIZE = 2 * Integer.BYTES;
+    private static int SIZE = 3 * Integer.BYTES;
 
 
     /**
@@ -50,6 +50,11 @@ public abstract class TreeIndexHeader extends PageHeader {
      */
     private int firstLeafID = 0;
 
+    /**
+     * Whether the internal nodes store their keys compressed
+     */
+    private boolean keyCompression = false;
+
     /**
      * Empty constructor for serialization.
      */
@@ -79,6 +84,7 @@ public abstract class TreeIndexHeader extends PageHeader {
         super.readHeader(buffer);
         this.rootID = buffer.getInt();
         this.firstLeafID = buffer.getInt();
+        this.keyCompression = buffer.getInt() != 0;
 
     }
 
@@ -90,6 +96,7 @@ public abstract class TreeIndexHeader extends PageHeader {
         super.writeHeader(buffer);
         buffer.putInt(this.rootID); //1
         buffer.putInt(this.firstLeafID);//2
+        buffer.putInt(this.keyCompression ? 1 : 0);//3
     }
    
 
@@ -109,6 +116,14 @@ public abstract class TreeIndexHeader extends PageHeader {
         this.firstLeafID = firstLeafID;
     }
 
+    public boolean isKeyCompression() {
+        return keyCompression;
+    }
+
+    public void setKeyCompression(boolean keyCompression) {
+        this.keyCompression = keyCompression;
+    }
+
     /**
      * Returns the size of the header considering all attributes that needs saving. Note, this is only the base size and probably
      * <em>not</em> the overall size of this header, as there may be empty pages
@@ -5,9 +5,6 @@
  */
 package ibd.index.btree;
 
-import java.util.Arrays;
-import java.util.Comparator;
-
 /**
  *
  * @author Sergio
@@ -15,25 +12,6 @@ import java.util.Comparator;
 public class Utils {
     
     
-    /**
-     * This method performs a standard binary search on a sorted
-     * DictionaryPair[] and returns the index of the dictionary pair with target
-     * key t if found. Otherwise, this method returns a negative value.
-     *
-     * @param dps: list of dictionary pairs sorted by key within leaf node
-     * @param t: target key value of dictionary pair being searched for
-     * @return index of the target value if found, else a negative value
-     */
-    public static int binarySearch(DictionaryPair[] dps, int numPairs, Key t, BPlusTree tree) {
-        Comparator<DictionaryPair> c = new Comparator<DictionaryPair>() {
-            @Override
-            public int compare(DictionaryPair o1, DictionaryPair o2) {
-                return o1.compareTo(o2);
-            }
-        };
-        return Arrays.binarySearch(dps, 0, numPairs, new DictionaryPair(t, null, tree), c);
-    }
-    
     /**
      * This method performs a standard linear search on a sorted
      * DictionaryPair[] and returns the index of the first null entry found.
@@ -70,13 +48,23 @@ public class Utils {
         return -1;
     }
     
-    public static int linearNullSearch(Integer[] pointers) {
-        for (int i = 0; i < pointers.length; i++) {
-            if (pointers[i] == null) {
-                return i;
-            }
+
+    /**
+     * Returns the number of leading bytes that two arrays have in common,
+     * looking at most at the first limit bytes.
+     *
+     * @param a: the first array
+     * @param b: the second array
+     * @param limit: the maximum number of bytes compared
+     * @return the length of the common prefix
+     */
+    public static int commonPrefixLength(byte[] a, byte[] b, int limit) {
+        int max = Math.min(limit, Math.min(a.length, b.length));
+        int i = 0;
+        while (i < max && a[i] == b[i]) {
+            i++;
         }
-        return -1;
+        return i;
     }
 }
 
@@ -6,6 +6,8 @@
 package ibd.index.btree;
 
 import ibd.persistent.ExternalizablePage;
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.Arrays;
 
 /**
@@ -63,4 +65,27 @@ public abstract class Value implements ExternalizablePage {
      */
     public abstract int getSizeInBytes();
 
+    /*
+    * the amount of bytes this value actually takes when stored.
+    * values with a variable length override it, and the default is the fixed size.
+     */
+    public int getStoredSizeInBytes() {
+        return getSizeInBytes();
+    }
+
+    /*
+    * the smallest amount of bytes a value of this kind can take when stored.
+     */
+    public int getMinSizeInBytes() {
+        return getSizeInBytes();
+    }
+
+    /*
+    * reads a value whose stored length is known by the caller.
+    * values with a fixed length ignore the length.
+     */
+    public void readExternal(DataInput in, int length) throws IOException {
+        readExternal(in);
+    }
+
 }
@@ -17,16 +17,61 @@ public class ValueIterator implements Iterator<DictionaryPair>{
     //stores the next value to be returned by the next() function
     DictionaryPair nextValue = null;
     LeafNode curNode;
-    DictionaryPair dps[];
     BPlusTreeFile btree;
+    LeafReadAhead readAhead;
+
+    //decides which leaves are skipped without being read, or null if all leaves are read
+    LeafFilter leafFilter;
 
     int index;
     
     public ValueIterator(BPlusTreeFile btree){
+        this(btree, (LeafNode) btree.getNode(btree.getFirstLeafID()), 0);
+    }
+
+    /**
+     * Creates an iterator that starts at a given position of the leaf chain.
+     *
+     * @param btree the tree being traversed
+     * @param startNode the first leaf to be visited, or null for an empty
+     * iterator
+     * @param startIndex the position of the first entry inside the leaf
+     */
+    protected ValueIterator(BPlusTreeFile btree, LeafNode startNode, int startIndex){
         this.btree = btree;
-        curNode = (LeafNode) btree.getNode(btree.getFirstLeafID());
-        dps = curNode.dictionary;
-        index = 0;
+        readAhead = btree.createReadAhead();
+        curNode = startNode;
+        index = startIndex;
+    }
+
+    /**
+     * Creates an iterator that starts at the first leaf not skipped by a
+     * filter, and skips the following leaves the filter discards.
+     *
+     * @param btree the tree being traversed
+     * @param leafFilter the filter of the leaves
+     */
+    public ValueIterator(BPlusTreeFile btree, LeafFilter leafFilter){
+        this(btree, null, 0);
+        this.leafFilter = leafFilter;
+        curNode = readLeaf(btree.getFirstLeafID());
+    }
+
+    //reads the leaf to be visited after the given one is offered to the filter, if any
+    private LeafNode readLeaf(int leafID) {
+        if (leafFilter == null) {
+            return (LeafNode) btree.getNode(leafID);
+        }
+        int nextID = leafFilter.nextLeaf(leafID);
+        if (nextID != leafID) {
+            //a jump does not count as a sequential move
+            readAhead = btree.createReadAhead();
+        }
+        LeafNode leaf = (LeafNode) btree.getNode(nextID);
+        if (leaf != null) {
+            leafFilter.leafRead(leaf);
+        }
+        return leaf;
     }
 
     /**
@@ -72,26 +117,46 @@ public class ValueIterator implements Iterator<DictionaryPair>{
 
         while (curNode != null) {
             // Iterate through the dictionary of each node
-            while (index < dps.length) {
-                if (dps[index] == null) {
-                    break;
-                }
-                nextValue = dps[index];
+            if (index < curNode.numPairs) {
+                nextValue = curNode.getPair(index);
                 index++;
                 return nextValue;
-
             }
 
 
             /* Update the current node to be the right sibling,
 			   leaf traversal is from left to right */
-            curNode = (LeafNode) btree.getNode(curNode.rightSiblingID);
-            if (curNode!=null){
-                dps = curNode.dictionary;
-                index =0;
-            }
+            curNode = readLeaf(curNode.rightSiblingID);
+            readAhead.leafVisited(curNode);
+            index = 0;
         }
         return null;
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Moves the iterator to the first key that is not smaller than a given
+     * key, descending the tree from the root. The following calls to next()
+     * continue from there. A key that sets only a prefix of the key's levels
+     * moves to the first key that starts with it.
+     *
+     * @param key the key to move to
+     */
+    public void seek(Key key) {
+        ValueIterator it = btree.searchRangeIterator(key, null);
+        curNode = it.curNode;
+        index = it.index;
+        nextValue = null;
+        //a jump does not count as a sequential move
+        readAhead = btree.createReadAhead();
+    }
+
+    /**
+     * Ends the traversal. No more leaves are read, and hasNext() returns
+     * false until the iterator is moved by seek().
+     */
+    public void close() {
+        curNode = null;
+        nextValue = null;
+    }
+}
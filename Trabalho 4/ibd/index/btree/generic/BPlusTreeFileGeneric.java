@@ -42,7 +42,7 @@ public class BPlusTreeFileGeneric extends BPlusTreeFile {
     
     @Override
     public Value createValue() {
-        return new PrimitiveValue(keySchema);
+        return new PrimitiveValue(valueSchema);
     }
 
     /**
@@ -52,6 +52,18 @@ public class RowSchema {
         sizes[current] = 100;//ibd.table.record.Record.RECORD_SIZE;
         current++;
     }
+
+    /**
+     * Adds a string type that takes up to a given number of bytes, including
+     * the two bytes that store the length of the string.
+     *
+     * @param size the maximum number of bytes
+     */
+    public void addStringDataType(int size) {
+        types[current] = 'S';
+        sizes[current] = size;
+        current++;
+    }
     
     public void addRecordDataType(int size) {
         types[current] = 'R';
@@ -87,7 +87,10 @@ public class TreeIndexHeaderGeneric extends TreeIndexHeader {
         for (int i = 0; i < keySchema.getSize(); i++) {
             char type = buffer.getChar();
             int size = buffer.getInt();
-            if (type!='K')
+            if (type == 'S') {
+                //strings keep the size they were created with
+                keySchema.addStringDataType(size);
+            } else if (type!='K')
                 keySchema.addDataType(type);
             else {
                 keySchema.addBigKeyDataType(size);
@@ -97,7 +100,9 @@ public class TreeIndexHeaderGeneric extends TreeIndexHeader {
         for (int i = 0; i < valueSchema.getSize(); i++) {
             char type = buffer.getChar();
             int size = buffer.getInt();
-            if (type!='R')
+            if (type == 'S') {
+                valueSchema.addStringDataType(size);
+            } else if (type!='R')
                 valueSchema.addDataType(type);
             else {
                 valueSchema.addRecordDataType(size);
@@ -6,10 +6,18 @@
 package ibd.index.btree.table;
 
 import ibd.index.btree.BPlusTreeFile;
+import ibd.index.btree.DictionaryPair;
 import ibd.index.btree.Key;
+import ibd.index.btree.LeafNode;
+import ibd.index.btree.Node;
 import ibd.index.btree.TreeIndexHeader;
 import ibd.index.btree.Value;
+import ibd.index.btree.ValueIterator;
 import ibd.persistent.PageFile;
+import ibd.persistent.cache.Cache;
+import ibd.table.lookup.RowLookupFilter;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import ibd.table.prototype.Prototype;
 import ibd.table.prototype.column.Column;
@@ -24,6 +32,18 @@ public class BPlusTreeFileTable extends BPlusTreeFile {
 
     public Prototype prototype;
 
+    //the number of bits per key of the filter of the primary keys of new files, or 0 for no filter
+    protected int requestedFilterBitsPerKey = PrimaryKeyFilter.DEFAULT_BITS_PER_KEY;
+
+    //the filter of the primary keys, or null if the file has none
+    protected PrimaryKeyFilter filter = null;
+
+    //if true, the leaves are summarized so filtered scans can skip them
+    protected boolean zoneMaps = true;
+
+    //the summaries of the leaves, or null if they are not kept
+    protected ZoneMap zoneMap = null;
+
     /**
      * Constructor
      *
@@ -60,7 +80,9 @@ public class BPlusTreeFileTable extends BPlusTreeFile {
      */
     @Override
     protected TreeIndexHeader loadHeader() {
-        return new TreeIndexHeaderTable(file.getPageSize(),  rootID, firstLeafID, prototype);
+        TreeIndexHeaderTable header = new TreeIndexHeaderTable(file.getPageSize(),  rootID, firstLeafID, prototype);
+        header.setFilterBitsPerKey(requestedFilterBitsPerKey);
+        return header;
     }
     
     /**
@@ -73,6 +95,273 @@ public class BPlusTreeFileTable extends BPlusTreeFile {
         prototype = headerTable.prototype;
         prototype.validateColumns();
     }
+
+    /**
+     * Defines the size of the filter of the primary keys, which lets searches
+     * for keys that are not stored skip the tree. It must be called before
+     * the tree is opened, and only affects new files. Existing files keep the
+     * choice stored in their header.
+     *
+     * @param bitsPerKey: the number of bits per key, or 0 for no filter. Ten
+     * bits give about 1% of false positives
+     */
+    public void setKeyFilter(int bitsPerKey) {
+        this.requestedFilterBitsPerKey = bitsPerKey;
+    }
+
+    /**
+     * Defines whether the leaves are summarized by the minimum and maximum
+     * values of their columns, so filtered scans skip the leaves that cannot
+     * hold a matching row. The summaries are kept in memory only, so this
+     * must be called before the tree is opened.
+     *
+     * @param zoneMaps: true to keep the summaries
+     */
+    public void setZoneMaps(boolean zoneMaps) {
+        this.zoneMaps = zoneMaps;
+    }
+
+    /**
+     * Opens the tree and loads the filter of the primary keys, if the file
+     * has one.
+     */
+    @Override
+    public void open() {
+        boolean opened = init;
+        super.open();
+        if (opened) {
+            return;
+        }
+        if (zoneMaps) {
+            zoneMap = new ZoneMap();
+        }
+        TreeIndexHeaderTable header = (TreeIndexHeaderTable) file.getHeader();
+        if (header.getFilterBitsPerKey() <= 0) {
+            return;
+        }
+        //the filter pages bypass the cache, as the whole filter is kept in memory
+        PageFile storingFile = (file instanceof Cache) ? ((Cache) file).getPageFile() : file;
+        filter = new PrimaryKeyFilter(storingFile, header);
+        if (header.getFilterPageID() != -1) {
+            filter.load();
+        } else {
+            rebuildFilter(PrimaryKeyFilter.MIN_CAPACITY);
+        }
+    }
+
+    /**
+     * Checks if a key may be stored, without reading any page. Keys that hold
+     * only a prefix of the primary key are not checked.
+     *
+     * @param key: the key
+     * @return false if the key is surely not stored
+     */
+    public boolean mightContain(Key key) {
+        if (filter == null || key.getParts() < key.getMaxParts()) {
+            return true;
+        }
+        return filter.mightContain(toBytes(key));
+    }
+
+    private static byte[] toBytes(Key key) {
+        try {
+            return key.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Error converting key " + key, e);
+        }
+    }
+
+    /**
+     * Builds the filter of the primary keys from the keys stored in the tree.
+     *
+     * @param capacity: the number of keys the filter is sized for
+     */
+    public void rebuildFilter(int capacity) {
+        if (filter == null) {
+            return;
+        }
+        ValueIterator it = searchAllIterator();
+        Iterator<byte[]> keys = new Iterator<byte[]>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public byte[] next() {
+                return toBytes(it.next().getKey());
+            }
+        };
+        filter.rebuild(keys, Math.max(PrimaryKeyFilter.MIN_CAPACITY, capacity));
+        it.close();
+    }
+
+    /**
+     * Writes the pages of the filter of the primary keys that changed. The
+     * header, that points to the filter, is written when the file is flushed.
+     */
+    public void saveFilter() {
+        if (filter != null) {
+            filter.save();
+        }
+    }
+
+    /**
+     * @return the number of pages that store the filter of the primary keys
+     */
+    public int getFilterPages() {
+        return (filter == null) ? 0 : filter.getPages();
+    }
+
+    @Override
+    public boolean insert(Key key, Value value) {
+        if (zoneMap != null) {
+            zoneMap.startInsert((BinaryValue) value);
+        }
+        boolean inserted = super.insert(key, value);
+        if (zoneMap != null) {
+            zoneMap.endChange();
+        }
+        if (!inserted) {
+            return false;
+        }
+        if (filter != null && filter.add(toBytes(key))) {
+            //the filter is rebuilt with twice the keys, which also drops the removed ones
+            rebuildFilter(2 * ((TreeIndexHeaderTable) file.getHeader()).getFilterCapacity());
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the value of a key, adjusting the summary of its leaf.
+     */
+    @Override
+    public Value update(Key key, Value value) {
+        if (zoneMap != null) {
+            zoneMap.startUpdate((BinaryValue) value);
+        }
+        Value updated = super.update(key, value);
+        if (zoneMap != null) {
+            zoneMap.endChange();
+        }
+        return updated;
+    }
+
+    /**
+     * Removes a key, adjusting the summary of its leaf. The key stays in the
+     * filter of the primary keys until it is rebuilt.
+     */
+    @Override
+    public Value delete(Key key) {
+        if (zoneMap != null) {
+            zoneMap.startDelete();
+        }
+        Value deleted = super.delete(key);
+        if (zoneMap != null) {
+            zoneMap.endChange();
+        }
+        return deleted;
+    }
+
+    /**
+     * Searches a key, unless the filter tells it is not stored.
+     */
+    @Override
+    public Value search(Key key) {
+        if (!mightContain(key)) {
+            return null;
+        }
+        return super.search(key);
+    }
+
+    /**
+     * Checks if a key is stored, unless the filter tells it is not.
+     */
+    @Override
+    public boolean contains(Key key) {
+        if (!mightContain(key)) {
+            return false;
+        }
+        return super.contains(key);
+    }
+
+    /**
+     * Builds the tree from sorted entries, and the filter of the primary keys
+     * from the loaded keys.
+     */
+    @Override
+    public void bulkLoad(Iterable<DictionaryPair> pairs, double fillFactor) {
+        //the entries are counted as the tree reads them, so the filter is sized once
+        int counted[] = new int[1];
+        Iterable<DictionaryPair> countedPairs = () -> {
+            Iterator<DictionaryPair> it = pairs.iterator();
+            counted[0] = 0;
+            return new Iterator<DictionaryPair>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public DictionaryPair next() {
+                    counted[0]++;
+                    return it.next();
+                }
+            };
+        };
+        //the loaded leaves are written without going through writeNode
+        if (zoneMap != null) {
+            zoneMap.clear();
+        }
+        super.bulkLoad(countedPairs, fillFactor);
+        rebuildFilter(2 * counted[0]);
+    }
+
+    /**
+     * Returns an iterator over all entries, that skips the leaves whose
+     * summaries show they hold no row that satisfies a filter. The rows of
+     * the leaves that are read must still be checked against the filter.
+     *
+     * @param filter the filter of the rows
+     * @return the iterator
+     */
+    public ValueIterator searchAllIterator(RowLookupFilter filter) {
+        if (zoneMap == null) {
+            return searchAllIterator();
+        }
+        return searchAllIterator(zoneMap.createLeafFilter(filter));
+    }
+
+    /**
+     * Writes a node, and keeps its summary if it is a leaf.
+     */
+    @Override
+    protected void writeNode(Node node) {
+        super.writeNode(node);
+        if (zoneMap != null && node instanceof LeafNode) {
+            zoneMap.leafWritten((LeafNode) node);
+        }
+    }
+
+    /**
+     * Deletes a node, and drops its summary if it is a leaf.
+     */
+    @Override
+    protected void deleteNode(Node node) {
+        super.deleteNode(node);
+        if (zoneMap != null && node instanceof LeafNode) {
+            zoneMap.remove(node.getPageID());
+        }
+    }
+
+    /**
+     * Writes the filter of the primary keys and flushes the file.
+     */
+    @Override
+    public void flush() {
+        saveFilter();
+        super.flush();
+    }
     
 
 }
@@ -9,6 +9,7 @@ import ibd.index.btree.Key;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Arrays;
 import ibd.table.prototype.DataRow;
 import ibd.table.prototype.LinkedDataRow;
 import ibd.table.prototype.Prototype;
@@ -24,6 +25,9 @@ public class BinaryKey extends Key {
     //used to extract the primary key from the row.
     Prototype prototype;
 
+    //the serialized primary key, kept to avoid converting the row again
+    private byte[] bytes;
+
     public BinaryKey(Prototype prototype) {
         this.prototype = prototype;
         //defines the single entry of the key as a data row
@@ -40,28 +44,132 @@ public class BinaryKey extends Key {
         return prototype.getPrimaryKeySize();
     }
     
+    /**
+     * Compares the primary keys through their serialized form, which
+     * preserves the order of the keys. A key with fewer columns set comes
+     * before a longer key that starts with the same columns.
+     * @param other the key to be compared with
+     * @return
+     */
+    @Override
+    public int compareTo(Key other) {
+        byte[] b = ((BinaryKey) other).toByteArray();
+        return Prototype.compareKeyBytes(toByteArray(), null, b, 0, b.length, false);
+    }
+
     /**
      * returns true if the first set levels of this key are equal to the first levels of other key.
      * For binary keys, only the first level is set (i=0, always), and it contains a rowData.
-     * The rowData comparison needs to consider that this is a partialMatch.
-     * It means that only the overlapping attributes from the two rowData need to be compared. 
+     * Only the overlapping primary key columns of the two keys are compared,
+     * which are the leading bytes of their serialized forms.
      * @param otherKey the key to be compared with
      * @return
      */
     @Override
     public boolean partialMatch(Key otherKey) {
-        DataRow otherRow = (DataRow)otherKey.get(0);
-        DataRow thisRow = (DataRow)keys[0];
-        return (thisRow.partialMatch(otherRow)==0);
+        byte[] b = ((BinaryKey) otherKey).toByteArray();
+        return Prototype.compareKeyBytes(toByteArray(), null, b, 0, b.length, true) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toByteArray());
+    }
+
+    @Override
+    public void setKeys(Comparable[] keys) {
+        super.setKeys(keys);
+        bytes = null;
+    }
+
+    @Override
+    public boolean supportsCompression() {
+        return true;
+    }
+
+    /**
+     * Returns the number of primary key columns set in the row. Separators
+     * may keep only the leading columns.
+     * @return the number of columns
+     */
+    @Override
+    public int getParts() {
+        return ((DataRow) keys[0]).fieldsSet();
+    }
+
+    @Override
+    public int getMaxParts() {
+        return prototype.getPrimaryKeyColumnCount();
+    }
+
+    @Override
+    public int getSizeInBytes(int parts) {
+        return prototype.getPrimaryKeySize(parts);
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        if (bytes == null) {
+            //uses the translator to extract the byte array that represent the primary key of the data row
+            bytes = prototype.convertPrimaryKeyToByteArray((LinkedDataRow) keys[0], getParts());
+        }
+        return bytes;
+    }
+
+    @Override
+    public void fromByteArray(byte[] b, int parts) {
+        keys[0] = prototype.convertBinaryToPKRowData(b, parts);
+        bytes = b;
+    }
+
+    /**
+     * Compares the serialized form of this key with a serialized key, so
+     * neither key is converted into a data row.
+     */
+    @Override
+    public int compareTo(byte[] prefix, byte[] b, int offset, int length) {
+        return Prototype.compareKeyBytes(toByteArray(), prefix, b, offset, length, false);
+    }
+
+    @Override
+    public boolean partialMatch(byte[] prefix, byte[] b, int offset, int length) {
+        return Prototype.compareKeyBytes(toByteArray(), prefix, b, offset, length, true) == 0;
+    }
+
+    /**
+     * Keeps only the leading primary key columns of this key that are needed
+     * to tell it apart from the lower key.
+     * @param lower a key lower than this key
+     * @return this key or a key with fewer columns
+     */
+    @Override
+    public Key getSeparator(Key lower) {
+        DataRow upperRow = (DataRow) keys[0];
+        DataRow lowerRow = (DataRow) lower.get(0);
+        int parts = upperRow.fieldsSet();
+        int common = Math.min(parts, lowerRow.fieldsSet());
+
+        //the first column where the keys differ decides the order, so the columns after it are not needed
+        int i = 0;
+        while (i < common && upperRow.getField(i).compareTo(lowerRow.getField(i)) == 0) {
+            i++;
+        }
+        if (i + 1 >= parts) {
+            return this;
+        }
+
+        LinkedDataRow row = new LinkedDataRow(prototype, true);
+        for (int j = 0; j <= i; j++) {
+            row.setField(j, upperRow.getField(j));
+        }
+        BinaryKey separator = new BinaryKey(prototype);
+        separator.keys[0] = row;
+        return separator;
     }
-    
-    
 
     @Override
     public void writeExternal(DataOutput out) throws IOException {
-        //uses the translator to extract the byte array that represent the primary key of the data row
-        byte bytes[] = prototype.convertPrimaryKeyToByteArray((LinkedDataRow) keys[0]);
-        out.write(bytes);
+        out.write(toByteArray());
     }
 
     @Override
@@ -70,9 +178,8 @@ public class BinaryKey extends Key {
         //only the primary key contents are read. 
         byte b[] = new byte[prototype.getPrimaryKeySize()];
         in.readFully(b);
-        DataRow rowData = prototype.convertBinaryToPKRowData(b, null, false, true);
-        //DataRow rowData = prototype.convertBinaryToPKRowData(b);
-        keys[0] = rowData;
+        keys[0] = prototype.convertBinaryToPKRowData(b, getMaxParts());
+        bytes = b;
     }
 
 }
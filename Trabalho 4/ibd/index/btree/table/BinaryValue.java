@@ -13,13 +13,15 @@ import java.io.IOException;
 import ibd.table.prototype.Prototype;
 
 /**
- *
+ * The value is a row of a table, kept in its stored byte form.
+ * The bytes are the only copy of the row. A data row is decoded from them
+ * only when requested, and it is not kept, so reading a page and caching it
+ * cost no decoding.
  * @author Sergio
  */
 public class BinaryValue extends Value {
 
     Prototype prototype;
-    public LinkedDataRow rowData;
 
     public BinaryValue(Prototype prototype) {
         this.objects = new Object[1];
@@ -34,23 +36,47 @@ public class BinaryValue extends Value {
         return prototype.maxRecordSize();
     }
 
+    /*
+    * rows are stored with their real length, which depends on the contents of the dynamic columns.
+     */
+    @Override
+    public int getStoredSizeInBytes() {
+        return ((byte[]) objects[0]).length;
+    }
+
+    @Override
+    public int getMinSizeInBytes() {
+        return prototype.minRecordSize();
+    }
+
+    /**
+     * Decodes the row stored in this value. Each call creates a new data row
+     * backed by the stored bytes.
+     * @return the row
+     */
+    public LinkedDataRow getRowData() {
+        return prototype.convertBinaryToRowData((byte[]) objects[0]);
+    }
+
     @Override
     public void writeExternal(DataOutput out) throws IOException {
 
-        byte target[] = new byte[prototype.maxRecordSize()];
+        //no padding: the leaf's slot directory keeps the length of each row
         byte source[] = (byte[]) objects[0];//((GenericRecord)objects[i]).getData();
-        System.arraycopy(source, 0, target, 0, source.length);
-        out.write(target);
+        out.write(source);
     }
 
     @Override
     public void readExternal(DataInput in) throws IOException {
+        //without dynamic columns, every row takes the maximum record size
+        readExternal(in, getSizeInBytes());
+    }
+
+    @Override
+    public void readExternal(DataInput in, int length) throws IOException {
 
-        byte b[] = new byte[prototype.maxRecordSize()];
+        byte b[] = new byte[length];
         in.readFully(b);
         objects[0] = b;
-        
-        //uncomment to do the conversion earlier
-        rowData = prototype.convertBinaryToRowData(b); 
     }
 }
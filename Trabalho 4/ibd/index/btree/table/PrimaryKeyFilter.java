@@ -0,0 +1,265 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.btree.table;
+
+import ibd.index.btree.FilterPage;
+import ibd.persistent.PageFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of the primary keys of a table. It is kept in memory, so a
+ * key that is not in the table is usually rejected without reading any page,
+ * and it is stored in a chain of pages of the table's own file, whose first
+ * page id is kept in the file header.
+ *
+ * Keys are added as rows are inserted. Removed keys are not taken out, so
+ * they may still be reported as present. Once more keys were added than the
+ * filter was sized for, it is rebuilt from the keys stored in the tree with
+ * twice the capacity, which also drops the removed keys.
+ *
+ * @author Sergio
+ */
+public class PrimaryKeyFilter {
+
+    /**
+     * The default number of bits per key, which gives about 1% of false
+     * positives.
+     */
+    public static final int DEFAULT_BITS_PER_KEY = 10;
+
+    /**
+     * The number of keys a new filter is sized for.
+     */
+    public static final int MIN_CAPACITY = 1024;
+
+    //the file where the pages are stored, bypassing any cache
+    PageFile file;
+
+    //the header of the table's file, that keeps the state of the filter
+    TreeIndexHeaderTable header;
+
+    //the number of words stored in each page
+    int wordsPerPage;
+
+    //the bits of the filter. They are replaced at once when the filter is rebuilt, so lookups never see a partial filter
+    volatile Bits bits;
+
+    //the ids of the pages that store the filter, in order
+    List<Integer> pageIDs = new ArrayList<>();
+
+    //the pages whose bits changed since they were last written
+    boolean dirtyPages[] = new boolean[0];
+
+    /**
+     * Creates a filter kept in a file.
+     *
+     * @param file the file, which must not be a cache
+     * @param header the header of the file
+     */
+    public PrimaryKeyFilter(PageFile file, TreeIndexHeaderTable header) {
+        this.file = file;
+        this.header = header;
+        int pageSize = file.getPageSize();
+        //the page type takes an integer before the page content
+        wordsPerPage = (pageSize - Integer.BYTES - new FilterPage().getHeaderSizeInBytes()) / Long.BYTES;
+    }
+
+    /**
+     * The bits of a filter, along with the number of hash functions used to
+     * set them.
+     */
+    private static class Bits {
+
+        final AtomicLongArray words;
+        final int numBits;
+        final int hashes;
+
+        Bits(AtomicLongArray words, int bitsPerKey) {
+            this.words = words;
+            this.numBits = words.length() * Long.SIZE;
+            this.hashes = Math.max(1, (int) Math.round(bitsPerKey * Math.log(2)));
+        }
+
+        /**
+         * Sets the bits of a key.
+         *
+         * @return the positions of the words that changed, or an empty array
+         */
+        int[] set(long h) {
+            int changed[] = new int[hashes];
+            int count = 0;
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                int bit = position(h1 + i * h2);
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                if ((words.get(word) & mask) == 0) {
+                    words.getAndAccumulate(word, mask, (a, b) -> a | b);
+                    changed[count++] = word;
+                }
+            }
+            return Arrays.copyOf(changed, count);
+        }
+
+        boolean test(long h) {
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                int bit = position(h1 + i * h2);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int position(int combined) {
+            if (combined < 0) {
+                combined = ~combined;
+            }
+            return combined % numBits;
+        }
+    }
+
+    /**
+     * Builds the filter from the keys stored in the table, sized for a given
+     * number of keys. Lookups keep using the former filter until the new one
+     * is complete. The former pages of the filter, if any, are reused.
+     *
+     * @param keys the serialized primary keys
+     * @param capacity the number of keys
+     */
+    public synchronized void rebuild(Iterator<byte[]> keys, int capacity) {
+        int bitsPerKey = header.getFilterBitsPerKey();
+        int words = (int) Math.min(Integer.MAX_VALUE / Long.SIZE, ((long) capacity * bitsPerKey + Long.SIZE - 1) / Long.SIZE);
+        Bits next = new Bits(new AtomicLongArray(Math.max(1, words)), bitsPerKey);
+        int count = 0;
+        while (keys.hasNext()) {
+            next.set(hash(keys.next()));
+            count++;
+        }
+        bits = next;
+        dirtyPages = new boolean[(next.words.length() + wordsPerPage - 1) / wordsPerPage];
+        Arrays.fill(dirtyPages, true);
+        header.setFilterCapacity(capacity);
+        header.setFilterKeys(count);
+    }
+
+    /**
+     * Reads the filter from its pages.
+     */
+    public synchronized void load() {
+        List<long[]> slices = new ArrayList<>();
+        int words = 0;
+        int pageID = header.getFilterPageID();
+        while (pageID != -1) {
+            FilterPage page = (FilterPage) file.readPage(pageID);
+            pageIDs.add(pageID);
+            slices.add(page.words);
+            words += page.words.length;
+            pageID = page.nextPageID;
+        }
+        AtomicLongArray loaded = new AtomicLongArray(words);
+        int pos = 0;
+        for (long slice[] : slices) {
+            for (long word : slice) {
+                loaded.set(pos++, word);
+            }
+        }
+        bits = new Bits(loaded, header.getFilterBitsPerKey());
+        dirtyPages = new boolean[slices.size()];
+    }
+
+    /**
+     * Computes the 64 bits hash code of a key, whose halves are combined to
+     * produce the positions of the key in the filter.
+     */
+    private static long hash(byte key[]) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key the serialized primary key
+     * @return true if more keys were added than the filter was sized for, so
+     * it should be rebuilt
+     */
+    public synchronized boolean add(byte key[]) {
+        for (int word : bits.set(hash(key))) {
+            dirtyPages[word / wordsPerPage] = true;
+        }
+        header.setFilterKeys(header.getFilterKeys() + 1);
+        return header.getFilterKeys() > header.getFilterCapacity();
+    }
+
+    /**
+     * Checks if a key may be in the table. It does not read any page.
+     *
+     * @param key the serialized primary key
+     * @return false if the key is surely not in the table
+     */
+    public boolean mightContain(byte key[]) {
+        return bits.test(hash(key));
+    }
+
+    /**
+     * Writes the pages whose bits changed. New pages are allocated as the
+     * filter grows, and the first page id is kept in the header, which is
+     * written when the file is flushed.
+     */
+    public synchronized void save() {
+        AtomicLongArray b = bits.words;
+        int pages = dirtyPages.length;
+        while (pageIDs.size() < pages) {
+            FilterPage page = new FilterPage();
+            pageIDs.add(file.setPageID(page));
+            //the chain is rewritten from the former last page
+            if (pageIDs.size() > 1) {
+                dirtyPages[pageIDs.size() - 2] = true;
+            }
+        }
+        for (int i = 0; i < pages; i++) {
+            if (!dirtyPages[i]) {
+                continue;
+            }
+            FilterPage page = new FilterPage();
+            page.setPageID(pageIDs.get(i));
+            page.nextPageID = (i + 1 < pages) ? pageIDs.get(i + 1) : -1;
+            int from = i * wordsPerPage;
+            int to = Math.min(b.length(), from + wordsPerPage);
+            page.words = new long[to - from];
+            for (int w = from; w < to; w++) {
+                page.words[w - from] = b.get(w);
+            }
+            file.writePage(page);
+            dirtyPages[i] = false;
+        }
+        header.setFilterPageID(pages == 0 ? -1 : pageIDs.get(0));
+    }
+
+    /**
+     * @return the number of pages that store the filter
+     */
+    public int getPages() {
+        return dirtyPages.length;
+    }
+}
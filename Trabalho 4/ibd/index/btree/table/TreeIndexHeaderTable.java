@@ -41,11 +41,39 @@ import ibd.table.prototype.column.StringColumn;
  */
 public class TreeIndexHeaderTable extends TreeIndexHeader {
 
+    /**
+     * The size of the filter attributes in Bytes: filterPageID,
+     * filterBitsPerKey, filterCapacity and filterKeys
+     */
+    private static final int SIZE = 4 * Integer.BYTES;
+
     /**
      * The schema of the table
      */
     Prototype prototype;
 
+    /**
+     * The first page of the filter of the primary keys, or -1 if it was not
+     * written yet
+     */
+    private int filterPageID = -1;
+
+    /**
+     * The number of bits of the filter for each key, or 0 if the table has
+     * no filter
+     */
+    private int filterBitsPerKey = 0;
+
+    /**
+     * The number of keys the filter was sized for
+     */
+    private int filterCapacity = 0;
+
+    /**
+     * The number of keys added to the filter since it was built
+     */
+    private int filterKeys = 0;
+
     /**
      * Creates a new header with the specified parameters.
      *
@@ -66,8 +94,21 @@ public class TreeIndexHeaderTable extends TreeIndexHeader {
     @Override
     public void readHeader(ByteBuffer buffer) {
         super.readHeader(buffer);
+        filterPageID = buffer.getInt();
+        filterBitsPerKey = buffer.getInt();
+        filterCapacity = buffer.getInt();
+        filterKeys = buffer.getInt();
+        prototype = readPrototype(buffer);
+    }
 
-        prototype = new Prototype();
+    /**
+     * Reads a table schema written by writePrototype.
+     *
+     * @param buffer the content of the header
+     * @return the schema, whose columns are not validated yet
+     */
+    public static Prototype readPrototype(ByteBuffer buffer) {
+        Prototype prototype = new Prototype();
 
         int numberOfColumns = buffer.getShort();
         for (int i = 0; i < numberOfColumns; i++) {
@@ -98,17 +139,17 @@ public class TreeIndexHeaderTable extends TreeIndexHeader {
             }
             prototype.addColumn(col);
         }
-
+        return prototype;
     }
 
-    private String readString(ByteBuffer buffer) {
+    private static String readString(ByteBuffer buffer) {
         int stringLength = buffer.getInt();
         byte[] bytes = new byte[stringLength];
         buffer.get(bytes);
         return new String(bytes);
     }
 
-    private void writeString(ByteBuffer buffer, String str) {
+    private static void writeString(ByteBuffer buffer, String str) {
 
         buffer.putInt(str.length());
         buffer.put(str.getBytes());
@@ -121,7 +162,22 @@ public class TreeIndexHeaderTable extends TreeIndexHeader {
     @Override
     public void writeHeader(ByteBuffer buffer) {
         super.writeHeader(buffer);
+        buffer.putInt(filterPageID);
+        buffer.putInt(filterBitsPerKey);
+        buffer.putInt(filterCapacity);
+        buffer.putInt(filterKeys);
+        writePrototype(buffer, prototype);
+
+        //buffer.flip();
+    }
 
+    /**
+     * Writes a table schema: the type, name, size and flags of each column.
+     *
+     * @param buffer the content of the header
+     * @param prototype the schema
+     */
+    public static void writePrototype(ByteBuffer buffer, Prototype prototype) {
         buffer.putShort(prototype.size());
         for (int i = 0; i < prototype.size(); i++) {
             Column col = prototype.getColumn(i);
@@ -130,8 +186,6 @@ public class TreeIndexHeaderTable extends TreeIndexHeader {
             buffer.putInt(col.getSize());
             buffer.putShort(col.getFlags());
         }
-
-        //buffer.flip();
     }
 
     /**
@@ -146,7 +200,39 @@ public class TreeIndexHeaderTable extends TreeIndexHeader {
         //each key or value columns takes a single character to represent its data type. 
         //return super.size() + SIZE + prototype.getSizeInBytes();
         
-        return super.size() + 2000;
+        return super.size() + SIZE + 2000;
+    }
+
+    public int getFilterPageID() {
+        return filterPageID;
+    }
+
+    public void setFilterPageID(int filterPageID) {
+        this.filterPageID = filterPageID;
+    }
+
+    public int getFilterBitsPerKey() {
+        return filterBitsPerKey;
+    }
+
+    public void setFilterBitsPerKey(int filterBitsPerKey) {
+        this.filterBitsPerKey = filterBitsPerKey;
+    }
+
+    public int getFilterCapacity() {
+        return filterCapacity;
+    }
+
+    public void setFilterCapacity(int filterCapacity) {
+        this.filterCapacity = filterCapacity;
+    }
+
+    public int getFilterKeys() {
+        return filterKeys;
+    }
+
+    public void setFilterKeys(int filterKeys) {
+        this.filterKeys = filterKeys;
     }
 
 }
@@ -0,0 +1,369 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.btree.table;
+
+import ibd.index.btree.DictionaryPair;
+import ibd.index.btree.LeafFilter;
+import ibd.index.btree.LeafNode;
+import ibd.table.ComparisonTypes;
+import ibd.table.lookup.CompositeRowLookupFilter;
+import ibd.table.lookup.RowLookupFilter;
+import ibd.table.lookup.SingleRowColumnLookupFilter;
+import ibd.table.prototype.LinkedDataRow;
+import ibd.table.prototype.query.fields.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps, for each leaf of a table's tree, the smallest and the largest value
+ * of each column, the number of rows without a value in each column, and the
+ * id of the next leaf. A scan whose filter compares columns against values
+ * uses the summaries to skip the leaves that cannot hold a matching row,
+ * without reading them.
+ *
+ * The summaries are kept in memory only. When a row is inserted, updated or
+ * deleted, the summary of its leaf is adjusted with that row, so the values
+ * of the leaf are not read again. The bounds may become wider than the
+ * values left in the leaf, which only makes scans read more leaves. Leaves
+ * split, merged or balanced lose their summaries, so writes never decode a
+ * whole leaf. Leaves without a summary, as after the table is opened or bulk
+ * loaded, are summarized by the first scan that reads them, and are never
+ * skipped before that.
+ *
+ * Scans run along with the writers. A summary is never changed once it is
+ * kept, so scans read it without locking, and writers keep an adjusted copy
+ * instead. A scan keeps the summary it made only if the leaf was not written
+ * since the scan found it, and no change is running, so the summary never
+ * misses a row written meanwhile. Otherwise the leaf is left for a later
+ * scan.
+ *
+ * @author Sergio
+ */
+public class ZoneMap {
+
+    //the kinds of change being made to the tree, which tell how the written leaves are summarized
+    private static final int NO_CHANGE = 0;
+    private static final int INSERT = 1;
+    private static final int UPDATE = 2;
+    private static final int DELETE = 3;
+
+    //the summaries, by leaf id
+    final Map<Integer, LeafZone> zones = new ConcurrentHashMap<>();
+
+    //the number of times each leaf was written or removed, and of times all summaries were dropped. Guarded by this map's lock
+    private final Map<Integer, Integer> writes = new HashMap<>();
+    private int clears = 0;
+
+    //the change being made, and the row inserted or updated by it, which is decoded only if a summary needs it. Guarded by this map's lock
+    int change = NO_CHANGE;
+    BinaryValue changedValue = null;
+
+    /**
+     * The summary of the rows of a leaf.
+     */
+    private static class LeafZone {
+
+        //the leaf that follows in the chain, or -1
+        final int nextLeafID;
+
+        //the smallest and largest values of each column, or null if the column has no value in the leaf
+        final Comparable min[];
+        final Comparable max[];
+
+        //the number of rows of the leaf, and of rows without a value in each column. The second may be smaller than the real one, never larger
+        int rows;
+        final int nulls[];
+
+        LeafZone(int nextLeafID, int rows, int columns) {
+            this.nextLeafID = nextLeafID;
+            this.rows = rows;
+            min = new Comparable[columns];
+            max = new Comparable[columns];
+            nulls = new int[columns];
+        }
+
+        //a copy to be adjusted, while scans still read this one
+        LeafZone(LeafZone zone) {
+            nextLeafID = zone.nextLeafID;
+            rows = zone.rows;
+            min = zone.min.clone();
+            max = zone.max.clone();
+            nulls = zone.nulls.clone();
+        }
+    }
+
+    //summarizes the rows of a leaf, or returns null if the leaf is being changed by a writer
+    private static LeafZone summarize(LeafNode leaf) {
+        LeafZone zone = null;
+        int pairs = leaf.getNumPairs();
+        for (int i = 0; i < pairs; i++) {
+            DictionaryPair pair = leaf.getPair(i);
+            if (pair == null) {
+                return null;
+            }
+            LinkedDataRow row = ((BinaryValue) pair.getValue()).getRowData();
+            int columns = row.getFieldsSize();
+            if (zone == null) {
+                zone = new LeafZone(leaf.getRightSiblingID(), pairs, columns);
+            }
+            widen(zone, row, true);
+        }
+        if (zone == null) {
+            //an empty leaf holds no row of any scan
+            zone = new LeafZone(leaf.getRightSiblingID(), 0, 0);
+        }
+        return zone;
+    }
+
+    //extends the bounds of a summary to the values of a row, and counts the row's missing values if it is a new row
+    private static void widen(LeafZone zone, LinkedDataRow row, boolean newRow) {
+        for (int c = 0; c < zone.min.length; c++) {
+            Field field = row.getField(c);
+            Comparable value = (field == null) ? null : (Comparable) field.getValue();
+            if (value == null) {
+                if (newRow) {
+                    zone.nulls[c]++;
+                }
+                continue;
+            }
+            if (!newRow && zone.nulls[c] > 0) {
+                //the replaced row may have been the one without value
+                zone.nulls[c]--;
+            }
+            if (zone.min[c] == null || value.compareTo(zone.min[c]) < 0) {
+                zone.min[c] = value;
+            }
+            if (zone.max[c] == null || value.compareTo(zone.max[c]) > 0) {
+                zone.max[c] = value;
+            }
+        }
+    }
+
+    /**
+     * Tells that a row is being inserted, so the leaf that receives it has its
+     * summary widened instead of rebuilt.
+     *
+     * @param value the stored row
+     */
+    public synchronized void startInsert(BinaryValue value) {
+        change = INSERT;
+        changedValue = value;
+    }
+
+    /**
+     * Tells that a row is being replaced by a new version.
+     *
+     * @param value the new version of the stored row
+     */
+    public synchronized void startUpdate(BinaryValue value) {
+        change = UPDATE;
+        changedValue = value;
+    }
+
+    /**
+     * Tells that a row is being deleted.
+     */
+    public synchronized void startDelete() {
+        change = DELETE;
+        changedValue = null;
+    }
+
+    /**
+     * Tells that the change started last is over. The leaves written from
+     * now on lose their summaries.
+     */
+    public synchronized void endChange() {
+        change = NO_CHANGE;
+        changedValue = null;
+    }
+
+    /**
+     * Keeps the summary of a leaf written by the tree. If the leaf gained,
+     * replaced or lost just the row of the running change, its summary is
+     * adjusted. Otherwise, it is dropped until a scan reads the leaf.
+     *
+     * @param leaf the leaf
+     */
+    public synchronized void leafWritten(LeafNode leaf) {
+        int leafID = leaf.getPageID();
+        writes.merge(leafID, 1, Integer::sum);
+        LeafZone zone = zones.get(leafID);
+        int pairs = leaf.getNumPairs();
+        if (zone != null && zone.rows > 0 && zone.nextLeafID == leaf.getRightSiblingID()) {
+            if (change == INSERT && pairs == zone.rows + 1) {
+                zone = new LeafZone(zone);
+                widen(zone, changedValue.getRowData(), true);
+                zone.rows++;
+                zones.put(leafID, zone);
+                return;
+            }
+            if (change == UPDATE && pairs == zone.rows) {
+                zone = new LeafZone(zone);
+                widen(zone, changedValue.getRowData(), false);
+                zones.put(leafID, zone);
+                return;
+            }
+            if (change == DELETE && pairs == zone.rows - 1) {
+                //the bounds still hold the remaining values, but the deleted row may have had values missing
+                zone = new LeafZone(zone);
+                zone.rows--;
+                for (int c = 0; c < zone.nulls.length; c++) {
+                    if (zone.nulls[c] > 0) {
+                        zone.nulls[c]--;
+                    }
+                }
+                zones.put(leafID, zone);
+                return;
+            }
+        }
+        zones.remove(leafID);
+    }
+
+    /**
+     * Drops the summary of a leaf that was removed from the tree.
+     *
+     * @param leafID the id of the leaf
+     */
+    public synchronized void remove(int leafID) {
+        //the id may be given to a new leaf, which a running scan must not summarize with the old rows
+        writes.merge(leafID, 1, Integer::sum);
+        zones.remove(leafID);
+    }
+
+    /**
+     * Drops all summaries.
+     */
+    public synchronized void clear() {
+        clears++;
+        writes.clear();
+        zones.clear();
+    }
+
+    /**
+     * @return the number of summarized leaves
+     */
+    public int size() {
+        return zones.size();
+    }
+
+    /**
+     * Creates the filter of the leaves that may hold rows that satisfy a
+     * filter of rows. The leaves read by the scan are summarized if they were
+     * not yet.
+     *
+     * @param filter the filter of rows
+     * @return the filter of leaves
+     */
+    public LeafFilter createLeafFilter(RowLookupFilter filter) {
+        return new LeafFilter() {
+
+            //the unsummarized leaf about to be read, and how many times it and all summaries had been written and dropped before
+            int readLeafID = -1;
+            int readWrites;
+            int readClears;
+
+            @Override
+            public int nextLeaf(int leafID) {
+                while (leafID != -1) {
+                    LeafZone zone = zones.get(leafID);
+                    if (zone == null) {
+                        synchronized (ZoneMap.this) {
+                            readLeafID = leafID;
+                            readWrites = writes.getOrDefault(leafID, 0);
+                            readClears = clears;
+                        }
+                        return leafID;
+                    }
+                    if (mightMatch(zone, filter)) {
+                        return leafID;
+                    }
+                    leafID = zone.nextLeafID;
+                }
+                return -1;
+            }
+
+            @Override
+            public void leafRead(LeafNode leaf) {
+                int leafID = leaf.getPageID();
+                if (leafID != readLeafID || zones.containsKey(leafID)) {
+                    return;
+                }
+                LeafZone zone = summarize(leaf);
+                if (zone == null) {
+                    return;
+                }
+                synchronized (ZoneMap.this) {
+                    //a leaf written since it was found, or being written now, may hold rows the summary misses
+                    if (change == NO_CHANGE && clears == readClears
+                            && writes.getOrDefault(leafID, 0) == readWrites) {
+                        zones.putIfAbsent(leafID, zone);
+                    }
+                }
+                readLeafID = -1;
+            }
+        };
+    }
+
+    /**
+     * Checks if a leaf may hold a row that satisfies a filter. Only column
+     * comparisons and their conjunctions and disjunctions are checked. Any
+     * other filter may match any leaf.
+     */
+    private static boolean mightMatch(LeafZone zone, RowLookupFilter filter) {
+        if (filter instanceof CompositeRowLookupFilter composite) {
+            boolean and = composite.getBooleanConnector() == CompositeRowLookupFilter.AND;
+            for (RowLookupFilter f : composite.getFilters()) {
+                if (mightMatch(zone, f) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        } else if (filter instanceof SingleRowColumnLookupFilter single) {
+            return mightMatch(zone, single.getColIndex(), single.getComparisonType(), single.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a leaf may hold a row whose column satisfies a comparison. A
+     * column without value satisfies no comparison.
+     */
+    private static boolean mightMatch(LeafZone zone, int colIndex, int comparisonType, Comparable value) {
+        if (zone.rows == 0) {
+            return false;
+        }
+        if (value == null || colIndex < 0 || colIndex >= zone.min.length) {
+            return true;
+        }
+        if (zone.nulls[colIndex] == zone.rows) {
+            return false;
+        }
+        Comparable min = zone.min[colIndex];
+        Comparable max = zone.max[colIndex];
+        try {
+            switch (comparisonType) {
+                case ComparisonTypes.EQUAL:
+                    return min.compareTo(value) <= 0 && max.compareTo(value) >= 0;
+                case ComparisonTypes.DIFF:
+                    return min.compareTo(value) != 0 || max.compareTo(value) != 0;
+                case ComparisonTypes.GREATER_THAN:
+                    return max.compareTo(value) > 0;
+                case ComparisonTypes.GREATER_EQUAL_THAN:
+                    return max.compareTo(value) >= 0;
+                case ComparisonTypes.LOWER_THAN:
+                    return min.compareTo(value) < 0;
+                case ComparisonTypes.LOWER_EQUAL_THAN:
+                    return min.compareTo(value) <= 0;
+                default:
+                    return true;
+            }
+        } catch (ClassCastException e) {
+            //values of different types are left for the rows to compare
+            return true;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.hash;
+
+import ibd.persistent.AbstractExternalizablePage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A page of a linear hash file. It holds the rows of a bucket, each stored
+ * along with the hash code of its primary key, so only the rows with the
+ * searched hash code need to be decoded. A bucket that does not fit in its
+ * page continues in a chain of overflow pages.
+ *
+ * @author Sergio
+ */
+public class HashBucket extends AbstractExternalizablePage {
+
+    /**
+     * The bytes taken by each entry besides its content: the hash code and the
+     * length of the content.
+     */
+    public static final int ENTRY_OVERHEAD = Integer.BYTES + Short.BYTES;
+
+    //the overflow page that continues this bucket, or -1 if there is none
+    int overflowID = -1;
+
+    //the number of entries
+    int count = 0;
+
+    //the hash codes and contents of the entries
+    int hashes[] = new int[16];
+    byte entries[][] = new byte[16][];
+
+    /**
+     * The fixed size of the page header: the header of every page, the
+     * overflow page id and the number of entries.
+     */
+    @Override
+    public int getHeaderSizeInBytes() {
+        return super.getHeaderSizeInBytes() + 2 * Integer.BYTES;
+    }
+
+    /**
+     * Adds an entry at the end of the page. The caller checks that it fits.
+     *
+     * @param hash the hash code of the row's primary key
+     * @param entry the content of the row
+     */
+    public void add(int hash, byte[] entry) {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            entries = Arrays.copyOf(entries, count * 2);
+        }
+        hashes[count] = hash;
+        entries[count] = entry;
+        count++;
+        usedSpace += ENTRY_OVERHEAD + entry.length;
+    }
+
+    /**
+     * Replaces the content of an entry. The caller checks that it fits.
+     *
+     * @param index the position of the entry
+     * @param entry the new content
+     * @return the previous content
+     */
+    public byte[] set(int index, byte[] entry) {
+        byte[] old = entries[index];
+        entries[index] = entry;
+        usedSpace += entry.length - old.length;
+        return old;
+    }
+
+    /**
+     * Removes an entry. The last entry takes its place.
+     *
+     * @param index the position of the entry
+     * @return the removed content
+     */
+    public byte[] remove(int index) {
+        byte[] old = entries[index];
+        count--;
+        hashes[index] = hashes[count];
+        entries[index] = entries[count];
+        entries[count] = null;
+        usedSpace -= ENTRY_OVERHEAD + old.length;
+        return old;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0, count, null);
+        count = 0;
+        usedSpace = 0;
+    }
+
+    @Override
+    public void writeExternal(DataOutput out) throws IOException {
+        super.writeExternal(out);
+        out.writeInt(overflowID);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(hashes[i]);
+            out.writeShort(entries[i].length);
+            out.write(entries[i]);
+        }
+    }
+
+    @Override
+    public void readExternal(DataInput in) throws IOException {
+        super.readExternal(in);
+        overflowID = in.readInt();
+        count = in.readInt();
+        hashes = new int[Math.max(16, count)];
+        entries = new byte[hashes.length][];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = in.readInt();
+            entries[i] = new byte[in.readUnsignedShort()];
+            in.readFully(entries[i]);
+        }
+    }
+}
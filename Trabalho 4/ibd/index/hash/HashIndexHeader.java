@@ -0,0 +1,144 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.hash;
+
+import ibd.index.btree.table.TreeIndexHeaderTable;
+import ibd.persistent.PageHeader;
+import ibd.table.prototype.Prototype;
+import java.nio.ByteBuffer;
+
+/**
+ * Encapsulates the header information of a linear hash file: the state of the
+ * splits, the number of stored rows and the schema of the table.
+ *
+ * @author Sergio
+ */
+public class HashIndexHeader extends PageHeader {
+
+    /**
+     * The size of the fixed attributes in Bytes: level, next, rowCount and
+     * usedBytes
+     */
+    private static final int SIZE = 3 * Integer.BYTES + Long.BYTES;
+
+    /**
+     * The number of times the buckets were doubled
+     */
+    private int level = 0;
+
+    /**
+     * The next bucket to be split
+     */
+    private int next = 0;
+
+    /**
+     * The number of rows stored
+     */
+    private int rowCount = 0;
+
+    /**
+     * The number of bytes taken by the entries of all buckets
+     */
+    private long usedBytes = 0;
+
+    /**
+     * The schema of the table
+     */
+    private Prototype prototype;
+
+    /**
+     * Creates a new header with the specified parameters.
+     *
+     * @param pageSize the size of a page in bytes
+     * @param prototype the schema of the table
+     */
+    public HashIndexHeader(int pageSize, Prototype prototype) {
+        super(pageSize);
+        this.prototype = prototype;
+    }
+
+    /**
+     * Reads the header attributes from the specified file.
+     *
+     * @param buffer the content of the header
+     */
+    @Override
+    public void readHeader(ByteBuffer buffer) {
+        super.readHeader(buffer);
+        level = buffer.getInt();
+        next = buffer.getInt();
+        rowCount = buffer.getInt();
+        usedBytes = buffer.getLong();
+        prototype = TreeIndexHeaderTable.readPrototype(buffer);
+    }
+
+    /**
+     * Writes this header attributes to the specified file.
+     *
+     * @param buffer the buffer where the header attributes are written to
+     */
+    @Override
+    public void writeHeader(ByteBuffer buffer) {
+        super.writeHeader(buffer);
+        buffer.putInt(level);
+        buffer.putInt(next);
+        buffer.putInt(rowCount);
+        buffer.putLong(usedBytes);
+        TreeIndexHeaderTable.writePrototype(buffer, prototype);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public int getNext() {
+        return next;
+    }
+
+    public void setNext(int next) {
+        this.next = next;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    public Prototype getPrototype() {
+        return prototype;
+    }
+
+    /**
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return (1 << level) + next;
+    }
+
+    /**
+     * Returns the size of the header. The schema takes a fixed amount of space,
+     * as in the header of the tables' b-trees.
+     */
+    @Override
+    public int size() {
+        return super.size() + SIZE + 2000;
+    }
+}
@@ -0,0 +1,604 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.index.hash;
+
+import ibd.persistent.AbstractExternalizablePage;
+import ibd.persistent.ByteBufferPageSerialization;
+import ibd.persistent.Page;
+import ibd.persistent.PageBufferPool;
+import ibd.persistent.PageFile;
+import ibd.persistent.PageHeader;
+import ibd.table.prototype.LinkedDataRow;
+import ibd.table.prototype.Prototype;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements a linear hash file that stores the rows of a table by
+ * their primary keys. The bucket of a row is given by the hash code of its
+ * primary key, and the page id of a bucket in the buckets file is the bucket
+ * number itself, so a search reads a single page, unless the bucket
+ * overflowed. Overflow pages are kept in a second file.
+ *
+ * The buckets are split one at a time, in order, whenever the entries take
+ * more than the load factor of the space of the buckets. After all buckets of
+ * a level are split, their number has doubled and the next level starts.
+ * Buckets are never merged.
+ *
+ * @author Sergio
+ */
+public class LinearHashFile implements ByteBufferPageSerialization {
+
+    /**
+     * The default fraction of the buckets' space filled before a bucket is
+     * split.
+     */
+    public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Page codes.
+     */
+    private static final int EMPTY_PAGE = 0;
+    private static final int BUCKET_PAGE = 1;
+
+    //the file whose page ids are the bucket numbers
+    protected PageFile<HashBucket> buckets;
+
+    //the file storing the overflow pages of the buckets
+    protected PageFile<HashBucket> overflow;
+
+    protected HashIndexHeader header;
+
+    public Prototype prototype;
+
+    //the number of primary key columns, which come first in the rows
+    int pkColumns;
+
+    //the number of bytes of a page available for entries
+    int capacity;
+
+    double loadFactor = DEFAULT_LOAD_FACTOR;
+
+    /**
+     * Constructor
+     *
+     * @param buckets the file storing the buckets.
+     * @param overflow the file storing the overflow pages.
+     * @param prototype the schema of the table, or null if it is read from an
+     * existing file
+     */
+    public LinearHashFile(PageFile buckets, PageFile overflow, Prototype prototype) {
+        this.buckets = buckets;
+        this.overflow = overflow;
+        this.prototype = prototype;
+        buckets.setPageSerialization(this);
+        overflow.setPageSerialization(this);
+    }
+
+    /**
+     * Defines the fraction of the buckets' space filled before a bucket is
+     * split.
+     *
+     * @param loadFactor the load factor, between 0 (exclusive) and 1
+     */
+    public void setLoadFactor(double loadFactor) {
+        if (loadFactor <= 0 || loadFactor > 1) {
+            throw new IllegalArgumentException("The load factor must be in (0, 1]: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+    }
+
+    /**
+     * Initializes the files. A new file starts with a single empty bucket.
+     */
+    public void open() {
+        header = new HashIndexHeader(buckets.getPageSize(), prototype);
+        boolean existed = buckets.initialize(header);
+        prototype = header.getPrototype();
+        prototype.validateColumns();
+        pkColumns = prototype.getPrimaryKeyColumnCount();
+
+        int pageSize = buckets.getHeader().getPageSize();
+        overflow.initialize(new PageHeader(pageSize));
+
+        capacity = pageSize - Integer.BYTES - new HashBucket().getHeaderSizeInBytes();
+        if (HashBucket.ENTRY_OVERHEAD + prototype.maxRecordSize() > capacity) {
+            throw new IllegalStateException("A bucket page of " + pageSize + " bytes must hold at least one row of " + prototype.maxRecordSize() + " bytes");
+        }
+
+        if (!existed) {
+            HashBucket first = new HashBucket();
+            first.setPageID(0);
+            buckets.writePage(first);
+        }
+    }
+
+    /**
+     * Computes the hash code of the primary key of a row.
+     *
+     * @param row a row holding at least the primary key columns
+     * @return the hash code, with its bits spread so the low bits can be used
+     * to address the buckets
+     */
+    private int hash(LinkedDataRow row) {
+        int h = 1;
+        for (int i = 0; i < pkColumns; i++) {
+            h = 31 * h + row.getValue(i).hashCode();
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Returns the bucket of a hash code. Buckets before the split pointer were
+     * already split, so they use one more bit of the hash code.
+     */
+    private int bucketOf(int hash) {
+        int n = 1 << header.getLevel();
+        int bucket = hash & (n - 1);
+        if (bucket < header.getNext()) {
+            bucket = hash & (2 * n - 1);
+        }
+        return bucket;
+    }
+
+    /**
+     * Decodes a stored row if its primary key is the given one.
+     *
+     * @return the row, or null if the primary keys differ
+     */
+    private LinkedDataRow decodeIfMatches(byte[] entry, LinkedDataRow pkRow) {
+        LinkedDataRow row = prototype.convertBinaryToRowData(entry);
+        for (int i = 0; i < pkColumns; i++) {
+            if (row.getValue(i).compareTo(pkRow.getValue(i)) != 0) {
+                return null;
+            }
+        }
+        return row;
+    }
+
+    private boolean fits(HashBucket page, int length) {
+        return page.getUsedSpace() + HashBucket.ENTRY_OVERHEAD + length <= capacity;
+    }
+
+    private void writePage(HashBucket page, boolean primary) {
+        if (primary) {
+            buckets.writePage(page);
+        } else {
+            overflow.writePage(page);
+        }
+    }
+
+    /**
+     * Returns the row with a given primary key.
+     *
+     * @param pkRow the row holding the primary key
+     * @return the row, or null if there is none
+     */
+    public synchronized LinkedDataRow search(LinkedDataRow pkRow) {
+        int hash = hash(pkRow);
+        HashBucket page = buckets.readPage(bucketOf(hash));
+        while (page != null) {
+            for (int i = 0; i < page.count; i++) {
+                if (page.hashes[i] == hash) {
+                    LinkedDataRow row = decodeIfMatches(page.entries[i], pkRow);
+                    if (row != null) {
+                        return row;
+                    }
+                }
+            }
+            page = (page.overflowID == -1) ? null : overflow.readPage(page.overflowID);
+        }
+        return null;
+    }
+
+    /**
+     * Adds a row, unless there is already a row with the same primary key.
+     *
+     * @param row the row
+     * @param entry the content of the row, as it is stored
+     * @return true if the row was added
+     */
+    public synchronized boolean insert(LinkedDataRow row, byte[] entry) {
+        if (HashBucket.ENTRY_OVERHEAD + entry.length > capacity) {
+            throw new IllegalArgumentException("A row of " + entry.length + " bytes does not fit in a bucket page");
+        }
+        int hash = hash(row);
+
+        //looks for a repeated primary key and for the first page with room for the entry
+        HashBucket page = buckets.readPage(bucketOf(hash));
+        boolean primary = true;
+        HashBucket target = null;
+        boolean targetPrimary = false;
+        while (true) {
+            for (int i = 0; i < page.count; i++) {
+                if (page.hashes[i] == hash && decodeIfMatches(page.entries[i], row) != null) {
+                    return false;
+                }
+            }
+            if (target == null && fits(page, entry.length)) {
+                target = page;
+                targetPrimary = primary;
+            }
+            if (page.overflowID == -1) {
+                break;
+            }
+            page = overflow.readPage(page.overflowID);
+            primary = false;
+        }
+
+        if (target == null) {
+            //the bucket continues in a new overflow page
+            target = new HashBucket();
+            overflow.setPageID(target);
+            page.overflowID = target.getPageID();
+            writePage(page, primary);
+            targetPrimary = false;
+        }
+        target.add(hash, entry);
+        writePage(target, targetPrimary);
+
+        header.setRowCount(header.getRowCount() + 1);
+        header.setUsedBytes(header.getUsedBytes() + HashBucket.ENTRY_OVERHEAD + entry.length);
+        splitIfNeeded();
+        return true;
+    }
+
+    /**
+     * Replaces the content of a row.
+     *
+     * @param row the new content of the row
+     * @param entry the new content of the row, as it is stored
+     * @return the previous content, or null if there is no row with the same
+     * primary key
+     */
+    public synchronized LinkedDataRow update(LinkedDataRow row, byte[] entry) {
+        if (HashBucket.ENTRY_OVERHEAD + entry.length > capacity) {
+            throw new IllegalArgumentException("A row of " + entry.length + " bytes does not fit in a bucket page");
+        }
+        int hash = hash(row);
+        HashBucket page = buckets.readPage(bucketOf(hash));
+        boolean primary = true;
+        while (page != null) {
+            for (int i = 0; i < page.count; i++) {
+                if (page.hashes[i] != hash) {
+                    continue;
+                }
+                LinkedDataRow old = decodeIfMatches(page.entries[i], row);
+                if (old == null) {
+                    continue;
+                }
+                int oldLength = page.entries[i].length;
+                if (page.getUsedSpace() - oldLength + entry.length <= capacity) {
+                    page.set(i, entry);
+                    writePage(page, primary);
+                    header.setUsedBytes(header.getUsedBytes() - oldLength + entry.length);
+                    splitIfNeeded();
+                } else {
+                    //a longer row may not fit into the page anymore
+                    page.remove(i);
+                    writePage(page, primary);
+                    header.setRowCount(header.getRowCount() - 1);
+                    header.setUsedBytes(header.getUsedBytes() - HashBucket.ENTRY_OVERHEAD - oldLength);
+                    insert(row, entry);
+                }
+                return old;
+            }
+            page = (page.overflowID == -1) ? null : overflow.readPage(page.overflowID);
+            primary = false;
+        }
+        return null;
+    }
+
+    /**
+     * Removes the row with a given primary key. An overflow page left empty
+     * is removed from the bucket's chain.
+     *
+     * @param pkRow the row holding the primary key
+     * @return the removed row, or null if there is none
+     */
+    public synchronized LinkedDataRow delete(LinkedDataRow pkRow) {
+        int hash = hash(pkRow);
+        HashBucket previous = null;
+        boolean previousPrimary = false;
+        HashBucket page = buckets.readPage(bucketOf(hash));
+        boolean primary = true;
+        while (page != null) {
+            for (int i = 0; i < page.count; i++) {
+                if (page.hashes[i] != hash) {
+                    continue;
+                }
+                LinkedDataRow old = decodeIfMatches(page.entries[i], pkRow);
+                if (old == null) {
+                    continue;
+                }
+                byte[] entry = page.remove(i);
+                if (!primary && page.count == 0) {
+                    previous.overflowID = page.overflowID;
+                    writePage(previous, previousPrimary);
+                    overflow.deletePage(page.getPageID());
+                } else {
+                    writePage(page, primary);
+                }
+                header.setRowCount(header.getRowCount() - 1);
+                header.setUsedBytes(header.getUsedBytes() - HashBucket.ENTRY_OVERHEAD - entry.length);
+                return old;
+            }
+            previous = page;
+            previousPrimary = primary;
+            page = (page.overflowID == -1) ? null : overflow.readPage(page.overflowID);
+            primary = false;
+        }
+        return null;
+    }
+
+    /**
+     * Splits buckets while the entries take more than the load factor of the
+     * space of the buckets.
+     */
+    private void splitIfNeeded() {
+        while (header.getUsedBytes() > loadFactor * capacity * header.getBucketCount()) {
+            split();
+        }
+    }
+
+    /**
+     * Splits the bucket at the split pointer. Its entries are divided between
+     * the bucket and a new bucket at the end of the buckets file, using one
+     * more bit of their hash codes.
+     */
+    private void split() {
+        int n = 1 << header.getLevel();
+        int bucket = header.getNext();
+
+        //takes all entries of the bucket and releases its overflow pages
+        HashBucket first = buckets.readPage(bucket);
+        int count = 0;
+        int hashes[] = new int[first.count];
+        byte entries[][] = new byte[first.count][];
+        HashBucket page = first;
+        while (true) {
+            if (count + page.count > hashes.length) {
+                hashes = Arrays.copyOf(hashes, count + page.count);
+                entries = Arrays.copyOf(entries, count + page.count);
+            }
+            System.arraycopy(page.hashes, 0, hashes, count, page.count);
+            System.arraycopy(page.entries, 0, entries, count, page.count);
+            count += page.count;
+            if (page.overflowID == -1) {
+                break;
+            }
+            page = overflow.readPage(page.overflowID);
+            overflow.deletePage(page.getPageID());
+        }
+        first.clear();
+        first.overflowID = -1;
+
+        HashBucket image = new HashBucket();
+        image.setPageID(bucket + n);
+
+        ChainWriter stay = new ChainWriter(first);
+        ChainWriter move = new ChainWriter(image);
+        for (int i = 0; i < count; i++) {
+            if ((hashes[i] & n) == 0) {
+                stay.add(hashes[i], entries[i]);
+            } else {
+                move.add(hashes[i], entries[i]);
+            }
+        }
+        stay.close();
+        move.close();
+
+        if (bucket + 1 == n) {
+            header.setLevel(header.getLevel() + 1);
+            header.setNext(0);
+        } else {
+            header.setNext(bucket + 1);
+        }
+    }
+
+    /**
+     * Appends entries to the chain of a bucket that is being rebuilt.
+     */
+    private class ChainWriter {
+
+        HashBucket tail;
+        boolean tailPrimary = true;
+
+        ChainWriter(HashBucket first) {
+            tail = first;
+        }
+
+        void add(int hash, byte[] entry) {
+            if (!fits(tail, entry.length)) {
+                HashBucket next = new HashBucket();
+                overflow.setPageID(next);
+                tail.overflowID = next.getPageID();
+                writePage(tail, tailPrimary);
+                tail = next;
+                tailPrimary = false;
+            }
+            tail.add(hash, entry);
+        }
+
+        void close() {
+            writePage(tail, tailPrimary);
+        }
+    }
+
+    /**
+     * Returns an iterator over all rows. The rows come in no particular order.
+     * The iterator reads one page at a time, and is not meant to be used while
+     * the file is being modified.
+     *
+     * @return the iterator
+     */
+    public Iterator<LinkedDataRow> iterator() {
+        return new Iterator<LinkedDataRow>() {
+
+            //the next bucket to be read
+            int bucket = 0;
+
+            //the next overflow page of the current bucket, or -1
+            int overflowID = -1;
+
+            byte entries[][] = new byte[0][];
+            int pos = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (pos == entries.length) {
+                    if (!readNextPage()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public LinkedDataRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return prototype.convertBinaryToRowData(entries[pos++]);
+            }
+
+            private boolean readNextPage() {
+                synchronized (LinearHashFile.this) {
+                    HashBucket page;
+                    if (overflowID != -1) {
+                        page = overflow.readPage(overflowID);
+                    } else if (bucket < header.getBucketCount()) {
+                        page = buckets.readPage(bucket++);
+                    } else {
+                        return false;
+                    }
+                    entries = Arrays.copyOf(page.entries, page.count);
+                    pos = 0;
+                    overflowID = page.overflowID;
+                    return true;
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the number of rows stored
+     */
+    public int getRowCount() {
+        return header.getRowCount();
+    }
+
+    /**
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return header.getBucketCount();
+    }
+
+    /**
+     * @return the number of pages allocated for overflows, including the
+     * released ones that can be reused
+     */
+    public int getOverflowPages() {
+        return overflow.getNextPageID();
+    }
+
+    /**
+     * Writes the modified pages and the headers to disk.
+     */
+    public void flush() {
+        buckets.flush();
+        overflow.flush();
+    }
+
+    /**
+     * Closes the backing storage.
+     */
+    public void close() {
+        buckets.close();
+        overflow.close();
+    }
+
+    /**
+     * Puts a bucket page into an output stream.
+     *
+     * @param oos the output stream
+     * @param page the page that contains the bucket
+     * @throws java.io.IOException
+     */
+    @Override
+    public void writePage(DataOutputStream oos, Page page) throws IOException {
+        writePage((DataOutput) oos, page);
+    }
+
+    /**
+     * Puts a bucket page into a byte buffer, starting at the buffer's current
+     * position.
+     *
+     * @param buffer the buffer
+     * @param page the page that contains the bucket
+     * @throws java.io.IOException
+     */
+    @Override
+    public void writePage(ByteBuffer buffer, Page page) throws IOException {
+        writePage(PageBufferPool.get().getOutput(buffer), page);
+    }
+
+    private void writePage(DataOutput oos, Page page) throws IOException {
+        if (page == null) {
+            oos.writeInt(EMPTY_PAGE);
+        } else {
+            oos.writeInt(BUCKET_PAGE);
+            ((AbstractExternalizablePage) page).writeExternal(oos);
+        }
+    }
+
+    /**
+     * Reads a bucket page from an input stream.
+     *
+     * @param ois the input stream
+     * @return the page read from the input stream
+     * @throws java.io.IOException
+     */
+    @Override
+    public Page readPage(DataInputStream ois) throws IOException {
+        return readPage((DataInput) ois);
+    }
+
+    /**
+     * Reads a bucket page from a byte buffer, starting at the buffer's current
+     * position.
+     *
+     * @param buffer the buffer
+     * @return the page read from the buffer
+     * @throws java.io.IOException
+     */
+    @Override
+    public Page readPage(ByteBuffer buffer) throws IOException {
+        return readPage(PageBufferPool.get().getInput(buffer));
+    }
+
+    private Page readPage(DataInput ois) throws IOException {
+        if (ois.readInt() == EMPTY_PAGE) {
+            return null;
+        }
+        HashBucket page = new HashBucket();
+        page.readExternal(ois);
+        return page;
+    }
+}
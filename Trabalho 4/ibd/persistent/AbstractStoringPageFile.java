@@ -20,6 +20,13 @@
  */
 package ibd.persistent;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * This class defines some general methods of a PageFile related to page ID control and page serialization: . 
@@ -50,6 +57,11 @@ public abstract class AbstractStoringPageFile<P extends Page> extends PageFile {
    */
   PageSerialization pageSerialization;
   
+  /**
+   * Zeroes used to pad the unused tail of pages written into buffers.
+   */
+  private byte[] padding = new byte[0];
+
   /**
      * The header of this page file.
      */
@@ -165,4 +177,92 @@ public abstract class AbstractStoringPageFile<P extends Page> extends PageFile {
     return pageSize;
   }
 
+  /**
+   * Reconstruct a serialized object from the specified byte array.
+   *
+   * @param array the byte array from which the object should be reconstructed
+   * @return a serialized object from the specified byte array
+   */
+  protected Page byteArrayToPage(byte[] array) throws IOException {
+    ByteArrayInputStream bais = new ByteArrayInputStream(array);
+    DataInputStream ois = new DataInputStream(bais);
+    return pageSerialization.readPage(ois);
+  }
+
+  /**
+   * Serializes an object into a byte array.
+   *
+   * @param page the object to be serialized
+   * @return the byte array
+   */
+  protected byte[] pageToByteArray(Page page) {
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream oos = new DataOutputStream(baos);
+      pageSerialization.writePage(oos, page);
+      oos.close();
+      baos.close();
+      byte[] array = baos.toByteArray();
+
+      if (array.length > this.pageSize) {
+        throw new IllegalArgumentException("Size of page " + page + " is greater than specified" + " pagesize: " + array.length + " > " + pageSize);
+      } else if (array.length == this.pageSize) {
+        return array;
+      } else {
+        byte[] result = new byte[pageSize];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("IOException occurred! ", e);
+    }
+  }
+
+  /**
+   * Tells if the pages can be serialized directly against byte buffers,
+   * avoiding the stream based methods above.
+   *
+   * @return true if the page serialization supports byte buffers
+   */
+  protected boolean usesBufferSerialization() {
+    return pageSerialization instanceof ByteBufferPageSerialization;
+  }
+
+  /**
+   * Reconstruct a serialized page from the specified buffer, starting at the
+   * buffer's current position.
+   *
+   * @param buffer the buffer from which the page should be reconstructed
+   * @return the page
+   */
+  protected Page bufferToPage(ByteBuffer buffer) throws IOException {
+    return ((ByteBufferPageSerialization) pageSerialization).readPage(buffer);
+  }
+
+  /**
+   * Serializes a page into the specified buffer, starting at the buffer's
+   * current position. Exactly one page is written: the unused tail of the
+   * page is filled with zeroes.
+   *
+   * @param page the page to be serialized
+   * @param buffer the buffer, with at least one page remaining
+   */
+  protected void pageToBuffer(Page page, ByteBuffer buffer) {
+    int end = buffer.position() + pageSize;
+    try {
+      ((ByteBufferPageSerialization) pageSerialization).writePage(buffer, page);
+      if (buffer.position() > end) {
+        throw new BufferOverflowException();
+      }
+    } catch (BufferOverflowException e) {
+      throw new IllegalArgumentException("Size of page " + page + " is greater than specified" + " pagesize: " + pageSize);
+    } catch (IOException e) {
+      throw new RuntimeException("IOException occurred! ", e);
+    }
+    if (padding.length < pageSize) {
+      padding = new byte[pageSize];
+    }
+    buffer.put(padding, 0, end - buffer.position());
+  }
+
 }
@@ -0,0 +1,136 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A DataInput that reads directly from a ByteBuffer. It lets pages reuse
+ * their readExternal methods when deserialized from a pooled or mapped buffer.
+ * The encoding is the same used by DataInputStream (big-endian, modified
+ * UTF-8).
+ *
+ * @author Sergio
+ */
+public class ByteBufferDataInput implements DataInput {
+
+    private ByteBuffer buffer;
+
+    public ByteBufferDataInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Redirects the reads to another buffer.
+     *
+     * @param buffer the buffer to read from
+     */
+    public void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        buffer.get(b);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        buffer.get(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        int skipped = Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return buffer.get() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return buffer.getShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return buffer.getDouble();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        while (buffer.hasRemaining()) {
+            char c = (char) (buffer.get() & 0xFF);
+            if (c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+                    buffer.get();
+                }
+                break;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+}
@@ -0,0 +1,27 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A PageSerialization that can also read and write pages directly against a
+ * ByteBuffer. Page files use this variant, when available, to serialize pages
+ * into reusable buffers taken from a {@link PageBufferPool} instead of building
+ * new streams and byte arrays for every page transfer.
+ *
+ * The page content starts at the buffer's current position.
+ *
+ * @author Sergio
+ */
+public interface ByteBufferPageSerialization extends PageSerialization {
+
+    void writePage(ByteBuffer buffer, Page page) throws IOException;
+
+    Page readPage(ByteBuffer buffer) throws IOException;
+
+}
@@ -0,0 +1,337 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent;
+
+import ibd.table.Params;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A MappedPageFile stores pages persistently, like the
+ * {@link PersistentPageFile}, but accesses them through memory-mapped regions
+ * of the file instead of positional read/write calls. A page read or write
+ * becomes a copy from/to the mapped memory, leaving the actual I/O to the
+ * operating system's page cache.
+ *
+ * The data area of the file (the part after the header's reserved pages) is
+ * mapped in fixed-size segments. A new segment is mapped whenever a page falls
+ * outside the segments mapped so far, so the file grows one segment at a time.
+ *
+ * @author Sergio
+ *
+ * @param <P> Page type
+ */
+public class MappedPageFile<P extends Page> extends AbstractStoringPageFile {
+
+    /**
+     * The default number of pages covered by each mapped segment.
+     */
+    public static final int DEFAULT_PAGES_PER_SEGMENT = 4096;
+
+    /**
+     * The file storing the pages.
+     */
+    protected final FileChannel file;
+
+    /**
+     * The mapped segments of the data area, in file order.
+     */
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * The number of pages covered by each mapped segment.
+     */
+    private final int pagesPerSegment;
+
+    /**
+     * Whether we are initializing from an existing file.
+     */
+    private boolean existed;
+
+    /**
+     * Creates a new MappedPageFile using the default segment size.
+     *
+     * @param pageSize the page size
+     * @param filename the file storing the pages
+     * @param recreate whether an existing file should be discarded
+     */
+    public MappedPageFile(int pageSize, Path filename, boolean recreate) throws IOException {
+        this(pageSize, filename, recreate, DEFAULT_PAGES_PER_SEGMENT);
+    }
+
+    /**
+     * Creates a new MappedPageFile.
+     *
+     * @param pageSize the page size
+     * @param filename the file storing the pages
+     * @param recreate whether an existing file should be discarded
+     * @param pagesPerSegment the number of pages mapped at once when the file
+     * needs to grow
+     */
+    public MappedPageFile(int pageSize, Path filename, boolean recreate, int pagesPerSegment) throws IOException {
+        super(pageSize);
+        if (pagesPerSegment <= 0) {
+            throw new IllegalArgumentException("The number of pages per segment must be positive: " + pagesPerSegment);
+        }
+        this.pagesPerSegment = pagesPerSegment;
+        if (recreate) {
+            File f = filename.toFile();
+            //a file that is still mapped (on Windows) cannot be deleted, and would be reopened instead
+            if (f.exists() && !f.delete()) {
+                throw new IOException("The file " + filename + " could not be deleted");
+            }
+        }
+
+        existed = Files.exists(filename);
+
+        file = FileChannel.open(filename, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Returns the mapped segment that contains the page with the given id,
+     * mapping new segments if the page lies beyond the mapped area. It is
+     * synchronized because concurrent caches may read pages from several
+     * threads.
+     *
+     * @param pageID the id of the page
+     * @return the segment containing the page
+     */
+    private synchronized MappedByteBuffer getSegment(int pageID) throws IOException {
+        int segmentIndex = pageID / pagesPerSegment;
+        while (segments.size() <= segmentIndex) {
+            long segmentBytes = (long) pagesPerSegment * pageSize;
+            long offset = (long) header.getReservedPages() * pageSize + segments.size() * segmentBytes;
+            segments.add(file.map(MapMode.READ_WRITE, offset, segmentBytes));
+        }
+        return segments.get(segmentIndex);
+    }
+
+    /**
+     * Returns a view over the bytes of the page with the given id. The view
+     * has its own position and limit, so it does not disturb other accesses to
+     * the same segment.
+     *
+     * @param pageID the id of the page
+     * @return the page's bytes
+     */
+    private ByteBuffer getPageBuffer(int pageID) throws IOException {
+        ByteBuffer buffer = getSegment(pageID).duplicate();
+        int position = (pageID % pagesPerSegment) * pageSize;
+        buffer.limit(position + pageSize);
+        buffer.position(position);
+        return buffer;
+    }
+
+    /**
+     * Reads the page with the given id from this file.
+     *
+     * @param pageID the id of the page to be returned
+     * @return the page with the given pageId
+     */
+    @Override
+    public Page readPage(int pageID) {
+        try {
+            Params.BLOCKS_LOADED++;
+            if (usesBufferSerialization()) {
+                //deserializes straight from the mapped memory
+                return bufferToPage(getPageBuffer(pageID));
+            }
+            byte[] buffer = new byte[pageSize];
+            getPageBuffer(pageID).get(buffer);
+            return byteArrayToPage(buffer);
+        } catch (IOException e) {
+            throw new RuntimeException("IOException occurred during reading of page " + pageID + "\n", e);
+        }
+    }
+
+    /**
+     * Deletes the node with the specified id from this file.
+     *
+     * @param pageID the id of the node to be deleted
+     */
+    @Override
+    public void deletePage(int pageID) {
+        try {
+            // put id to empty pages list
+            super.deletePage(pageID);
+
+            // delete from file
+            writeBytes(null, getPageBuffer(pageID));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method is called by the cache if the <code>page</code> is not longer
+     * stored in the cache and has to be written to disk.
+     *
+     * @param page the page which has to be written to disk
+     */
+    @Override
+    public void writePage(int pageID, Page page) {
+        try {
+            Params.BLOCKS_SAVED++;
+            writeBytes(page, getPageBuffer(pageID));
+            page.setDirty(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing to page file.", e);
+        }
+    }
+
+    /**
+     * Serializes a page into its mapped region. A null page writes an empty
+     * page.
+     *
+     * @param page the page to be written
+     * @param buffer the page's mapped region
+     */
+    private void writeBytes(Page page, ByteBuffer buffer) {
+        if (usesBufferSerialization()) {
+            //serializes straight into the mapped memory
+            pageToBuffer(page, buffer);
+        } else {
+            buffer.put(pageToByteArray(page));
+        }
+    }
+
+    /**
+     * Closes this file. It holds the lock of getSegment(), so no segment is
+     * handed out while the segments are released. The pages must not be read
+     * or written from other threads meanwhile, as the caches ensure for their
+     * prefetches.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            flush();
+            super.close();
+            for (MappedByteBuffer segment : segments) {
+                unmap(segment);
+            }
+            segments.clear();
+            file.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Releases the mapping of a segment right away, instead of when the
+     * segment is garbage collected, so the file can be deleted or mapped again
+     * once it is closed. The segment must not be used afterwards. If the JVM
+     * does not allow it, the mapping is left to the garbage collector.
+     *
+     * @param segment the segment
+     */
+    private static void unmap(MappedByteBuffer segment) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), segment);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //the mapping is released when the segment is garbage collected
+        }
+    }
+
+    /**
+     * Clears this PageFile.
+     */
+    @Override
+    public void clear() {
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        existed = false;
+    }
+
+    /**
+     * @return the channel of the file storing the pages.
+     */
+    public FileChannel getFile() {
+        return file;
+    }
+
+    /**
+     * Set the next page id to the given value. If this means that any page ids
+     * stored in <code>emptyPages</code> are smaller than
+     * <code>next_page_id</code>, they are removed from this file's observation
+     * stack.
+     *
+     * @param next_page_id the id of the next page to be inserted (if there are
+     * no more empty pages to be filled)
+     */
+    @Override
+    public void setNextPageID(int next_page_id) {
+        this.nextPageID = next_page_id;
+        while (!emptyPages.isEmpty() && emptyPages.get(emptyPages.size - 1) >= this.nextPageID) {
+            --emptyPages.size;
+        }
+    }
+
+    @Override
+    public boolean initialize(PageHeader header) {
+        try {
+            if (existed) {
+                // init the header
+                this.header = header;
+
+                header.readHeader(file);
+
+                // reading empty nodes in Stack
+                nextPageID = header.getLargestPageID();
+                emptyPages = header.readEmptyPages(file);
+
+            } // create new file
+            else {
+                // writing header
+                this.header = header;
+                header.writeHeader(file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IOException occurred.", e);
+        }
+        pageSize = header.getPageSize();
+        // Return "new file" status
+        return existed;
+    }
+
+    /**
+     * Forces the mapped pages to disk and writes the header. It holds the lock
+     * of getSegment(), so no segment is mapped while the segments are forced.
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            // the mapped pages are forced to disk before the header refers to them
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            // write the list of empty pages to the end of the file
+            header.writeEmptyPages(emptyPages, file);
+            header.setLargestPageID(nextPageID);
+            header.writeHeader(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Error flushing page file.", e);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps one reusable page buffer per thread, together with the DataInput and
+ * DataOutput adapters bound to it. The page files use it to transfer pages
+ * without allocating a new array and stream objects on every read or write.
+ *
+ * A buffer taken from the pool must not be retained after the page transfer
+ * that requested it is complete.
+ *
+ * @author Sergio
+ */
+public class PageBufferPool {
+
+    private static final ThreadLocal<PageBufferPool> POOL = ThreadLocal.withInitial(PageBufferPool::new);
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(0);
+
+    private final ByteBufferDataInput in = new ByteBufferDataInput(buffer);
+
+    private final ByteBufferDataOutput out = new ByteBufferDataOutput(buffer);
+
+    private PageBufferPool() {
+    }
+
+    /**
+     * Returns the pool of the calling thread.
+     */
+    public static PageBufferPool get() {
+        return POOL.get();
+    }
+
+    /**
+     * Returns the thread's buffer, cleared and limited to the page size. The
+     * buffer is reallocated only if a larger page size is requested.
+     *
+     * @param pageSize the size of the page to be transferred
+     * @return the buffer
+     */
+    public ByteBuffer getBuffer(int pageSize) {
+        if (buffer.capacity() < pageSize) {
+            buffer = ByteBuffer.allocateDirect(pageSize);
+        }
+        buffer.clear();
+        buffer.limit(pageSize);
+        return buffer;
+    }
+
+    /**
+     * Returns the thread's DataInput adapter bound to the given buffer.
+     */
+    public ByteBufferDataInput getInput(ByteBuffer buffer) {
+        in.setBuffer(buffer);
+        return in;
+    }
+
+    /**
+     * Returns the thread's DataOutput adapter bound to the given buffer.
+     */
+    public ByteBufferDataOutput getOutput(ByteBuffer buffer) {
+        out.setBuffer(buffer);
+        return out;
+    }
+
+}
@@ -20,6 +20,8 @@
  */
 package ibd.persistent;
 
+import java.util.List;
+
 /**
  * Abstract base class for the page file API for both caches and true page files
  * (in-memory and on-disk).
@@ -125,6 +127,19 @@ public abstract class PageFile<P extends Page> {
     return pageid;
   }
 
+  /**
+   * Writes a batch of pages into this file. Pages without an id get a new
+   * one. Implementations may reorder the writes and combine the ones of
+   * adjacent pages.
+   * 
+   * @param pages the pages to be written
+   */
+  public synchronized void writePages(List<P> pages) {
+    for (P page : pages) {
+      writePage(page);
+    }
+  }
+
   /**
    * Perform the actual page write operation.
    * 
@@ -27,6 +27,9 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * A PersistentPageFile stores pages persistently (in secondary storage).
@@ -41,6 +44,11 @@ import java.nio.file.StandardOpenOption;
  */
 public class PersistentPageFile<P extends Page> extends AbstractStoringPageFile {
 
+    /**
+     * The maximum number of adjacent pages combined into a single write.
+     */
+    public static final int MAX_PAGES_PER_WRITE = 64;
+
     /**
      * The file storing the pages.
      */
@@ -88,6 +96,16 @@ public class PersistentPageFile<P extends Page> extends AbstractStoringPageFile
         try {
             Params.BLOCKS_LOADED++;
             long offset = ((long) (header.getReservedPages() + pageID)) * (long) pageSize;
+            if (usesBufferSerialization()) {
+                //reads into the thread's pooled buffer, avoiding per page allocations
+                ByteBuffer buffer = PageBufferPool.get().getBuffer(pageSize);
+                int read = file.read(buffer, offset);
+                if (read != pageSize) {
+                    throw new IOException("Incomplete read at offset " + offset + " read " + read + " bytes, expected " + pageSize);
+                }
+                buffer.flip();
+                return bufferToPage(buffer);
+            }
             byte[] buffer = new byte[pageSize];
             int read = file.read(ByteBuffer.wrap(buffer), offset);
             if (read != pageSize) {
@@ -111,12 +129,8 @@ public class PersistentPageFile<P extends Page> extends AbstractStoringPageFile
             super.deletePage(pageID);
 
             // delete from file
-            byte[] array = pageToByteArray(null);
             long offset = (header.getReservedPages() + pageID) * (long) pageSize;
-            int written = file.write(ByteBuffer.wrap(array), offset);
-            if (written != pageSize) {
-                throw new IOException("Incomplete write at offset " + offset + " wrote " + written + " bytes, expected " + array.length);
-            }
+            writeBytes(null, offset);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -134,19 +148,108 @@ public class PersistentPageFile<P extends Page> extends AbstractStoringPageFile
         try {
             Params.BLOCKS_SAVED++;
             
-            byte[] array = pageToByteArray(page);
             long offset = ((long) (header.getReservedPages() + pageID)) * (long) pageSize;
             assert offset >= 0 : header.getReservedPages() + " " + pageID + " " + pageSize + " " + offset;
-            int written = file.write(ByteBuffer.wrap(array), offset);
-            if (written != pageSize) {
-                throw new IOException("Incomplete write at offset " + offset + " wrote " + written + " bytes, expected " + array.length);
-            }
+            writeBytes(page, offset);
             page.setDirty(false);
         } catch (IOException e) {
             throw new RuntimeException("Error writing to page file.", e);
         }
     }
 
+    /**
+     * Writes a batch of pages. The pages are sorted by id and every run of
+     * adjacent pages is written with a single write call, instead of one
+     * write per page.
+     *
+     * @param pages the pages to be written
+     */
+    @Override
+    public synchronized void writePages(List pages) {
+        if (!usesBufferSerialization()) {
+            super.writePages(pages);
+            return;
+        }
+        List<Page> sorted = new ArrayList<>(pages.size());
+        for (Object o : pages) {
+            Page page = (Page) o;
+            setPageID(page);
+            sorted.add(page);
+        }
+        sorted.sort(Comparator.comparingInt(Page::getPageID));
+
+        try {
+            int start = 0;
+            while (start < sorted.size()) {
+                int end = start + 1;
+                while (end < sorted.size() && end - start < MAX_PAGES_PER_WRITE
+                        && sorted.get(end).getPageID() == sorted.get(end - 1).getPageID() + 1) {
+                    end++;
+                }
+                writeRun(sorted.subList(start, end));
+                start = end;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing to page file.", e);
+        }
+    }
+
+    /**
+     * Writes pages with consecutive ids with a single positional write. The
+     * pages are serialized one after the other into the thread's pooled
+     * buffer. Like the other reads and writes of the file, it does not use the
+     * channel's position, which is shared by all threads.
+     *
+     * @param run the pages, sorted by id, with no gaps between the ids
+     */
+    private void writeRun(List<Page> run) throws IOException {
+        int n = run.size();
+        ByteBuffer buffer = PageBufferPool.get().getBuffer(n * pageSize);
+        for (Page page : run) {
+            pageToBuffer(page, buffer);
+        }
+        buffer.flip();
+
+        long offset = ((long) (header.getReservedPages() + run.get(0).getPageID())) * (long) pageSize;
+        int calls = 0;
+        while (buffer.hasRemaining()) {
+            int written = file.write(buffer, offset + buffer.position());
+            if (written <= 0) {
+                throw new IOException("Incomplete write at offset " + offset + ", " + buffer.remaining() + " bytes left");
+            }
+            calls++;
+        }
+
+        Params.BLOCKS_SAVED += n;
+        Params.WRITE_CALLS_SAVED += n - calls;
+        for (Page page : run) {
+            page.setDirty(false);
+        }
+    }
+
+    /**
+     * Serializes a page and writes it at the given offset of the file. A null
+     * page writes an empty page.
+     *
+     * @param page the page to be written
+     * @param offset the position of the page in the file
+     */
+    private void writeBytes(Page page, long offset) throws IOException {
+        ByteBuffer buffer;
+        if (usesBufferSerialization()) {
+            //serializes into the thread's pooled buffer, avoiding per page allocations
+            buffer = PageBufferPool.get().getBuffer(pageSize);
+            pageToBuffer(page, buffer);
+            buffer.flip();
+        } else {
+            buffer = ByteBuffer.wrap(pageToByteArray(page));
+        }
+        int written = file.write(buffer, offset);
+        if (written != pageSize) {
+            throw new IOException("Incomplete write at offset " + offset + " wrote " + written + " bytes, expected " + pageSize);
+        }
+    }
+
     /**
      * Closes this file.
      */
@@ -182,49 +285,6 @@ public class PersistentPageFile<P extends Page> extends AbstractStoringPageFile
 
     }
 
-    /**
-     * Reconstruct a serialized object from the specified byte array.
-     *
-     * @param array the byte array from which the object should be reconstructed
-     * @return a serialized object from the specified byte array
-     */
-    private Page byteArrayToPage(byte[] array) throws IOException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(array);
-        DataInputStream ois = new DataInputStream(bais);
-        return pageSerialization.readPage(ois);
-
-    }
-
-    /**
-     * Serializes an object into a byte array.
-     *
-     * @param page the object to be serialized
-     * @return the byte array
-     */
-    private byte[] pageToByteArray(Page page) {
-        try {
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream oos = new DataOutputStream(baos);
-            pageSerialization.writePage(oos, page);
-            oos.close();
-            baos.close();
-            byte[] array = baos.toByteArray();
-
-            if (array.length > this.pageSize) {
-                throw new IllegalArgumentException("Size of page " + page + " is greater than specified" + " pagesize: " + array.length + " > " + pageSize);
-            } else if (array.length == this.pageSize) {
-                return array;
-            } else {
-                byte[] result = new byte[pageSize];
-                System.arraycopy(array, 0, result, 0, array.length);
-                return result;
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("IOException occurred! ", e);
-        }
-    }
-
     /**
      * @return the random access file storing the pages.
      */
@@ -24,7 +24,14 @@ import ibd.persistent.Page;
 import ibd.persistent.PageFile;
 import ibd.persistent.PageHeader;
 import ibd.persistent.PageSerialization;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An LRU cache, based on <code>LinkedHashMap</code>.<br>
@@ -57,6 +64,55 @@ public abstract class Cache<P extends Page> extends PageFile<P> {
      */
     protected PageFile<P> file;
 
+    /**
+     * The maximum number of dirty pages handed to the underlying file at once.
+     */
+    private static final int WRITE_BATCH_SIZE = 1024;
+
+    /**
+     * The dirty pages of this cache, ordered by page id.
+     */
+    protected final ConcurrentSkipListMap<Integer, P> dirtyPages = new ConcurrentSkipListMap<>();
+
+    /**
+     * The number of dirty pages. Kept apart because the size of a skip list is
+     * computed by traversing it.
+     */
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+
+    /**
+     * The page id where the next call to {@link #writeDirtyPages(int)} starts.
+     */
+    private int nextDirtyID = 0;
+
+    /**
+     * The background writer that cleans the dirty pages of this cache, if any.
+     */
+    private DirtyPageWriter writer = null;
+
+    /**
+     * Incremented whenever a page of this cache is modified or deleted. Lets
+     * a prefetch detect that the page it read from the file may be outdated.
+     */
+    private volatile long modifications = 0;
+
+    /**
+     * Pages loaded by {@link #prefetchPage(int)} that were not requested yet.
+     * They are kept apart from the cached pages, so a prefetch followed by
+     * the actual request counts as a single reference for the replacement
+     * policy.
+     */
+    private final ConcurrentHashMap<Integer, P> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * The number of prefetches reading from the file, and whether this cache
+     * was closed, so the file is not closed under a prefetch. Guarded by
+     * prefetchLock.
+     */
+    private final Object prefetchLock = new Object();
+    private int runningPrefetches = 0;
+    private boolean closed = false;
+
     /**
      * Initializes this cache with the specified parameters.
      *
@@ -68,6 +124,18 @@ public abstract class Cache<P extends Page> extends PageFile<P> {
 
     protected abstract P getFromCache(int pageID);
 
+    /**
+     * Returns a cached page without counting a new reference to it: the page
+     * is not promoted to another queue and its reference history is kept. A
+     * policy that keeps a single recency list may move the page to its most
+     * recent end, as a peeked page is about to be used. Prefetches need the
+     * page itself, to follow the pointers it holds.
+     *
+     * @param pageID the id of the page
+     * @return the page, or null if it is not cached
+     */
+    protected abstract P peekCache(int pageID);
+
     protected abstract void addToCache(int pageID, P page);
 
     protected abstract void deleteFromCache(int pageID);
@@ -81,6 +149,13 @@ public abstract class Cache<P extends Page> extends PageFile<P> {
     public void setPageFile(PageFile<P> file){
         this.file = file;
     }
+
+    /**
+     * @return the file whose pages are kept by this cache
+     */
+    public PageFile<P> getPageFile(){
+        return file;
+    }
     
 
     /**
@@ -95,22 +170,90 @@ public abstract class Cache<P extends Page> extends PageFile<P> {
     public synchronized P readPage(int pageID) {
         P page = getFromCache(pageID);
         if (page == null) {
-            page = file.readPage(pageID);
+            page = readFromFile(pageID);
             addToCache(pageID, page);
         }
         return page;
     }
 
+    /**
+     * Returns a page that is not cached, taking it from the prefetched pages
+     * if it was already loaded.
+     *
+     * @param pageID the id of the page
+     * @return the page
+     */
+    protected P readFromFile(int pageID) {
+        P page = prefetched.isEmpty() ? null : prefetched.remove(pageID);
+        if (page == null) {
+            page = file.readPage(pageID);
+        }
+        return page;
+    }
+
     @Override
     public synchronized void writePage(int pageID, P page) {
-        page.setDirty(true);
+        markDirty(pageID, page);
         addToCache(pageID, page);
 
     }
 
+    /**
+     * Loads a page ahead of its use, typically from a background thread.
+     * Unlike {@link #readPage(int)}, the page is read from the file without
+     * holding the cache's lock, so threads using cached pages are not blocked
+     * by the I/O. The page only enters the cache when it is requested. It is
+     * discarded if the cache was modified during the read.
+     *
+     * @param pageID the id of the page to be loaded
+     * @return the page, or null if it could not be loaded
+     */
+    public P prefetchPage(int pageID) {
+        P page;
+        synchronized (this) {
+            page = peekCache(pageID);
+        }
+        if (page == null) {
+            page = prefetched.get(pageID);
+        }
+        if (page != null) {
+            return page;
+        }
+        //limits the memory taken by pages that were never requested
+        if (prefetched.size() >= Math.max(1, cacheSize / 4)) {
+            return null;
+        }
+        synchronized (prefetchLock) {
+            if (closed) {
+                return null;
+            }
+            runningPrefetches++;
+        }
+        long stamp = modifications;
+        try {
+            page = file.readPage(pageID);
+        } finally {
+            synchronized (prefetchLock) {
+                if (--runningPrefetches == 0) {
+                    prefetchLock.notifyAll();
+                }
+            }
+        }
+        synchronized (this) {
+            if (page == null || stamp != modifications || peekCache(pageID) != null) {
+                return page;
+            }
+            prefetched.putIfAbsent(pageID, page);
+        }
+        return page;
+    }
+
     @Override
     public void deletePage(int pageID) {
+        modifications++;
+        prefetched.remove(pageID);
         deleteFromCache(pageID);
+        markClean(pageID);
         file.deletePage(pageID);
     }
 
@@ -123,6 +266,127 @@ public abstract class Cache<P extends Page> extends PageFile<P> {
         if (page.isDirty()) {
             file.writePage(page);
         }
+        markClean(page.getPageID());
+    }
+
+    /**
+     * Flags a page as dirty and registers it in the set of dirty pages.
+     *
+     * @param pageID the id of the page
+     * @param page the page
+     */
+    protected void markDirty(int pageID, P page) {
+        modifications++;
+        if (!prefetched.isEmpty()) {
+            prefetched.remove(pageID);
+        }
+        page.setDirty(true);
+        if (dirtyPages.put(pageID, page) == null) {
+            int dirty = dirtyCount.incrementAndGet();
+            DirtyPageWriter w = writer;
+            if (w != null) {
+                w.dirtyPagesChanged(dirty);
+            }
+        }
+    }
+
+    /**
+     * Removes a page from the set of dirty pages.
+     *
+     * @param pageID the id of the page
+     */
+    protected void markClean(int pageID) {
+        if (dirtyPages.remove(pageID) != null) {
+            //a prefetch that read the page before it was written must not keep it
+            modifications++;
+            dirtyCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of dirty pages in this cache
+     */
+    public int getDirtyPageCount() {
+        return dirtyCount.get();
+    }
+
+    /**
+     * @return the fraction of the cache occupied by dirty pages
+     */
+    public double getDirtyRatio() {
+        return cacheSize <= 0 ? 0 : (double) dirtyCount.get() / cacheSize;
+    }
+
+    /**
+     * @return the maximum number of pages of this cache
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Registers the background writer that cleans the dirty pages of this
+     * cache.
+     *
+     * @param writer the writer, or null to remove it
+     */
+    void setDirtyPageWriter(DirtyPageWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes dirty pages to the underlying file, in page id order, and keeps
+     * them in the cache as clean pages. Consecutive calls continue from where
+     * the previous one stopped, wrapping around at the highest page id.
+     *
+     * @param max the maximum number of pages to be written
+     * @return the number of pages written
+     */
+    public synchronized int writeDirtyPages(int max) {
+        int written = writeDirtyPages(dirtyPages.tailMap(nextDirtyID).entrySet().iterator(), max);
+        if (written < max) {
+            written += writeDirtyPages(dirtyPages.headMap(nextDirtyID).entrySet().iterator(), max - written);
+        }
+        return written;
+    }
+
+    private int writeDirtyPages(Iterator<Map.Entry<Integer, P>> it, int max) {
+        int written = 0;
+        List<P> batch = new ArrayList<>();
+        while (written < max && it.hasNext()) {
+            Map.Entry<Integer, P> entry = it.next();
+            P page = entry.getValue();
+            if (page.isDirty()) {
+                batch.add(page);
+            } else {
+                markClean(entry.getKey());
+            }
+            nextDirtyID = entry.getKey() + 1;
+            written++;
+            if (batch.size() == WRITE_BATCH_SIZE) {
+                writeBatch(batch);
+            }
+        }
+        writeBatch(batch);
+        return written;
+    }
+
+    /**
+     * Writes a batch of pages with a single call to the underlying file, which
+     * can combine the writes of adjacent pages, and then removes the pages
+     * from the set of dirty pages.
+     *
+     * @param batch the pages, in page id order. It is emptied afterwards.
+     */
+    private void writeBatch(List<P> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        file.writePages(batch);
+        for (P page : batch) {
+            markClean(page.getPageID());
+        }
+        batch.clear();
     }
 
     @Override
@@ -165,6 +429,21 @@ public abstract class Cache<P extends Page> extends PageFile<P> {
     @Override
     public void close() {
         //flush();
+        //the read-ahead of the traversals is not cancelled, so the prefetches still reading must finish first
+        boolean interrupted = false;
+        synchronized (prefetchLock) {
+            closed = true;
+            while (runningPrefetches > 0) {
+                try {
+                    prefetchLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
         file.close();
     }
 
@@ -174,15 +453,31 @@ public abstract class Cache<P extends Page> extends PageFile<P> {
     }
 
     /**
-     * Flushes this caches by writing any entry to the underlying file.
+     * Flushes this caches by writing the dirty pages to the underlying file
+     * and emptying the cache.
      */
     @Override
-    public void flush() {
-        Collection<P> pages = getCachePages();
-        for (P object : pages) {
-            expirePage(object);
-        }
+    public synchronized void flush() {
+        writeDirtyPages(dirtyPages.entrySet().iterator(), Integer.MAX_VALUE);
         clearCache();
+        prefetched.clear();
+        file.flush();
+    }
+
+    /**
+     * Writes every dirty page to the underlying file, in page id order, and
+     * updates the file's header. Unlike {@link #flush()}, the pages stay in the
+     * cache, now clean, so the following requests still find them in memory.
+     *
+     * @throws RuntimeException if the background writer failed since the last
+     * checkpoint
+     */
+    public synchronized void checkpoint() {
+        DirtyPageWriter w = writer;
+        if (w != null) {
+            w.checkFailure();
+        }
+        writeDirtyPages(dirtyPages.entrySet().iterator(), Integer.MAX_VALUE);
         file.flush();
     }
 
@@ -0,0 +1,215 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent.cache;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A background thread that writes the dirty pages of a cache ahead of their
+ * eviction. Without it, a dirty page is written by the thread whose request
+ * caused the eviction, which then waits for the write. The writer keeps the
+ * fraction of dirty pages below a threshold, so the pages chosen for eviction
+ * are almost always clean.
+ *
+ * The writer wakes up periodically, or as soon as the threshold is exceeded,
+ * and writes batches of dirty pages in page id order until the dirty ratio
+ * falls below the threshold.
+ *
+ * If a write fails, the writer stops, and the error is thrown by the next
+ * checkpoint of the cache or by {@link #stop()}, whichever comes first.
+ *
+ * @author Sergio
+ */
+public class DirtyPageWriter implements Runnable {
+
+    /**
+     * The default fraction of the cache that may hold dirty pages.
+     */
+    public static final double DEFAULT_DIRTY_THRESHOLD = 0.25;
+
+    /**
+     * The default number of pages written per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    /**
+     * The default time between two checks of the dirty ratio, in milliseconds.
+     */
+    public static final long DEFAULT_INTERVAL = 100;
+
+    private final Cache cache;
+
+    private volatile double dirtyThreshold;
+
+    private volatile int batchSize;
+
+    private volatile long interval;
+
+    private volatile boolean running = false;
+
+    //true if the thread was already signaled to run ahead of the interval
+    private volatile boolean signaled = false;
+
+    private Thread thread;
+
+    //the error that stopped the thread, until it is reported
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    /**
+     * Creates a writer with the default parameters.
+     *
+     * @param cache the cache whose dirty pages are written
+     */
+    public DirtyPageWriter(Cache cache) {
+        this(cache, DEFAULT_DIRTY_THRESHOLD, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param cache the cache whose dirty pages are written
+     * @param dirtyThreshold the fraction of the cache that may hold dirty pages
+     * @param batchSize the number of pages written per batch
+     */
+    public DirtyPageWriter(Cache cache, double dirtyThreshold, int batchSize) {
+        this.cache = cache;
+        setDirtyThreshold(dirtyThreshold);
+        setBatchSize(batchSize);
+        this.interval = DEFAULT_INTERVAL;
+    }
+
+    public double getDirtyThreshold() {
+        return dirtyThreshold;
+    }
+
+    /**
+     * @param dirtyThreshold the fraction of the cache that may hold dirty
+     * pages, between 0 and 1
+     */
+    public void setDirtyThreshold(double dirtyThreshold) {
+        if (dirtyThreshold < 0 || dirtyThreshold > 1) {
+            throw new IllegalArgumentException("The dirty threshold must be between 0 and 1: " + dirtyThreshold);
+        }
+        this.dirtyThreshold = dirtyThreshold;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize the number of pages written per batch. The cache is
+     * locked while a batch is written.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param interval the time between two checks of the dirty ratio, in
+     * milliseconds
+     */
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        cache.setDirtyPageWriter(this);
+        thread = new Thread(this, "dirty-page-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread and waits for it to finish the current batch.
+     *
+     * @throws RuntimeException if a write of the thread failed and the error
+     * was not reported yet
+     */
+    public void stop() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            cache.setDirtyPageWriter(null);
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Throws the error that stopped the thread, if it was not reported yet.
+     */
+    void checkFailure() {
+        RuntimeException e = failure.getAndSet(null);
+        if (e != null) {
+            throw new RuntimeException("Error writing dirty pages in the background", e);
+        }
+    }
+
+    /**
+     * Called by the cache when the number of dirty pages grows. Wakes the
+     * thread up if the threshold is exceeded.
+     *
+     * @param dirtyPages the number of dirty pages
+     */
+    void dirtyPagesChanged(int dirtyPages) {
+        if (!signaled && dirtyPages > dirtyThreshold * cache.getCacheSize()) {
+            synchronized (this) {
+                signaled = true;
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            synchronized (this) {
+                if (!signaled && running) {
+                    try {
+                        wait(interval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                signaled = false;
+            }
+            try {
+                while (running && cache.getDirtyRatio() > dirtyThreshold) {
+                    if (cache.writeDirtyPages(batchSize) == 0) {
+                        break;
+                    }
+                }
+            } catch (RuntimeException e) {
+                //the pages left dirty are written by the evictions and checkpoints, which report the error
+                failure.set(e);
+                return;
+            }
+        }
+    }
+
+}
@@ -59,6 +59,15 @@ public class LRUCache<P extends Page> extends Cache<P> {
         return map.get(pageID);
     }
 
+    /**
+     * The lookup reorders the access-ordered map, so the page becomes the MRU
+     * page, as the contract allows for a single recency list.
+     */
+    @Override
+    protected P peekCache(int pageID) {
+        return map.get(pageID);
+    }
+
     protected void addToCache(int pageID, P page) {
         map.put(pageID, page);
     }
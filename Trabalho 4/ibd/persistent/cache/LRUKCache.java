@@ -0,0 +1,232 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent.cache;
+
+import ibd.persistent.Page;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * An LRU-K cache (O'Neil, O'Neil and Weikum, 1993).<br>
+ * The cache remembers the times of the last K references to each page. The
+ * page evicted is the one whose K-th most recent reference is the oldest.
+ * Pages with fewer than K references are evicted first, in LRU order, so pages
+ * read a single time by a full table scan leave the cache before the pages
+ * that are repeatedly accessed.
+ *
+ * The reference history of evicted pages is kept for a bounded number of
+ * pages, so a page that returns to the cache soon is not treated as new.
+ *
+ * @author Sergio
+ *
+ * @param <P> Page type
+ */
+public class LRUKCache<P extends Page> extends Cache<P> {
+
+    /**
+     * The default number of remembered references per page.
+     */
+    public static final int DEFAULT_K = 2;
+
+    /**
+     * The number of remembered references per page.
+     */
+    private final int k;
+
+    /**
+     * A logical clock, incremented at each reference.
+     */
+    private long time = 0;
+
+    /**
+     * The reference history of a page.
+     */
+    private class History implements Comparable<History> {
+
+        final int pageID;
+
+        //the times of the last k references, the most recent first
+        final long[] references = new long[k];
+        int count = 0;
+
+        //the page, or null if the page is not resident
+        P page;
+
+        History(int pageID) {
+            this.pageID = pageID;
+        }
+
+        void reference() {
+            System.arraycopy(references, 0, references, 1, k - 1);
+            references[0] = ++time;
+            if (count < k) {
+                count++;
+            }
+        }
+
+        /**
+         * The time of the k-th most recent reference, or the lowest possible
+         * value if the page has less than k references.
+         */
+        long kthReference() {
+            return count < k ? Long.MIN_VALUE : references[k - 1];
+        }
+
+        @Override
+        public int compareTo(History o) {
+            int c = Long.compare(kthReference(), o.kthReference());
+            if (c != 0) {
+                return c;
+            }
+            c = Long.compare(references[0], o.references[0]);
+            if (c != 0) {
+                return c;
+            }
+            return Integer.compare(pageID, o.pageID);
+        }
+    }
+
+    /**
+     * The histories of the resident pages.
+     */
+    private HashMap<Integer, History> resident;
+
+    /**
+     * The resident pages, ordered from the first to the last eviction
+     * candidate.
+     */
+    private TreeSet<History> victims;
+
+    /**
+     * The histories of evicted pages, from the oldest to the newest eviction.
+     */
+    private LinkedHashMap<Integer, History> retained;
+
+    /**
+     * Initializes this cache with the specified parameters.
+     *
+     * @param cacheSizeBytes the maximum number of bytes for this cache
+     */
+    public LRUKCache(int cacheSizeBytes) {
+        this(cacheSizeBytes, DEFAULT_K);
+    }
+
+    /**
+     * Initializes this cache with the specified parameters.
+     *
+     * @param cacheSizeBytes the maximum number of bytes for this cache
+     * @param k the number of remembered references per page
+     */
+    public LRUKCache(int cacheSizeBytes, int k) {
+        super(cacheSizeBytes);
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be positive: " + k);
+        }
+        this.k = k;
+    }
+
+    /**
+     * Registers a reference to a resident page, updating its position among
+     * the eviction candidates.
+     */
+    private void reference(History history) {
+        victims.remove(history);
+        history.reference();
+        victims.add(history);
+    }
+
+    @Override
+    protected P getFromCache(int pageID) {
+        History history = resident.get(pageID);
+        if (history == null) {
+            return null;
+        }
+        reference(history);
+        return history.page;
+    }
+
+    @Override
+    protected P peekCache(int pageID) {
+        History history = resident.get(pageID);
+        return history == null ? null : history.page;
+    }
+
+    @Override
+    protected void addToCache(int pageID, P page) {
+        History history = resident.get(pageID);
+        if (history != null) {
+            history.page = page;
+            reference(history);
+            return;
+        }
+        if (resident.size() >= Math.max(cacheSize, 1)) {
+            evict();
+        }
+        history = retained.remove(pageID);
+        if (history == null) {
+            history = new History(pageID);
+        }
+        history.page = page;
+        history.reference();
+        resident.put(pageID, history);
+        victims.add(history);
+    }
+
+    /**
+     * Evicts the page with the oldest k-th reference and retains its history.
+     */
+    private void evict() {
+        History victim = victims.pollFirst();
+        resident.remove(victim.pageID);
+        P page = victim.page;
+        victim.page = null;
+        retained.put(victim.pageID, victim);
+        if (retained.size() > cacheSize) {
+            Iterator<History> it = retained.values().iterator();
+            it.next();
+            it.remove();
+        }
+        expirePage(page);
+    }
+
+    @Override
+    protected void deleteFromCache(int pageID) {
+        History history = resident.remove(pageID);
+        if (history != null) {
+            victims.remove(history);
+        }
+        retained.remove(pageID);
+    }
+
+    @Override
+    protected void initCache() {
+        resident = new HashMap<>();
+        victims = new TreeSet<>();
+        retained = new LinkedHashMap<>();
+    }
+
+    @Override
+    protected void clearCache() {
+        resident.clear();
+        victims.clear();
+        retained.clear();
+    }
+
+    @Override
+    protected Collection<P> getCachePages() {
+        List<P> pages = new ArrayList<>(resident.size());
+        for (History history : resident.values()) {
+            pages.add(history.page);
+        }
+        return pages;
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent.cache;
+
+import ibd.persistent.Page;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An LRU cache with midpoint insertion.<br>
+ * The LRU list is split in a young and an old sublist. Pages that enter the
+ * cache are inserted at the head of the old sublist (the midpoint of the whole
+ * list) and are only promoted to the young sublist when they are accessed
+ * again. Pages touched a single time, such as the ones read by a full table
+ * scan, therefore leave the cache through the old sublist without evicting
+ * the frequently used pages kept in the young sublist.
+ *
+ * @author Sergio
+ *
+ * @param <P> Page type
+ */
+public class MidPointLRUCache<P extends Page> extends Cache<P> {
+
+    /**
+     * The default fraction of the cache reserved to the old sublist.
+     */
+    public static final double DEFAULT_OLD_RATIO = 3.0 / 8;
+
+    /**
+     * The fraction of the cache reserved to the old sublist.
+     */
+    private final double oldRatio;
+
+    /**
+     * The maximum number of pages of the young sublist.
+     */
+    private int youngCapacity;
+
+    /**
+     * The young sublist, from the least to the most recently used page.
+     */
+    private LinkedHashMap<Integer, P> young;
+
+    /**
+     * The old sublist, from the least to the most recently inserted page.
+     */
+    private LinkedHashMap<Integer, P> old;
+
+    /**
+     * Initializes this cache with the specified parameters.
+     *
+     * @param cacheSizeBytes the maximum number of bytes for this cache
+     */
+    public MidPointLRUCache(int cacheSizeBytes) {
+        this(cacheSizeBytes, DEFAULT_OLD_RATIO);
+    }
+
+    /**
+     * Initializes this cache with the specified parameters.
+     *
+     * @param cacheSizeBytes the maximum number of bytes for this cache
+     * @param oldRatio the fraction of the cache reserved to the old sublist
+     */
+    public MidPointLRUCache(int cacheSizeBytes, double oldRatio) {
+        super(cacheSizeBytes);
+        if (oldRatio <= 0 || oldRatio >= 1) {
+            throw new IllegalArgumentException("The old sublist ratio must be between 0 and 1: " + oldRatio);
+        }
+        this.oldRatio = oldRatio;
+    }
+
+    @Override
+    protected P getFromCache(int pageID) {
+        P page = young.remove(pageID);
+        if (page != null) {
+            //becomes the MRU page of the young sublist
+            young.put(pageID, page);
+            return page;
+        }
+        page = old.remove(pageID);
+        if (page != null) {
+            //a second access promotes the page to the young sublist
+            young.put(pageID, page);
+            balance();
+        }
+        return page;
+    }
+
+    @Override
+    protected P peekCache(int pageID) {
+        P page = young.get(pageID);
+        return page != null ? page : old.get(pageID);
+    }
+
+    @Override
+    protected void addToCache(int pageID, P page) {
+        if (young.containsKey(pageID)) {
+            young.remove(pageID);
+            young.put(pageID, page);
+            return;
+        }
+        if (old.containsKey(pageID)) {
+            old.put(pageID, page);
+            return;
+        }
+        //new pages enter the cache at the midpoint
+        old.put(pageID, page);
+        while (young.size() + old.size() > cacheSize) {
+            LinkedHashMap<Integer, P> list = old.isEmpty() ? young : old;
+            Iterator<P> it = list.values().iterator();
+            P eldest = it.next();
+            it.remove();
+            expirePage(eldest);
+        }
+    }
+
+    /**
+     * Moves the LRU pages of the young sublist to the head of the old sublist
+     * while the young sublist is larger than its capacity.
+     */
+    private void balance() {
+        while (young.size() > youngCapacity) {
+            Iterator<Map.Entry<Integer, P>> it = young.entrySet().iterator();
+            Map.Entry<Integer, P> eldest = it.next();
+            it.remove();
+            old.put(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    @Override
+    protected void deleteFromCache(int pageID) {
+        if (young.remove(pageID) == null) {
+            old.remove(pageID);
+        }
+    }
+
+    @Override
+    protected void initCache() {
+        youngCapacity = Math.max(1, (int) (cacheSize * (1 - oldRatio)));
+        young = new LinkedHashMap<>();
+        old = new LinkedHashMap<>();
+    }
+
+    @Override
+    protected void clearCache() {
+        young.clear();
+        old.clear();
+    }
+
+    @Override
+    protected Collection<P> getCachePages() {
+        List<P> pages = new ArrayList<>(young.size() + old.size());
+        pages.addAll(young.values());
+        pages.addAll(old.values());
+        return pages;
+    }
+
+}
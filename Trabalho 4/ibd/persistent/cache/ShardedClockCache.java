@@ -0,0 +1,377 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent.cache;
+
+import ibd.persistent.Page;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent cache that replaces the single monitor of {@link LRUCache} by
+ * a number of independent shards. Each page id belongs to one shard, and each
+ * shard manages its pages with the CLOCK (second chance) policy.
+ *
+ * A cache hit does not take any lock: the page is looked up in the shard's
+ * concurrent map and only its reference bit is set. The shard's lock is taken
+ * only on misses, insertions and removals, when the clock hand may need to
+ * move. Threads that access pages of different shards never block each other.
+ *
+ * Readers do not write the dirty pages they evict, as a writer may be changing
+ * them. Those pages stay in the set of dirty pages until a writer writes them,
+ * and their number is limited to a fraction of the cache.
+ *
+ * @author Sergio
+ *
+ * @param <P> Page type
+ */
+public class ShardedClockCache<P extends Page> extends Cache<P> {
+
+    /**
+     * The minimum number of pages kept by each shard. The number of shards is
+     * reduced for small caches so that no shard gets fewer pages than this.
+     */
+    private static final int MIN_PAGES_PER_SHARD = 16;
+
+    /**
+     * The requested number of shards, or 0 to derive it from the number of
+     * available processors.
+     */
+    private final int requestedShards;
+
+    /**
+     * The shards of this cache. Their number is a power of two.
+     */
+    private List<Shard> shards;
+
+    /**
+     * The ids of the dirty pages evicted by readers, which are no longer
+     * counted in the cache's size. The set may also hold pages already
+     * cleaned.
+     */
+    private final Set<Integer> droppedDirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Initializes this cache with the specified parameters. The number of
+     * shards is derived from the number of available processors.
+     *
+     * @param cacheSizeBytes the maximum number of bytes for this cache
+     */
+    public ShardedClockCache(int cacheSizeBytes) {
+        this(cacheSizeBytes, 0);
+    }
+
+    /**
+     * Initializes this cache with the specified parameters.
+     *
+     * @param cacheSizeBytes the maximum number of bytes for this cache
+     * @param shards the number of shards, rounded up to a power of two
+     */
+    public ShardedClockCache(int cacheSizeBytes, int shards) {
+        super(cacheSizeBytes);
+        this.requestedShards = shards;
+    }
+
+    /**
+     * A cached page and its reference bit.
+     */
+    private class Frame {
+
+        final int pageID;
+        volatile P page;
+        volatile boolean referenced = true;
+        int slot;
+
+        Frame(int pageID, P page) {
+            this.pageID = pageID;
+            this.page = page;
+        }
+    }
+
+    /**
+     * A fraction of the cache with its own map, clock ring and lock.
+     */
+    private class Shard {
+
+        final ConcurrentHashMap<Integer, Frame> map;
+        final Object[] ring;
+        int hand = 0;
+
+        Shard(int capacity) {
+            map = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+            ring = new Object[capacity];
+        }
+
+        P get(int pageID) {
+            Frame frame = map.get(pageID);
+            if (frame == null) {
+                return null;
+            }
+            //avoids dirtying the cache line when the bit is already set
+            if (!frame.referenced) {
+                frame.referenced = true;
+            }
+            return frame.page;
+        }
+
+        /**
+         * Adds or replaces a page. Must be called holding the shard's lock.
+         */
+        void put(int pageID, P page) {
+            Frame frame = map.get(pageID);
+            if (frame != null) {
+                frame.page = page;
+                frame.referenced = true;
+                return;
+            }
+            frame = new Frame(pageID, page);
+            frame.slot = findSlot();
+            ring[frame.slot] = frame;
+            map.put(pageID, frame);
+        }
+
+        /**
+         * Moves the clock hand until a free slot is found or a page without
+         * the reference bit is evicted. Must be called holding the shard's
+         * lock.
+         */
+        @SuppressWarnings("unchecked")
+        int findSlot() {
+            boolean reader = !Thread.holdsLock(ShardedClockCache.this);
+            int skipped = 0;
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) % ring.length;
+                Frame frame = (Frame) ring[slot];
+                if (frame == null) {
+                    return slot;
+                }
+                if (frame.referenced) {
+                    frame.referenced = false;
+                    continue;
+                }
+                //pages are marked dirty under this same lock, so the dirty flag checked here is not changing
+                boolean dropDirty = reader && frame.page.isDirty();
+                if (dropDirty && droppedDirty.size() >= getMaxDroppedDirty() && skipped++ < ring.length) {
+                    //the writers are behind, so a clean page is evicted instead, if the shard has one
+                    continue;
+                }
+                map.remove(frame.pageID);
+                ring[slot] = null;
+                if (dropDirty) {
+                    //a reader must not write a page that a writer may be changing. The page stays in the set of
+                    //dirty pages, where the next writer, checkpoint or background writer writes it, and where a miss finds it
+                    droppedDirty.add(frame.pageID);
+                    return slot;
+                }
+                expirePage(frame.page);
+                return slot;
+            }
+        }
+
+        /**
+         * Removes a page. Must be called holding the shard's lock.
+         */
+        void remove(int pageID) {
+            Frame frame = map.remove(pageID);
+            if (frame != null) {
+                ring[frame.slot] = null;
+            }
+        }
+
+        /**
+         * Removes all pages. Must be called holding the shard's lock.
+         */
+        void clear() {
+            map.clear();
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = null;
+            }
+            hand = 0;
+        }
+    }
+
+    /**
+     * Returns the shard responsible for the page.
+     *
+     * @param pageID the id of the page
+     * @return the page's shard
+     */
+    private Shard shardFor(int pageID) {
+        //spreads consecutive ids, which are usually accessed together, over the shards
+        int h = pageID * 0x9E3779B9;
+        return shards.get((h ^ (h >>> 16)) & (shards.size() - 1));
+    }
+
+    /**
+     * Retrieves a page from the cache, reading it from the underlying file on
+     * a miss. Hits do not lock.
+     *
+     * @param pageID the id of the page to be returned
+     * @return the page associated to the id
+     */
+    @Override
+    public P readPage(int pageID) {
+        Shard shard = shardFor(pageID);
+        P page = shard.get(pageID);
+        if (page != null) {
+            return page;
+        }
+        synchronized (shard) {
+            //another thread may have loaded the page in the meantime
+            page = shard.get(pageID);
+            if (page == null) {
+                page = readFromFile(pageID);
+                shard.put(pageID, page);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Marks a page as dirty and keeps it in the cache. Both happen under the
+     * shard's lock, the one taken by the eviction of the shard's pages, so a
+     * page being evicted is either written by the eviction or stays dirty.
+     *
+     * @param pageID the id of the page
+     * @param page the page
+     */
+    @Override
+    public void writePage(int pageID, P page) {
+        Shard shard = shardFor(pageID);
+        synchronized (shard) {
+            markDirty(pageID, page);
+            shard.put(pageID, page);
+        }
+        if (droppedDirty.size() >= getMaxDroppedDirty() && Thread.holdsLock(this)) {
+            writeDroppedDirty();
+        }
+    }
+
+    /**
+     * @return the number of dirty pages evicted by readers from which the
+     * next writer writes them
+     */
+    private int getMaxDroppedDirty() {
+        return Math.max(1, cacheSize / 4);
+    }
+
+    /**
+     * Writes the dirty pages evicted by readers. Must be called by a writer
+     * holding the cache's lock, so none of the pages is being changed.
+     */
+    private void writeDroppedDirty() {
+        for (Integer pageID : droppedDirty) {
+            P page = dirtyPages.get(pageID);
+            if (page != null) {
+                //a page loaded again by a reader meanwhile is written all the same, and stays cached clean
+                expirePage(page);
+            }
+            droppedDirty.remove(pageID);
+        }
+    }
+
+    @Override
+    protected void markClean(int pageID) {
+        super.markClean(pageID);
+        droppedDirty.remove(pageID);
+    }
+
+    /**
+     * Returns a page that is not cached. A dirty page dropped by a reader is
+     * taken from the set of dirty pages, as the file holds an older version.
+     *
+     * @param pageID the id of the page
+     * @return the page
+     */
+    @Override
+    protected P readFromFile(int pageID) {
+        P page = dirtyPages.get(pageID);
+        if (page != null) {
+            droppedDirty.remove(pageID);
+            return page;
+        }
+        return super.readFromFile(pageID);
+    }
+
+    @Override
+    protected P getFromCache(int pageID) {
+        return shardFor(pageID).get(pageID);
+    }
+
+    @Override
+    protected P peekCache(int pageID) {
+        Frame frame = shardFor(pageID).map.get(pageID);
+        if (frame == null) {
+            //a dirty page dropped by a reader must not be prefetched from the file
+            return dirtyPages.get(pageID);
+        }
+        return frame.page;
+    }
+
+    @Override
+    protected void addToCache(int pageID, P page) {
+        Shard shard = shardFor(pageID);
+        synchronized (shard) {
+            shard.put(pageID, page);
+        }
+    }
+
+    @Override
+    protected void deleteFromCache(int pageID) {
+        Shard shard = shardFor(pageID);
+        synchronized (shard) {
+            shard.remove(pageID);
+        }
+    }
+
+    @Override
+    protected void initCache() {
+        int n = requestedShards > 0 ? requestedShards : Runtime.getRuntime().availableProcessors() * 4;
+        while (n > 1 && cacheSize / n < MIN_PAGES_PER_SHARD) {
+            n /= 2;
+        }
+        int count = Integer.highestOneBit(Math.max(n, 1));
+        if (count < n) {
+            count <<= 1;
+        }
+        int capacity = Math.max(1, cacheSize / count);
+        shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(new Shard(capacity));
+        }
+    }
+
+    @Override
+    protected void clearCache() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.clear();
+            }
+        }
+    }
+
+    @Override
+    protected Collection<P> getCachePages() {
+        List<P> pages = new ArrayList<>();
+        for (Shard shard : shards) {
+            for (Frame frame : shard.map.values()) {
+                pages.add(frame.page);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * @return the number of shards of this cache
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.persistent.cache;
+
+import ibd.persistent.Page;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A 2Q cache (Johnson and Shasha, 1994).<br>
+ * Pages read for the first time go to a FIFO queue (A1in). When they leave
+ * this queue, only their ids are remembered in a second FIFO (A1out). A page
+ * that is requested again, either while still in A1in or while its id is in
+ * A1out, is considered hot and is stored in an LRU list (Am). Pages touched a
+ * single time, such as the ones read by a full table scan, only circulate
+ * through A1in and never displace the hot pages kept in Am.
+ *
+ * Unlike the full version of the algorithm, a hit in A1in promotes the page.
+ * Otherwise a hot set that fits in A1in would never reach Am and would be
+ * flushed by the next scan.
+ *
+ * @author Sergio
+ *
+ * @param <P> Page type
+ */
+public class TwoQueueCache<P extends Page> extends Cache<P> {
+
+    /**
+     * The default fraction of the cache used by the A1in queue.
+     */
+    public static final double DEFAULT_IN_RATIO = 0.25;
+
+    /**
+     * The default number of remembered ids of the A1out queue, as a fraction
+     * of the cache size.
+     */
+    public static final double DEFAULT_OUT_RATIO = 0.5;
+
+    private final double inRatio;
+
+    private final double outRatio;
+
+    /**
+     * The maximum number of pages of A1in.
+     */
+    private int kin;
+
+    /**
+     * The maximum number of ids of A1out.
+     */
+    private int kout;
+
+    /**
+     * The hot pages, from the least to the most recently used.
+     */
+    private LinkedHashMap<Integer, P> am;
+
+    /**
+     * The pages read for the first time, in arrival order.
+     */
+    private LinkedHashMap<Integer, P> a1in;
+
+    /**
+     * The ids of the pages that recently left A1in, in departure order.
+     */
+    private LinkedHashSet<Integer> a1out;
+
+    /**
+     * Initializes this cache with the specified parameters.
+     *
+     * @param cacheSizeBytes the maximum number of bytes for this cache
+     */
+    public TwoQueueCache(int cacheSizeBytes) {
+        this(cacheSizeBytes, DEFAULT_IN_RATIO, DEFAULT_OUT_RATIO);
+    }
+
+    /**
+     * Initializes this cache with the specified parameters.
+     *
+     * @param cacheSizeBytes the maximum number of bytes for this cache
+     * @param inRatio the fraction of the cache used by the A1in queue
+     * @param outRatio the number of ids remembered by A1out, as a fraction of
+     * the cache size
+     */
+    public TwoQueueCache(int cacheSizeBytes, double inRatio, double outRatio) {
+        super(cacheSizeBytes);
+        this.inRatio = inRatio;
+        this.outRatio = outRatio;
+    }
+
+    @Override
+    protected P getFromCache(int pageID) {
+        P page = am.get(pageID);
+        if (page != null) {
+            return page;
+        }
+        page = a1in.remove(pageID);
+        if (page != null) {
+            //a second access promotes the page to the hot list
+            am.put(pageID, page);
+        }
+        return page;
+    }
+
+    /**
+     * A page found in Am becomes its MRU page, as the contract allows for a
+     * single recency list. Pages are never moved between the queues, so a
+     * page of A1in is not promoted by a peek.
+     */
+    @Override
+    protected P peekCache(int pageID) {
+        P page = am.get(pageID);
+        return page != null ? page : a1in.get(pageID);
+    }
+
+    @Override
+    protected void addToCache(int pageID, P page) {
+        if (am.containsKey(pageID)) {
+            am.put(pageID, page);
+            return;
+        }
+        if (a1in.containsKey(pageID)) {
+            a1in.put(pageID, page);
+            return;
+        }
+        reclaim();
+        if (a1out.remove(pageID)) {
+            am.put(pageID, page);
+        } else {
+            a1in.put(pageID, page);
+        }
+    }
+
+    /**
+     * Frees one page slot if the cache is full. Pages leave A1in while it is
+     * larger than its share of the cache, otherwise the LRU page of Am leaves.
+     */
+    private void reclaim() {
+        if (am.size() + a1in.size() < Math.max(cacheSize, 1)) {
+            return;
+        }
+        if (a1in.size() > kin || am.isEmpty()) {
+            Iterator<Map.Entry<Integer, P>> it = a1in.entrySet().iterator();
+            Map.Entry<Integer, P> eldest = it.next();
+            it.remove();
+            expirePage(eldest.getValue());
+            a1out.add(eldest.getKey());
+            if (a1out.size() > kout) {
+                Iterator<Integer> out = a1out.iterator();
+                out.next();
+                out.remove();
+            }
+        } else {
+            Iterator<P> it = am.values().iterator();
+            P eldest = it.next();
+            it.remove();
+            expirePage(eldest);
+        }
+    }
+
+    @Override
+    protected void deleteFromCache(int pageID) {
+        am.remove(pageID);
+        a1in.remove(pageID);
+        a1out.remove(pageID);
+    }
+
+    @Override
+    protected void initCache() {
+        kin = Math.max(1, (int) (cacheSize * inRatio));
+        kout = Math.max(1, (int) (cacheSize * outRatio));
+        am = new LinkedHashMap<>(16, 0.75f, true);
+        a1in = new LinkedHashMap<>();
+        a1out = new LinkedHashSet<>();
+    }
+
+    @Override
+    protected void clearCache() {
+        am.clear();
+        a1in.clear();
+        a1out.clear();
+    }
+
+    @Override
+    protected Collection<P> getCachePages() {
+        List<P> pages = new ArrayList<>(am.size() + a1in.size());
+        pages.addAll(am.values());
+        pages.addAll(a1in.values());
+        return pages;
+    }
+
+}
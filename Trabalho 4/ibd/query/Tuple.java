@@ -8,6 +8,7 @@ package ibd.query;
 import java.util.Arrays;
 import ibd.table.prototype.DataRow;
 import ibd.table.prototype.LinkedDataRow;
+import ibd.table.prototype.PrimitiveDataRow;
 import ibd.table.prototype.query.fields.Field;
 
 /**
@@ -23,6 +24,12 @@ public class Tuple implements Comparable<Tuple> {
      */
     public LinkedDataRow rows[];
 
+    /**
+     * the data rows in primitive form, converted only when an operation asks
+     * for them. The converted rows are kept by the tuples built from this one.
+     */
+    private PrimitiveDataRow primitiveRows[];
+
     /**
      * Defines a single source of information for this tuple. Useful when the
      * tuples are produced by a source operation that has direct access to the
@@ -34,6 +41,7 @@ public class Tuple implements Comparable<Tuple> {
     public void setSingleSourceRow(String dataSourceAlias, LinkedDataRow row) {
         rows = new LinkedDataRow[1];
         rows[0] = row;
+        primitiveRows = null;
     }
 
     /**
@@ -43,6 +51,7 @@ public class Tuple implements Comparable<Tuple> {
      */
     public void setSourceRows(LinkedDataRow rows[]) {
         this.rows = rows;
+        primitiveRows = null;
     }
 
     /**
@@ -59,7 +68,7 @@ public class Tuple implements Comparable<Tuple> {
             rows[count] = sourceTuple;
             count++;
         }
-
+        primitiveRows = (t.primitiveRows == null) ? null : t.primitiveRows.clone();
     }
 
     /**
@@ -80,7 +89,54 @@ public class Tuple implements Comparable<Tuple> {
             rows[count] = sourceTuple;
             count++;
         }
+        primitiveRows = null;
+        if (t1.primitiveRows != null || t2.primitiveRows != null) {
+            primitiveRows = new PrimitiveDataRow[rows.length];
+            if (t1.primitiveRows != null) {
+                System.arraycopy(t1.primitiveRows, 0, primitiveRows, 0, t1.rows.length);
+            }
+            if (t2.primitiveRows != null) {
+                System.arraycopy(t2.primitiveRows, 0, primitiveRows, t1.rows.length, t2.rows.length);
+            }
+        }
+    }
 
+    /**
+     * Returns a data row of this tuple in primitive form, converting it on
+     * the first request.
+     *
+     * @param index the index of the data row
+     * @return the data row in primitive form
+     */
+    public PrimitiveDataRow getPrimitiveRow(int index) {
+        if (primitiveRows == null || primitiveRows.length != rows.length) {
+            primitiveRows = new PrimitiveDataRow[rows.length];
+        }
+        PrimitiveDataRow row = primitiveRows[index];
+        if (row == null) {
+            row = rows[index].getPrototype().convertToPrimitiveRow(rows[index]);
+            primitiveRows[index] = row;
+        }
+        return row;
+    }
+
+    /**
+     * Compares the value of a column of a data row of this tuple with the
+     * value of a column of a primitive row. The data row is not converted
+     * just for the comparison.
+     *
+     * @param index the index of the data row
+     * @param colIndex the column of the data row
+     * @param other the primitive row
+     * @param otherColIndex the column of the primitive row
+     * @return a negative value, zero or a positive value as the value of this
+     * tuple is smaller than, equal to or larger than the other value
+     */
+    public int compareColumn(int index, int colIndex, PrimitiveDataRow other, int otherColIndex) {
+        if (primitiveRows != null && primitiveRows.length == rows.length && primitiveRows[index] != null) {
+            return primitiveRows[index].compare(colIndex, other, otherColIndex);
+        }
+        return rows[index].getPrototype().compareColumn(rows[index], colIndex, other, otherColIndex);
     }
 
     @Override
@@ -5,6 +5,7 @@
  */
 package ibd.query.binaryop.join;
 
+import ibd.query.ColumnLocation;
 import ibd.query.Operation;
 import ibd.query.UnpagedOperationIterator;
 import ibd.query.Tuple;
@@ -131,8 +132,9 @@ public class NestedLoopJoin extends Join {
                 JoinTerm joinTerm = joinTerms.get(i);
                 SingleColumnLookupFilter f = (SingleColumnLookupFilter) filter;
                 //Comparable value = currentLeftTuple.rows[joinTerm.getLeftTupleRowIndex()].getValue(f.getColumn());
-                Comparable value = currentLeftTuple.rows[joinTerm.getLeftColumnDescriptor().getColumnLocation().rowIndex].getValue(joinTerm.getLeftColumnDescriptor().getColumnLocation().colIndex);
-                f.setValue(value);
+                //the right side tuples are compared with the left side value in primitive form
+                ColumnLocation location = joinTerm.getLeftColumnDescriptor().getColumnLocation();
+                f.setValue(currentLeftTuple.getPrimitiveRow(location.rowIndex), location.colIndex);
 
             }
         }
@@ -8,6 +8,7 @@ package ibd.query.lookup;
 import ibd.query.ColumnDescriptor;
 import ibd.query.Tuple;
 import ibd.table.ComparisonTypes;
+import ibd.table.prototype.PrimitiveDataRow;
 
 
 /**
@@ -26,6 +27,13 @@ public class SingleColumnLookupFilter implements LookupFilter{
     * the literal value to be compared with
     */
     Comparable value;
+
+    /*
+    * the row and column holding the value, when it is taken from a primitive row.
+    * The boxed value is created only if requested
+    */
+    PrimitiveDataRow valueRow;
+    int valueColIndex;
     
     /*
     * the comparison type
@@ -81,6 +89,20 @@ public class SingleColumnLookupFilter implements LookupFilter{
     
     public void setValue(Comparable v){
         this.value = v;
+        this.valueRow = null;
+    }
+
+    /**
+     * Sets the value as the column of a primitive row, so tuples are matched
+     * without boxing their values.
+     *
+     * @param row the row holding the value
+     * @param colIndex the index of the column holding the value
+     */
+    public void setValue(PrimitiveDataRow row, int colIndex){
+        this.value = null;
+        this.valueRow = row;
+        this.valueColIndex = colIndex;
     }
     
     /**
@@ -88,6 +110,9 @@ public class SingleColumnLookupFilter implements LookupFilter{
      * @return the literal value placed at the right side of the comparison.
      */
     public Comparable getValue(){
+        if (value == null && valueRow != null) {
+            value = valueRow.getValue(valueColIndex);
+        }
         return value;
     }
     
@@ -99,6 +124,10 @@ public class SingleColumnLookupFilter implements LookupFilter{
         //compares the left side column against a right side value
         //return ComparisonTypes.match(tuple.rows[tupleIndex].getValue(column.getColumnName()), value, comparisonType);
         //System.out.println(tuple.rows[tupleIndex].getValue(colIndex));
+        if (valueRow != null) {
+            int resp = tuple.compareColumn(column.getColumnLocation().rowIndex, column.getColumnLocation().colIndex, valueRow, valueColIndex);
+            return ComparisonTypes.match(resp, comparisonType);
+        }
         return ComparisonTypes.match(tuple.rows[column.getColumnLocation().rowIndex].getValue(column.getColumnLocation().colIndex), value, comparisonType);
     }
     
@@ -106,7 +135,7 @@ public class SingleColumnLookupFilter implements LookupFilter{
     public String toString() {
         String col = column.getTableName()+"."+column.getColumnName();
         String compType = ComparisonTypes.getComparisonOperation(comparisonType);
-        return col+compType+value;
+        return col+compType+getValue();
     }
     
 }
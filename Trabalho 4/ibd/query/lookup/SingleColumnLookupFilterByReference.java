@@ -67,7 +67,8 @@ public class SingleColumnLookupFilterByReference extends SingleColumnLookupFilte
     public void setValue(List<Tuple> processedTuples) {
         //value = processedTuples.get(tl.tupleIndex).rows[tl.rowIndex].getValue(valueColumn.getColumnName());
         //value = processedTuples.get(tl.tupleIndex).rows[tl.rowIndex].getValue(tl.colIndex);
-        value = processedTuples.get(valueColumn.getColumnLocation().tupleIndex).rows[valueColumn.getColumnLocation().rowIndex].getValue(valueColumn.getColumnLocation().colIndex);
+        Tuple tuple = processedTuples.get(valueColumn.getColumnLocation().tupleIndex);
+        setValue(tuple.getPrimitiveRow(valueColumn.getColumnLocation().rowIndex), valueColumn.getColumnLocation().colIndex);
 
     }
 
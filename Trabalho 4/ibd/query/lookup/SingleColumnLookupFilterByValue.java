@@ -52,7 +52,7 @@ public class SingleColumnLookupFilterByValue extends SingleColumnLookupFilter{
     public String toString() {
         String col = column.getTableName()+"."+column.getColumnName();
         String compType = ComparisonTypes.getComparisonOperation(comparisonType);
-        return col+compType+value;
+        return col+compType+getValue();
     }
     
 }
@@ -12,6 +12,7 @@ import ibd.query.lookup.LookupFilter;
 import ibd.query.lookup.CompositeLookupFilter;
 import ibd.query.lookup.SingleColumnLookupFilter;
 import ibd.table.ComparisonTypes;
+import ibd.table.SecondaryIndex;
 import ibd.table.Table;
 import ibd.table.lookup.CompositeRowLookupFilter;
 import ibd.table.lookup.NoRowLookupFilter;
@@ -58,6 +59,26 @@ public class IndexScan extends SourceOperation {
      */
     RowLookupFilter slowLookupFilter;
 
+    /**
+     * the conjunctive filter over a column with a secondary index, used to
+     * reach the rows when the primary key cannot be used. It remains part of
+     * the slow filters
+     */
+    SingleColumnLookupFilter indexFilter;
+
+    /**
+     * the columns read from the tuples produced by this operation, besides
+     * the ones used by the delegated filters, or null if all columns may be
+     * read
+     */
+    List<String> requiredColumns = null;
+
+    /**
+     * indicates if the index of the index filter holds all required columns,
+     * so the rows are rebuilt from the index without reading the table
+     */
+    boolean indexOnly = false;
+
     /**
      *
      * @param tableAlias the alias of the table reached by this operation
@@ -68,6 +89,18 @@ public class IndexScan extends SourceOperation {
         this.table = table;
     }
 
+    /**
+     * Declares the columns read from the tuples produced by this operation by
+     * the operations above it, not counting the ones used by the filters
+     * delegated to it. If a secondary index holds all of them, the tuples are
+     * produced from the index alone, and their other columns hold no value.
+     *
+     * @param columns the column names, or null if all columns may be read
+     */
+    public void setRequiredColumns(List<String> columns) {
+        requiredColumns = columns;
+    }
+
     @Override
     public void prepare() throws Exception {
         
@@ -91,6 +124,8 @@ public class IndexScan extends SourceOperation {
 
         //an empty row filter is prepared, just in case
         slowLookupFilter = new NoRowLookupFilter();
+        indexFilter = null;
+        indexOnly = false;
 
         //the parent operator has delegated filters to the index scan
         if (hasDelegatedFilters) {
@@ -123,10 +158,83 @@ public class IndexScan extends SourceOperation {
                 }
             }
 
+            //if the primary key cannot be used, a secondary index may be used instead
+            if (!canLookup) {
+                List<SingleColumnLookupFilter> indexFilters = new ArrayList();
+                fillIndexFilters(joinFilter, indexFilters);
+                for (SingleColumnLookupFilter f : indexFilters) {
+                    //equality filters are preferred, as they reach fewer rows
+                    if (indexFilter == null || f.getComparisonType() == ComparisonTypes.EQUAL) {
+                        indexFilter = f;
+                    }
+                    if (indexFilter.getComparisonType() == ComparisonTypes.EQUAL) {
+                        break;
+                    }
+                }
+            }
+
             //fills the slow Filter with the lookup filters that are not part of the fast Filters list
             slowLookupFilter = fillSlowFilter(parentOperation.getFilters());
+
+            //the table is not read if the index also holds the columns used by the filters and by the operations above
+            if (indexFilter != null && requiredColumns != null) {
+                List<String> usedColumns = new ArrayList(requiredColumns);
+                if (fillFilterColumns(joinFilter, usedColumns)) {
+                    indexOnly = table.isCoveringIndex(indexFilter.getColumnDescriptor().getColumnName(), usedColumns);
+                }
+            }
+        }
+
+    }
+
+    //fills the list of columns used by the filters. Returns false if a filter uses columns that cannot be identified
+    private boolean fillFilterColumns(LookupFilter filter, List<String> columns) {
+        if (filter instanceof CompositeLookupFilter compositeLookupFilter) {
+            for (LookupFilter f : compositeLookupFilter.getFilters()) {
+                if (!fillFilterColumns(f, columns)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (filter instanceof SingleColumnLookupFilter singleColumnLookupFilter) {
+            columns.add(singleColumnLookupFilter.getColumnDescriptor().getColumnName());
+            return true;
         }
+        return false;
+    }
+
+    //fills the list of conjunctive filters that can be solved by a secondary index of the table
+    private void fillIndexFilters(LookupFilter filter, List<SingleColumnLookupFilter> indexFilters) {
+        if (filter instanceof CompositeLookupFilter compositeLookupFilter) {
+            if (compositeLookupFilter.getBooleanConnector() == CompositeLookupFilter.OR) {
+                return;
+            }
+            for (LookupFilter f : compositeLookupFilter.getFilters()) {
+                fillIndexFilters(f, indexFilters);
+            }
+        } else if (filter instanceof SingleColumnLookupFilter singleColumnLookupFilter) {
+            if (SecondaryIndex.supports(singleColumnLookupFilter.getComparisonType())
+                    && table.hasIndex(singleColumnLookupFilter.getColumnDescriptor().getColumnName())) {
+                indexFilters.add(singleColumnLookupFilter);
+            }
+        }
+
+    }
 
+    /**
+     * Returns an iterator over the rows reached through the secondary index,
+     * or null if the index cannot be used for the current filter value. If
+     * the index holds all required columns, the rows are rebuilt from it.
+     */
+    private Iterator<LinkedDataRow> getIndexedRecordsIterator() throws Exception {
+        if (indexFilter == null || indexFilter.getValue() == null) {
+            return null;
+        }
+        RowLookupFilter rowFilter = (slowLookupFilter instanceof NoRowLookupFilter) ? null : slowLookupFilter;
+        if (indexOnly) {
+            return table.getCoveredRecordsIterator(indexFilter.getColumnDescriptor().getColumnName(), indexFilter.getValue(), indexFilter.getComparisonType(), rowFilter);
+        }
+        return table.getIndexedRecordsIterator(indexFilter.getColumnDescriptor().getColumnName(), indexFilter.getValue(), indexFilter.getComparisonType(), rowFilter);
     }
 
     //fills the list of fast filters
@@ -176,6 +284,9 @@ public class IndexScan extends SourceOperation {
 
     @Override
     public String toString() {
+        if (indexOnly) {
+            return "[" + dataSourceAlias + "] Index Only Scan";
+        }
         return "[" + dataSourceAlias + "] Index Scan";
     }
 
@@ -202,6 +313,15 @@ public class IndexScan extends SourceOperation {
 
             return table.contains(fastLookupRow);
         } else {
+            try {
+                Iterator iterator = getIndexedRecordsIterator();
+                if (iterator != null) {
+                    return iterator.hasNext();
+                }
+            } catch (Exception ex) {
+                //should not return false. An exception should be thrown.
+                return false;
+            }
             if (slowLookupFilter instanceof NoRowLookupFilter) {
                 Iterator iterator;
                 try {
@@ -252,21 +372,24 @@ public class IndexScan extends SourceOperation {
                         fastLookupRow.setValue(filter.getColumnDescriptor().getColumnLocation().colIndex, filter.getValue());
                     }
 
-                    //the lookup occurs
-                    List<LinkedDataRow> records;
-
+                    //the lookup occurs. The rows are read as the iterator is consumed
                     if (slowLookupFilter instanceof NoRowLookupFilter) {
                         //no slow filter needs to be satisfied
-                        records = table.getRecords(fastLookupRow);
+                        iterator = table.getPrefixRecordsIterator(fastLookupRow, null);
                     } else {
                         //there are slow filters to be satisfied
-                        records = table.getRecords(fastLookupRow, slowLookupFilter);
+                        iterator = table.getPrefixRecordsIterator(fastLookupRow, slowLookupFilter);
                     }
-                    iterator = records.iterator();
                     return;
 
                 }
 
+                //the rows may be reached through a secondary index
+                iterator = getIndexedRecordsIterator();
+                if (iterator != null) {
+                    return;
+                }
+
                 //if it gets here, no fast filters exist, so we need to scan the entire table
                 //In this case, all filters are slow
                 if (slowLookupFilter instanceof NoRowLookupFilter) {
@@ -11,11 +11,11 @@ import ibd.query.UnpagedOperationIterator;
 import ibd.query.ReferedDataSource;
 import ibd.query.Tuple;
 import ibd.query.unaryop.sort.Sort;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import ibd.table.prototype.Prototype;
 import ibd.table.prototype.LinkedDataRow;
+import ibd.table.prototype.PrimitiveDataRow;
 import ibd.table.prototype.column.DoubleColumn;
 import ibd.table.prototype.column.IntegerColumn;
 import ibd.table.prototype.column.StringColumn;
@@ -193,14 +193,22 @@ public class Aggregation extends UnaryOperation {
 
     /**
      * this class produces resulting tuples from an aggregation over the child
-     * operation
+     * operation. The values are read in primitive form and accumulated as the
+     * tuples arrive, so they are neither boxed nor kept in a list.
      */
     private class AggregationIterator extends UnpagedOperationIterator {
 
         //the iterator over the child operation
         Iterator<Tuple> tuples;
-        Comparable prevGroupByValue;
-        List<Integer> groupedValues = new ArrayList();
+
+        //the row holding the group by value of the current group
+        PrimitiveDataRow prevGroupByRow;
+
+        //the aggregates of the current group
+        int count;
+        int sum;
+        int min;
+        int max;
 
         public AggregationIterator(List<Tuple> processedTuples, boolean withFilterDelegation) {
             super(processedTuples, withFilterDelegation, getDelegatedFilters());
@@ -208,137 +216,98 @@ public class Aggregation extends UnaryOperation {
             tuples = childOperation.lookUp(processedTuples, false);//returns all tuples from the child operation 
         }
 
-        private Comparable getValue(Tuple tp, ColumnDescriptor col) {
-            return tp.rows[col.getColumnLocation().rowIndex].getValue(col.getColumnName());
+        private void startGroup(PrimitiveDataRow groupByRow) {
+            prevGroupByRow = groupByRow;
+            count = 0;
+            sum = 0;
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+        }
+
+        private void accumulate(int value) {
+            count++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        private Tuple createTuple() {
+            Tuple tuple = new Tuple();
+            LinkedDataRow dataRow = new LinkedDataRow(prototype, false);
+            dataRow.setValue(0, prevGroupByRow.getValue(groupByColumn.getColumnLocation().colIndex));
+            aggregate(dataRow);
+            tuple.setSingleSourceRow(alias, dataRow);
+            return tuple;
         }
 
         @Override
         protected Tuple findNextTuple() {
+            int groupByRowIndex = groupByColumn.getColumnLocation().rowIndex;
+            int groupByColIndex = groupByColumn.getColumnLocation().colIndex;
+            int aggregateRowIndex = aggregateColumn.getColumnLocation().rowIndex;
+            int aggregateColIndex = aggregateColumn.getColumnLocation().colIndex;
             while (tuples.hasNext()) {
                 Tuple tp = tuples.next();
                 //a tuple must satisfy the lookup filter 
                 if (!lookup.match(tp)) {
                     continue;
                 }
-                Comparable groupByValue = getValue(tp, groupByColumn);
-                Comparable aggregatedValue = getValue(tp, aggregateColumn);
-
-                if (prevGroupByValue == null) {
-                    prevGroupByValue = groupByValue;
-
-                    groupedValues.add((Integer) aggregatedValue);
-                } else if ((prevGroupByValue.equals(groupByValue))) {
-                    groupedValues.add((Integer) aggregatedValue);
-                } else //if ((!prevGroupByValue.equals(groupByValue))) 
-                {
-                    Tuple tuple = new Tuple();
-                    //BasicDataRow dataRow = new BasicDataRow();
-                    LinkedDataRow dataRow = new LinkedDataRow(prototype, false);
-                    dataRow.setValue(0, prevGroupByValue);
-                    aggregate(dataRow, groupedValues);
-                    //dataRow.setMetadata(prototype);
-                    tuple.setSingleSourceRow(alias, dataRow);
-
-                    prevGroupByValue = groupByValue;
-                    groupedValues.clear();
-                    groupedValues.add((Integer) aggregatedValue);
+                PrimitiveDataRow groupByRow = tp.getPrimitiveRow(groupByRowIndex);
+                int aggregatedValue = tp.getPrimitiveRow(aggregateRowIndex).getInt(aggregateColIndex);
+
+                if (prevGroupByRow == null) {
+                    startGroup(groupByRow);
+                    accumulate(aggregatedValue);
+                } else if (prevGroupByRow.compare(groupByColIndex, groupByRow, groupByColIndex) == 0) {
+                    accumulate(aggregatedValue);
+                } else {
+                    Tuple tuple = createTuple();
+                    startGroup(groupByRow);
+                    accumulate(aggregatedValue);
                     return tuple;
                 }
 
             }
-            if (prevGroupByValue != null) {
-                Tuple tuple = new Tuple();
-                LinkedDataRow dataRow = new LinkedDataRow(prototype, false);
-                dataRow.setValue(0, prevGroupByValue);
-                aggregate(dataRow, groupedValues);
-                //dataRow.setMetadata(prototype);
-                tuple.setSingleSourceRow(alias, dataRow);
-                prevGroupByValue = null;
+            if (prevGroupByRow != null) {
+                Tuple tuple = createTuple();
+                prevGroupByRow = null;
                 return tuple;
             }
 
             return null;
         }
 
-        private void aggregate(LinkedDataRow row, List<Integer> list) {
+        private void aggregate(LinkedDataRow row) {
             switch (type) {
                 case AVG -> {
-                    row.setValue(1, avg(list));
+                    //integer division, as the values are integers
+                    row.setValue(1, Double.valueOf(sum / count));
                     return;
                 }
                 case MAX -> {
-                    row.setValue(1, max(list));
+                    row.setValue(1, max);
                     return;
                 }
                 case MIN -> {
-                    row.setValue(1, min(list));
+                    row.setValue(1, min);
                     return;
                 }
                 case COUNT -> {
-                    row.setValue(1, count(list));
+                    row.setValue(1, count);
                     return;
                 }
                 case SUM -> {
-                    row.setValue(1, sum(list));
+                    row.setValue(1, sum);
                     return;
                 }
             }
 
         }
 
-        private Double avg(List<Integer> list) {
-
-            if (list.isEmpty()) {
-                return 0.;
-            }
-            int sum = 0;
-            for (Integer integer : list) {
-                sum += integer;
-            }
-            return Double.valueOf(sum / list.size());
-        }
-
-        private Integer sum(List<Integer> list) {
-
-            int sum = 0;
-            for (Integer integer : list) {
-                sum += integer;
-            }
-            return sum;
-        }
-
-        private Integer min(List<Integer> list) {
-
-            if (list.isEmpty()) {
-                return 0;
-            }
-            int min = Integer.MAX_VALUE;
-            for (Integer integer : list) {
-                if (integer < min) {
-                    min = integer;
-                }
-            }
-            return min;
-        }
-
-        private Integer max(List<Integer> list) {
-
-            if (list.isEmpty()) {
-                return 0;
-            }
-            int max = Integer.MIN_VALUE;
-            for (Integer integer : list) {
-                if (integer > max) {
-                    max = integer;
-                }
-            }
-            return max;
-        }
-
-        private Integer count(List<Integer> list) {
-            return list.size();
-        }
-
     }
 
     public static final String getType(int type) {
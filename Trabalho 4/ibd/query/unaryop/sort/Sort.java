@@ -165,16 +165,17 @@ public class Sort extends UnaryOperation {
 
     /**
      * A comparator class that defines how tuples are sorted. The tuples are
-     * compared by the order of the sortColumns.
+     * compared by the order of the sortColumns. The values are compared in
+     * their primitive form, which each tuple converts only once.
      */
     public class TupleComparator implements Comparator<Tuple> {
 
         @Override
         public int compare(Tuple tt1, Tuple tt2) {
             for (ColumnDescriptor sortColumn : sortColumns) {
-                Comparable value1 = tt1.rows[sortColumn.getColumnLocation().rowIndex].getValue(sortColumn.getColumnLocation().colIndex);
-                Comparable value2 = tt2.rows[sortColumn.getColumnLocation().rowIndex].getValue(sortColumn.getColumnLocation().colIndex);
-                int comp = value1.compareTo(value2);
+                int rowIndex = sortColumn.getColumnLocation().rowIndex;
+                int colIndex = sortColumn.getColumnLocation().colIndex;
+                int comp = tt1.getPrimitiveRow(rowIndex).compare(colIndex, tt2.getPrimitiveRow(rowIndex), colIndex);
                 if (comp!=0) return comp;
             }
             
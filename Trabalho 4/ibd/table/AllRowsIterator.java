@@ -37,7 +37,7 @@ public class AllRowsIterator extends RowsIterator {
             //byte bytes_[] = (byte[]) v.get(0);
             //LinkedDataRow dataRow = btree.prototype.convertBinaryToRowData(bytes_);
             //nextValue = dataRow;
-            nextValue = v.rowData;
+            nextValue = v.getRowData();
             return nextValue;
 
         }
@@ -4,11 +4,19 @@ import ibd.index.btree.table.BPlusTreeFileTable;
 import ibd.index.btree.DictionaryPair;
 import ibd.index.btree.Key;
 import ibd.index.btree.Value;
+import ibd.index.btree.PinnedLevels;
 import ibd.index.btree.table.BinaryValue;
+import ibd.index.btree.table.PrimaryKeyFilter;
+import ibd.persistent.AbstractStoringPageFile;
+import ibd.persistent.MappedPageFile;
 import ibd.persistent.PersistentPageFile;
 import ibd.persistent.cache.Cache;
+import ibd.persistent.cache.DirtyPageWriter;
+import ibd.persistent.PageFile;
 import ibd.table.lookup.RowLookupFilter;
+import ibd.table.lookup.SingleRowColumnValueLookupFilter;
 import ibd.table.prototype.BasicDataRow;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -16,11 +24,28 @@ import ibd.table.prototype.DataRow;
 import ibd.table.prototype.LinkedDataRow;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import ibd.table.prototype.Prototype;
+import ibd.table.prototype.column.Column;
 
 public class BTreeTable extends Table {
 
+    //the buffer management policies that can be used by the table's cache
+    public static final int LRU_CACHE = 0;
+    public static final int SHARDED_CLOCK_CACHE = 1;
+    public static final int MIDPOINT_LRU_CACHE = 2;
+    public static final int TWO_QUEUE_CACHE = 3;
+    public static final int LRU_K_CACHE = 4;
+
+    //the default node fill factor of bulk loads. Leaves some room for later inserts
+    public static final double DEFAULT_FILL_FACTOR = 0.9;
+
     //the b-tree that stores the table's content
     BPlusTreeFileTable tree = null;
 
@@ -39,6 +64,45 @@ public class BTreeTable extends Table {
     //prevents the file from being reopened
     boolean loaded = false;
 
+    //if true, the table's pages are accessed through a memory-mapped file
+    boolean memoryMapped = false;
+
+    //the buffer management policy used by the cache
+    int cacheType = LRU_CACHE;
+
+    //the optional background writer that cleans the cache's dirty pages
+    protected DirtyPageWriter writer = null;
+
+    //the fraction of the cache that may hold dirty pages before the background writer acts. A negative value disables the writer
+    double dirtyThreshold = -1;
+
+    //the number of pages written per batch by the background writer
+    int flushBatchSize = DirtyPageWriter.DEFAULT_BATCH_SIZE;
+
+    //the fraction of each node filled by a bulk load
+    double bulkLoadFillFactor = DEFAULT_FILL_FACTOR;
+
+    //the number of rows sorted in memory at once by a bulk load
+    int bulkLoadRunSize = ExternalRowSorter.DEFAULT_RUN_SIZE;
+
+    //if true, the keys of the tree's internal nodes are prefix compressed
+    boolean keyCompression = true;
+
+    //the number of bits per key of the filter of the primary keys, or 0 for no filter
+    int keyFilterBitsPerKey = PrimaryKeyFilter.DEFAULT_BITS_PER_KEY;
+
+    //if true, the leaves of the tree are summarized so filtered scans can skip them
+    boolean zoneMaps = true;
+
+    //the maximum number of internal nodes of the tree kept in memory for the searches
+    int pinnedNodes = PinnedLevels.DEFAULT_CAPACITY;
+
+    //the secondary indexes of the table, by column name
+    Map<String, SecondaryIndex> indexes = new LinkedHashMap<>();
+
+    //the size of the page files
+    int pageSize;
+
     /**
      *
      * @param folder: the location of the table
@@ -54,6 +118,164 @@ public class BTreeTable extends Table {
         
     }
 
+    /**
+     *
+     * @param folder: the location of the table
+     * @param name: the file name uses to store the table's contents
+     * @param cacheSize: the size of the cache used to store table pages.
+     * @param memoryMapped: if true, the table's file is accessed through
+     * memory-mapped segments instead of positional reads and writes
+     * @throws Exception
+     */
+    public BTreeTable(String folder, String name, int cacheSize, boolean memoryMapped) throws Exception {
+        this(folder, name, cacheSize);
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Defines the buffer management policy used by the table's cache. It must
+     * be called before the table is created or opened.
+     *
+     * @param cacheType: one of the cache constants of this class
+     */
+    public void setCacheType(int cacheType) {
+        this.cacheType = cacheType;
+    }
+
+    /**
+     * Defines whether the keys of the tree's internal nodes are compressed.
+     * It must be called before the table is created. An existing table keeps
+     * the format it was created with.
+     *
+     * @param keyCompression: true to compress the keys
+     */
+    public void setKeyCompression(boolean keyCompression) {
+        this.keyCompression = keyCompression;
+    }
+
+    /**
+     * Defines the size of the filter of the primary keys, that lets lookups of
+     * keys that are not in the table skip the tree. It must be called before
+     * the table is created. An existing table keeps the filter it was created
+     * with.
+     *
+     * @param bitsPerKey: the number of bits per key, or 0 for no filter
+     */
+    public void setKeyFilter(int bitsPerKey) {
+        this.keyFilterBitsPerKey = bitsPerKey;
+    }
+
+    /**
+     * Defines whether the leaves of the tree are summarized by the minimum
+     * and maximum values of their columns, so filtered scans skip the leaves
+     * that cannot hold a matching row. It must be called before the table is
+     * created or opened.
+     *
+     * @param zoneMaps: true to keep the summaries
+     */
+    public void setZoneMaps(boolean zoneMaps) {
+        this.zoneMaps = zoneMaps;
+    }
+
+    /**
+     * Defines how many internal nodes of the tree are kept in memory, so
+     * searches descend through the upper levels without going through the
+     * cache. It must be called before the table is created or opened.
+     *
+     * @param pinnedNodes: the maximum number of nodes, or zero to read every
+     * node through the cache
+     */
+    public void setPinnedNodes(int pinnedNodes) {
+        this.pinnedNodes = pinnedNodes;
+    }
+
+    /**
+     * Enables a background thread that writes the cache's dirty pages ahead
+     * of their eviction. It must be called before the table is created or
+     * opened, and only has effect if the table uses a cache.
+     *
+     * @param dirtyThreshold: the fraction of the cache that may hold dirty
+     * pages
+     * @param flushBatchSize: the number of pages written per batch
+     */
+    public void setBackgroundWriter(double dirtyThreshold, int flushBatchSize) {
+        this.dirtyThreshold = dirtyThreshold;
+        this.flushBatchSize = flushBatchSize;
+    }
+
+    /**
+     * Returns the object that serializes the modifications of the table's
+     * pages with the background writer, so a page is never written while it
+     * is being changed.
+     */
+    private Object writeLock() {
+        return cache != null ? cache : this;
+    }
+
+    /**
+     * Creates the cache that manages the table's pages
+     *
+     * @param size: the size of the cache
+     * @throws Exception if the cache type is unknown
+     */
+    private Cache createCache(int size) throws Exception {
+        return createCache(cacheType, size);
+    }
+
+    /**
+     * Creates a cache that follows a buffer management policy
+     *
+     * @param cacheType: one of the cache constants of this class
+     * @param size: the size of the cache
+     * @throws Exception if the cache type is unknown
+     */
+    static Cache createCache(int cacheType, int size) throws Exception {
+        switch (cacheType) {
+            case LRU_CACHE:
+                return new ibd.persistent.cache.LRUCache(size);
+            case SHARDED_CLOCK_CACHE:
+                return new ibd.persistent.cache.ShardedClockCache(size);
+            case MIDPOINT_LRU_CACHE:
+                return new ibd.persistent.cache.MidPointLRUCache(size);
+            case TWO_QUEUE_CACHE:
+                return new ibd.persistent.cache.TwoQueueCache(size);
+            case LRU_K_CACHE:
+                return new ibd.persistent.cache.LRUKCache(size);
+        }
+        throw new Exception("Unknown cache type " + cacheType);
+    }
+
+    /**
+     * Creates the paged file that the BTree will use
+     *
+     * @param pageSize: the size of the file pages, or -1 if the size is read
+     * from an existing file
+     * @param fileName: the file that stores the table's contents
+     * @param recreate: if true, an existing file is discarded
+     * @throws Exception
+     */
+    private AbstractStoringPageFile createPageFile(int pageSize, Path fileName, boolean recreate) throws Exception {
+        return createPageFile(memoryMapped, pageSize, fileName, recreate);
+    }
+
+    /**
+     * Creates a paged file
+     *
+     * @param memoryMapped: if true, the file is accessed through memory-mapped
+     * segments
+     * @param pageSize: the size of the file pages, or -1 if the size is read
+     * from an existing file
+     * @param fileName: the file
+     * @param recreate: if true, an existing file is discarded
+     * @throws Exception
+     */
+    static AbstractStoringPageFile createPageFile(boolean memoryMapped, int pageSize, Path fileName, boolean recreate) throws Exception {
+        if (memoryMapped) {
+            return new MappedPageFile(pageSize, fileName, recreate);
+        }
+        return new PersistentPageFile(pageSize, fileName, recreate);
+    }
+
     /**
      * Creates a table
      *
@@ -67,7 +289,9 @@ public class BTreeTable extends Table {
             return;
         }
         //defines the paged file that the BTree will use
-        PersistentPageFile p = new PersistentPageFile(pageSize, Paths.get(folder + "\\" + name), true);
+        AbstractStoringPageFile p = createPageFile(pageSize, Paths.get(folder + "\\" + name), true);
+        //the indexes of a previous table with the same name are discarded
+        Files.deleteIfExists(getIndexCatalog());
         open(p, prototype);
     }
 
@@ -89,17 +313,16 @@ public class BTreeTable extends Table {
             throw new Exception("The file " + fileName + " does not exists");
         }
         //defines the paged file thatthe BTree will use
-        PersistentPageFile p = new PersistentPageFile(-1, fileName, false);
+        AbstractStoringPageFile p = createPageFile(-1, fileName, false);
         open(p, null);
     }
     
-    private void open(PersistentPageFile p, Prototype prototype) throws Exception {
+    private void open(AbstractStoringPageFile p, Prototype prototype) throws Exception {
         
         if (cacheSize > 0) {
             //LRUCache lru = new LRUCache(5000000, p);
             //defines the buffer management to be used, if any.
-            cache = new ibd.persistent.cache.LRUCache(cacheSize);
-            //cache = new MidPointCache(5000000);
+            cache = createCache(cacheSize);
             cache.setPageFile(p);
         }
 
@@ -110,7 +333,26 @@ public class BTreeTable extends Table {
         } else {
             tree = new BPlusTreeFileTable(p, prototype);
         }
+        tree.setKeyCompression(keyCompression);
+        tree.setKeyFilter(keyFilterBitsPerKey);
+        tree.setZoneMaps(zoneMaps);
+        tree.setPinnedCapacity(pinnedNodes);
         tree.open();
+        pageSize = p.getPageSize();
+
+        Path catalog = getIndexCatalog();
+        if (Files.exists(catalog)) {
+            for (String line : Files.readAllLines(catalog)) {
+                //the indexed column comes first, followed by the included columns
+                String columns[] = line.split("\t");
+                indexes.put(columns[0], openIndex(columns[0], Arrays.copyOfRange(columns, 1, columns.length), false));
+            }
+        }
+
+        if (cache != null && dirtyThreshold >= 0) {
+            writer = new DirtyPageWriter(cache, dirtyThreshold, flushBatchSize);
+            writer.start();
+        }
         
         loaded = true;
     }
@@ -120,8 +362,18 @@ public class BTreeTable extends Table {
      */
     @Override
     public void close() {
-        tree.flush();
-        tree.close();
+        try {
+            if (writer != null) {
+                writer.stop();
+            }
+        } finally {
+            //the table is closed even if the background writer failed
+            tree.flush();
+            tree.close();
+            for (SecondaryIndex index : indexes.values()) {
+                index.close();
+            }
+        }
     }
 
     /**
@@ -131,12 +383,110 @@ public class BTreeTable extends Table {
      */
     @Override
     public void flushDB() throws Exception {
-        tree.flush();
         if (cache != null) {
-            cache.flush();
+            //writes only the dirty pages and keeps the cache warm. The filter is written first, as the header points to it.
+            //Saving the filter allocates pages, so it must not run along with a write to the table
+            synchronized (writeLock()) {
+                tree.saveFilter();
+                cache.checkpoint();
+            }
+        } else {
+            tree.flush();
+        }
+        for (SecondaryIndex index : indexes.values()) {
+            index.flush();
+        }
+    }
+
+    /**
+     * Returns the file that lists the indexed columns of the table, one per
+     * line, each followed by the columns included in its index, separated by
+     * tabs.
+     */
+    private Path getIndexCatalog() {
+        return Paths.get(folder + "\\" + name + ".indexes");
+    }
+
+    /**
+     * Opens the secondary index of a column. The index has its own file and,
+     * if the table uses a cache, its own cache, a quarter of the table's.
+     *
+     * @param column: the indexed column
+     * @param included: the columns included in the entries
+     * @param recreate: if true, an existing file is discarded
+     * @throws Exception
+     */
+    private SecondaryIndex openIndex(String column, String included[], boolean recreate) throws Exception {
+        Path fileName = Paths.get(folder + "\\" + name + "." + column + ".idx");
+        PageFile p = createPageFile(recreate ? pageSize : -1, fileName, recreate);
+        if (cacheSize / 4 > 0) {
+            Cache indexCache = createCache(cacheSize / 4);
+            indexCache.setPageFile(p);
+            p = indexCache;
+        }
+        SecondaryIndex index = new SecondaryIndex(tree.prototype, column, included, p);
+        index.getTree().setPinnedCapacity(pinnedNodes);
+        return index;
+    }
+
+    /**
+     * Creates a secondary index over a column, filled with the rows already
+     * stored. From then on, the index is maintained as rows are added,
+     * updated and removed, and it is reopened along with the table.
+     *
+     * @param column: the column to be indexed. Integer, long and string
+     * columns can be indexed
+     * @param includedColumns: the columns, of any type, stored in the entries
+     * of the index, so queries that need only them, the indexed column and the
+     * primary key do not read the table
+     * @throws Exception
+     */
+    @Override
+    public void createIndex(String column, String... includedColumns) throws Exception {
+        synchronized (writeLock()) {
+            if (indexes.containsKey(column)) {
+                return;
+            }
+            SecondaryIndex index = openIndex(column, includedColumns, true);
+            index.build(getAllRecordsIterator(), bulkLoadFillFactor);
+            index.flush();
+            indexes.put(column, index);
+            List<String> lines = new ArrayList<>();
+            for (SecondaryIndex i : indexes.values()) {
+                List<String> columns = new ArrayList<>();
+                columns.add(i.getColumn());
+                columns.addAll(Arrays.asList(i.getIncluded()));
+                lines.add(String.join("\t", columns));
+            }
+            Files.write(getIndexCatalog(), lines);
         }
     }
 
+    /**
+     * Checks if a column has a secondary index.
+     *
+     * @param column: the column name
+     * @return true if the column is indexed
+     */
+    @Override
+    public boolean hasIndex(String column) {
+        return indexes.containsKey(column);
+    }
+
+    /**
+     * Checks if the secondary index of a column holds all the given columns,
+     * so the rows that only need them can be read from the index alone.
+     *
+     * @param column: the indexed column
+     * @param columns: the column names
+     * @return true if the column has an index that holds all columns
+     */
+    @Override
+    public boolean isCoveringIndex(String column, Collection<String> columns) {
+        SecondaryIndex index = indexes.get(column);
+        return index != null && index.covers(columns);
+    }
+
     /**
      * Adds a row to the table
      *
@@ -155,18 +505,100 @@ public class BTreeTable extends Table {
         Value value = tree.createValue();
         byte bytes[] = tree.prototype.convertToArray(linkedDataRow);
         value.set(0, bytes);
-        ((BinaryValue)value).rowData = linkedDataRow;
 
         //tries to insert the row into the b-tree
-        boolean ok = tree.insert(key, value);
-        if (!ok) {
-            return null;
+        synchronized (writeLock()) {
+            if (!tree.insert(key, value)) {
+                return null;
+            }
+            //the indexes receive the row as it was stored
+            if (!indexes.isEmpty()) {
+                LinkedDataRow storedRow = tree.prototype.convertBinaryToRowData(bytes);
+                for (SecondaryIndex index : indexes.values()) {
+                    index.insert(storedRow);
+                }
+            }
         }
 
         //this.tree.flush();
         return linkedDataRow;
     }
 
+    /**
+     * Defines how bulk loads build the b-tree.
+     *
+     * @param fillFactor: the fraction of each node to be filled, between 0
+     * (exclusive) and 1
+     * @param runSize: the number of rows sorted in memory at once. Larger
+     * inputs are sorted using temporary files
+     */
+    public void setBulkLoad(double fillFactor, int runSize) {
+        this.bulkLoadFillFactor = fillFactor;
+        this.bulkLoadRunSize = runSize;
+    }
+
+    /**
+     * Loads rows into an empty table. The rows are sorted by primary key and
+     * the b-tree is built bottom-up, with packed nodes written sequentially,
+     * which is much faster than adding the rows one by one. Rows with
+     * repeated primary keys are ignored, as in addRecord.
+     *
+     * @param rows: the rows to be added, in any order
+     * @return the number of rows loaded
+     * @throws Exception
+     */
+    @Override
+    public int bulkLoad(Iterator<BasicDataRow> rows) throws Exception {
+        ExternalRowSorter sorter = new ExternalRowSorter(tree.prototype, bulkLoadRunSize);
+        try {
+            int count = sorter.sort(rows);
+
+            //the tree reads the entries twice: to plan the leaves and to build them
+            Iterable<DictionaryPair> pairs = () -> {
+                try {
+                    return toPairs(sorter.iterator());
+                } catch (IOException e) {
+                    throw new RuntimeException("Error reading the sorted rows", e);
+                }
+            };
+
+            synchronized (writeLock()) {
+                tree.bulkLoad(pairs, bulkLoadFillFactor);
+                for (SecondaryIndex index : indexes.values()) {
+                    index.build(getAllRecordsIterator(), bulkLoadFillFactor);
+                }
+            }
+            return count;
+        } finally {
+            sorter.close();
+        }
+    }
+
+    /**
+     * Converts each row to a b-tree entry, as addRecord does.
+     */
+    private Iterator<DictionaryPair> toPairs(Iterator<LinkedDataRow> sorted) {
+        return new Iterator<DictionaryPair>() {
+            @Override
+            public boolean hasNext() {
+                return sorted.hasNext();
+            }
+
+            @Override
+            public DictionaryPair next() {
+                LinkedDataRow linkedDataRow = sorted.next();
+                DataRow pkRow = tree.prototype.createPKRow(linkedDataRow);
+                Key key = tree.createKey();
+                key.setKeys(new DataRow[]{pkRow});
+
+                Value value = tree.createValue();
+                byte bytes[] = tree.prototype.convertToArray(linkedDataRow);
+                value.set(0, bytes);
+                return new DictionaryPair(key, value, tree);
+            }
+        };
+    }
+
     /**
      * Updates a row from the table
      *
@@ -197,12 +629,25 @@ public class BTreeTable extends Table {
         Value value = tree.createValue();
         byte bytes[] = tree.prototype.convertToArray(linkedDataRow);
         value.set(0, bytes);
-        ((BinaryValue)value).rowData = linkedDataRow;
 
         //tries to update the row in the b-tree
-        Value v = tree.update(key, value);
-        if (v == null) {
-            return null;
+        synchronized (writeLock()) {
+            if (indexes.isEmpty()) {
+                if (tree.update(key, value) == null) {
+                    return null;
+                }
+            } else {
+                //the indexes need the previous content of the row
+                Value oldValue = tree.search(key);
+                if (oldValue == null || tree.update(key, value) == null) {
+                    return null;
+                }
+                LinkedDataRow oldRow = ((BinaryValue) oldValue).getRowData();
+                LinkedDataRow storedRow = tree.prototype.convertBinaryToRowData(bytes);
+                for (SecondaryIndex index : indexes.values()) {
+                    index.update(oldRow, storedRow);
+                }
+            }
         }
 
         //this.tree.flush();
@@ -224,14 +669,20 @@ public class BTreeTable extends Table {
         key.setKeys(new DataRow[]{pkRow});
 
         //tries to remove the row from the b-tree
-        Value value = tree.delete(key);
-        if (value == null) {
-            return null;
-        }
+        LinkedDataRow dataRow1;
+        synchronized (writeLock()) {
+            Value value = tree.delete(key);
+            if (value == null) {
+                return null;
+            }
 
-        //converts the rows's byte array stored in the b-tree back to a row format
-        byte bytes_[] = (byte[]) value.get(0);
-        LinkedDataRow dataRow1 = tree.prototype.convertBinaryToRowData(bytes_);
+            //converts the rows's byte array stored in the b-tree back to a row format
+            byte bytes_[] = (byte[]) value.get(0);
+            dataRow1 = tree.prototype.convertBinaryToRowData(bytes_);
+            for (SecondaryIndex index : indexes.values()) {
+                index.delete(dataRow1);
+            }
+        }
 
         //this.tree.flush();
         return dataRow1;
@@ -246,18 +697,21 @@ public class BTreeTable extends Table {
      */
     @Override
     public List<LinkedDataRow> getAllRecords() throws Exception {
-        //returns all b-trees leaf entries
-        List<DictionaryPair> values = tree.searchAll();
+        return toList(getAllRecordsIterator());
+    }
+
+    /**
+     * Collects the rows of an iterator into a list. The list functions of
+     * this class are built on top of the iterators, so only the resulting rows
+     * are kept in memory.
+     *
+     * @param it the iterator
+     * @return the rows of the iterator
+     */
+    private List<LinkedDataRow> toList(RowsIterator it) {
         List<LinkedDataRow> rows = new ArrayList();
-        //traverses all entries
-        for (DictionaryPair value : values) {
-            //for each entry, converts the rows's byte array stored in the b-tree back to a row format
-//            Value v = value.getValue();
-//            byte bytes_[] = (byte[]) v.get(0);
-//            LinkedDataRow rowData = tree.prototype.convertBinaryToRowData(bytes_);
-            BinaryValue v = (BinaryValue) value.getValue();
-            LinkedDataRow rowData = v.rowData;
-            rows.add(rowData);
+        while (it.hasNext()) {
+            rows.add(it.next());
         }
         return rows;
     }
@@ -317,7 +771,7 @@ public class BTreeTable extends Table {
         //byte bytes_[] = (byte[]) v.get(0);
         //LinkedDataRow dataRow = tree.prototype.convertBinaryToRowData(bytes_);
         //gets the stored row
-        LinkedDataRow dataRow = ((BinaryValue) v).rowData;
+        LinkedDataRow dataRow = ((BinaryValue) v).getRowData();
         
         return dataRow;
     }
@@ -355,22 +809,7 @@ public class BTreeTable extends Table {
      */
     @Override
     public List<LinkedDataRow> getRecords(LinkedDataRow pkRow) {
-        
-        Key key = tree.createKey();
-        key.setKeys(new DataRow[]{pkRow});
-
-        //performs the sarch over the b-tree
-        List<Value> values = tree.partialSearch(key);
-        List<LinkedDataRow> rows = new ArrayList();
-        for (Value value : values) {
-            //converts the rows's byte array stored in the b-tree back to a row format
-            //byte bytes_[] = (byte[]) value.get(0);
-            //LinkedDataRow dataRow = tree.prototype.convertBinaryToRowData(bytes_);
-            LinkedDataRow dataRow = ((BinaryValue) value).rowData;
-            rows.add(dataRow);
-        }
-        return rows;
-        
+        return toList(getPrefixRecordsIterator(pkRow, null));
     }
     
     /**
@@ -383,24 +822,27 @@ public class BTreeTable extends Table {
      */
     @Override
     public List<LinkedDataRow> getRecords(LinkedDataRow pkRow, RowLookupFilter rowFilter) {
-        
+        return toList(getPrefixRecordsIterator(pkRow, rowFilter));
+    }
+
+    /**
+     * Return an iterator to access the rows that satisfy a primary key search
+     * condition and, optionally, other arbitrary search conditions. The search
+     * may use a prefix of the primary key. The iterator descends the b-tree to
+     * the first matching row and stops at the first row that does not start
+     * with the prefix.
+     *
+     * @param pkRow the linked row whose primary key is used to define the pk
+     * search condition
+     * @param rowFilter the arbitrary search conditions, or null if there are
+     * none
+     * @return
+     */
+    @Override
+    public PrefixRowsIterator getPrefixRecordsIterator(LinkedDataRow pkRow, RowLookupFilter rowFilter) {
         Key key = tree.createKey();
         key.setKeys(new DataRow[]{pkRow});
-
-        //performs the sarch over the b-tree
-        List<Value> values = tree.partialSearch(key);
-        List<LinkedDataRow> rows = new ArrayList();
-        for (Value value : values) {
-            //converts the rows's byte array stored in the b-tree back to a row format
-            //byte bytes_[] = (byte[]) value.get(0);
-            //LinkedDataRow dataRow = tree.prototype.convertBinaryToRowData(bytes_);
-            LinkedDataRow dataRow = ((BinaryValue) value).rowData;
-            if (rowFilter.match(dataRow)) {
-                rows.add(dataRow);
-            }
-        }
-        return rows;
-        
+        return new PrefixRowsIterator(tree, key, rowFilter);
     }
 
     /**
@@ -424,7 +866,8 @@ public class BTreeTable extends Table {
     /**
      * Returns all rows that satisfy a single column comparison. This function
      * only exists for backward compatibility. Uue the more generic
-     * getFilteredRecords() or getFilteredRecordsIterator() functions.
+     * getFilteredRecords() or getFilteredRecordsIterator() functions. If the
+     * column has a secondary index, only the matching rows are read.
      *
      * @param col: the column name
      * @param comparable: the comparable value to be compared against
@@ -434,15 +877,19 @@ public class BTreeTable extends Table {
      */
     @Override
     public List<LinkedDataRow> getRecords(String col, Comparable comparable, int comparisonType) throws Exception {
-        List<LinkedDataRow> rows = new ArrayList();
-        List<LinkedDataRow> allRows = getAllRecords();
-        for (LinkedDataRow row : allRows) {
-            if (ComparisonTypes.match(row.getValue(col), comparable, comparisonType)) {
-                rows.add(row);
-            }
+        if (hasIndex(col) && SecondaryIndex.supports(comparisonType)) {
+            return toList(getIndexedRecordsIterator(col, comparable, comparisonType, null));
         }
-        return rows;
-        
+        //the rows are compared as they are read, instead of after the whole table is loaded
+        Column column = tree.prototype.getColumn(col);
+        if (column == null) {
+            RowLookupFilter filter = row -> ComparisonTypes.match(row.getValue(col), comparable, comparisonType);
+            return toList(getFilteredRecordsIterator(filter));
+        }
+        //a column filter lets the scan skip the leaves whose values cannot match
+        SingleRowColumnValueLookupFilter filter = new SingleRowColumnValueLookupFilter(column.index, comparisonType);
+        filter.setValue(comparable);
+        return toList(getFilteredRecordsIterator(filter));
     }
 
     /**
@@ -455,22 +902,7 @@ public class BTreeTable extends Table {
      */
     @Override
     public List<LinkedDataRow> getFilteredRecords(RowLookupFilter filter) throws Exception {
-        //returns all b-trees leaf entries
-        List<DictionaryPair> values = tree.searchAll();
-        List<LinkedDataRow> rows = new ArrayList();
-        //traverses all entries
-        for (DictionaryPair value : values) {
-            //for each entry, converts the rows's byte array stored in the b-tree back to a row format
-//            Value v = value.getValue();
-//            byte bytes_[] = (byte[]) v.get(0);
-//            LinkedDataRow rowData = tree.prototype.convertBinaryToRowData(bytes_);
-            BinaryValue v = (BinaryValue) value.getValue();
-            LinkedDataRow dataRow = v.rowData;
-            if (filter.match(dataRow)) {
-                rows.add(dataRow);
-            }
-        }
-        return rows;
+        return toList(getFilteredRecordsIterator(filter));
     }
 
     /**
@@ -485,6 +917,88 @@ public class BTreeTable extends Table {
         return new FilteredRowsIterator(tree, filter);
     }
 
+    /**
+     * Return an iterator to access the rows that satisfy a single column
+     * comparison and, optionally, other arbitrary search conditions, using the
+     * secondary index of the column. The rows come in the order of the
+     * column.
+     *
+     * @param column the indexed column
+     * @param value the value to be compared against
+     * @param comparisonType the comparison type (=,<,>,...). Differences
+     * cannot use the index
+     * @param rowFilter the arbitrary search conditions, or null if there are
+     * none
+     * @return
+     * @throws Exception if the column has no index
+     */
+    @Override
+    public IndexedRowsIterator getIndexedRecordsIterator(String column, Comparable value, int comparisonType, RowLookupFilter rowFilter) throws Exception {
+        SecondaryIndex index = indexes.get(column);
+        if (index == null) {
+            throw new Exception("The column " + column + " has no index");
+        }
+        return new IndexedRowsIterator(tree, index, value, comparisonType, rowFilter);
+    }
+
+    /**
+     * Return an iterator to access the rows that satisfy a single column
+     * comparison and, optionally, other arbitrary search conditions, reading
+     * only the secondary index of the column. The rows hold only the columns
+     * stored in the index, as reported by isCoveringIndex(), and come in the
+     * order of the column.
+     *
+     * @param column the indexed column
+     * @param value the value to be compared against
+     * @param comparisonType the comparison type (=,<,>,...). Differences
+     * cannot use the index
+     * @param rowFilter the arbitrary search conditions over the stored
+     * columns, or null if there are none
+     * @return
+     * @throws Exception if the column has no index, or if its index does not
+     * hold the whole value of the column
+     */
+    @Override
+    public CoveredRowsIterator getCoveredRecordsIterator(String column, Comparable value, int comparisonType, RowLookupFilter rowFilter) throws Exception {
+        SecondaryIndex index = indexes.get(column);
+        if (index == null) {
+            throw new Exception("The column " + column + " has no index");
+        }
+        if (!index.covers(Collections.singletonList(column))) {
+            throw new Exception("The index of " + column + " does not hold the whole value of the column");
+        }
+        return new CoveredRowsIterator(index, value, comparisonType, rowFilter);
+    }
+
+    /**
+     * Return an iterator to access the rows whose primary keys lie within a
+     * range. Only the leaves that overlap the range are read: the search
+     * descends the b-tree to the lower bound and stops at the first row past
+     * the upper bound.
+     *
+     * @param lowerPkRow the linked row holding the smallest primary key, or
+     * null to start at the first row. A prefix of the primary key may be used
+     * @param upperPkRow the linked row holding the largest primary key, or
+     * null to go up to the last row. A prefix of the primary key includes all
+     * rows that start with it
+     * @return
+     * @throws Exception
+     */
+    @Override
+    public RangeRowsIterator getRangeRecordsIterator(LinkedDataRow lowerPkRow, LinkedDataRow upperPkRow) throws Exception {
+        Key lowerKey = null;
+        if (lowerPkRow != null) {
+            lowerKey = tree.createKey();
+            lowerKey.setKeys(new DataRow[]{lowerPkRow});
+        }
+        Key upperKey = null;
+        if (upperPkRow != null) {
+            upperKey = tree.createKey();
+            upperKey.setKeys(new DataRow[]{upperPkRow});
+        }
+        return new RangeRowsIterator(tree, lowerKey, upperKey);
+    }
+
     /**
      * Prints statistics concerning the table's usage
      *
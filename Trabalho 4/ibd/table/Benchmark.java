@@ -0,0 +1,97 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.prototype.BasicDataRow;
+import ibd.table.prototype.Prototype;
+import ibd.table.prototype.column.IntegerColumn;
+import ibd.table.prototype.column.StringColumn;
+import java.util.function.IntFunction;
+
+/**
+ * The tables, rows and cost indicators shared by the programs that compare
+ * table options, such as MainKeyFilter and MainZoneMap. The tables are filled
+ * with a cache that holds them whole, and measured with a cache much smaller
+ * than them, so the blocks each operation loads are visible.
+ *
+ * @author Sergio
+ */
+public class Benchmark {
+
+    /**
+     * The size of the cache used to fill the tables.
+     */
+    public static final int CREATE_CACHE_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The size of the cache used to measure the operations.
+     */
+    public static final int TEST_CACHE_SIZE = 16 * Table.DEFULT_PAGE_SIZE;
+
+    /**
+     * Creates the schema of the key/value tables: an integer primary key and a
+     * string.
+     */
+    public static Prototype createPrototype() {
+        Prototype pt = new Prototype();
+        pt.addColumn(new IntegerColumn("id", true));
+        pt.addColumn(new StringColumn("nome"));
+        return pt;
+    }
+
+    /**
+     * Creates a key/value row whose content is derived from the key.
+     *
+     * @param id the primary key
+     */
+    public static BasicDataRow createRow(int id) {
+        BasicDataRow row = new BasicDataRow();
+        row.setInt("id", id);
+        row.setString("nome", DataFaker.pad("content " + id, 60));
+        return row;
+    }
+
+    /**
+     * Adds rows to a table, and then flushes and closes it.
+     *
+     * @param table the table, already created
+     * @param amount the number of rows
+     * @param rows creates the row of each position, from 0 to amount-1
+     * @throws Exception
+     */
+    public static void fill(Table table, int amount, IntFunction<BasicDataRow> rows) throws Exception {
+        for (int i = 0; i < amount; i++) {
+            table.addRecord(rows.apply(i));
+        }
+        table.flushDB();
+        table.close();
+    }
+
+    /**
+     * Resets the variables that measure records and blocks transfer costs.
+     */
+    public static void resetMetrics() {
+        Params.RECORDS_ADDED = 0;
+        Params.RECORDS_REMOVED = 0;
+        Params.BLOCKS_LOADED = 0;
+        Params.BLOCKS_SAVED = 0;
+        Params.WRITE_CALLS_SAVED = 0;
+    }
+
+    /**
+     * Prints the cost indicators of a test.
+     *
+     * @param test the description of the test
+     * @param operations the number of operations measured
+     * @param time the time taken, in milliseconds
+     */
+    public static void printMetrics(String test, int operations, long time) {
+        System.out.println(test);
+        System.out.println("blocks loaded per operation " + String.format("%.3f", (double) Params.BLOCKS_LOADED / operations));
+        System.out.println("blocks saved per operation " + String.format("%.3f", (double) Params.BLOCKS_SAVED / operations));
+        System.out.println("time : " + time);
+    }
+}
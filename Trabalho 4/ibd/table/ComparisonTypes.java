@@ -61,8 +61,16 @@ public class ComparisonTypes {
      * @return true if the comparable object match according to the comparison type
      */
     public static boolean match(Comparable value1, Comparable value2, int comparisonType) {
+        return match(value1.compareTo(value2), comparisonType);
+    }
 
-        int resp = value1.compareTo(value2);
+    /**
+     *
+     * @param resp the result of the comparison between two values
+     * @param comparisonType the comparison type
+     * @return true if the result satisfies the comparison type
+     */
+    public static boolean match(int resp, int comparisonType) {
         if (resp == 0 && (comparisonType == ComparisonTypes.EQUAL
                 || comparisonType == ComparisonTypes.LOWER_EQUAL_THAN
                 || comparisonType == ComparisonTypes.GREATER_EQUAL_THAN)) {
@@ -0,0 +1,73 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package ibd.table;
+
+import ibd.index.btree.DictionaryPair;
+import ibd.table.lookup.RowLookupFilter;
+import ibd.table.prototype.LinkedDataRow;
+
+/**
+ * This class defines the behavior of the iterator functions next() and
+ * hasNext() for rows rebuilt from the entries of a secondary index, without
+ * reading the table. The rows hold only the columns stored in the entries,
+ * and the other columns hold no value. The entries whose values satisfy a
+ * single column comparison are read in order, and the rows may also have to
+ * satisfy a filter over the stored columns.
+ *
+ * @author Sergio
+ */
+public class CoveredRowsIterator extends RowsIterator {
+
+    SecondaryIndex index;
+
+    //the comparison satisfied by the indexed column
+    Comparable value;
+    int comparisonType;
+
+    //the filter to be satisfied, or null if all rows that satisfy the comparison are returned
+    RowLookupFilter filter;
+
+    public CoveredRowsIterator(SecondaryIndex index, Comparable value, int comparisonType, RowLookupFilter filter) {
+        super(null, index.searchIterator(value, comparisonType));
+        this.index = index;
+        this.value = value;
+        this.comparisonType = comparisonType;
+        this.filter = filter;
+    }
+
+    /**
+     * This is the function that actually locates the next value.
+     *
+     * @return the next value, or null if there isnt any.
+     */
+    @Override
+    protected LinkedDataRow findNextTuple() {
+
+        while (valueIterator.hasNext()) {
+            DictionaryPair dp = valueIterator.next();
+            LinkedDataRow dataRow = index.createCoveredRow(dp);
+            //the index also reaches rows equal to the bounds of strict comparisons
+            if (!index.match(dataRow, value, comparisonType)) {
+                continue;
+            }
+            if (filter == null || filter.match(dataRow)) {
+                nextValue = dataRow;
+                return nextValue;
+            }
+        }
+
+        return null;
+
+    }
+
+    /**
+     * The rows come in the order of the indexed column, so the iterator cannot
+     * be moved to a primary key.
+     */
+    @Override
+    public void seek(LinkedDataRow pkRow) {
+        throw new UnsupportedOperationException("An index iterator cannot seek a primary key");
+    }
+}
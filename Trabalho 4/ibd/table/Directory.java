@@ -17,9 +17,52 @@ import ibd.table.prototype.Prototype;
  */
 public class Directory {
 
+    /**
+     * The table types: a b-tree ordered by primary key, or a linear hash file
+     * for tables accessed only by whole primary keys.
+     */
+    public static final int BTREE_TABLE = 0;
+    public static final int HASH_TABLE = 1;
+
     static Hashtable<String, Table> tables = new Hashtable<String, Table>();
 
     public static Table getTable(String folder, String name, Prototype prototype, int cacheSize, int pageSize, boolean override) throws Exception {
+        return getTable(folder, name, prototype, cacheSize, pageSize, override, false);
+    }
+
+    /**
+     * Returns a table, optionally backed by a memory-mapped page file.
+     *
+     * @param memoryMapped if true, the table's file is accessed through
+     * memory-mapped segments instead of positional reads and writes
+     */
+    public static Table getTable(String folder, String name, Prototype prototype, int cacheSize, int pageSize, boolean override, boolean memoryMapped) throws Exception {
+        return getTable(folder, name, prototype, cacheSize, pageSize, override, memoryMapped, BTreeTable.LRU_CACHE);
+    }
+
+    /**
+     * Returns a table, optionally backed by a memory-mapped page file, whose
+     * pages are managed by the given cache policy.
+     *
+     * @param memoryMapped if true, the table's file is accessed through
+     * memory-mapped segments instead of positional reads and writes
+     * @param cacheType one of the cache constants of {@link BTreeTable}
+     */
+    public static Table getTable(String folder, String name, Prototype prototype, int cacheSize, int pageSize, boolean override, boolean memoryMapped, int cacheType) throws Exception {
+        return getTable(folder, name, prototype, cacheSize, pageSize, override, memoryMapped, cacheType, BTREE_TABLE);
+    }
+
+    /**
+     * Returns a table of the given type.
+     *
+     * @param memoryMapped if true, the table's file is accessed through
+     * memory-mapped segments instead of positional reads and writes
+     * @param cacheType one of the cache constants of {@link BTreeTable}
+     * @param tableType BTREE_TABLE or HASH_TABLE. A hash table finds a row by
+     * its whole primary key reading a single page, but its rows are not
+     * sorted, so scans and range searches read the whole table
+     */
+    public static Table getTable(String folder, String name, Prototype prototype, int cacheSize, int pageSize, boolean override, boolean memoryMapped, int cacheType, int tableType) throws Exception {
         String key = folder + "\\" + name;
         Table t = tables.get(key);
         if (t != null && !override) {
@@ -27,7 +70,15 @@ public class Directory {
         }
         //t = new HeapTable(folder, name);
         //t = new BTreeTable(folder, name);
-        t = new BTreeTable(folder, name,cacheSize);
+        if (tableType == HASH_TABLE) {
+            LinearHashTable ht = new LinearHashTable(folder, name, cacheSize, memoryMapped);
+            ht.setCacheType(cacheType);
+            t = ht;
+        } else {
+            BTreeTable bt = new BTreeTable(folder, name, cacheSize, memoryMapped);
+            bt.setCacheType(cacheType);
+            t = bt;
+        }
         //t = new ChainedBlocksTable1(folder, name);
 
         if (override) {
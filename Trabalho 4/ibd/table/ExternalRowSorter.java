@@ -0,0 +1,337 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.prototype.BasicDataRow;
+import ibd.table.prototype.LinkedDataRow;
+import ibd.table.prototype.Prototype;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts rows by primary key using a bounded amount of memory. The rows are
+ * read in runs that are sorted in memory. If all rows fit in a single run,
+ * nothing is written to disk. Otherwise, each run is written to a temporary
+ * file and the runs are merged into a single sorted file.
+ *
+ * Rows with repeated primary keys are dropped, keeping the first one read,
+ * just like a sequence of inserts would do.
+ *
+ * @author Sergio
+ */
+public class ExternalRowSorter {
+
+    /**
+     * The default number of rows sorted in memory at once.
+     */
+    public static final int DEFAULT_RUN_SIZE = 200000;
+
+    //the schema of the rows being sorted
+    Prototype prototype;
+
+    //the number of rows sorted in memory at once
+    int runSize;
+
+    //the sorted rows, when they all fit in memory
+    List<SortedRow> memoryRun = null;
+
+    //the temporary files holding the sorted runs
+    List<Path> runFiles = new ArrayList<>();
+
+    //the file holding all sorted rows, when the rows do not fit in memory
+    Path mergedFile = null;
+
+    //the number of rows after the removal of repeated keys
+    int rowCount = 0;
+
+    public ExternalRowSorter(Prototype prototype) {
+        this(prototype, DEFAULT_RUN_SIZE);
+    }
+
+    public ExternalRowSorter(Prototype prototype, int runSize) {
+        if (runSize <= 0) {
+            throw new IllegalArgumentException("The run size must be positive: " + runSize);
+        }
+        this.prototype = prototype;
+        this.runSize = runSize;
+    }
+
+    /**
+     * A row and its serialized primary key, which is compared byte by byte.
+     * The position of the row in the input breaks ties between repeated keys.
+     */
+    private static class SortedRow implements Comparable<SortedRow> {
+
+        final byte[] key;
+        final LinkedDataRow row;
+        final long position;
+
+        SortedRow(byte[] key, LinkedDataRow row, long position) {
+            this.key = key;
+            this.row = row;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(SortedRow other) {
+            int res = Arrays.compareUnsigned(key, other.key);
+            if (res != 0) {
+                return res;
+            }
+            return Long.compare(position, other.position);
+        }
+    }
+
+    /**
+     * Sorts the rows. Afterwards, the rows can be traversed in primary key
+     * order using {@link #iterator()}.
+     *
+     * @param rows the rows to be sorted
+     * @return the number of rows with distinct primary keys
+     * @throws IOException
+     */
+    public int sort(Iterator<BasicDataRow> rows) throws IOException {
+        List<SortedRow> run = new ArrayList<>();
+        long position = 0;
+        boolean sorted = true;
+        while (rows.hasNext()) {
+            LinkedDataRow row = rows.next().getLinkedDataRow(prototype);
+            SortedRow sr = new SortedRow(prototype.convertPrimaryKeyToByteArray(row), row, position++);
+            //an input that is already in order does not need to be sorted again
+            if (sorted && !run.isEmpty() && run.get(run.size() - 1).compareTo(sr) > 0) {
+                sorted = false;
+            }
+            run.add(sr);
+            if (run.size() == runSize) {
+                if (!sorted) {
+                    Collections.sort(run);
+                }
+                runFiles.add(writeRun(run));
+                run.clear();
+                sorted = true;
+            }
+        }
+        if (!sorted) {
+            Collections.sort(run);
+        }
+
+        if (runFiles.isEmpty()) {
+            memoryRun = removeRepeatedKeys(run);
+            rowCount = memoryRun.size();
+        } else {
+            if (!run.isEmpty()) {
+                runFiles.add(writeRun(run));
+            }
+            mergeRuns();
+        }
+        return rowCount;
+    }
+
+    /**
+     * @return the number of rows with distinct primary keys
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Removes the rows whose primary key is equal to the one of the previous
+     * row.
+     */
+    private List<SortedRow> removeRepeatedKeys(List<SortedRow> run) {
+        List<SortedRow> unique = new ArrayList<>(run.size());
+        for (SortedRow sr : run) {
+            if (unique.isEmpty() || !Arrays.equals(unique.get(unique.size() - 1).key, sr.key)) {
+                unique.add(sr);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Writes a sorted run to a temporary file.
+     */
+    private Path writeRun(List<SortedRow> run) throws IOException {
+        Path path = Files.createTempFile("ibd-sort", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            for (SortedRow sr : run) {
+                writeRow(out, sr.row);
+            }
+        }
+        return path;
+    }
+
+    private void writeRow(DataOutputStream out, LinkedDataRow row) throws IOException {
+        byte bytes[] = prototype.convertToArray(row);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private LinkedDataRow readRow(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        byte bytes[] = new byte[length];
+        in.readFully(bytes);
+        return prototype.convertBinaryToRowData(bytes);
+    }
+
+    /**
+     * The next row of a run being merged.
+     */
+    private class RunReader implements Comparable<RunReader> {
+
+        final DataInputStream in;
+        final int run;
+        SortedRow current;
+
+        RunReader(Path path, int run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            this.run = run;
+        }
+
+        boolean advance() throws IOException {
+            LinkedDataRow row = readRow(in);
+            if (row == null) {
+                current = null;
+                in.close();
+                return false;
+            }
+            //rows of earlier runs come first in the input
+            current = new SortedRow(prototype.convertPrimaryKeyToByteArray(row), row, run);
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            return current.compareTo(other.current);
+        }
+    }
+
+    /**
+     * Merges the sorted runs into a single file, dropping repeated keys.
+     */
+    private void mergeRuns() throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>();
+        for (int i = 0; i < runFiles.size(); i++) {
+            RunReader reader = new RunReader(runFiles.get(i), i);
+            if (reader.advance()) {
+                queue.add(reader);
+            }
+        }
+
+        mergedFile = Files.createTempFile("ibd-sort", ".merged");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(mergedFile)))) {
+            byte[] lastKey = null;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                SortedRow sr = reader.current;
+                if (lastKey == null || !Arrays.equals(lastKey, sr.key)) {
+                    writeRow(out, sr.row);
+                    lastKey = sr.key;
+                    rowCount++;
+                }
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        }
+
+        //the runs are no longer needed
+        for (Path path : runFiles) {
+            Files.deleteIfExists(path);
+        }
+        runFiles.clear();
+    }
+
+    /**
+     * Returns the sorted rows. Must be called after {@link #sort(Iterator)}.
+     *
+     * @return an iterator over the rows, in primary key order
+     * @throws IOException
+     */
+    public Iterator<LinkedDataRow> iterator() throws IOException {
+        if (memoryRun != null) {
+            Iterator<SortedRow> it = memoryRun.iterator();
+            return new Iterator<LinkedDataRow>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public LinkedDataRow next() {
+                    return it.next().row;
+                }
+            };
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(mergedFile)));
+        return new Iterator<LinkedDataRow>() {
+            LinkedDataRow nextRow = null;
+            int read = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (nextRow == null && read < rowCount) {
+                    try {
+                        nextRow = readRow(in);
+                        read++;
+                        if (read == rowCount) {
+                            in.close();
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException("Error reading the sorted rows", e);
+                    }
+                }
+                return nextRow != null;
+            }
+
+            @Override
+            public LinkedDataRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                LinkedDataRow row = nextRow;
+                nextRow = null;
+                return row;
+            }
+        };
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        for (Path path : runFiles) {
+            Files.deleteIfExists(path);
+        }
+        runFiles.clear();
+        if (mergedFile != null) {
+            Files.deleteIfExists(mergedFile);
+            mergedFile = null;
+        }
+        memoryRun = null;
+    }
+}
@@ -21,7 +21,8 @@ public class FilteredRowsIterator extends RowsIterator {
     RowLookupFilter filter;
 
     public FilteredRowsIterator(BPlusTreeFileTable btree, RowLookupFilter filter) {
-        super(btree);
+        //the leaves whose summaries show no row can match are not read
+        super(btree, btree.searchAllIterator(filter));
         this.filter = filter;
     }
 
@@ -39,7 +40,7 @@ public class FilteredRowsIterator extends RowsIterator {
             BinaryValue v = (BinaryValue) dp.getValue();
             //byte bytes_[] = (byte[]) v.get(0);
             //LinkedDataRow dataRow = btree.prototype.convertBinaryToRowData(bytes_);
-            LinkedDataRow dataRow = v.rowData;
+            LinkedDataRow dataRow = v.getRowData();
             if (filter.match(dataRow)) {
                 nextValue = dataRow;
                 return nextValue;
@@ -0,0 +1,70 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package ibd.table;
+
+import ibd.table.lookup.RowLookupFilter;
+import ibd.table.prototype.LinkedDataRow;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * This class defines the behavior of the iterator functions next() and
+ * hasNext() for the rows of a hash table. The rows come from an iterator over
+ * the buckets, or over the result of a primary key lookup, and may also have
+ * to satisfy a filter.
+ *
+ * @author Sergio
+ */
+public class HashRowsIterator extends RowsIterator {
+
+    //the rows to be returned if they satisfy the filter
+    Iterator<LinkedDataRow> rows;
+
+    //the filter to be satisfied, or null if all rows are returned
+    RowLookupFilter filter;
+
+    public HashRowsIterator(Iterator<LinkedDataRow> rows, RowLookupFilter filter) {
+        this.rows = rows;
+        this.filter = filter;
+    }
+
+    /**
+     * This is the function that actually locates the next value.
+     *
+     * @return the next value, or null if there isnt any.
+     */
+    @Override
+    protected LinkedDataRow findNextTuple() {
+
+        while (rows.hasNext()) {
+            LinkedDataRow dataRow = rows.next();
+            if (filter == null || filter.match(dataRow)) {
+                nextValue = dataRow;
+                return nextValue;
+            }
+        }
+
+        return null;
+
+    }
+
+    /**
+     * The rows of a hash table are not sorted, so the iterator cannot be
+     * moved to a primary key.
+     */
+    @Override
+    public void seek(LinkedDataRow pkRow) {
+        throw new UnsupportedOperationException("A hash table iterator cannot seek a primary key");
+    }
+
+    /**
+     * Ends the iteration, so no more pages are read.
+     */
+    @Override
+    public void close() {
+        rows = Collections.emptyIterator();
+        nextValue = null;
+    }
+}
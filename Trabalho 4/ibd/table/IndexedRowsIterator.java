@@ -0,0 +1,83 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package ibd.table;
+
+import ibd.index.btree.DictionaryPair;
+import ibd.index.btree.Key;
+import ibd.index.btree.Value;
+import ibd.index.btree.table.BPlusTreeFileTable;
+import ibd.index.btree.table.BinaryValue;
+import ibd.table.lookup.RowLookupFilter;
+import ibd.table.prototype.DataRow;
+import ibd.table.prototype.LinkedDataRow;
+
+/**
+ * This class defines the behavior of the iterator functions next() and
+ * hasNext() for rows found through a secondary index. The entries of the index
+ * whose values satisfy a single column comparison are read in order, and each
+ * row is fetched from the table by its primary key. The rows may also have to
+ * satisfy a filter.
+ *
+ * @author Sergio
+ */
+public class IndexedRowsIterator extends RowsIterator {
+
+    SecondaryIndex index;
+
+    //the comparison satisfied by the indexed column
+    Comparable value;
+    int comparisonType;
+
+    //the filter to be satisfied, or null if all rows that satisfy the comparison are returned
+    RowLookupFilter filter;
+
+    public IndexedRowsIterator(BPlusTreeFileTable btree, SecondaryIndex index, Comparable value, int comparisonType, RowLookupFilter filter) {
+        super(btree, index.searchIterator(value, comparisonType));
+        this.index = index;
+        this.value = value;
+        this.comparisonType = comparisonType;
+        this.filter = filter;
+    }
+
+    /**
+     * This is the function that actually locates the next value.
+     *
+     * @return the next value, or null if there isnt any.
+     */
+    @Override
+    protected LinkedDataRow findNextTuple() {
+
+        while (valueIterator.hasNext()) {
+            DictionaryPair dp = valueIterator.next();
+            Key key = btree.createKey();
+            key.setKeys(new DataRow[]{index.createPKRow(dp.getKey())});
+            Value v = btree.search(key);
+            if (v == null) {
+                continue;
+            }
+            LinkedDataRow dataRow = ((BinaryValue) v).getRowData();
+            //the index also reaches rows equal to the bounds of strict comparisons and strings that share the indexed prefix
+            if (!index.match(dataRow, value, comparisonType)) {
+                continue;
+            }
+            if (filter == null || filter.match(dataRow)) {
+                nextValue = dataRow;
+                return nextValue;
+            }
+        }
+
+        return null;
+
+    }
+
+    /**
+     * The rows come in the order of the indexed column, so the iterator cannot
+     * be moved to a primary key.
+     */
+    @Override
+    public void seek(LinkedDataRow pkRow) {
+        throw new UnsupportedOperationException("An index iterator cannot seek a primary key");
+    }
+}
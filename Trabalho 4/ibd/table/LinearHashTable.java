@@ -0,0 +1,537 @@
+package ibd.table;
+
+import ibd.index.hash.LinearHashFile;
+import ibd.persistent.PageFile;
+import ibd.persistent.cache.Cache;
+import ibd.table.lookup.RowLookupFilter;
+import ibd.table.prototype.BasicDataRow;
+import ibd.table.prototype.LinkedDataRow;
+import ibd.table.prototype.Prototype;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A table whose rows are stored in a linear hash file, addressed by their
+ * primary keys. A lookup of a whole primary key reads a single bucket page,
+ * regardless of the number of rows, which suits tables accessed only through
+ * getRecord() and contains().
+ *
+ * The rows are not sorted. Scans, prefix and range searches read every bucket
+ * and return the rows in no particular order, and secondary indexes are not
+ * supported.
+ *
+ * @author Sergio
+ */
+public class LinearHashTable extends Table {
+
+    //the linear hash file that stores the table's content
+    LinearHashFile hashFile = null;
+
+    //the optional caches for the bucket pages and the overflow pages
+    protected Cache bucketsCache = null;
+    protected Cache overflowCache = null;
+
+    //the location of the table
+    String folder;
+
+    //the file name uses to store the table's contents
+    String name;
+
+    //the size of the cache used to store table pages
+    int cacheSize;
+
+    //prevents the file from being reopened
+    boolean loaded = false;
+
+    //if true, the table's pages are accessed through a memory-mapped file
+    boolean memoryMapped = false;
+
+    //the buffer management policy used by the caches
+    int cacheType = BTreeTable.LRU_CACHE;
+
+    //the fraction of the buckets' space filled before a bucket is split
+    double loadFactor = LinearHashFile.DEFAULT_LOAD_FACTOR;
+
+    /**
+     *
+     * @param folder: the location of the table
+     * @param name: the file name uses to store the table's contents
+     * @param cacheSize: the size of the cache used to store table pages.
+     * @param memoryMapped: if true, the table's files are accessed through
+     * memory-mapped segments instead of positional reads and writes
+     * @throws Exception
+     */
+    public LinearHashTable(String folder, String name, int cacheSize, boolean memoryMapped) throws Exception {
+        this.folder = folder;
+        this.name = name;
+        this.cacheSize = cacheSize;
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Defines the buffer management policy used by the table's caches. It
+     * must be called before the table is created or opened.
+     *
+     * @param cacheType: one of the cache constants of {@link BTreeTable}
+     */
+    public void setCacheType(int cacheType) {
+        this.cacheType = cacheType;
+    }
+
+    /**
+     * Defines how full the buckets get before they are split. It must be
+     * called before the table is created or opened.
+     *
+     * @param loadFactor: the fraction of the buckets' space, between 0
+     * (exclusive) and 1
+     */
+    public void setLoadFactor(double loadFactor) {
+        this.loadFactor = loadFactor;
+    }
+
+    /**
+     * Creates a table
+     *
+     * @param prototype: the schema of the table
+     * @param pageSize: the size of the file pages
+     * @throws Exception
+     */
+    @Override
+    public void create(Prototype prototype, int pageSize) throws Exception {
+        if (loaded) {
+            return;
+        }
+        open(pageSize, true, prototype);
+    }
+
+    /**
+     * Open an existing table
+     *
+     * @throws Exception if the file does not exists or if the provided file is
+     * not a valid table
+     */
+    @Override
+    public void open() throws Exception {
+        if (loaded) {
+            return;
+        }
+        Path fileName = Paths.get(folder + "\\" + name);
+        if (!Files.exists(fileName)) {
+            throw new Exception("The file " + fileName + " does not exists");
+        }
+        open(-1, false, null);
+    }
+
+    private void open(int pageSize, boolean recreate, Prototype prototype) throws Exception {
+        //the buckets and the overflow pages are kept in separate files, so the page id of a bucket is its number
+        PageFile buckets = BTreeTable.createPageFile(memoryMapped, pageSize, Paths.get(folder + "\\" + name), recreate);
+        PageFile overflow = BTreeTable.createPageFile(memoryMapped, pageSize, Paths.get(folder + "\\" + name + ".ovf"), recreate);
+
+        if (cacheSize > 0) {
+            //most pages are buckets, so the overflow pages get a small share of the cache
+            bucketsCache = BTreeTable.createCache(cacheType, cacheSize - cacheSize / 8);
+            bucketsCache.setPageFile(buckets);
+            buckets = bucketsCache;
+            overflowCache = BTreeTable.createCache(cacheType, cacheSize / 8);
+            overflowCache.setPageFile(overflow);
+            overflow = overflowCache;
+        }
+
+        hashFile = new LinearHashFile(buckets, overflow, prototype);
+        hashFile.setLoadFactor(loadFactor);
+        hashFile.open();
+
+        loaded = true;
+    }
+
+    /**
+     * Closes the table
+     */
+    @Override
+    public void close() {
+        hashFile.flush();
+        hashFile.close();
+    }
+
+    /**
+     * Flushes the table's content to disk
+     *
+     * @throws Exception
+     */
+    @Override
+    public void flushDB() throws Exception {
+        if (bucketsCache != null) {
+            //writes only the dirty pages and keeps the caches warm
+            bucketsCache.checkpoint();
+            overflowCache.checkpoint();
+        } else {
+            hashFile.flush();
+        }
+    }
+
+    /**
+     * Checks if a row holds all primary key columns, so it can be located by
+     * its hash code.
+     */
+    private boolean hasWholeKey(LinkedDataRow pkRow) {
+        int pkColumns = getPrototype().getPrimaryKeyColumnCount();
+        for (int i = 0; i < pkColumns; i++) {
+            if (pkRow.getField(i) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the primary key of a row with the primary key columns set in
+     * another row. Only the leading columns that are set are compared, so a
+     * prefix of the primary key matches all rows that start with it.
+     */
+    private int comparePrefix(LinkedDataRow row, LinkedDataRow pkRow) {
+        int pkColumns = getPrototype().getPrimaryKeyColumnCount();
+        for (int i = 0; i < pkColumns; i++) {
+            if (pkRow.getField(i) == null) {
+                return 0;
+            }
+            int res = row.getValue(i).compareTo(pkRow.getValue(i));
+            if (res != 0) {
+                return res;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds a row to the table
+     *
+     * @param dataRow: the row to be added
+     * @return the added row or null if no row was added
+     */
+    @Override
+    public LinkedDataRow addRecord(BasicDataRow dataRow) {
+        LinkedDataRow linkedDataRow = dataRow.getLinkedDataRow(getPrototype());
+        byte bytes[] = getPrototype().convertToArray(linkedDataRow);
+        if (!hashFile.insert(linkedDataRow, bytes)) {
+            return null;
+        }
+        return linkedDataRow;
+    }
+
+    /**
+     * Adds rows to the table, one by one. The buckets are addressed by hash
+     * codes, so sorting the rows would not help.
+     *
+     * @param rows: the rows to be added, in any order
+     * @return the number of rows loaded
+     * @throws Exception
+     */
+    @Override
+    public int bulkLoad(Iterator<BasicDataRow> rows) throws Exception {
+        int count = 0;
+        while (rows.hasNext()) {
+            if (addRecord(rows.next()) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Updates a row from the table
+     *
+     * @param dataRow: the row to be updated
+     * @return the updated row or null if no row was updated
+     */
+    @Override
+    public LinkedDataRow updateRecord(BasicDataRow dataRow) {
+        return updateRecord(dataRow.getLinkedDataRow(getPrototype()));
+    }
+
+    /**
+     * Updates a row in the table
+     *
+     * @param linkedDataRow: the row to be updated
+     * @return the updated row or null if no row was updated
+     */
+    @Override
+    public LinkedDataRow updateRecord(LinkedDataRow linkedDataRow) {
+        byte bytes[] = getPrototype().convertToArray(linkedDataRow);
+        if (hashFile.update(linkedDataRow, bytes) == null) {
+            return null;
+        }
+        return linkedDataRow;
+    }
+
+    /**
+     * Removes a row from the table
+     *
+     * @param dataRow the row to be removed
+     * @return the removed row or null if no row was removed
+     */
+    @Override
+    public LinkedDataRow removeRecord(BasicDataRow dataRow) {
+        LinkedDataRow linkedDataRow = dataRow.getLinkedDataRow(getPrototype());
+        return hashFile.delete(getPrototype().createPKRow(linkedDataRow));
+    }
+
+    /**
+     * Returns a row that satisfies a primary key search condition.
+     *
+     * @param dataRow the unlinked row whose primary key is used to do the
+     * search
+     * @return the row that satisfy the search condition or null if no row
+     * satisfies the condition.
+     */
+    @Override
+    public LinkedDataRow getRecord(BasicDataRow dataRow) {
+        LinkedDataRow linkedDataRow = dataRow.getLinkedDataRow(getPrototype());
+        return getRecord(getPrototype().createPKRow(linkedDataRow));
+    }
+
+    /**
+     * Returns a row that satisfies a primary key search condition. Only the
+     * bucket of the primary key is read.
+     *
+     * @param pkRow the linked row whose primary key is used to do the search
+     * @return the row that satisfy the search condition or null if no row
+     * satisfies the condition.
+     */
+    @Override
+    public LinkedDataRow getRecord(LinkedDataRow pkRow) {
+        if (!hasWholeKey(pkRow)) {
+            RowsIterator it = getPrefixRecordsIterator(pkRow, null);
+            return it.hasNext() ? it.next() : null;
+        }
+        return hashFile.search(pkRow);
+    }
+
+    /**
+     * Checks if there is at least one row that satisfies a primary key search
+     * condition.
+     *
+     * @param pkRow the linked row whose primary key is used to do the search
+     * @return
+     */
+    @Override
+    public boolean contains(LinkedDataRow pkRow) {
+        return getRecord(pkRow) != null;
+    }
+
+    /**
+     * Returns a list of rows that satisfies a primary key search condition.
+     * A prefix of the primary key requires reading every bucket.
+     *
+     * @param dataRow the unlinked row whose primary key is used to do the
+     * search
+     * @return the list of rows that satisfy the search condition
+     */
+    @Override
+    public List<LinkedDataRow> getRecords(BasicDataRow dataRow) {
+        LinkedDataRow linkedDataRow = dataRow.getLinkedDataRow(getPrototype());
+        return getRecords(getPrototype().createPKRow(linkedDataRow));
+    }
+
+    /**
+     * Returns a list of rows that satisfies a primary key search condition.
+     *
+     * @param pkRow the linked row whose primary key is used to do the search
+     * @return the list of rows that satisfy the search condition
+     */
+    @Override
+    public List<LinkedDataRow> getRecords(LinkedDataRow pkRow) {
+        return toList(getPrefixRecordsIterator(pkRow, null));
+    }
+
+    /**
+     * Returns a list of rows that satisfies a primary key search condition and
+     * other arbitrary search conditions.
+     *
+     * @param pkRow the linked row whose primary key is used to define the pk
+     * search condition
+     * @param rowFilter the arbitrary search conditions
+     * @return the list of rows that satisfy all search conditions
+     */
+    @Override
+    public List<LinkedDataRow> getRecords(LinkedDataRow pkRow, RowLookupFilter rowFilter) {
+        return toList(getPrefixRecordsIterator(pkRow, rowFilter));
+    }
+
+    /**
+     * Return an iterator to access the rows that satisfy a primary key search
+     * condition and, optionally, other arbitrary search conditions. A whole
+     * primary key reads a single bucket. A prefix of it reads every bucket.
+     *
+     * @param pkRow the linked row whose primary key is used to define the pk
+     * search condition
+     * @param rowFilter the arbitrary search conditions, or null if there are
+     * none
+     * @return
+     */
+    @Override
+    public HashRowsIterator getPrefixRecordsIterator(LinkedDataRow pkRow, RowLookupFilter rowFilter) {
+        if (hasWholeKey(pkRow)) {
+            LinkedDataRow row = hashFile.search(pkRow);
+            List<LinkedDataRow> rows = (row == null) ? Collections.emptyList() : Collections.singletonList(row);
+            return new HashRowsIterator(rows.iterator(), rowFilter);
+        }
+        RowLookupFilter prefixFilter = row -> comparePrefix(row, pkRow) == 0 && (rowFilter == null || rowFilter.match(row));
+        return new HashRowsIterator(hashFile.iterator(), prefixFilter);
+    }
+
+    /**
+     * Returns all rows from the table, in no particular order.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Override
+    public List<LinkedDataRow> getAllRecords() throws Exception {
+        return toList(getAllRecordsIterator());
+    }
+
+    /**
+     * Collects the rows of an iterator into a list.
+     *
+     * @param it the iterator
+     * @return the rows of the iterator
+     */
+    private List<LinkedDataRow> toList(RowsIterator it) {
+        List<LinkedDataRow> rows = new ArrayList();
+        while (it.hasNext()) {
+            rows.add(it.next());
+        }
+        return rows;
+    }
+
+    /**
+     * Returns an iterator to access all rows from the table, in no particular
+     * order.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Override
+    public HashRowsIterator getAllRecordsIterator() throws Exception {
+        return new HashRowsIterator(hashFile.iterator(), null);
+    }
+
+    /**
+     * Returns all rows that satisfy a single column comparison.
+     *
+     * @param col: the column name
+     * @param comparable: the comparable value to be compared against
+     * @param comparisonType: the comparison type (<,>,...)
+     * @return all rows that satisfy a single column comparison
+     * @throws Exception
+     */
+    @Override
+    public List<LinkedDataRow> getRecords(String col, Comparable comparable, int comparisonType) throws Exception {
+        RowLookupFilter filter = row -> ComparisonTypes.match(row.getValue(col), comparable, comparisonType);
+        return toList(getFilteredRecordsIterator(filter));
+    }
+
+    /**
+     * Returns all rows from the table that satisfy a filter.
+     *
+     * @param filter the lookup filter to be satisfied
+     * @return
+     * @throws Exception
+     */
+    @Override
+    public List<LinkedDataRow> getFilteredRecords(RowLookupFilter filter) throws Exception {
+        return toList(getFilteredRecordsIterator(filter));
+    }
+
+    /**
+     * Return an iterator to access the rows that satisfy a filter
+     *
+     * @param filter the lookup filter to be satisfied
+     * @return
+     * @throws Exception
+     */
+    @Override
+    public HashRowsIterator getFilteredRecordsIterator(RowLookupFilter filter) throws Exception {
+        return new HashRowsIterator(hashFile.iterator(), filter);
+    }
+
+    /**
+     * Return an iterator to access the rows whose primary keys lie within a
+     * range. Every bucket is read and the rows come in no particular order.
+     *
+     * @param lowerPkRow the linked row holding the smallest primary key, or
+     * null for no lower bound. A prefix of the primary key may be used
+     * @param upperPkRow the linked row holding the largest primary key, or
+     * null for no upper bound. A prefix of the primary key includes all rows
+     * that start with it
+     * @return
+     * @throws Exception
+     */
+    @Override
+    public HashRowsIterator getRangeRecordsIterator(LinkedDataRow lowerPkRow, LinkedDataRow upperPkRow) throws Exception {
+        RowLookupFilter filter = row -> (lowerPkRow == null || comparePrefix(row, lowerPkRow) >= 0)
+                && (upperPkRow == null || comparePrefix(row, upperPkRow) <= 0);
+        return new HashRowsIterator(hashFile.iterator(), filter);
+    }
+
+    /**
+     * Secondary indexes are not supported by hash tables.
+     */
+    @Override
+    public void createIndex(String column, String... includedColumns) throws Exception {
+        throw new UnsupportedOperationException("Hash tables do not support secondary indexes");
+    }
+
+    @Override
+    public boolean hasIndex(String column) {
+        return false;
+    }
+
+    @Override
+    public boolean isCoveringIndex(String column, Collection<String> columns) {
+        return false;
+    }
+
+    @Override
+    public RowsIterator getIndexedRecordsIterator(String column, Comparable value, int comparisonType, RowLookupFilter rowFilter) throws Exception {
+        throw new Exception("The column " + column + " has no index");
+    }
+
+    @Override
+    public RowsIterator getCoveredRecordsIterator(String column, Comparable value, int comparisonType, RowLookupFilter rowFilter) throws Exception {
+        throw new Exception("The column " + column + " has no index");
+    }
+
+    /**
+     * Prints statistics concerning the table's usage
+     *
+     * @throws Exception
+     */
+    @Override
+    public void printStats() throws Exception {
+        System.out.println("rows: " + hashFile.getRowCount() + ", buckets: " + hashFile.getBucketCount()
+                + ", overflow pages: " + hashFile.getOverflowPages());
+    }
+
+    /**
+     * Returns the number of rows stored in the table
+     *
+     * @return the number of rows stored in the table
+     * @throws Exception
+     */
+    @Override
+    public int getRecordsAmount() throws Exception {
+        return hashFile.getRowCount();
+    }
+
+    @Override
+    public Prototype getPrototype() {
+        return hashFile.prototype;
+    }
+}
@@ -112,6 +112,7 @@ public class Main {
         Params.RECORDS_REMOVED = 0;
         Params.BLOCKS_LOADED = 0;
         Params.BLOCKS_SAVED = 0;
+        Params.WRITE_CALLS_SAVED = 0;
     }
 
     /**
@@ -122,6 +123,7 @@ public class Main {
         //System.out.println("records removed during reorganization " + Params.RECORDS_REMOVED);
         System.out.println("blocks loaded during reorganization " + Params.BLOCKS_LOADED);
         System.out.println("blocks saved during reorganization " + Params.BLOCKS_SAVED);
+        System.out.println("write calls saved by coalescing " + Params.WRITE_CALLS_SAVED);
         System.out.println("time : " + time);
     }
 
@@ -0,0 +1,83 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.prototype.BasicDataRow;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the time taken to fill a table by adding the rows one by one and
+ * by bulk loading them.
+ *
+ * @author Sergio
+ */
+public class MainBulkLoad {
+
+    //a permutation of 0..amount-1, so the input is not sorted
+    private int permutedKey(int i, int amount) {
+        return (int) (((long) i * 7919) % amount);
+    }
+
+    private Iterator<BasicDataRow> generateRows(int amount) {
+        return new Iterator<BasicDataRow>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < amount;
+            }
+
+            @Override
+            public BasicDataRow next() {
+                return Benchmark.createRow(permutedKey(i++, amount));
+            }
+        };
+    }
+
+    private BTreeTable createTable(String folder, String name) throws Exception {
+        BTreeTable table = new BTreeTable(folder, name, Benchmark.CREATE_CACHE_SIZE);
+        table.create(Benchmark.createPrototype(), Table.DEFULT_PAGE_SIZE);
+        return table;
+    }
+
+    public void testInserts(String folder, int amount) throws Exception {
+        BTreeTable table = createTable(folder, "inserted");
+        Benchmark.resetMetrics();
+        long start = System.currentTimeMillis();
+        Benchmark.fill(table, amount, i -> Benchmark.createRow(permutedKey(i, amount)));
+        long end = System.currentTimeMillis();
+        Benchmark.printMetrics("addRecord, " + amount + " rows", amount, end - start);
+    }
+
+    public void testBulkLoad(String folder, int amount, double fillFactor) throws Exception {
+        BTreeTable table = createTable(folder, "bulk");
+        table.setBulkLoad(fillFactor, ExternalRowSorter.DEFAULT_RUN_SIZE);
+        Benchmark.resetMetrics();
+        long start = System.currentTimeMillis();
+        table.bulkLoad(generateRows(amount));
+        table.flushDB();
+        table.close();
+        long end = System.currentTimeMillis();
+        Benchmark.printMetrics("bulkLoad with fill factor " + fillFactor + ", " + amount + " rows", amount, end - start);
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainBulkLoad m = new MainBulkLoad();
+            String folder = "c:\\teste\\ibd";
+            int amount = 1000000;
+
+            m.testInserts(folder, amount);
+            m.testBulkLoad(folder, amount, 1.0);
+            m.testBulkLoad(folder, amount, BTreeTable.DEFAULT_FILL_FACTOR);
+
+        } catch (Exception ex) {
+            Logger.getLogger(MainBulkLoad.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
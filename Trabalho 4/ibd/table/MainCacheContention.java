@@ -0,0 +1,112 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.persistent.cache.Cache;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares how the cache policies behave when several threads read pages at
+ * the same time. The cache is large enough to keep all pages of the table, so
+ * after the warm up every access is a cache hit and the measured throughput
+ * reflects only the cost of synchronization inside the cache.
+ *
+ * @author Sergio
+ */
+public class MainCacheContention {
+
+    /**
+     * Fills a table, and opens it again using the given cache policy, with a
+     * cache that holds all of its pages.
+     *
+     * @param folder the location of the table
+     * @param cacheType one of the cache constants of {@link BTreeTable}
+     * @param amount the number of rows
+     * @return the opened table
+     * @throws Exception
+     */
+    public BTreeTable createTable(String folder, int cacheType, int amount) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "contention" + cacheType, Benchmark.CREATE_CACHE_SIZE);
+        table.setCacheType(cacheType);
+        table.create(Benchmark.createPrototype(), Table.DEFULT_PAGE_SIZE);
+        Benchmark.fill(table, amount, Benchmark::createRow);
+
+        table = new BTreeTable(folder, "contention" + cacheType, Benchmark.CREATE_CACHE_SIZE);
+        table.setCacheType(cacheType);
+        table.open();
+        return table;
+    }
+
+    /**
+     * Reads random pages of the cache from several threads.
+     *
+     * @param cache the cache being measured
+     * @param threads the number of concurrent threads
+     * @param readsPerThread the number of pages each thread reads
+     * @return the throughput, in page reads per second
+     * @throws Exception
+     */
+    public double testConcurrentReads(Cache cache, int threads, int readsPerThread) throws Exception {
+        int pages = cache.getNextPageID();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < readsPerThread; i++) {
+                    cache.readPage(random.nextInt(pages));
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long end = System.nanoTime();
+
+        return (double) threads * readsPerThread / ((end - start) / 1e9);
+    }
+
+    /**
+     * Prints the throughput of a cache policy for an increasing number of
+     * threads.
+     */
+    private void run(String label, Cache cache, int readsPerThread) throws Exception {
+        //warm up: loads every page and lets the JIT compile the read path
+        testConcurrentReads(cache, 1, readsPerThread);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores * 2; threads *= 2) {
+            double throughput = testConcurrentReads(cache, threads, readsPerThread);
+            System.out.println(label + " threads: " + threads + " reads/s: " + String.format("%.0f", throughput));
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainCacheContention m = new MainCacheContention();
+            String folder = "c:\\teste\\ibd";
+            int amount = 100000;
+            int readsPerThread = 2000000;
+
+            BTreeTable lru = m.createTable(folder, BTreeTable.LRU_CACHE, amount);
+            m.run("LRUCache", lru.cache, readsPerThread);
+            lru.close();
+
+            BTreeTable clock = m.createTable(folder, BTreeTable.SHARDED_CLOCK_CACHE, amount);
+            m.run("ShardedClockCache", clock.cache, readsPerThread);
+            clock.close();
+
+        } catch (Exception ex) {
+            Logger.getLogger(MainCacheContention.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
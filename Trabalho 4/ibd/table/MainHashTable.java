@@ -0,0 +1,71 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.prototype.BasicDataRow;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares primary key lookups on a b-tree table and on a hash table, with a
+ * cache much smaller than the tables. The b-tree reads a page per level that
+ * is not cached, while the hash table reads the bucket of the key.
+ *
+ * @author Sergio
+ */
+public class MainHashTable {
+
+    public void createTable(String folder, int tableType, int amount) throws Exception {
+        Table table = Directory.getTable(folder, "lookup" + tableType, Benchmark.createPrototype(), Benchmark.CREATE_CACHE_SIZE,
+                Table.DEFULT_PAGE_SIZE, true, false, BTreeTable.LRU_CACHE, tableType);
+        Benchmark.fill(table, amount, Benchmark::createRow);
+    }
+
+    public void testLookups(String folder, int tableType, int amount, int lookups) throws Exception {
+        Table table;
+        if (tableType == Directory.HASH_TABLE) {
+            table = new LinearHashTable(folder, "lookup" + tableType, Benchmark.TEST_CACHE_SIZE, false);
+        } else {
+            BTreeTable bt = new BTreeTable(folder, "lookup" + tableType, Benchmark.TEST_CACHE_SIZE);
+            //the upper levels are not pinned, so every level competes for the cache
+            bt.setPinnedNodes(0);
+            table = bt;
+        }
+        table.open();
+
+        Random random = new Random(1);
+        Benchmark.resetMetrics();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            BasicDataRow row = new BasicDataRow();
+            row.setInt("id", random.nextInt(amount));
+            if (table.getRecord(row) == null) {
+                throw new IllegalStateException("Row not found: " + row);
+            }
+        }
+        long end = System.currentTimeMillis();
+        String type = (tableType == Directory.HASH_TABLE) ? "hash" : "b-tree";
+        Benchmark.printMetrics(type + ", " + lookups + " lookups", lookups, end - start);
+        table.close();
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainHashTable m = new MainHashTable();
+            String folder = "c:\\teste\\ibd";
+            int amount = 500000;
+            int lookups = 10000;
+
+            m.createTable(folder, Directory.BTREE_TABLE, amount);
+            m.createTable(folder, Directory.HASH_TABLE, amount);
+            m.testLookups(folder, Directory.BTREE_TABLE, amount, lookups);
+            m.testLookups(folder, Directory.HASH_TABLE, amount, lookups);
+        } catch (Exception ex) {
+            Logger.getLogger(MainHashTable.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
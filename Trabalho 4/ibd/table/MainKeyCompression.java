@@ -0,0 +1,137 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.prototype.BasicDataRow;
+import ibd.table.prototype.Prototype;
+import ibd.table.prototype.column.IntegerColumn;
+import ibd.table.prototype.column.StringColumn;
+import ibd.table.prototype.metadata.Metadata;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the shape of a tree whose internal nodes store full keys with one
+ * whose internal nodes store prefix compressed keys. The table has a composite
+ * primary key, whose leading columns repeat across many rows, so the
+ * separators share long prefixes and most of them need only a few columns.
+ *
+ * @author Sergio
+ */
+public class MainKeyCompression {
+
+    private BasicDataRow createRow(int i) {
+        BasicDataRow row = new BasicDataRow();
+        row.setInt("tenant", i / 100000);
+        row.setInt("account", (i / 100) % 1000);
+        row.setInt("entry", i % 100);
+        row.setString("nome", DataFaker.pad("content " + i, 60));
+        return row;
+    }
+
+    private void createTable(String folder, String name, boolean keyCompression, int amount) throws Exception {
+        Prototype pt = new Prototype();
+        pt.addColumn(new IntegerColumn("tenant", true));
+        pt.addColumn(new IntegerColumn("account", true));
+        pt.addColumn(new IntegerColumn("entry", true));
+        pt.addColumn(new StringColumn("nome"));
+
+        BTreeTable table = new BTreeTable(folder, name, Benchmark.CREATE_CACHE_SIZE);
+        table.setKeyCompression(keyCompression);
+        table.create(pt, Table.DEFULT_PAGE_SIZE);
+        Benchmark.fill(table, amount, this::createRow);
+    }
+
+    public void test(String folder, String name, boolean keyCompression, int amount, int lookups) throws Exception {
+        createTable(folder, name, keyCompression, amount);
+
+        //reopens the table with a small cache, so most internal nodes must be read from disk
+        BTreeTable table = new BTreeTable(folder, name, Benchmark.TEST_CACHE_SIZE);
+        table.open();
+        System.out.println("key compression " + keyCompression
+                + ": height " + table.tree.getHeight()
+                + ", directory capacity " + table.tree.getDirCapacity()
+                + ", average fan-out " + String.format("%.1f", table.tree.getAverageFanOut()));
+
+        Random random = new Random(1);
+        Benchmark.resetMetrics();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            BasicDataRow row = createRow(random.nextInt(amount));
+            if (table.getRecord(row) == null) {
+                throw new IllegalStateException("Row not found: " + row);
+            }
+        }
+        long end = System.currentTimeMillis();
+        Benchmark.printMetrics(lookups + " lookups", lookups, end - start);
+        table.close();
+    }
+
+    /**
+     * Inserts rows whose primary keys start with a string into a table without
+     * cache, in random order, and checks that all of them are found after the
+     * table is reopened. Each internal node is written as soon as it changes,
+     * so an overfull node must be split before it is written.
+     */
+    public void checkStringKeys(String folder, int amount) throws Exception {
+        Prototype pt = new Prototype();
+        pt.addColumn(new StringColumn("customer", 40, (short) (Metadata.STRING | Metadata.PRIMARY_KEY)));
+        pt.addColumn(new IntegerColumn("entry", true));
+        pt.addColumn(new StringColumn("nome"));
+
+        BTreeTable table = new BTreeTable(folder, "stringkeys", 0);
+        table.create(pt, Table.DEFULT_PAGE_SIZE);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            ids.add(i);
+        }
+        Collections.shuffle(ids, new Random(1));
+        Benchmark.fill(table, amount, i -> {
+            BasicDataRow row = createStringKeyRow(ids.get(i));
+            row.setString("nome", DataFaker.pad("content " + ids.get(i), 60));
+            return row;
+        });
+
+        table = new BTreeTable(folder, "stringkeys", 0);
+        table.open();
+        for (int i = 0; i < amount; i++) {
+            BasicDataRow row = createStringKeyRow(i);
+            if (table.getRecord(row) == null) {
+                throw new IllegalStateException("Row not found: " + row);
+            }
+        }
+        System.out.println("string keys without cache: " + amount + " rows found, height " + table.tree.getHeight());
+        table.close();
+    }
+
+    private BasicDataRow createStringKeyRow(int i) {
+        BasicDataRow row = new BasicDataRow();
+        row.setString("customer", "customer number " + (i % 1000));
+        row.setInt("entry", i);
+        return row;
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainKeyCompression m = new MainKeyCompression();
+            String folder = "c:\\teste\\ibd";
+            int amount = 1000000;
+            int lookups = 100000;
+
+            m.checkStringKeys(folder, 50000);
+
+            m.test(folder, "uncompressed", false, amount, lookups);
+            m.test(folder, "compressed", true, amount, lookups);
+
+        } catch (Exception ex) {
+            Logger.getLogger(MainKeyCompression.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
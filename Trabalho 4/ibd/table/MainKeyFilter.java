@@ -0,0 +1,64 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.prototype.BasicDataRow;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares lookups of primary keys that are not in the table, with and
+ * without the filter of the primary keys, with a cache much smaller than the
+ * table. Only the even keys are stored, and the odd keys are searched.
+ *
+ * @author Sergio
+ */
+public class MainKeyFilter {
+
+    public void createTable(String folder, int bitsPerKey, int amount) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "filter" + bitsPerKey, Benchmark.CREATE_CACHE_SIZE);
+        table.setKeyFilter(bitsPerKey);
+        table.create(Benchmark.createPrototype(), Table.DEFULT_PAGE_SIZE);
+        Benchmark.fill(table, amount, i -> Benchmark.createRow(2 * i));
+    }
+
+    public void testMissingKeys(String folder, int bitsPerKey, int amount, int lookups) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "filter" + bitsPerKey, Benchmark.TEST_CACHE_SIZE);
+        table.open();
+
+        Random random = new Random(1);
+        Benchmark.resetMetrics();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            BasicDataRow row = new BasicDataRow();
+            row.setInt("id", 2 * random.nextInt(amount) + 1);
+            if (table.getRecord(row) != null) {
+                throw new IllegalStateException("Missing key found: " + row);
+            }
+        }
+        long end = System.currentTimeMillis();
+        String type = (bitsPerKey > 0) ? "filter of " + bitsPerKey + " bits per key" : "no filter";
+        Benchmark.printMetrics(type + ", " + lookups + " missing keys", lookups, end - start);
+        table.close();
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainKeyFilter m = new MainKeyFilter();
+            String folder = "c:\\teste\\ibd";
+            int amount = 500000;
+            int lookups = 10000;
+
+            m.createTable(folder, 0, amount);
+            m.createTable(folder, 10, amount);
+            m.testMissingKeys(folder, 0, amount, lookups);
+            m.testMissingKeys(folder, 10, amount, lookups);
+        } catch (Exception ex) {
+            Logger.getLogger(MainKeyFilter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the heap taken by each cached page. Pages that are only read keep
+ * their entries packed, while pages that are modified are decoded into
+ * objects. The cache is large enough to keep the whole table.
+ *
+ * @author Sergio
+ */
+public class MainNodeFootprint {
+
+    private long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        //several rounds, so objects released by finalizers are also collected
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public void createTable(String folder, int amount) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "footprint", Benchmark.CREATE_CACHE_SIZE);
+        table.create(Benchmark.createPrototype(), Table.DEFULT_PAGE_SIZE);
+        Benchmark.fill(table, amount, Benchmark::createRow);
+    }
+
+    public void test(String folder, int amount, int lookups) throws Exception {
+        long before = usedHeap();
+        BTreeTable table = new BTreeTable(folder, "footprint", 256 * 1024 * 1024);
+        table.open();
+
+        //loads every page of the table without modifying it
+        RowsIterator it = table.getAllRecordsIterator();
+        while (it.hasNext()) {
+            it.next();
+        }
+        Random random = new Random(1);
+        Benchmark.resetMetrics();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            table.getRecord(Benchmark.createRow(random.nextInt(amount)));
+        }
+        long end = System.currentTimeMillis();
+        Benchmark.printMetrics("read only, " + lookups + " lookups", lookups, end - start);
+        int pages = table.cache.getNextPageID();
+        long packed = usedHeap() - before;
+        System.out.println("heap bytes per page of " + Table.DEFULT_PAGE_SIZE + ": " + packed / pages);
+
+        //an update decodes the entries of the modified leaf
+        for (int i = 0; i < amount; i++) {
+            table.updateRecord(Benchmark.createRow(i));
+        }
+        long decoded = usedHeap() - before;
+        System.out.println("after updating every row: " + decoded / pages + " heap bytes per page");
+        table.close();
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainNodeFootprint m = new MainNodeFootprint();
+            String folder = "c:\\teste\\ibd";
+            int amount = 500000;
+
+            m.createTable(folder, amount);
+            m.test(folder, amount, 200000);
+        } catch (Exception ex) {
+            Logger.getLogger(MainNodeFootprint.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
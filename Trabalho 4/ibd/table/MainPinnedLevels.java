@@ -0,0 +1,62 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.prototype.BasicDataRow;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares point lookups that read every level of the tree through the cache
+ * with lookups that descend through pinned upper levels. The cache is small,
+ * so the internal nodes compete with the leaves for its pages.
+ *
+ * @author Sergio
+ */
+public class MainPinnedLevels {
+
+    public void createTable(String folder, int amount) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "pinned", Benchmark.CREATE_CACHE_SIZE);
+        table.create(Benchmark.createPrototype(), Table.DEFULT_PAGE_SIZE);
+        Benchmark.fill(table, amount, Benchmark::createRow);
+    }
+
+    public void testLookups(String folder, int pinnedNodes, int amount, int lookups) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "pinned", Benchmark.TEST_CACHE_SIZE);
+        table.setPinnedNodes(pinnedNodes);
+        table.open();
+
+        Random random = new Random(1);
+        Benchmark.resetMetrics();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            BasicDataRow row = Benchmark.createRow(random.nextInt(amount));
+            if (table.getRecord(row) == null) {
+                throw new IllegalStateException("Row not found: " + row);
+            }
+        }
+        long end = System.currentTimeMillis();
+        Benchmark.printMetrics("pinned nodes " + table.tree.getPinnedNodes() + " of " + pinnedNodes
+                + ", height " + table.tree.getHeight() + ", " + lookups + " lookups", lookups, end - start);
+        table.close();
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainPinnedLevels m = new MainPinnedLevels();
+            String folder = "c:\\teste\\ibd";
+            int amount = 1000000;
+            int lookups = 100000;
+
+            m.createTable(folder, amount);
+            m.testLookups(folder, 0, amount, lookups);
+            m.testLookups(folder, 1024, amount, lookups);
+        } catch (Exception ex) {
+            Logger.getLogger(MainPinnedLevels.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
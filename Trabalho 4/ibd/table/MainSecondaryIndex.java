@@ -0,0 +1,104 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.prototype.BasicDataRow;
+import ibd.table.prototype.Prototype;
+import ibd.table.prototype.column.IntegerColumn;
+import ibd.table.prototype.column.StringColumn;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares lookups over a column that is not part of the primary key with and
+ * without a secondary index. Without the index, every lookup reads the whole
+ * table. With a covering index, that includes the other columns, the lookups
+ * do not read the table at all.
+ *
+ * @author Sergio
+ */
+public class MainSecondaryIndex {
+
+    private BasicDataRow createRow(int id, int groups) {
+        BasicDataRow row = new BasicDataRow();
+        row.setInt("id", id);
+        row.setInt("grupo", id % groups);
+        row.setString("nome", DataFaker.pad("content " + id, 60));
+        return row;
+    }
+
+    public void createTable(String folder, int amount, int groups) throws Exception {
+        Prototype pt = new Prototype();
+        pt.addColumn(new IntegerColumn("id", true));
+        pt.addColumn(new IntegerColumn("grupo"));
+        pt.addColumn(new StringColumn("nome"));
+
+        BTreeTable table = new BTreeTable(folder, "secondary", Benchmark.CREATE_CACHE_SIZE);
+        table.create(pt, Table.DEFULT_PAGE_SIZE);
+        Benchmark.fill(table, amount, i -> createRow(i, groups));
+    }
+
+    public void test(String folder, boolean indexed, int groups, int lookups) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "secondary", 1024 * Table.DEFULT_PAGE_SIZE);
+        table.open();
+        if (indexed) {
+            table.createIndex("grupo");
+        }
+
+        Random random = new Random(1);
+        Benchmark.resetMetrics();
+        int rows = 0;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            rows += table.getRecords("grupo", random.nextInt(groups), ComparisonTypes.EQUAL).size();
+        }
+        long end = System.currentTimeMillis();
+        Benchmark.printMetrics("indexed " + indexed + ", " + lookups + " lookups returned " + rows + " rows", lookups, end - start);
+        table.close();
+    }
+
+    public void testCovered(String folder, int groups, int lookups) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "secondary", 1024 * Table.DEFULT_PAGE_SIZE);
+        table.open();
+        table.createIndex("grupo", "nome");
+
+        Random random = new Random(1);
+        Benchmark.resetMetrics();
+        int rows = 0;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            RowsIterator it = table.getCoveredRecordsIterator("grupo", random.nextInt(groups), ComparisonTypes.EQUAL, null);
+            while (it.hasNext()) {
+                it.next();
+                rows++;
+            }
+        }
+        long end = System.currentTimeMillis();
+        Benchmark.printMetrics("covering, " + lookups + " lookups returned " + rows + " rows", lookups, end - start);
+        table.close();
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainSecondaryIndex m = new MainSecondaryIndex();
+            String folder = "c:\\teste\\ibd";
+            int amount = 200000;
+            int groups = 20000;
+            int lookups = 1000;
+
+            m.createTable(folder, amount, groups);
+            m.test(folder, false, groups, lookups);
+            m.test(folder, true, groups, lookups);
+
+            //the table is created again, so its index includes the other column
+            m.createTable(folder, amount, groups);
+            m.testCovered(folder, groups, lookups);
+        } catch (Exception ex) {
+            Logger.getLogger(MainSecondaryIndex.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.table.lookup.CompositeRowLookupFilter;
+import ibd.table.lookup.RowLookupFilter;
+import ibd.table.lookup.SingleRowColumnValueLookupFilter;
+import ibd.table.prototype.BasicDataRow;
+import ibd.table.prototype.LinkedDataRow;
+import ibd.table.prototype.Prototype;
+import ibd.table.prototype.column.IntegerColumn;
+import ibd.table.prototype.column.LongColumn;
+import ibd.table.prototype.column.StringColumn;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares scans filtered by a range of a column that is not part of the
+ * primary key, with and without the summaries of the leaves. The column
+ * holds the moment each row was inserted, so its values grow along with the
+ * primary key and each range is found in a few leaves.
+ *
+ * @author Sergio
+ */
+public class MainZoneMap {
+
+    private Prototype createPrototype() {
+        Prototype pt = new Prototype();
+        pt.addColumn(new IntegerColumn("id", true));
+        pt.addColumn(new LongColumn("time"));
+        pt.addColumn(new StringColumn("nome"));
+        return pt;
+    }
+
+    private BasicDataRow createRow(int id, long time) {
+        BasicDataRow row = new BasicDataRow();
+        row.setInt("id", id);
+        row.setLong("time", time);
+        row.setString("nome", DataFaker.pad("content " + id, 60));
+        return row;
+    }
+
+    public void createTable(String folder, int amount) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "zones", Benchmark.CREATE_CACHE_SIZE);
+        table.create(createPrototype(), Table.DEFULT_PAGE_SIZE);
+        Random random = new Random(1);
+        long time[] = {0};
+        //the rows arrive in order, a few milliseconds apart
+        Benchmark.fill(table, amount, i -> createRow(i, time[0] += random.nextInt(10)));
+    }
+
+    private RowLookupFilter createRangeFilter(long from, long to) throws Exception {
+        CompositeRowLookupFilter filter = new CompositeRowLookupFilter(CompositeRowLookupFilter.AND);
+        SingleRowColumnValueLookupFilter lower = new SingleRowColumnValueLookupFilter(1, ComparisonTypes.GREATER_EQUAL_THAN);
+        lower.setValue(from);
+        SingleRowColumnValueLookupFilter upper = new SingleRowColumnValueLookupFilter(1, ComparisonTypes.LOWER_THAN);
+        upper.setValue(to);
+        filter.addFilter(lower);
+        filter.addFilter(upper);
+        return filter;
+    }
+
+    public void testScans(String folder, boolean zoneMaps, long maxTime, long window, int scans) throws Exception {
+        BTreeTable table = new BTreeTable(folder, "zones", Benchmark.TEST_CACHE_SIZE);
+        table.setZoneMaps(zoneMaps);
+        table.open();
+
+        //the first scan reads the whole table, so the leaves are summarized
+        table.getRecords("time", 0L, ComparisonTypes.LOWER_THAN);
+
+        Random random = new Random(1);
+        int rows = 0;
+        Benchmark.resetMetrics();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < scans; i++) {
+            long from = (long) (random.nextDouble() * (maxTime - window));
+            List<LinkedDataRow> list = table.getFilteredRecords(createRangeFilter(from, from + window));
+            rows += list.size();
+        }
+        long end = System.currentTimeMillis();
+        String type = zoneMaps ? "zone maps" : "no zone maps";
+        Benchmark.printMetrics(type + ", " + scans + " scans, " + rows + " rows found", scans, end - start);
+        table.close();
+    }
+
+    public static void main(String[] args) {
+        try {
+            MainZoneMap m = new MainZoneMap();
+            String folder = "c:\\teste\\ibd";
+            int amount = 500000;
+            int scans = 100;
+
+            m.createTable(folder, amount);
+            //each scan looks for about a thousand rows
+            long maxTime = amount * 9L / 2;
+            m.testScans(folder, false, maxTime, 4500, scans);
+            m.testScans(folder, true, maxTime, 4500, scans);
+        } catch (Exception ex) {
+            Logger.getLogger(MainZoneMap.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
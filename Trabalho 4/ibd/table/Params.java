@@ -15,4 +15,6 @@ public class Params {
     public static int RECORDS_ADDED;
     public static int BLOCKS_LOADED;
     public static int BLOCKS_SAVED;
+    //the write calls avoided by coalescing adjacent pages into a single write
+    public static int WRITE_CALLS_SAVED;
 }
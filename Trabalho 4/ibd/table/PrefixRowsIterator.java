@@ -0,0 +1,52 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package ibd.table;
+
+import ibd.index.btree.DictionaryPair;
+import ibd.index.btree.Key;
+import ibd.index.btree.table.BPlusTreeFileTable;
+import ibd.index.btree.table.BinaryValue;
+import ibd.table.lookup.RowLookupFilter;
+import ibd.table.prototype.LinkedDataRow;
+
+/**
+ * This class defines the behavior of the iterator functions next() and
+ * hasNext() for rows whose primary keys start with a given prefix. The rows
+ * may also have to satisfy a filter.
+ *
+ * @author Sergio
+ */
+public class PrefixRowsIterator extends RowsIterator {
+
+    //the filter to be satisfied, or null if all rows with the prefix are returned
+    RowLookupFilter filter;
+
+    public PrefixRowsIterator(BPlusTreeFileTable btree, Key prefix, RowLookupFilter filter) {
+        super(btree, btree.partialSearchIterator(prefix));
+        this.filter = filter;
+    }
+
+    /**
+     * This is the function that actually locates the next value.
+     *
+     * @return the next value, or null if there isnt any.
+     */
+    @Override
+    protected LinkedDataRow findNextTuple() {
+
+        while (valueIterator.hasNext()) {
+            DictionaryPair dp = valueIterator.next();
+            BinaryValue v = (BinaryValue) dp.getValue();
+            LinkedDataRow dataRow = v.getRowData();
+            if (filter == null || filter.match(dataRow)) {
+                nextValue = dataRow;
+                return nextValue;
+            }
+        }
+
+        return null;
+
+    }
+}
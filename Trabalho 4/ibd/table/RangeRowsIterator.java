@@ -0,0 +1,43 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package ibd.table;
+
+import ibd.index.btree.DictionaryPair;
+import ibd.index.btree.Key;
+import ibd.index.btree.table.BPlusTreeFileTable;
+import ibd.index.btree.table.BinaryValue;
+import ibd.table.prototype.LinkedDataRow;
+
+/**
+ * This class defines the behavior of the iterator functions next() and
+ * hasNext() for rows whose primary keys lie within a range
+ *
+ * @author Sergio
+ */
+public class RangeRowsIterator extends RowsIterator {
+
+    public RangeRowsIterator(BPlusTreeFileTable btree, Key lowerBound, Key upperBound) {
+        super(btree, btree.searchRangeIterator(lowerBound, upperBound));
+    }
+
+    /**
+     * This is the function that actually locates the next value.
+     *
+     * @return the next value, or null if there isnt any.
+     */
+    @Override
+    protected LinkedDataRow findNextTuple() {
+
+        if (valueIterator.hasNext()) {
+            DictionaryPair dp = valueIterator.next();
+            BinaryValue v = (BinaryValue) dp.getValue();
+            nextValue = v.getRowData();
+            return nextValue;
+        }
+
+        return null;
+
+    }
+}
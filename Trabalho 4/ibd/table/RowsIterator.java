@@ -4,8 +4,10 @@
  */
 package ibd.table;
 
+import ibd.index.btree.Key;
 import ibd.index.btree.ValueIterator;
 import ibd.index.btree.table.BPlusTreeFileTable;
+import ibd.table.prototype.DataRow;
 import ibd.table.prototype.LinkedDataRow;
 import java.util.Iterator;
 
@@ -13,17 +15,40 @@ import java.util.Iterator;
  * This class defines the behavior of the iterator functions next() and
  * hasNext()
  *
+ * The iterator works as a cursor over the table: it is opened by one of the
+ * table's iterator functions, reads one leaf at a time as the rows are
+ * consumed, can be moved forward with seek() and can be closed before the
+ * last row, so a lookup uses the same memory regardless of how many rows it
+ * reaches.
+ *
  * @author Sergio
  */
-public abstract class RowsIterator implements Iterator<LinkedDataRow> {
+public abstract class RowsIterator implements Iterator<LinkedDataRow>, AutoCloseable {
 
     LinkedDataRow nextValue = null;
     ValueIterator valueIterator;
     BPlusTreeFileTable btree;
 
     public RowsIterator(BPlusTreeFileTable btree) {
+        this(btree, btree.searchAllIterator());
+    }
+
+    /**
+     * Creates an iterator whose rows do not come from a b-tree. It must
+     * override seek() and close().
+     */
+    protected RowsIterator() {
+    }
+
+    /**
+     * Creates an iterator over the rows reached by a given b-tree iterator.
+     *
+     * @param btree the b-tree that stores the rows
+     * @param valueIterator the iterator over the b-tree entries
+     */
+    public RowsIterator(BPlusTreeFileTable btree, ValueIterator valueIterator) {
         this.btree = btree;
-        valueIterator = btree.searchAllIterator();
+        this.valueIterator = valueIterator;
     }
 
     /**
@@ -68,4 +93,29 @@ public abstract class RowsIterator implements Iterator<LinkedDataRow> {
      * @return the next value, or null if there isnt any.
      */
     protected abstract LinkedDataRow findNextTuple();
+
+    /**
+     * Moves the iterator to the first row whose primary key is not smaller
+     * than a given one. The rows before it are skipped without being read,
+     * and the following calls to next() continue from there, still subject to
+     * the conditions of the iterator.
+     *
+     * @param pkRow the linked row holding the primary key, or a prefix of it
+     */
+    public void seek(LinkedDataRow pkRow) {
+        Key key = btree.createKey();
+        key.setKeys(new DataRow[]{pkRow});
+        valueIterator.seek(key);
+        nextValue = null;
+    }
+
+    /**
+     * Ends the iteration, so no more pages are read. It may be called before
+     * all rows are consumed.
+     */
+    @Override
+    public void close() {
+        valueIterator.close();
+        nextValue = null;
+    }
 }
@@ -0,0 +1,484 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ibd.table;
+
+import ibd.index.btree.DictionaryPair;
+import ibd.index.btree.Key;
+import ibd.index.btree.Value;
+import ibd.index.btree.ValueIterator;
+import ibd.index.btree.generic.BPlusTreeFileGeneric;
+import ibd.index.btree.generic.RowSchema;
+import ibd.persistent.PageFile;
+import ibd.table.prototype.LinkedDataRow;
+import ibd.table.prototype.Prototype;
+import ibd.table.prototype.column.Column;
+import ibd.table.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A secondary index over a column of a table. The index is a b-tree whose keys
+ * are the value of the column followed by the primary key of the row, so
+ * repeated values are kept apart and each row has a single entry. The entries
+ * hold no value: the primary key taken from the key is used to reach the row
+ * in the table.
+ *
+ * Rows whose column holds no value are not indexed. Only integer, long and
+ * string columns can be indexed, and the primary key columns must have one of
+ * these types as well. Strings are indexed by their first characters only, so
+ * the entries have a bounded size. The index then returns a superset of the
+ * rows, which are checked again once they are read from the table.
+ *
+ * An index may also carry included columns, of any type, stored in the value
+ * of each entry. When a query only needs the columns held by the entries, the
+ * rows are rebuilt from the index alone and the table is not read.
+ *
+ * @author Sergio
+ */
+public class SecondaryIndex {
+
+    /**
+     * The maximum number of characters of a string that are indexed.
+     */
+    public static final int MAX_STRING_PREFIX = 64;
+
+    //the indexed column
+    String column;
+    int colIndex;
+
+    //the schema of the table
+    Prototype prototype;
+
+    //the positions of the primary key columns in the table's rows
+    int pkColumns[];
+
+    //the type of each part of the key, as defined by RowSchema
+    char types[];
+
+    //the number of characters indexed for each string part of the key
+    int lengths[];
+
+    //the names and the positions in the table's rows of the included columns
+    String included[];
+    int includedColumns[];
+
+    //the schema of the included columns, as they are stored in the value of the entries, or null if there are none
+    Prototype includedPrototype;
+
+    //the b-tree that stores the entries
+    BPlusTreeFileGeneric tree;
+
+    /**
+     * Opens or creates the index.
+     *
+     * @param prototype the schema of the table
+     * @param column the indexed column
+     * @param included the columns stored in the entries besides the key. The
+     * primary key columns are always stored
+     * @param file the file that stores the index
+     * @throws Exception if the column or the primary key have a type that
+     * cannot be indexed
+     */
+    public SecondaryIndex(Prototype prototype, String column, String included[], PageFile file) throws Exception {
+        this.prototype = prototype;
+        this.column = column;
+        Column c = prototype.getColumn(column);
+        if (c == null) {
+            throw new IllegalArgumentException("The column " + column + " does not exist");
+        }
+        colIndex = prototype.getColumnIndex(column);
+
+        List<Integer> pk = new ArrayList<>();
+        for (int i = 0; i < prototype.size(); i++) {
+            if (prototype.getColumn(i).isPrimaryKey()) {
+                pk.add(i);
+            }
+        }
+        pkColumns = new int[pk.size()];
+        types = new char[pk.size() + 1];
+        lengths = new int[pk.size() + 1];
+        RowSchema keySchema = new RowSchema(pk.size() + 1);
+        addDataType(keySchema, c, 0, true);
+        for (int i = 0; i < pkColumns.length; i++) {
+            pkColumns[i] = pk.get(i);
+            addDataType(keySchema, prototype.getColumn(pkColumns[i]), i + 1, false);
+        }
+
+        //the included columns are encoded as a row of their own, which takes a fixed number of bytes in the entries
+        List<String> names = new ArrayList<>();
+        includedPrototype = new Prototype();
+        for (String name : included) {
+            Column ic = prototype.getColumn(name);
+            if (ic == null) {
+                throw new IllegalArgumentException("The column " + name + " does not exist");
+            }
+            if (ic.isPrimaryKey() || names.contains(name)) {
+                continue;
+            }
+            names.add(name);
+            includedPrototype.addColumn(Prototype.cloneColumn(ic));
+        }
+        this.included = names.toArray(new String[0]);
+        includedColumns = new int[names.size()];
+        for (int i = 0; i < includedColumns.length; i++) {
+            includedColumns[i] = prototype.getColumnIndex(names.get(i));
+        }
+
+        RowSchema valueSchema;
+        if (names.isEmpty()) {
+            includedPrototype = null;
+            valueSchema = new RowSchema(0);
+        } else {
+            includedPrototype.validateColumns();
+            valueSchema = new RowSchema(1);
+            valueSchema.addRecordDataType(includedPrototype.maxRecordSize());
+        }
+
+        tree = new BPlusTreeFileGeneric(file, valueSchema, keySchema);
+        tree.open();
+    }
+
+    /**
+     * Adds the type of a column to the key schema, as a part of the key.
+     *
+     * @param prefix if true, only the first characters of a string are kept.
+     * Otherwise the whole string is kept, as it is needed to find the row
+     */
+    private void addDataType(RowSchema schema, Column c, int part, boolean prefix) {
+        switch (Util.typeOfColumn(c)) {
+            case "int":
+                schema.addIntDataType();
+                types[part] = 'I';
+                return;
+            case "long":
+                schema.addLongDataType();
+                types[part] = 'L';
+                return;
+            case "string":
+                if (prefix) {
+                    //a character takes up to three bytes, after the two bytes of the length
+                    lengths[part] = Math.min(c.getSize(), MAX_STRING_PREFIX);
+                    schema.addStringDataType(3 * lengths[part] + 2);
+                } else {
+                    //primary keys are stored with up to size bytes, which may double in the key's encoding
+                    lengths[part] = Integer.MAX_VALUE;
+                    schema.addStringDataType(2 * c.getSize() + 2);
+                }
+                types[part] = 'S';
+                return;
+            default:
+                throw new IllegalArgumentException("The column " + c.getName() + " has a type that cannot be indexed");
+        }
+    }
+
+    /**
+     * Converts a value to the type of a part of the key, so values of other
+     * types can be compared with the stored ones. Strings are cut to the
+     * indexed characters, which keeps their order.
+     */
+    private Comparable convert(Comparable value, int part) {
+        switch (types[part]) {
+            case 'I':
+                return ((Number) value).intValue();
+            case 'L':
+                return ((Number) value).longValue();
+            default:
+                String str = value.toString();
+                return str.length() > lengths[part] ? str.substring(0, lengths[part]) : str;
+        }
+    }
+
+    /**
+     * @return the indexed column
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * @return the included columns, not counting the primary key columns
+     */
+    public String[] getIncluded() {
+        return included;
+    }
+
+    /**
+     * Checks if the key holds the whole value of the indexed column. It does
+     * not for strings that may be longer than the indexed characters.
+     */
+    private boolean keyHoldsColumn() {
+        return types[0] != 'S' || lengths[0] >= prototype.getColumn(colIndex).getSize();
+    }
+
+    /**
+     * Checks if the entries hold all the given columns, so the rows that only
+     * need them can be rebuilt from the index. A string column indexed by its
+     * first characters is held only if it is also included.
+     *
+     * @param columns the column names
+     * @return true if all columns are held by the entries
+     */
+    public boolean covers(Collection<String> columns) {
+        List<String> held = new ArrayList<>(Arrays.asList(included));
+        if (keyHoldsColumn()) {
+            held.add(column);
+        }
+        for (int pkColumn : pkColumns) {
+            held.add(prototype.getColumn(pkColumn).getName());
+        }
+        return held.containsAll(columns);
+    }
+
+    /**
+     * @return the b-tree that stores the entries
+     */
+    public BPlusTreeFileGeneric getTree() {
+        return tree;
+    }
+
+    /**
+     * @return the value of the indexed column of a row, or null if it has no
+     * value
+     */
+    private Comparable getValue(LinkedDataRow row) {
+        if (row.getField(colIndex) == null) {
+            return null;
+        }
+        return row.getValue(colIndex);
+    }
+
+    /**
+     * Creates the key of a row.
+     *
+     * @return the key, or null if the row is not indexed
+     */
+    private Key createKey(LinkedDataRow row) {
+        Comparable value = getValue(row);
+        if (value == null) {
+            return null;
+        }
+        Comparable parts[] = new Comparable[types.length];
+        parts[0] = convert(value, 0);
+        for (int i = 0; i < pkColumns.length; i++) {
+            parts[i + 1] = convert(row.getValue(pkColumns[i]), i + 1);
+        }
+        Key key = tree.createKey();
+        key.setKeys(parts);
+        return key;
+    }
+
+    /**
+     * Creates a key that holds only a value of the indexed column. It comes
+     * before all keys that start with the value.
+     */
+    private Key createPrefixKey(Comparable value) {
+        Key key = tree.createKey();
+        key.setKeys(new Comparable[]{convert(value, 0)});
+        return key;
+    }
+
+    /**
+     * Encodes the included columns of a row.
+     *
+     * @return the encoded columns, or null if there are no included columns
+     */
+    private byte[] encodeIncluded(LinkedDataRow row) {
+        if (includedPrototype == null) {
+            return null;
+        }
+        LinkedDataRow includedRow = new LinkedDataRow(includedPrototype, false);
+        for (int i = 0; i < includedColumns.length; i++) {
+            if (row.getField(includedColumns[i]) != null) {
+                includedRow.setValue(i, row.getValue(includedColumns[i]));
+            }
+        }
+        return includedPrototype.convertToArray(includedRow);
+    }
+
+    /**
+     * Creates the value of the entry of a row, which holds its included
+     * columns.
+     */
+    private Value createValue(LinkedDataRow row) {
+        Value value = tree.createValue();
+        if (includedPrototype != null) {
+            value.set(0, encodeIncluded(row));
+        }
+        return value;
+    }
+
+    /**
+     * Adds the entry of a row.
+     *
+     * @param row the row, as it is stored in the table
+     */
+    public void insert(LinkedDataRow row) {
+        Key key = createKey(row);
+        if (key != null) {
+            tree.insert(key, createValue(row));
+        }
+    }
+
+    /**
+     * Removes the entry of a row.
+     *
+     * @param row the row, as it was indexed
+     */
+    public void delete(LinkedDataRow row) {
+        Key key = createKey(row);
+        if (key != null) {
+            tree.delete(key);
+        }
+    }
+
+    /**
+     * Updates the entry of a row whose content changed.
+     *
+     * @param oldRow the row, as it was indexed
+     * @param newRow the new content of the row
+     */
+    public void update(LinkedDataRow oldRow, LinkedDataRow newRow) {
+        Comparable oldValue = getValue(oldRow);
+        Comparable newValue = getValue(newRow);
+        if (oldValue == null ? newValue == null : newValue != null && oldValue.compareTo(newValue) == 0) {
+            //the key stays the same, but the included columns may have changed
+            if (oldValue == null || Arrays.equals(encodeIncluded(oldRow), encodeIncluded(newRow))) {
+                return;
+            }
+        }
+        delete(oldRow);
+        insert(newRow);
+    }
+
+    /**
+     * Fills an empty index with the entries of the rows. The entries are
+     * sorted and the b-tree is built bottom-up.
+     *
+     * @param rows the rows of the table
+     * @param fillFactor the fraction of each node to be filled
+     */
+    public void build(Iterator<LinkedDataRow> rows, double fillFactor) {
+        List<DictionaryPair> pairs = new ArrayList<>();
+        while (rows.hasNext()) {
+            LinkedDataRow row = rows.next();
+            Key key = createKey(row);
+            if (key != null) {
+                pairs.add(new DictionaryPair(key, createValue(row), tree));
+            }
+        }
+        Collections.sort(pairs);
+        tree.bulkLoad(pairs, fillFactor);
+    }
+
+    /**
+     * Checks if the index can find the rows that satisfy a comparison.
+     *
+     * @param comparisonType the comparison type
+     * @return true unless the comparison is a difference
+     */
+    public static boolean supports(int comparisonType) {
+        return comparisonType == ComparisonTypes.EQUAL
+                || comparisonType == ComparisonTypes.GREATER_THAN
+                || comparisonType == ComparisonTypes.GREATER_EQUAL_THAN
+                || comparisonType == ComparisonTypes.LOWER_THAN
+                || comparisonType == ComparisonTypes.LOWER_EQUAL_THAN;
+    }
+
+    /**
+     * Returns an iterator over the entries whose indexed values may satisfy a
+     * comparison. Only the leaves that overlap the range of the comparison are
+     * read, but entries equal to the value are also returned for strict
+     * comparisons, as well as strings that only share the indexed characters.
+     *
+     * @param value the value compared with the indexed column
+     * @param comparisonType the comparison type
+     * @return the iterator
+     */
+    ValueIterator searchIterator(Comparable value, int comparisonType) {
+        Key key = createPrefixKey(value);
+        switch (comparisonType) {
+            case ComparisonTypes.EQUAL:
+                return tree.partialSearchIterator(key);
+            case ComparisonTypes.GREATER_THAN:
+            case ComparisonTypes.GREATER_EQUAL_THAN:
+                return tree.searchRangeIterator(key, null);
+            case ComparisonTypes.LOWER_THAN:
+            case ComparisonTypes.LOWER_EQUAL_THAN:
+                return tree.searchRangeIterator(null, key);
+        }
+        throw new IllegalArgumentException("The comparison " + ComparisonTypes.getComparisonType(comparisonType) + " cannot use an index");
+    }
+
+    /**
+     * Checks if the indexed column of a row read from the table satisfies a
+     * comparison.
+     */
+    boolean match(LinkedDataRow row, Comparable value, int comparisonType) {
+        Comparable v = getValue(row);
+        return v != null && ComparisonTypes.match(v, value, comparisonType);
+    }
+
+    /**
+     * Creates a row holding the primary key stored in the key of an entry.
+     *
+     * @param key the key of the entry
+     * @return the row, whose columns other than the primary key hold no value
+     */
+    LinkedDataRow createPKRow(Key key) {
+        LinkedDataRow pkRow = new LinkedDataRow(prototype, true);
+        for (int i = 0; i < pkColumns.length; i++) {
+            pkRow.setValue(pkColumns[i], key.get(i + 1));
+        }
+        return pkRow;
+    }
+
+    /**
+     * Rebuilds a row from an entry. The row holds the primary key, the
+     * indexed column, unless only its first characters are indexed, and the
+     * included columns. The other columns hold no value.
+     *
+     * @param pair the entry
+     * @return the row
+     */
+    LinkedDataRow createCoveredRow(DictionaryPair pair) {
+        Key key = pair.getKey();
+        LinkedDataRow row = new LinkedDataRow(prototype, false);
+        for (int i = 0; i < pkColumns.length; i++) {
+            row.setValue(pkColumns[i], key.get(i + 1));
+        }
+        if (keyHoldsColumn()) {
+            row.setValue(colIndex, key.get(0));
+        }
+        if (includedPrototype != null) {
+            LinkedDataRow includedRow = includedPrototype.convertBinaryToRowData((byte[]) pair.getValue().get(0));
+            for (int i = 0; i < includedColumns.length; i++) {
+                if (includedRow.getField(i) != null) {
+                    row.setValue(includedColumns[i], includedRow.getValue(i));
+                }
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Writes the modified pages of the index to disk.
+     */
+    public void flush() {
+        tree.flush();
+    }
+
+    /**
+     * Closes the index.
+     */
+    public void close() {
+        tree.flush();
+        tree.close();
+    }
+}
@@ -7,6 +7,8 @@ package ibd.table;
 
 import ibd.table.lookup.RowLookupFilter;
 import ibd.table.prototype.BasicDataRow;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import ibd.table.prototype.LinkedDataRow;
 import ibd.table.prototype.Prototype;
@@ -27,6 +29,8 @@ public abstract class Table  {
 
     public abstract LinkedDataRow addRecord(BasicDataRow rowdata) throws Exception;
 
+    public abstract int bulkLoad(Iterator<BasicDataRow> rows) throws Exception;
+
     public abstract LinkedDataRow updateRecord(BasicDataRow rowdata) throws Exception;
     
     public abstract LinkedDataRow updateRecord(LinkedDataRow rowdata) throws Exception;
@@ -55,7 +59,14 @@ public abstract class Table  {
     
     public abstract List<LinkedDataRow> getFilteredRecords(RowLookupFilter filter) throws Exception;
     
-    public abstract AllRowsIterator getAllRecordsIterator() throws Exception;
-    public abstract FilteredRowsIterator getFilteredRecordsIterator(RowLookupFilter filter) throws Exception;
+    public abstract RowsIterator getAllRecordsIterator() throws Exception;
+    public abstract RowsIterator getFilteredRecordsIterator(RowLookupFilter filter) throws Exception;
+    public abstract RowsIterator getRangeRecordsIterator(LinkedDataRow lowerPkRow, LinkedDataRow upperPkRow) throws Exception;
+    public abstract RowsIterator getPrefixRecordsIterator(LinkedDataRow pkRow, RowLookupFilter rowFilter) throws Exception;
     public abstract List<LinkedDataRow> getRecords(LinkedDataRow pkRow, RowLookupFilter rowFilter);
+    public abstract void createIndex(String column, String... includedColumns) throws Exception;
+    public abstract boolean hasIndex(String column);
+    public abstract boolean isCoveringIndex(String column, Collection<String> columns);
+    public abstract RowsIterator getIndexedRecordsIterator(String column, Comparable value, int comparisonType, RowLookupFilter rowFilter) throws Exception;
+    public abstract RowsIterator getCoveredRecordsIterator(String column, Comparable value, int comparisonType, RowLookupFilter rowFilter) throws Exception;
 }
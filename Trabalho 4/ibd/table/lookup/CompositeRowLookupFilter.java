@@ -38,6 +38,14 @@ public class CompositeRowLookupFilter implements RowLookupFilter {
         filters.add(filter);
     }
 
+    /**
+     *
+     * @return the boolean connector (AND or OR)
+     */
+    public int getBooleanConnector() {
+        return boolean_connector;
+    }
+
     /**
      *
      * @return the list of filters
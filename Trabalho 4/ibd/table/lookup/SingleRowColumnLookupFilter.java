@@ -38,6 +38,13 @@ public abstract class SingleRowColumnLookupFilter implements RowLookupFilter{
         this.colIndex = colIndex; 
     }
     
+    /**
+     * @return the index of the column placed at the left side of the comparison
+     */
+    public int getColIndex() {
+        return colIndex;
+    }
+
     /**
      * @return the comparisonType
      */
@@ -74,7 +74,7 @@ public abstract class BData {
     public Boolean getBoolean() {
         byte[] data = this.getData();
         if(data==null)return null;
-        return data[0]!=0;
+        return data[offset]!=0;
     }
 
     public int length(){
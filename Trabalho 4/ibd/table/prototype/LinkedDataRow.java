@@ -23,6 +23,9 @@ public class LinkedDataRow extends DataRow {
     Prototype prototype = null;
     
     byte data[];
+
+    //true while the fields hold exactly the values stored in data, as when the row was just decoded
+    boolean matchesData = false;
     
     public LinkedDataRow() {
     }
@@ -104,6 +107,7 @@ public class LinkedDataRow extends DataRow {
     }
     
     private void setField(Column col, Field field) {
+        matchesData = false;
         if (fields[col.index] == null) {
             fieldsSet++;
         }
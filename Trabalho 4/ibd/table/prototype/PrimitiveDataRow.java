@@ -0,0 +1,283 @@
+package ibd.table.prototype;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A row whose values are kept in primitive slots, instead of Field objects.
+ * Integers, longs and booleans are kept in a long array, floating point
+ * numbers in a double array and strings as UTF-8 ranges of a byte array. The
+ * values are accessed by the index of their columns, so operations that
+ * compare or accumulate many values do not box them or look up column names.
+ *
+ * A row decoded from a record keeps its strings in the record itself, so it
+ * must not be changed, except through the setters of this class.
+ *
+ * @author Sergio
+ */
+public class PrimitiveDataRow {
+
+    //the schema of the row
+    private final Prototype prototype;
+
+    //the kind of each column, as defined by the row codec
+    private final byte[] kinds;
+
+    //the slots of the integral columns (int, long and boolean)
+    final long[] longs;
+
+    //the slots of the floating point columns, or null if there are none
+    final double[] doubles;
+
+    //the area holding the strings, and the position and length of each string in it
+    byte[] bytes;
+    final int[] offsets;
+    final int[] lengths;
+
+    //the number of bytes used in the area
+    int used = 0;
+
+    //indicates if the area belongs to this row, or if it is the record the row was decoded from
+    private boolean ownsBytes = false;
+
+    //the columns that hold no value, or null if all columns have values
+    private boolean[] nulls;
+
+    /**
+     * Creates an empty row
+     *
+     * @param prototype the schema of the row
+     */
+    public PrimitiveDataRow(Prototype prototype) {
+        this(prototype, prototype.getCodec());
+    }
+
+    PrimitiveDataRow(Prototype prototype, RowCodec codec) {
+        this.prototype = prototype;
+        this.kinds = codec.kinds;
+        int n = kinds.length;
+        longs = new long[n];
+        doubles = codec.hasFloatingPoint ? new double[n] : null;
+        offsets = codec.hasStrings ? new int[n] : null;
+        lengths = codec.hasStrings ? new int[n] : null;
+    }
+
+    public Prototype getPrototype() {
+        return prototype;
+    }
+
+    /**
+     *
+     * @return the number of columns of the row
+     */
+    public int size() {
+        return kinds.length;
+    }
+
+    private static boolean isIntegral(byte kind) {
+        return kind == RowCodec.INT || kind == RowCodec.LONG || kind == RowCodec.BOOLEAN;
+    }
+
+    private void setPresent(int index) {
+        if (nulls != null) {
+            nulls[index] = false;
+        }
+    }
+
+    public boolean isNull(int index) {
+        return nulls != null && nulls[index];
+    }
+
+    public void setNull(int index) {
+        if (nulls == null) {
+            nulls = new boolean[kinds.length];
+        }
+        nulls[index] = true;
+    }
+
+    public int getInt(int index) {
+        return (int) longs[index];
+    }
+
+    public long getLong(int index) {
+        return longs[index];
+    }
+
+    public boolean getBoolean(int index) {
+        return longs[index] != 0;
+    }
+
+    public float getFloat(int index) {
+        return (float) doubles[index];
+    }
+
+    public double getDouble(int index) {
+        return doubles[index];
+    }
+
+    /**
+     *
+     * @return the string of a column. A new String is created on each call
+     */
+    public String getString(int index) {
+        return new String(bytes, offsets[index], lengths[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     *
+     * @return the boxed value of a column, or null if the column holds no value
+     */
+    public Comparable getValue(int index) {
+        if (isNull(index)) {
+            return null;
+        }
+        switch (kinds[index]) {
+            case RowCodec.INT:
+                return getInt(index);
+            case RowCodec.LONG:
+                return getLong(index);
+            case RowCodec.FLOAT:
+                return getFloat(index);
+            case RowCodec.DOUBLE:
+                return getDouble(index);
+            case RowCodec.BOOLEAN:
+                return getBoolean(index);
+            default:
+                return getString(index);
+        }
+    }
+
+    public void setInt(int index, int value) {
+        setLong(index, value);
+    }
+
+    public void setLong(int index, long value) {
+        if (isIntegral(kinds[index])) {
+            longs[index] = value;
+        } else {
+            doubles[index] = value;
+        }
+        setPresent(index);
+    }
+
+    public void setBoolean(int index, boolean value) {
+        longs[index] = value ? 1 : 0;
+        setPresent(index);
+    }
+
+    public void setFloat(int index, float value) {
+        setDouble(index, value);
+    }
+
+    public void setDouble(int index, double value) {
+        if (isIntegral(kinds[index])) {
+            longs[index] = (long) value;
+        } else {
+            doubles[index] = value;
+        }
+        setPresent(index);
+    }
+
+    public void setString(int index, String value) {
+        int length = RowCodec.utf8Length(value);
+        if (!ownsBytes || bytes.length < used + length) {
+            //a record is copied before it is changed, so the strings decoded from it keep their positions
+            int capacity = (bytes == null) ? Math.max(16, length) : Math.max(2 * bytes.length, used + length);
+            bytes = (bytes == null) ? new byte[capacity] : Arrays.copyOf(bytes, capacity);
+            ownsBytes = true;
+        }
+        offsets[index] = used;
+        lengths[index] = length;
+        used = RowCodec.writeUtf8(value, bytes, used, used + length);
+        setPresent(index);
+    }
+
+    /**
+     * Compares the value of a column of this row with the value of a column
+     * of another row, without boxing them. A column without value comes
+     * first. Numbers are compared by their values, even if their types
+     * differ. Strings are compared by their UTF-8 bytes, which gives the
+     * order of String.compareTo, except for characters outside the basic
+     * multilingual plane.
+     *
+     * @param index the column of this row
+     * @param other the other row
+     * @param otherIndex the column of the other row
+     * @return a negative value, zero or a positive value as the value of this
+     * row is smaller than, equal to or larger than the value of the other row
+     */
+    public int compare(int index, PrimitiveDataRow other, int otherIndex) {
+        if (isNull(index)) {
+            return other.isNull(otherIndex) ? 0 : -1;
+        }
+        byte kind = kinds[index];
+        if (kind == RowCodec.STRING) {
+            return compareValue(kind, 0, 0, bytes, offsets[index], lengths[index], other, otherIndex);
+        }
+        double doubleValue = (doubles == null) ? 0 : doubles[index];
+        return compareValue(kind, longs[index], doubleValue, null, 0, 0, other, otherIndex);
+    }
+
+    /**
+     * Compares a value, given by its parts, with the value of a column of a
+     * row, following the rules of {@link #compare(int, PrimitiveDataRow, int)}.
+     *
+     * @param kind the kind of the value
+     * @param longValue the value, if it is integral
+     * @param doubleValue the value, if it is a floating point number
+     * @param b the array holding the value, if it is a string
+     * @param offset the position of the string in the array
+     * @param length the length of the string in the array
+     * @param other the row
+     * @param otherIndex the column of the row
+     */
+    static int compareValue(byte kind, long longValue, double doubleValue, byte[] b, int offset, int length, PrimitiveDataRow other, int otherIndex) {
+        if (other.isNull(otherIndex)) {
+            return 1;
+        }
+        byte otherKind = other.kinds[otherIndex];
+        if (kind == RowCodec.STRING && otherKind == RowCodec.STRING) {
+            return Arrays.compareUnsigned(b, offset, offset + length,
+                    other.bytes, other.offsets[otherIndex], other.offsets[otherIndex] + other.lengths[otherIndex]);
+        }
+        if (kind == RowCodec.STRING || otherKind == RowCodec.STRING) {
+            //mixed types are compared as their boxed values would be
+            return box(kind, longValue, doubleValue, b, offset, length).compareTo(other.getValue(otherIndex));
+        }
+        boolean integral = isIntegral(kind);
+        boolean otherIntegral = isIntegral(otherKind);
+        if (integral && otherIntegral) {
+            return Long.compare(longValue, other.longs[otherIndex]);
+        }
+        double value1 = integral ? longValue : doubleValue;
+        double value2 = otherIntegral ? other.longs[otherIndex] : other.doubles[otherIndex];
+        return Double.compare(value1, value2);
+    }
+
+    private static Comparable box(byte kind, long longValue, double doubleValue, byte[] b, int offset, int length) {
+        switch (kind) {
+            case RowCodec.INT:
+                return (int) longValue;
+            case RowCodec.LONG:
+                return longValue;
+            case RowCodec.FLOAT:
+                return (float) doubleValue;
+            case RowCodec.DOUBLE:
+                return doubleValue;
+            case RowCodec.BOOLEAN:
+                return longValue != 0;
+            default:
+                return new String(b, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String str = "row(";
+        for (int i = 0; i < kinds.length; i++) {
+            str += prototype.getColumn(i).getName() + ":" + getValue(i) + ", ";
+        }
+        str += ")";
+        return str;
+    }
+}
@@ -3,8 +3,6 @@ package ibd.table.prototype;
 import ibd.exceptions.DataBaseException;
 import ibd.query.Stats;
 import ibd.table.prototype.column.BooleanColumn;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import ibd.table.prototype.column.Column;
 import ibd.table.prototype.column.DoubleColumn;
 import ibd.table.prototype.column.FloatColumn;
@@ -12,6 +10,7 @@ import ibd.table.prototype.column.IntegerColumn;
 import ibd.table.prototype.column.LongColumn;
 import ibd.table.prototype.column.StringColumn;
 import ibd.table.prototype.query.fields.Field;
+import ibd.table.util.Util;
 import ibd.table.util.UtilConversor;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -49,7 +48,20 @@ public class Prototype implements Iterable<Column> {
     //the size in bytes of the prumary key values
     private int primaryKeySize;
 
-    private HashMap<Integer, Integer> headerPosition;
+    //converts the rows to byte arrays and back
+    private RowCodec codec;
+
+    //the kinds of primary key columns, which define how each one is converted to an order preserving form
+    private static final byte KEY_INT = 0;
+    private static final byte KEY_LONG = 1;
+    private static final byte KEY_FLOAT = 2;
+    private static final byte KEY_DOUBLE = 3;
+    private static final byte KEY_BOOLEAN = 4;
+    private static final byte KEY_BYTES = 5;
+
+    //the kind and the size of each primary key column
+    private byte[] keyTypes;
+    private int[] keySizes;
 
     public Prototype() {
         columns = new ArrayList<>();
@@ -286,7 +298,6 @@ public class Prototype implements Iterable<Column> {
      */
     private void calculateSizes() {
         int headerSizeAux = 1;
-        this.headerPosition = new HashMap<>();
         /*
         0 - 256
                 0-253 -> ja é o tamanho => 1 byte
@@ -308,7 +319,6 @@ public class Prototype implements Iterable<Column> {
         int sizePk = 0;
         for (Column c : columns) {
             if (c.canBeNull()) {
-                this.headerPosition.put(columns.indexOf(c), (headerSizeAux - 1) * 8 + aux);
                 aux++;
             }
             if (aux >= 8) {
@@ -321,6 +331,55 @@ public class Prototype implements Iterable<Column> {
         }
         this.headerSize = headerSizeAux;
         primaryKeySize = sizePk;
+
+        int pkColumns = getPrimaryKeyColumnCount();
+        keyTypes = new byte[pkColumns];
+        keySizes = new int[pkColumns];
+        int k = 0;
+        for (Column c : columns) {
+            if (!c.isPrimaryKey()) {
+                continue;
+            }
+            switch (Util.typeOfColumn(c)) {
+                case "int":
+                    keyTypes[k] = KEY_INT;
+                    break;
+                case "long":
+                    keyTypes[k] = KEY_LONG;
+                    break;
+                case "float":
+                    keyTypes[k] = KEY_FLOAT;
+                    break;
+                case "double":
+                    keyTypes[k] = KEY_DOUBLE;
+                    break;
+                case "boolean":
+                    keyTypes[k] = KEY_BOOLEAN;
+                    break;
+                default:
+                    keyTypes[k] = KEY_BYTES;
+            }
+            keySizes[k] = c.getSize();
+            k++;
+        }
+
+        codec = new RowCodec(this, columns, headerSize);
+    }
+
+    /**
+     *
+     * @return the minimum record size. Null columns take no space and dynamic
+     * columns take only their length prefix
+     */
+    public int minRecordSize() {
+        int size = headerSize;
+        for (Column c : columns) {
+            if (c.canBeNull()) {
+                continue;
+            }
+            size += c.isDinamicSize() ? 4 : c.getSize();
+        }
+        return size;
     }
 
     /**
@@ -348,33 +407,37 @@ public class Prototype implements Iterable<Column> {
     }
 
     /**
-     * Verifies if the data row satisfies the table's prototype
      *
-     * @param dataRow: the data row
+     * @param pkColumns the number of leading primary key columns
+     * @return the size of the first primary key columns
      */
-    private void validateRowData(DataRow dataRow) {
-/*
+    public int getPrimaryKeySize(int pkColumns) {
+        int size = 0;
+        int counted = 0;
         for (Column c : columns) {
-            byte[] data = dataRow.getData(c.getName());
-            if (data == null) {
-                if (!c.canBeNull()) {
-                    throw new DataBaseException("RecordTranslateApi->convertToRecord", "Coluna " + c.getName() + " não pode ser nula!");
-                } else if (c.isPrimaryKey()) {
-                    throw new DataBaseException("RecordTranslateApi->convertToRecord", "Coluna " + c.getName() + " não pode ser nula!");
-                }
-            } else {
-                if (c.isDinamicSize()) {
-                    if (data.length > c.getSize()) {
-                        throw new DataBaseException("RecordTranslateApi->convertToRecord", "Dado passado para a coluna " + c.getName() + " é maior que o limite: " + c.getSize());
-                    }
-                } else {
-                    if (data.length > c.getSize()) {
-                        throw new DataBaseException("RecordTranslateApi->convertToRecord", "Dado passado para a coluna " + c.getName() + " é diferente do tamanho fixo: " + c.getSize());
-                    }
-                }
+            if (counted == pkColumns) {
+                break;
+            }
+            if (c.isPrimaryKey()) {
+                size += c.getSize();
+                counted++;
             }
         }
-        */
+        return size;
+    }
+
+    /**
+     *
+     * @return the number of primary key columns
+     */
+    public int getPrimaryKeyColumnCount() {
+        int count = 0;
+        for (Column c : columns) {
+            if (c.isPrimaryKey()) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -387,7 +450,7 @@ public class Prototype implements Iterable<Column> {
      * extracted from the byte array
      * @return the created data row
      */
-    public synchronized DataRow convertBinaryToRowData(byte[] data, Map<String, Column> meta, boolean hasHeader, boolean onlyPrimaryKey) {
+    public DataRow convertBinaryToRowData(byte[] data, Map<String, Column> meta, boolean hasHeader, boolean onlyPrimaryKey) {
         LinkedDataRow row = new LinkedDataRow();
         row.data = data;
 
@@ -452,7 +515,7 @@ public class Prototype implements Iterable<Column> {
      * extracted from the byte array
      * @return the created data row
      */
-    public synchronized LinkedDataRow convertBinaryToPKRowData_(byte[] data, Map<String, Column> meta, boolean hasHeader, boolean onlyPrimaryKey) {
+    public LinkedDataRow convertBinaryToPKRowData_(byte[] data, Map<String, Column> meta, boolean hasHeader, boolean onlyPrimaryKey) {
         LinkedDataRow row = new LinkedDataRow(this, true);
         
         int selecteds = 0;
@@ -506,7 +569,7 @@ public class Prototype implements Iterable<Column> {
         return row;
     }
     
-    public synchronized LinkedDataRow convertBinaryToPKRowData(byte[] data, Map<String, Column> meta, boolean hasHeader, boolean onlyPrimaryKey) {
+    public LinkedDataRow convertBinaryToPKRowData(byte[] data, Map<String, Column> meta, boolean hasHeader, boolean onlyPrimaryKey) {
         LinkedDataRow row = new LinkedDataRow(this, true);
         row.data = data;
         int selecteds = 0;
@@ -567,7 +630,7 @@ public class Prototype implements Iterable<Column> {
      * @param data: the byte array extracted from the byte array
      * @return the created data row
      */
-    public synchronized LinkedDataRow convertBinaryToRowDataX(byte[] data) {
+    public LinkedDataRow convertBinaryToRowDataX(byte[] data) {
         LinkedDataRow row = new LinkedDataRow(this, false);
 
         int offset = this.headerSize;
@@ -590,56 +653,18 @@ public class Prototype implements Iterable<Column> {
         return row;
     }
     
-    public synchronized LinkedDataRow convertBinaryToRowData(byte[] data) {
-        LinkedDataRow row = new LinkedDataRow(this, false);
-        row.setData(data);
-        //Stats.passes++;
-        int offset = this.headerSize;
-
-//        byte[] header = new byte[headerSize];
-//
-//        System.arraycopy(data, 0, header, 0, this.headerSize);
-//
-//        int headerPointer = 1;
-
-        for (Column c : columns) {
-            //boolean checkColumn = true;
-            if (c.canBeNull()) {
-                System.out.println("can be null");
-//                try {
-//                    if ((header[headerPointer / 8] & (1 << headerPointer % 8)) != 0) {
-//                        //campo é nulo
-//                        continue;
-//                    }
-//                } finally {
-//                    headerPointer++;
-//                }
-            }
-            int size = c.getSize();
-            if (c.isDinamicSize()) {
-                //size = UtilConversor.byteArrayToInt(Arrays.copyOfRange(data, offset, offset + 4));
-                size = UtilConversor.byteArrayToInt(data, offset);
-                offset += 4;
-                //if (checkColumn) {
-                //byte[] arr = Arrays.copyOfRange(data, offset, offset + size);
-                //row.setField(c.getName(), Field.createField(c, new BData(arr)));
-                row.setField(c.index, Field.createField(c, new LinkedBData(row, offset, size)));
-                //}
-
-            } else {
-                //if (checkColumn) {
-                //byte[] arr = Arrays.copyOfRange(data, offset, offset + c.getSize());
-                //row.setField(c.getName(), Field.createField(c, new BData(arr)));
-                row.setField(c.index, Field.createField(c, new LinkedBData(row, offset, c.getSize())));
-                //}
-            }
-            offset += size;
-        }
-        return row;
+    /**
+     * Creates a full data row from a byte array produced by
+     * {@link #convertToArray(LinkedDataRow)}
+     *
+     * @param data the byte array
+     * @return the created data row
+     */
+    public LinkedDataRow convertBinaryToRowData(byte[] data) {
+        return codec.decode(data);
     }
-    
-    
-    public synchronized LinkedDataRow convertBinaryToRowData_(byte[] data) {
+
+    public LinkedDataRow convertBinaryToRowData_(byte[] data) {
         LinkedDataRow row = new LinkedDataRow(this, false);
         
         //Stats.passes++;
@@ -692,78 +717,194 @@ public class Prototype implements Iterable<Column> {
      * @return the generated byte array
      */
     public byte[] convertToArray(LinkedDataRow dataRow) {
-        this.validateRowData(dataRow);
-        byte[] header = new byte[this.headerSize];
-        ArrayList<byte[]> dados = new ArrayList<>();
-        int size = this.headerSize;
-        header[0] |= 1;
-        for (Column c : columns) {
-            byte[] data = dataRow.getData(c.getName());
-            if (data == null) {
-                if (c.canBeNull()) {
-                    int posHeader = headerPosition.get(columns.indexOf(c));
-                    header[posHeader / 8] |= 1 << (posHeader % 8);
-                }
-            } else {
-                if (c.isDinamicSize()) {
-                    ByteBuffer buff = ByteBuffer.allocate(4);
-                    buff.order(ByteOrder.LITTLE_ENDIAN);
-                    buff.putInt(data.length);
-                    byte[] indice = buff.array();
-                    dados.add(indice);
-                    dados.add(data);
-                    size += indice.length;
-                    size += data.length;
-                } else {
-                    dados.add(data);
-                    size += c.getSize();
-                    if (data.length < c.getSize()) {
-                        dados.add(new byte[c.getSize() - data.length]);
-                    }
-                }
-            }
-        }
-        byte[] bufferRecord = new byte[size];
-        int offset = this.headerSize;
-        System.arraycopy(header, 0, bufferRecord, 0, header.length);
-        for (byte[] data : dados) {
-            System.arraycopy(data, 0, bufferRecord, offset, data.length);
-            offset += data.length;
-        }
-        return bufferRecord;
+        return codec.encode(dataRow);
+    }
+
+    /**
+     * Creates a row that keeps the values of a data row in primitive slots
+     *
+     * @param dataRow the data row
+     * @return the created row
+     */
+    public PrimitiveDataRow convertToPrimitiveRow(LinkedDataRow dataRow) {
+        return codec.toPrimitiveRow(dataRow);
+    }
+
+    /**
+     * Compares the value of a column of a data row with the value of a column
+     * of a primitive row, without converting the whole data row
+     *
+     * @param dataRow the data row
+     * @param index the column of the data row
+     * @param other the primitive row
+     * @param otherIndex the column of the primitive row
+     * @return a negative value, zero or a positive value as the value of the
+     * data row is smaller than, equal to or larger than the value of the
+     * primitive row
+     */
+    public int compareColumn(LinkedDataRow dataRow, int index, PrimitiveDataRow other, int otherIndex) {
+        return codec.compareColumn(dataRow, index, other, otherIndex);
+    }
+
+    RowCodec getCodec() {
+        return codec;
     }
 
     /**
      * Generates a a byte array containing the values for the primary key
-     * columns of the data row
+     * columns of the data row, in the order preserving form described in
+     * {@link #convertPrimaryKeyToByteArray(LinkedDataRow, int)}
      *
      * @param dataRow the data row
      * @return the generated byte array
      */
     public byte[] convertPrimaryKeyToByteArray(LinkedDataRow dataRow) {
-        ArrayList<byte[]> dados = new ArrayList<>();
-        int size = 0;
-        for (Column c : columns) {
-            if (!c.isPrimaryKey()) {
-                continue;
-            }
-            byte[] data = dataRow.getData(c.getName());
+        return convertPrimaryKeyToByteArray(dataRow, keyTypes.length);
+    }
 
-            {
-                dados.add(data);
-                size += c.getSize();
-                if (data.length < c.getSize()) {
-                    dados.add(new byte[c.getSize() - data.length]);
-                }
+    /**
+     * Converts the first primary key columns of a data row into a byte array.
+     * The data row may contain only these columns, as happens with keys
+     * truncated to a prefix of the primary key.
+     *
+     * The array preserves the order of the keys: comparing two arrays byte by
+     * byte, as unsigned values, gives the same result as comparing the data
+     * rows, and a key holding only the leading columns of another key comes
+     * before it. Each column takes its fixed size. Numbers are stored
+     * big-endian with the sign bit flipped, and negative floating point
+     * numbers have all their bits flipped, so their bytes grow with their
+     * values. Strings keep their UTF-8 bytes, padded with zeros.
+     *
+     * @param dataRow the data row
+     * @param pkColumns the number of leading primary key columns converted
+     * @return the generated byte array
+     */
+    public byte[] convertPrimaryKeyToByteArray(LinkedDataRow dataRow, int pkColumns) {
+        pkColumns = Math.min(pkColumns, keyTypes.length);
+        byte[] bufferRecord = new byte[getPrimaryKeySize(pkColumns)];
+        int offset = 0;
+        for (int i = 0; i < pkColumns; i++) {
+            //the values are read from the fields, so no intermediate arrays are created
+            Object value = dataRow.getField(i).getValue();
+            int size = keySizes[i];
+            switch (keyTypes[i]) {
+                case KEY_INT:
+                    writeBigEndian(bufferRecord, offset, 4, ((Number) value).intValue() ^ Integer.MIN_VALUE);
+                    break;
+                case KEY_LONG:
+                    writeBigEndian(bufferRecord, offset, 8, ((Number) value).longValue() ^ Long.MIN_VALUE);
+                    break;
+                case KEY_FLOAT:
+                    //the conversion keeps a single representation of NaN
+                    int floatBits = Float.floatToIntBits(((Number) value).floatValue());
+                    writeBigEndian(bufferRecord, offset, 4, floatBits ^ ((floatBits >> 31) | Integer.MIN_VALUE));
+                    break;
+                case KEY_DOUBLE:
+                    long doubleBits = Double.doubleToLongBits(((Number) value).doubleValue());
+                    writeBigEndian(bufferRecord, offset, 8, doubleBits ^ ((doubleBits >> 63) | Long.MIN_VALUE));
+                    break;
+                case KEY_BOOLEAN:
+                    bufferRecord[offset] = (byte) (((Boolean) value) ? 1 : 0);
+                    break;
+                default:
+                    RowCodec.writeUtf8(value.toString(), bufferRecord, offset, offset + size);
             }
+            offset += size;
         }
-        byte[] bufferRecord = new byte[size];
+        return bufferRecord;
+    }
+
+    /**
+     * Creates a data row containing the first primary key columns from a byte
+     * array produced by {@link #convertPrimaryKeyToByteArray(LinkedDataRow, int)}.
+     *
+     * @param data the byte array
+     * @param pkColumns the number of leading primary key columns stored in
+     * the array
+     * @return the created data row
+     */
+    public LinkedDataRow convertBinaryToPKRowData(byte[] data, int pkColumns) {
+        //brings the columns back to the layout used by the data rows
+        byte[] rowData = new byte[data.length];
         int offset = 0;
-        for (byte[] data : dados) {
-            System.arraycopy(data, 0, bufferRecord, offset, data.length);
-            offset += data.length;
+        for (int i = 0; i < pkColumns; i++) {
+            int size = keySizes[i];
+            switch (keyTypes[i]) {
+                case KEY_INT:
+                    writeLittleEndian(rowData, offset, 4, readBigEndian(data, offset, 4) ^ Integer.MIN_VALUE);
+                    break;
+                case KEY_LONG:
+                    writeLittleEndian(rowData, offset, 8, readBigEndian(data, offset, 8) ^ Long.MIN_VALUE);
+                    break;
+                case KEY_FLOAT:
+                    int floatBits = (int) readBigEndian(data, offset, 4);
+                    writeLittleEndian(rowData, offset, 4, floatBits ^ (floatBits < 0 ? Integer.MIN_VALUE : -1));
+                    break;
+                case KEY_DOUBLE:
+                    long doubleBits = readBigEndian(data, offset, 8);
+                    writeLittleEndian(rowData, offset, 8, doubleBits ^ (doubleBits < 0 ? Long.MIN_VALUE : -1));
+                    break;
+                default:
+                    System.arraycopy(data, offset, rowData, offset, size);
+            }
+            offset += size;
+        }
+
+        return codec.decodeKey(rowData, pkColumns);
+    }
+
+    /**
+     * Compares two primary keys produced by
+     * {@link #convertPrimaryKeyToByteArray(LinkedDataRow, int)} as unsigned
+     * bytes, without converting them into data rows. The second key is the
+     * concatenation of a prefix and a range of an array, as kept by
+     * compressed index nodes. A key holding only the leading columns is
+     * smaller than a longer key whose leading columns are equal.
+     *
+     * @param a the first key
+     * @param prefix the leading bytes of the second key, or null
+     * @param b the array holding the rest of the second key
+     * @param offset the position where the rest of the second key starts
+     * @param length the number of bytes of the rest of the second key
+     * @param partial if true, only the columns present in both keys are
+     * compared, as in {@link LinkedDataRow#partialMatch(DataRow)}
+     * @return a negative value, zero or a positive value as the first key is
+     * smaller than, equal to or larger than the second key
+     */
+    public static int compareKeyBytes(byte[] a, byte[] prefix, byte[] b, int offset, int length, boolean partial) {
+        int prefixLength = (prefix == null) ? 0 : prefix.length;
+        int common = Math.min(a.length, prefixLength);
+        int res = (common == 0) ? 0 : Arrays.compareUnsigned(a, 0, common, prefix, 0, common);
+        if (res == 0 && a.length > prefixLength) {
+            common = Math.min(a.length - prefixLength, length);
+            res = Arrays.compareUnsigned(a, prefixLength, prefixLength + common, b, offset, offset + common);
+        }
+        if (res != 0 || partial) {
+            return res;
+        }
+        return Integer.compare(a.length, prefixLength + length);
+    }
+
+    private static long readBigEndian(byte[] b, int pos, int size) {
+        long value = 0;
+        for (int i = pos; i < pos + size; i++) {
+            value = (value << 8) | (b[i] & 0xFF);
+        }
+        return (size == 4) ? (int) value : value;
+    }
+
+    private static void writeLittleEndian(byte[] b, int pos, int size, long value) {
+        for (int i = pos; i < pos + size; i++) {
+            b[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void writeBigEndian(byte[] b, int pos, int size, long value) {
+        for (int i = pos + size - 1; i >= pos; i--) {
+            b[i] = (byte) value;
+            value >>>= 8;
         }
-        return bufferRecord;
     }
 
     /**
@@ -0,0 +1,559 @@
+package ibd.table.prototype;
+
+import ibd.exceptions.DataBaseException;
+import ibd.table.prototype.column.Column;
+import ibd.table.prototype.query.fields.BooleanField;
+import ibd.table.prototype.query.fields.DoubleField;
+import ibd.table.prototype.query.fields.Field;
+import ibd.table.prototype.query.fields.FloatField;
+import ibd.table.prototype.query.fields.IntegerField;
+import ibd.table.prototype.query.fields.LongField;
+import ibd.table.prototype.query.fields.StringField;
+import ibd.table.util.Util;
+import ibd.table.util.UtilConversor;
+import java.util.List;
+
+/**
+ * Converts rows of a prototype to byte arrays and back. Everything that
+ * depends only on the schema (the kind of each column, the position of its
+ * null bit, the offset of the columns whose position never changes) is
+ * computed once, when the codec is created. The codec is immutable, so it
+ * can be shared by any number of threads without locks. Encoding writes
+ * directly into the returned array and decoding creates only the row and its
+ * fields.
+ *
+ * A record starts with a header, whose first bit is always set and whose
+ * following bits flag the nullable columns that hold no value. Then come the
+ * values of the columns that are not null, in the order of the prototype.
+ * Fixed size columns take their size, and dynamic columns take a 4 byte
+ * little-endian length followed by their bytes. Numbers are little-endian and
+ * strings are UTF-8.
+ *
+ * @author Sergio
+ */
+public class RowCodec {
+
+    static final byte INT = 0;
+    static final byte LONG = 1;
+    static final byte FLOAT = 2;
+    static final byte DOUBLE = 3;
+    static final byte BOOLEAN = 4;
+    static final byte STRING = 5;
+
+    private final Prototype prototype;
+
+    private final Column[] columns;
+
+    //the kind of each column
+    final byte[] kinds;
+
+    //indicate if the prototype has floating point and string columns, which need their own slots in primitive rows
+    final boolean hasFloatingPoint;
+    final boolean hasStrings;
+
+    //the size of each column. For dynamic columns, the maximum size
+    private final int[] sizes;
+
+    private final boolean[] dynamic;
+
+    //the position of the null bit of each column in the header, or -1 if the column cannot be null
+    private final int[] nullBits;
+
+    //the offset of each column in the record, or -1 if it depends on the preceding values
+    private final int[] fixedOffsets;
+
+    private final int headerSize;
+
+    //the size of every record, or -1 if records may have different sizes
+    private final int fixedRecordSize;
+
+    RowCodec(Prototype prototype, List<Column> columnList, int headerSize) {
+        this.prototype = prototype;
+        this.headerSize = headerSize;
+        int n = columnList.size();
+        columns = columnList.toArray(new Column[n]);
+        kinds = new byte[n];
+        sizes = new int[n];
+        dynamic = new boolean[n];
+        nullBits = new int[n];
+        fixedOffsets = new int[n];
+
+        boolean floatingPoint = false;
+        boolean strings = false;
+        int nullBit = 1;
+        int offset = headerSize;
+        for (int i = 0; i < n; i++) {
+            Column c = columns[i];
+            kinds[i] = kindOf(c);
+            floatingPoint |= kinds[i] == FLOAT || kinds[i] == DOUBLE;
+            strings |= kinds[i] == STRING;
+            sizes[i] = c.getSize();
+            dynamic[i] = c.isDinamicSize();
+            nullBits[i] = c.canBeNull() ? nullBit++ : -1;
+            fixedOffsets[i] = offset;
+            if (offset >= 0) {
+                //a column that may be missing or may change its size moves the ones after it
+                offset = (dynamic[i] || nullBits[i] >= 0) ? -1 : offset + sizes[i];
+            }
+        }
+        fixedRecordSize = offset;
+        hasFloatingPoint = floatingPoint;
+        hasStrings = strings;
+    }
+
+    private static byte kindOf(Column c) {
+        switch (Util.typeOfColumn(c)) {
+            case "int":
+                return INT;
+            case "long":
+                return LONG;
+            case "float":
+                return FLOAT;
+            case "double":
+                return DOUBLE;
+            case "boolean":
+                return BOOLEAN;
+            default:
+                return STRING;
+        }
+    }
+
+    /**
+     *
+     * @return the number of bytes taken by a value of a kind other than string
+     */
+    private static int widthOf(byte kind) {
+        switch (kind) {
+            case LONG:
+            case DOUBLE:
+                return 8;
+            case BOOLEAN:
+                return 1;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     *
+     * @return the number of bytes a string takes in UTF-8, the same produced
+     * by String.getBytes
+     */
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                length++;
+            } else if (ch < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(ch)) {
+                //unpaired surrogates are replaced by '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes a string in UTF-8, stopping before the first character that
+     * does not fit in the limit.
+     *
+     * @return the position after the last byte written
+     */
+    static int writeUtf8(String s, byte[] b, int pos, int limit) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                if (pos + 1 > limit) {
+                    break;
+                }
+                b[pos++] = (byte) ch;
+            } else if (ch < 0x800) {
+                if (pos + 2 > limit) {
+                    break;
+                }
+                b[pos++] = (byte) (0xC0 | (ch >> 6));
+                b[pos++] = (byte) (0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                if (pos + 4 > limit) {
+                    break;
+                }
+                int cp = Character.toCodePoint(ch, s.charAt(++i));
+                b[pos++] = (byte) (0xF0 | (cp >> 18));
+                b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(ch)) {
+                if (pos + 1 > limit) {
+                    break;
+                }
+                b[pos++] = '?';
+            } else {
+                if (pos + 3 > limit) {
+                    break;
+                }
+                b[pos++] = (byte) (0xE0 | (ch >> 12));
+                b[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    static void writeInt(byte[] b, int pos, int value) {
+        b[pos] = (byte) value;
+        b[pos + 1] = (byte) (value >> 8);
+        b[pos + 2] = (byte) (value >> 16);
+        b[pos + 3] = (byte) (value >> 24);
+    }
+
+    static void writeLong(byte[] b, int pos, long value) {
+        writeInt(b, pos, (int) value);
+        writeInt(b, pos + 4, (int) (value >> 32));
+    }
+
+    /**
+     *
+     * @return the value of the i-th column, or null if the column has no value
+     */
+    private Object valueOf(LinkedDataRow row, int i) {
+        Field field = (i < row.fields.length) ? row.fields[i] : null;
+        Object value = (field == null) ? null : field.getValue();
+        if (value == null && nullBits[i] < 0) {
+            throw new DataBaseException("RowCodec->encode", "Coluna " + columns[i].getName() + " não pode ser nula!");
+        }
+        return value;
+    }
+
+    /**
+     * Generates a byte array from the values of a data row.
+     *
+     * @param row the data row
+     * @return the generated byte array
+     */
+    public byte[] encode(LinkedDataRow row) {
+        int size = fixedRecordSize;
+        if (size < 0) {
+            size = headerSize;
+            for (int i = 0; i < columns.length; i++) {
+                Object value = valueOf(row, i);
+                if (value == null) {
+                    continue;
+                }
+                if (!dynamic[i]) {
+                    size += sizes[i];
+                } else if (kinds[i] == STRING) {
+                    size += 4 + utf8Length(value.toString());
+                } else {
+                    size += 4 + widthOf(kinds[i]);
+                }
+            }
+        }
+
+        byte[] record = new byte[size];
+        record[0] |= 1;
+        int offset = headerSize;
+        for (int i = 0; i < columns.length; i++) {
+            Object value = valueOf(row, i);
+            if (value == null) {
+                record[nullBits[i] / 8] |= 1 << (nullBits[i] % 8);
+                continue;
+            }
+            int start = offset;
+            if (dynamic[i]) {
+                start += 4;
+            }
+            int end;
+            switch (kinds[i]) {
+                case INT:
+                    writeInt(record, start, ((Number) value).intValue());
+                    end = start + 4;
+                    break;
+                case LONG:
+                    writeLong(record, start, ((Number) value).longValue());
+                    end = start + 8;
+                    break;
+                case FLOAT:
+                    writeInt(record, start, Float.floatToRawIntBits(((Number) value).floatValue()));
+                    end = start + 4;
+                    break;
+                case DOUBLE:
+                    writeLong(record, start, Double.doubleToRawLongBits(((Number) value).doubleValue()));
+                    end = start + 8;
+                    break;
+                case BOOLEAN:
+                    record[start] = (byte) (((Boolean) value) ? 1 : 0);
+                    end = start + 1;
+                    break;
+                default:
+                    //a fixed size string is truncated to the column size and padded with zeros
+                    end = writeUtf8(value.toString(), record, start, dynamic[i] ? record.length : start + sizes[i]);
+            }
+            if (dynamic[i]) {
+                writeInt(record, offset, end - start);
+                offset = end;
+            } else {
+                offset += sizes[i];
+            }
+        }
+        return record;
+    }
+
+    private Field createField(int i, LinkedDataRow row, int offset, int length) {
+        LinkedBData bdata = new LinkedBData(row, offset, length);
+        switch (kinds[i]) {
+            case INT:
+                return new IntegerField(columns[i], bdata);
+            case LONG:
+                return new LongField(columns[i], bdata);
+            case FLOAT:
+                return new FloatField(columns[i], bdata);
+            case DOUBLE:
+                return new DoubleField(columns[i], bdata);
+            case BOOLEAN:
+                return new BooleanField(columns[i], bdata);
+            default:
+                return new StringField(columns[i], bdata);
+        }
+    }
+
+    /**
+     * Creates a full data row from a byte array produced by
+     * {@link #encode(LinkedDataRow)}. The fields read their values from the
+     * array only when they are requested.
+     *
+     * @param data the byte array
+     * @return the created data row
+     */
+    public LinkedDataRow decode(byte[] data) {
+        LinkedDataRow row = new LinkedDataRow(prototype, false);
+        row.setData(data);
+        int offset = headerSize;
+        for (int i = 0; i < columns.length; i++) {
+            int nullBit = nullBits[i];
+            if (nullBit >= 0 && (data[nullBit / 8] & (1 << (nullBit % 8))) != 0) {
+                continue;
+            }
+            if (fixedOffsets[i] >= 0) {
+                offset = fixedOffsets[i];
+            }
+            int size = sizes[i];
+            if (dynamic[i]) {
+                size = UtilConversor.byteArrayToInt(data, offset);
+                offset += 4;
+            }
+            row.setField(i, createField(i, row, offset, size));
+            offset += size;
+        }
+        row.matchesData = true;
+        return row;
+    }
+
+    /**
+     * Creates a data row holding the first primary key columns, from a byte
+     * array where they are stored one after the other, each with its fixed
+     * size and without a header.
+     *
+     * @param data the byte array
+     * @param pkColumns the number of primary key columns in the array
+     * @return the created data row
+     */
+    public LinkedDataRow decodeKey(byte[] data, int pkColumns) {
+        LinkedDataRow row = new LinkedDataRow(prototype, true);
+        row.setData(data);
+        int offset = 0;
+        for (int i = 0; i < pkColumns; i++) {
+            row.setField(i, createField(i, row, offset, sizes[i]));
+            offset += sizes[i];
+        }
+        return row;
+    }
+
+    /**
+     * Creates a primitive row from a byte array produced by
+     * {@link #encode(LinkedDataRow)}. Numbers are read into the slots and
+     * strings keep pointing to the array, so no values are boxed or copied.
+     *
+     * @param data the byte array
+     * @return the created row
+     */
+    public PrimitiveDataRow decodePrimitive(byte[] data) {
+        PrimitiveDataRow row = new PrimitiveDataRow(prototype, this);
+        row.bytes = data;
+        row.used = data.length;
+        int offset = headerSize;
+        for (int i = 0; i < columns.length; i++) {
+            int nullBit = nullBits[i];
+            if (nullBit >= 0 && (data[nullBit / 8] & (1 << (nullBit % 8))) != 0) {
+                row.setNull(i);
+                continue;
+            }
+            if (fixedOffsets[i] >= 0) {
+                offset = fixedOffsets[i];
+            }
+            int size = sizes[i];
+            if (dynamic[i]) {
+                size = UtilConversor.byteArrayToInt(data, offset);
+                offset += 4;
+            }
+            switch (kinds[i]) {
+                case INT:
+                    row.longs[i] = UtilConversor.byteArrayToInt(data, offset);
+                    break;
+                case LONG:
+                    row.longs[i] = UtilConversor.byteArrayToLong(data, offset);
+                    break;
+                case FLOAT:
+                    row.doubles[i] = UtilConversor.byteArrayToFloat(data, offset);
+                    break;
+                case DOUBLE:
+                    row.doubles[i] = UtilConversor.byteArrayToDouble(data, offset);
+                    break;
+                case BOOLEAN:
+                    row.longs[i] = (data[offset] != 0) ? 1 : 0;
+                    break;
+                default:
+                    int start = trimmedStart(data, offset, offset + size);
+                    row.offsets[i] = start;
+                    row.lengths[i] = trimmedEnd(data, start, offset + size) - start;
+            }
+            offset += size;
+        }
+        return row;
+    }
+
+    /**
+     * Creates a primitive row holding the values of a data row. If the data
+     * row still matches the record it was decoded from, the record is read
+     * directly.
+     *
+     * @param row the data row
+     * @return the created row
+     */
+    public PrimitiveDataRow toPrimitiveRow(LinkedDataRow row) {
+        if (row.matchesData) {
+            return decodePrimitive(row.data);
+        }
+        PrimitiveDataRow primitiveRow = new PrimitiveDataRow(prototype, this);
+        for (int i = 0; i < columns.length; i++) {
+            Field field = (i < row.fields.length) ? row.fields[i] : null;
+            Object value = (field == null) ? null : field.getValue();
+            if (value == null) {
+                primitiveRow.setNull(i);
+                continue;
+            }
+            switch (kinds[i]) {
+                case INT:
+                case LONG:
+                    primitiveRow.longs[i] = ((Number) value).longValue();
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    primitiveRow.doubles[i] = ((Number) value).doubleValue();
+                    break;
+                case BOOLEAN:
+                    primitiveRow.longs[i] = ((Boolean) value) ? 1 : 0;
+                    break;
+                default:
+                    primitiveRow.setString(i, value.toString());
+            }
+        }
+        return primitiveRow;
+    }
+
+    //a string range without the characters String.trim removes, including the zero padding
+    private static int trimmedStart(byte[] data, int start, int end) {
+        while (start < end && (data[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimmedEnd(byte[] data, int start, int end) {
+        while (end > start && (data[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private boolean isNull(byte[] data, int index) {
+        int nullBit = nullBits[index];
+        return nullBit >= 0 && (data[nullBit / 8] & (1 << (nullBit % 8))) != 0;
+    }
+
+    /**
+     *
+     * @return the position of the value of a column in a record, or -1 if
+     * the column is null
+     */
+    private int locate(byte[] data, int index) {
+        if (isNull(data, index)) {
+            return -1;
+        }
+        int offset = fixedOffsets[index];
+        if (offset < 0) {
+            //skips the preceding values
+            offset = headerSize;
+            for (int i = 0; i < index; i++) {
+                if (!isNull(data, i)) {
+                    offset += dynamic[i] ? 4 + UtilConversor.byteArrayToInt(data, offset) : sizes[i];
+                }
+            }
+        }
+        return dynamic[index] ? offset + 4 : offset;
+    }
+
+    /**
+     * Compares the value of a column of a data row with the value of a column
+     * of a primitive row, as {@link PrimitiveDataRow#compare(int, PrimitiveDataRow, int)}
+     * does. If the data row still matches its record, only the compared
+     * value is read from the record, and it is not boxed.
+     *
+     * @param row the data row
+     * @param index the column of the data row
+     * @param other the primitive row
+     * @param otherIndex the column of the primitive row
+     * @return a negative value, zero or a positive value as the value of the
+     * data row is smaller than, equal to or larger than the value of the
+     * primitive row
+     */
+    public int compareColumn(LinkedDataRow row, int index, PrimitiveDataRow other, int otherIndex) {
+        if (!row.matchesData) {
+            Field field = (index < row.fields.length) ? row.fields[index] : null;
+            Comparable value = (field == null) ? null : (Comparable) field.getValue();
+            Comparable otherValue = other.getValue(otherIndex);
+            if (value == null || otherValue == null) {
+                return Boolean.compare(otherValue == null, value == null);
+            }
+            return value.compareTo(otherValue);
+        }
+        byte[] data = row.data;
+        int offset = locate(data, index);
+        if (offset < 0) {
+            return other.isNull(otherIndex) ? 0 : -1;
+        }
+        switch (kinds[index]) {
+            case INT:
+                return PrimitiveDataRow.compareValue(INT, UtilConversor.byteArrayToInt(data, offset), 0, null, 0, 0, other, otherIndex);
+            case LONG:
+                return PrimitiveDataRow.compareValue(LONG, UtilConversor.byteArrayToLong(data, offset), 0, null, 0, 0, other, otherIndex);
+            case FLOAT:
+                return PrimitiveDataRow.compareValue(FLOAT, 0, UtilConversor.byteArrayToFloat(data, offset), null, 0, 0, other, otherIndex);
+            case DOUBLE:
+                return PrimitiveDataRow.compareValue(DOUBLE, 0, UtilConversor.byteArrayToDouble(data, offset), null, 0, 0, other, otherIndex);
+            case BOOLEAN:
+                return PrimitiveDataRow.compareValue(BOOLEAN, (data[offset] != 0) ? 1 : 0, 0, null, 0, 0, other, otherIndex);
+            default:
+                int end = offset + (dynamic[index] ? UtilConversor.byteArrayToInt(data, offset - 4) : sizes[index]);
+                int start = trimmedStart(data, offset, end);
+                end = trimmedEnd(data, start, end);
+                return PrimitiveDataRow.compareValue(STRING, 0, 0, data, start, end - start, other, otherIndex);
+        }
+    }
+}
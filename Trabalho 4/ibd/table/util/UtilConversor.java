@@ -59,21 +59,22 @@ public class UtilConversor {
     }
     
     
+    //the readers below are called for every field decoded, so they avoid wrapping the array
     public static short byteArrayToShort(byte[] arr, int offset){
-        return ByteBuffer.wrap(arr,offset,2).order(ByteOrder.LITTLE_ENDIAN).getShort();
+        return (short) ((arr[offset] & 0xFF) | (arr[offset + 1] & 0xFF) << 8);
     }
     public static int byteArrayToInt(byte[] arr, int offset){
-        return ByteBuffer.wrap(arr,offset,4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        return (arr[offset] & 0xFF) | (arr[offset + 1] & 0xFF) << 8 | (arr[offset + 2] & 0xFF) << 16 | (arr[offset + 3] & 0xFF) << 24;
     }
     public static long byteArrayToLong(byte[] arr, int offset){
-        return ByteBuffer.wrap(arr,offset,8).order(ByteOrder.LITTLE_ENDIAN).getLong();
+        return (byteArrayToInt(arr, offset) & 0xFFFFFFFFL) | ((long) byteArrayToInt(arr, offset + 4) << 32);
     }
 
     public static float byteArrayToFloat(byte[] arr, int offset){
-        return ByteBuffer.wrap(arr,offset,4).order(ByteOrder.LITTLE_ENDIAN).getFloat();
+        return Float.intBitsToFloat(byteArrayToInt(arr, offset));
     }
     public static double byteArrayToDouble(byte[] arr, int offset){
-        return ByteBuffer.wrap(arr,offset,8).order(ByteOrder.LITTLE_ENDIAN).getDouble();
+        return Double.longBitsToDouble(byteArrayToLong(arr, offset));
     }
 
     public static String byteArrayToString(byte[] arr, int offset, int length){